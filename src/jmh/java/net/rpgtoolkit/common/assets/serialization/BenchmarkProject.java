@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.serialization;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetManager;
+import net.rpgtoolkit.common.assets.AssetSerializer;
+import net.rpgtoolkit.common.assets.files.FileAssetHandleResolver;
+import net.rpgtoolkit.common.assets.serialization.legacy.LegacyAnimatedTileSerializer;
+
+/**
+ * Points the toolkit at the test project and registers the serializers, the
+ * same way {@link AssetSerializerTest} does.
+ */
+final class BenchmarkProject {
+
+    static final List<AssetSerializer> SERIALIZERS = Collections.unmodifiableList(Arrays.asList(
+            new LegacyAnimatedTileSerializer(),
+            new JsonAnimationSerializer(),
+            new JsonBackgroundSerializer(),
+            new JsonPlayerSerializer(),
+            new JsonBoardSerializer(),
+            new JsonProjectSerializer(),
+            new JsonSpecialMoveSerializer(),
+            new JsonEnemySerializer(),
+            new JsonItemSerializer(),
+            new JsonTileSetSerializer()));
+
+    private static boolean initialized;
+
+    private BenchmarkProject() {
+    }
+
+    /**
+     * Gets the root directory of the test project.
+     *
+     * @return project directory
+     */
+    static File getDirectory() {
+        try {
+            return new File(BenchmarkProject.class.getClassLoader()
+                    .getResource("Test.game").toURI()).getParentFile();
+        } catch (URISyntaxException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    static synchronized void initialize() {
+        if (initialized) {
+            return;
+        }
+        System.setProperty("project.path", getDirectory().getPath());
+
+        final AssetManager assetManager = AssetManager.getInstance();
+        assetManager.registerResolver(new FileAssetHandleResolver());
+        for (AssetSerializer serializer : SERIALIZERS) {
+            assetManager.registerSerializer(serializer);
+        }
+        initialized = true;
+    }
+
+    /**
+     * Finds the serializer for the descriptor.
+     *
+     * @param descriptor asset descriptor
+     * @return serializer
+     */
+    static AssetSerializer getSerializer(AssetDescriptor descriptor) {
+        for (AssetSerializer serializer : SERIALIZERS) {
+            if (serializer.deserializable(descriptor)) {
+                return serializer;
+            }
+        }
+        throw new IllegalArgumentException("no serializer for " + descriptor.getURI());
+    }
+
+}
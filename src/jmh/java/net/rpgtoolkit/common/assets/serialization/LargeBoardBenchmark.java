@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.serialization;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import net.rpgtoolkit.common.assets.Asset;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.Board;
+import net.rpgtoolkit.common.utilities.CoreProperties;
+import net.rpgtoolkit.common.utilities.ProjectGenerator;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures board serializer throughput on boards from a generated project,
+ * much larger than the test project board.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class LargeBoardBenchmark {
+
+    @Param({"128", "512"})
+    public int size;
+
+    @Param({"8"})
+    public int layers;
+
+    private File directory;
+    private AssetDescriptor descriptor;
+    private JsonBoardSerializer serializer;
+    private byte[] contents;
+    private Board board;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkProject.initialize();
+
+        // A vector every 16 tiles along each axis and a sprite every 32.
+        directory = Files.createTempDirectory("benchmark").toFile();
+        try (ProjectGenerator generator = new ProjectGenerator(directory)) {
+            generator.setBoardCount(1);
+            generator.setBoardWidth(size);
+            generator.setBoardHeight(size);
+            generator.setLayerCount(layers);
+            generator.setVectorCount((size / 16) * (size / 16));
+            generator.setSpriteCount((size / 32) * (size / 32));
+            generator.generate();
+        }
+
+        // Handles created here load through the shared manager, which
+        // resolves the board's sprites against the generated project.
+        System.setProperty("project.path", directory.getPath());
+
+        final File file = new File(new File(directory,
+                CoreProperties.getProperty("toolkit.directory.board")), "Board0.board");
+        descriptor = new AssetDescriptor(file.toURI());
+        serializer = new JsonBoardSerializer();
+        contents = Files.readAllBytes(file.toPath());
+
+        board = (Board) deserialize();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public Asset deserialize() throws Exception {
+        final MemoryAssetHandle handle = new MemoryAssetHandle(descriptor, contents);
+        serializer.deserialize(handle);
+        return handle.getAsset();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        final MemoryAssetHandle handle = new MemoryAssetHandle(descriptor);
+        handle.setAsset(board);
+        serializer.serialize(handle);
+        return handle.getContents();
+    }
+
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetHandle;
+
+/**
+ * Asset handle backed by a byte array, keeps file system noise out of the
+ * serializer benchmarks.
+ */
+public class MemoryAssetHandle extends AssetHandle {
+
+    private byte[] contents;
+
+    public MemoryAssetHandle(AssetDescriptor descriptor) {
+        this(descriptor, new byte[0]);
+    }
+
+    public MemoryAssetHandle(AssetDescriptor descriptor, byte[] contents) {
+        super(descriptor);
+        this.contents = contents;
+    }
+
+    public byte[] getContents() {
+        return contents;
+    }
+
+    @Override
+    public ReadableByteChannel read() throws IOException {
+        return Channels.newChannel(new ByteArrayInputStream(contents));
+    }
+
+    @Override
+    public WritableByteChannel write() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(
+                Math.max(contents.length, 4096)) {
+            @Override
+            public void close() throws IOException {
+                contents = toByteArray();
+            }
+        };
+        return Channels.newChannel(output);
+    }
+
+    @Override
+    public long size() throws IOException {
+        return contents.length;
+    }
+
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.serialization;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import net.rpgtoolkit.common.assets.Asset;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetSerializer;
+import net.rpgtoolkit.common.io.ByteBufferHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures deserialize and serialize throughput of every serializer on the
+ * test project files. Background, special move and animated tile files are
+ * not part of the test project and are generated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+
+    private static final String BACKGROUND = "Generated.background";
+    private static final String SPECIAL_MOVE = "Generated.specialmove";
+    private static final String ANIMATED_TILE = "Generated.animatedtile";
+
+    @Param({
+        "Test.game",
+        "Boards/Room.board",
+        "TileSets/Default.tileset",
+        "Items/Block.item",
+        "Characters/Hero.character",
+        "Enemies/Goblin.enemy",
+        "Animations/Hero_world_attack_north.animation",
+        BACKGROUND,
+        SPECIAL_MOVE,
+        ANIMATED_TILE
+    })
+    public String file;
+
+    private AssetDescriptor descriptor;
+    private AssetSerializer serializer;
+    private byte[] contents;
+    private Asset asset;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkProject.initialize();
+
+        final File source = new File(BenchmarkProject.getDirectory(), file);
+        descriptor = new AssetDescriptor(source.toURI());
+        serializer = BenchmarkProject.getSerializer(descriptor);
+
+        switch (file) {
+            case BACKGROUND:
+                contents = ("{\"version\":4.0,\"image\":\"file:///Graphics/battle.png\","
+                        + "\"music\":\"file:///Sounds/battle.ogg\",\"sounds\":{"
+                        + "\"selecting\":\"file:///Sounds/move.wav\","
+                        + "\"selection\":\"file:///Sounds/select.wav\","
+                        + "\"ready\":\"file:///Sounds/ready.wav\","
+                        + "\"invalid\":\"file:///Sounds/invalid.wav\"}}")
+                        .getBytes(StandardCharsets.UTF_8);
+                break;
+            case SPECIAL_MOVE:
+                contents = ("{\"version\":4.0,\"name\":\"Fire\",\"description\":\"Burns\","
+                        + "\"fightPower\":12,\"mpCost\":5,\"mpDrainedFromTarget\":0,"
+                        + "\"canUseInBattle\":true,\"canUseInMenu\":false,"
+                        + "\"script\":\"file:///Programs/fire.program\","
+                        + "\"statusEffect\":\"file:///StatusE/burn.statuseffect\","
+                        + "\"animation\":\"file:///Animations/fire.animation\"}")
+                        .getBytes(StandardCharsets.UTF_8);
+                break;
+            case ANIMATED_TILE:
+                // Written by hand, the legacy serializer does not terminate
+                // the strings it writes and cannot read its own output.
+                final ByteBuffer buffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+                ByteBufferHelper.putTerminatedString(buffer, "RPGTLKIT TILEANIM",
+                        ByteBufferHelper.LEGACY_CHARSET);
+                buffer.putShort((short) 2);
+                buffer.putShort((short) 0);
+                buffer.putInt(100);
+                buffer.putInt(16);
+                for (int i = 0; i < 16; i++) {
+                    ByteBufferHelper.putTerminatedString(buffer, "Default.tileset" + i,
+                            ByteBufferHelper.LEGACY_CHARSET);
+                }
+                contents = Arrays.copyOf(buffer.array(), buffer.position());
+                break;
+            default:
+                contents = Files.readAllBytes(source.toPath());
+                break;
+        }
+
+        asset = deserialize();
+    }
+
+    @Benchmark
+    public Asset deserialize() throws Exception {
+        final MemoryAssetHandle handle = new MemoryAssetHandle(descriptor, contents);
+        serializer.deserialize(handle);
+        return handle.getAsset();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        final MemoryAssetHandle handle = new MemoryAssetHandle(descriptor);
+        handle.setAsset(asset);
+        serializer.serialize(handle);
+        return handle.getContents();
+    }
+
+}
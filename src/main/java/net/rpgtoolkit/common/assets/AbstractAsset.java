@@ -13,11 +13,28 @@ import java.util.Objects;
 public abstract class AbstractAsset implements Asset {
 
     protected AssetDescriptor descriptor;
+    private volatile AssetManager assetManager;
 
     public AbstractAsset(AssetDescriptor descriptor) {
         this.descriptor = descriptor;
     }
 
+    /**
+     * Gets the manager this asset was loaded by, which resolves the files it
+     * refers to within the same project.
+     *
+     * @return owning manager, or the shared instance if the asset was not
+     * loaded by a manager
+     */
+    public AssetManager getAssetManager() {
+        final AssetManager current = assetManager;
+        return current == null ? AssetManager.getInstance() : current;
+    }
+
+    public void setAssetManager(AssetManager assetManager) {
+        this.assetManager = assetManager;
+    }
+
     @Override
     public void reset() {}
     
@@ -38,7 +38,24 @@ public abstract class AssetHandle {
     return this.descriptor;
   }
 
+  /**
+   * Gets the manager that resolved this handle, which serializers use to load
+   * the assets this one depends on from the same project.
+   *
+   * @return owning manager, or the shared instance for handles created
+   * outside of a manager
+   */
+  public AssetManager getAssetManager() {
+    final AssetManager current = this.manager;
+    return current == null ? AssetManager.getInstance() : current;
+  }
+
+  void setAssetManager(AssetManager manager) {
+    this.manager = manager;
+  }
+
   protected final AssetDescriptor descriptor;
-  protected Asset asset;
+  protected volatile Asset asset;
+  private volatile AssetManager manager;
 
 }
@@ -7,6 +7,9 @@
  */
 package net.rpgtoolkit.common.assets;
 
+import java.util.Collections;
+import java.util.Set;
+
 /**
  *
  * @author Chris Hutchinson <chris@cshutchinson.com>
@@ -34,4 +37,16 @@ public interface AssetHandleResolver {
   AssetHandle resolve(AssetDescriptor descriptor)
     throws NullPointerException;
 
+  /**
+   * Gets the URI schemes this resolver handles. The {@link AssetManager}
+   * indexes resolvers by scheme and only asks a resolver that declares
+   * schemes about descriptors with one of them. Resolvers returning an empty
+   * set are asked about every descriptor.
+   *
+   * @return handled schemes, empty if not known in advance
+   */
+  default Set<String> schemes() {
+    return Collections.emptySet();
+  }
+
 }
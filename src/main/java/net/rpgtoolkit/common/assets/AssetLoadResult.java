@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.io.IOException;
+
+/**
+ * Outcome of loading one of the assets requested from
+ * {@link AssetManager#deserializeAll}: either the handle, or the exception
+ * that failed the load.
+ */
+public final class AssetLoadResult {
+
+  private final AssetDescriptor descriptor;
+  private final AssetHandle handle;
+  private final Exception error;
+
+  AssetLoadResult(AssetDescriptor descriptor, AssetHandle handle, Exception error) {
+    this.descriptor = descriptor;
+    this.handle = handle;
+    this.error = error;
+  }
+
+  public AssetDescriptor getDescriptor() {
+    return descriptor;
+  }
+
+  /**
+   * Gets the handle of the loaded asset.
+   *
+   * @return handle, or null if the load failed or no resolver accepts the
+   * descriptor
+   */
+  public AssetHandle getHandle() {
+    return handle;
+  }
+
+  /**
+   * Gets the exception the load failed with, an {@link IOException}, an
+   * {@link AssetException} or a {@link RuntimeException}.
+   *
+   * @return cause of the failure, or null if the load succeeded
+   */
+  public Exception getError() {
+    return error;
+  }
+
+  /**
+   * Determines if the asset was loaded.
+   *
+   * @return true if the handle holds an asset
+   */
+  public boolean isLoaded() {
+    return error == null && handle != null && handle.getAsset() != null;
+  }
+
+  /**
+   * Gets the handle, rethrowing the exception the load failed with, as
+   * {@link AssetManager#deserialize} would have.
+   *
+   * @return handle, or null if no resolver accepts the descriptor
+   * @throws IOException if the asset could not be read
+   * @throws AssetException if the asset could not be deserialized
+   */
+  public AssetHandle get() throws IOException, AssetException {
+    if (error instanceof IOException) {
+      throw (IOException) error;
+    } else if (error instanceof AssetException) {
+      throw (AssetException) error;
+    } else if (error instanceof RuntimeException) {
+      throw (RuntimeException) error;
+    }
+    return handle;
+  }
+
+  @Override
+  public String toString() {
+    return descriptor + (error == null ? "" : " failed: " + error);
+  }
+
+}
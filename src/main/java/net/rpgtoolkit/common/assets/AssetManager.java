@@ -7,41 +7,318 @@
  */
 package net.rpgtoolkit.common.assets;
 
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.rpgtoolkit.common.assets.cache.AssetCache;
+import net.rpgtoolkit.common.assets.cache.RemovalListener;
+import net.rpgtoolkit.common.assets.cache.SnapshotCache;
+import net.rpgtoolkit.common.assets.events.AssetLoadEvent;
+import net.rpgtoolkit.common.assets.listeners.AssetLoadListener;
+import net.rpgtoolkit.common.assets.metrics.AssetMetrics;
+import net.rpgtoolkit.common.io.Paths;
+import net.rpgtoolkit.common.utilities.CoreProperties;
+import net.rpgtoolkit.common.utilities.ImageCache;
+import net.rpgtoolkit.common.utilities.TileSetCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 /**
+ * Loads and caches the assets of a project.
+ * <p>
+ * Each manager is a context of its own: it has its own serializers,
+ * resolvers, cache, {@link TileSetCache} and {@link ImageCache}, and
+ * resolves the files assets refer to against its own project directory, so
+ * that one JVM can host several projects without them seeing each other's
+ * assets. Contexts may share a base cache of assets common to all of them,
+ * such as engine resources, which is only ever read and is not modified by
+ * the contexts.
+ * </p>
+ * <p>
+ * Boards loaded by a context take a reference on their tile sets in its
+ * {@link TileSetCache} once they are cached, and give them back when they
+ * leave the cache, so that tile sets no cached board uses can be evicted.
+ * </p>
+ * <p>
+ * {@link #getInstance()} returns a shared default context, which resolves
+ * files against the "project.path" system property. Other contexts should be
+ * closed once they are no longer used, which stops the loader threads they
+ * started.
+ * </p>
  *
  * @author Chris Hutchinson <chris@cshutchinson.com>
  */
-public class AssetManager {
+public class AssetManager implements Closeable {
   
   private static final Logger LOGGER = LoggerFactory.getLogger(AssetManager.class);
 
-  // Singleton.
-  // TODO: Singleton pattern is not appropriate for this type.
   private static final AssetManager INSTANCE = new AssetManager();
   
-  private final TreeSet<AssetSerializer> serializers;
+  private final File projectDirectory;
+  private final AssetCache base;
+  private final TileSetCache tileSets;
+  private final ImageCache images;
+  private final ConcurrentSkipListSet<AssetSerializer> serializers;
   private final List<AssetHandleResolver> resolvers;
-  private final Map<AssetDescriptor, AssetHandle> assets;
+  private final ConcurrentHashMap<AssetDescriptor, LoadTask> loading;
+  // Files as this context last wrote them, so that reloads skip its own saves.
+  private final ConcurrentHashMap<AssetDescriptor, FileStamp> saved;
+  private final List<AssetLoadListener> loadListeners;
+  private volatile DispatchTable<AssetSerializer> serializersByExtension;
+  private volatile DispatchTable<AssetHandleResolver> resolversByScheme;
+  private volatile AssetCache assets;
+  private volatile Executor executor;
+  // Loader pool started by this context, shut down when it is closed.
+  private ExecutorService ownedExecutor;
+  private boolean closed;
+  private volatile AssetMetrics metrics;
+  private volatile SnapshotCache snapshots;
 
+  /**
+   * Gets the shared default context.
+   *
+   * @return default manager
+   */
   public static AssetManager getInstance() {
     return INSTANCE;
   }
 
-  private AssetManager() {
-    this.resolvers = new ArrayList<>();
-    this.serializers = new TreeSet<>(
+  /**
+   * Creates a context that resolves files against the "project.path" system
+   * property, as the default context does.
+   */
+  public AssetManager() {
+    this(null, null);
+  }
+
+  /**
+   * Creates a context for the project in the directory.
+   *
+   * @param projectDirectory project root
+   */
+  public AssetManager(File projectDirectory) {
+    this(projectDirectory, null);
+  }
+
+  /**
+   * Creates a context for the project in the directory that also serves the
+   * assets held by a shared base cache. The base is only read: assets found
+   * there are never copied into, reloaded in or evicted from it by this
+   * context, and they must not be modified.
+   *
+   * @param projectDirectory project root, or null to use the "project.path"
+   * system property
+   * @param base shared read-only cache, or null for none
+   */
+  public AssetManager(File projectDirectory, AssetCache base) {
+    this.projectDirectory = projectDirectory;
+    this.base = base;
+    this.tileSets = new TileSetCache(this);
+    this.images = new ImageCache();
+    this.resolvers = new CopyOnWriteArrayList<>();
+    this.serializers = new ConcurrentSkipListSet<>(
       new AssetSerializer.PriorityComparator());
-    this.assets = new HashMap<>();
+    this.loading = new ConcurrentHashMap<>();
+    this.saved = new ConcurrentHashMap<>();
+    this.loadListeners = new CopyOnWriteArrayList<>();
+    this.serializersByExtension = new DispatchTable<>(this.serializers, AssetSerializer::extensions);
+    this.resolversByScheme = new DispatchTable<>(this.resolvers, AssetHandleResolver::schemes);
+    this.assets = new AssetCache();
+    this.assets.setRemovalListener(this::removed);
+    this.metrics = AssetMetrics.NONE;
+  }
+
+  /**
+   * Gets the root directory of the project assets are loaded from.
+   *
+   * @return project directory, or null if it has not been set
+   */
+  public File getProjectDirectory() {
+    if (this.projectDirectory != null) {
+      return this.projectDirectory;
+    }
+    final String path = System.getProperty("project.path");
+    return path == null ? null : new File(path);
+  }
+
+  /**
+   * Gets a file in one of the project's directories.
+   *
+   * @param directoryKey directory property, such as "toolkit.directory.tileset"
+   * @param fileName file name relative to that directory
+   * @return file in the project
+   */
+  public File getProjectFile(String directoryKey, String fileName) {
+    return new File(new File(getProjectDirectory(), CoreProperties.getProperty(directoryKey)),
+            fileName);
+  }
+
+  /**
+   * Gets the shared read-only cache this context also serves assets from.
+   *
+   * @return base cache, or null if there is none
+   */
+  public AssetCache getBase() {
+    return this.base;
+  }
+
+  /**
+   * Determines if the asset is served from the shared base cache, in which
+   * case it must not be modified.
+   *
+   * @param descriptor asset descriptor
+   * @return true if the asset comes from the base cache
+   */
+  public boolean isShared(AssetDescriptor descriptor) {
+    return this.base != null && descriptor != null && this.base.peek(descriptor) != null;
+  }
+
+  /**
+   * Gets the tile sets loaded for this context's boards.
+   *
+   * @return tile set cache
+   */
+  public TileSetCache getTileSetCache() {
+    return this.tileSets;
+  }
+
+  /**
+   * Gets the decoded images shared by this context's sprite sheets and board
+   * images.
+   *
+   * @return image cache
+   */
+  public ImageCache getImageCache() {
+    return this.images;
+  }
+
+  /**
+   * Gets the cache holding deserialized assets. By default the cache is
+   * unbounded; use {@link AssetCache#setCapacity(long)} to give it a memory
+   * budget.
+   *
+   * @return asset cache
+   */
+  public AssetCache getCache() {
+    return this.assets;
+  }
+
+  /**
+   * Replaces the cache holding deserialized assets, for example to use a
+   * different eviction policy. Assets held by the previous cache are dropped
+   * and its boards release their tile sets. The new cache reports its
+   * evictions to the manager's metrics.
+   *
+   * @param cache new asset cache
+   */
+  public void setCache(AssetCache cache) {
+    if (cache == null) {
+      throw new NullPointerException();
+    }
+    cache.setMetrics(this.metrics);
+    cache.setRemovalListener(this::removed);
+    final AssetCache previous = this.assets;
+    this.assets = cache;
+    if (previous != cache) {
+      previous.setRemovalListener(RemovalListener.NONE);
+      for (AssetDescriptor descriptor : previous.getDescriptors()) {
+        final AssetHandle handle = previous.peek(descriptor);
+        if (handle != null) {
+          removed(descriptor, handle);
+        }
+      }
+    }
+  }
+
+  public SnapshotCache getSnapshotCache() {
+    return this.snapshots;
+  }
+
+  /**
+   * Sets the on-disk cache of decoded assets consulted before running a
+   * serializer, so that unchanged files are not parsed again after a
+   * restart. Loads done while no snapshot cache is set always run the
+   * serializer.
+   *
+   * @param snapshots snapshot cache, or null to disable snapshots
+   */
+  public void setSnapshotCache(SnapshotCache snapshots) {
+    this.snapshots = snapshots;
+  }
+
+  public AssetMetrics getMetrics() {
+    return this.metrics;
+  }
+
+  /**
+   * Sets the metrics informed of cache hits and misses, loads and cache
+   * evictions.
+   *
+   * @param metrics metrics, {@link AssetMetrics#NONE} to disable
+   */
+  public void setMetrics(AssetMetrics metrics) {
+    if (metrics == null) {
+      throw new NullPointerException();
+    }
+    this.metrics = metrics;
+    this.assets.setMetrics(metrics);
+  }
+
+  public void addAssetLoadListener(AssetLoadListener listener) {
+    if (listener == null) {
+      throw new NullPointerException();
+    }
+    this.loadListeners.add(listener);
+  }
+
+  public void removeAssetLoadListener(AssetLoadListener listener) {
+    this.loadListeners.remove(listener);
+  }
+
+  /**
+   * Returns the number of loads that have been requested and not finished,
+   * including asynchronous loads still queued on the executor.
+   *
+   * @return loads in flight
+   */
+  public int getLoadingCount() {
+    return this.loading.size();
+  }
+
+  /**
+   * Pins the asset so that it is not evicted from the cache while it is still
+   * referenced. Every call must be balanced by {@link #unpin(AssetDescriptor)}.
+   *
+   * @param descriptor asset descriptor
+   */
+  public void pin(AssetDescriptor descriptor) {
+    this.assets.pin(descriptor);
+  }
+
+  /**
+   * Releases a pin taken with {@link #pin(AssetDescriptor)}.
+   *
+   * @param descriptor asset descriptor
+   */
+  public void unpin(AssetDescriptor descriptor) {
+    this.assets.unpin(descriptor);
   }
 
   /***
@@ -66,12 +343,15 @@ public class AssetManager {
       return null;
     }
     AssetDescriptor d = asset.getDescriptor();
-    AssetHandle h;
-    if (this.assets.containsKey(d)) {
-      h = this.assets.get(d);
-    } else {
+    AssetHandle h = this.assets.get(d);
+    if (h == null) {
       h = this.resolve(d);
-      this.assets.put(d, h);
+      h.setAsset(asset);
+      final AssetHandle existing = this.assets.putIfAbsent(d, h);
+      if (existing == null) {
+        return h;
+      }
+      h = existing;
     }
     h.setAsset(asset);
     return h;
@@ -88,41 +368,54 @@ public class AssetManager {
 
   /**
    * Registers a serializer with the manager. Serializers are sorted in
-   * ascending order of priority, so lower priority numbers are first.
+   * ascending order of priority, so lower priority numbers are first, and
+   * indexed by {@link AssetSerializer#extensions()}.
    *
    * @param serializer
    */
-  public void registerSerializer(final AssetSerializer serializer) {
+  public synchronized void registerSerializer(final AssetSerializer serializer) {
     LOGGER.info("Registering serializer=[{}].", serializer);
     
     if (serializer == null) {
       throw new NullPointerException();
     }
     this.serializers.add(serializer);
+    this.serializersByExtension = new DispatchTable<>(this.serializers, AssetSerializer::extensions);
   }
 
-  public void registerResolver(final AssetHandleResolver resolver) {
+  /**
+   * Registers a resolver with the manager. Resolvers are asked in the order
+   * they were registered, and indexed by {@link AssetHandleResolver#schemes()}.
+   *
+   * @param resolver
+   */
+  public synchronized void registerResolver(final AssetHandleResolver resolver) {
     LOGGER.info("Registering resolver=[{}].", resolver);
     
     if (resolver == null) {
       throw new NullPointerException();
     }
     this.resolvers.add(resolver);
+    this.resolversByScheme = new DispatchTable<>(this.resolvers, AssetHandleResolver::schemes);
   }
 
   public AssetHandle serialize(AssetHandle handle)
     throws IOException, AssetException {
     final AssetDescriptor descriptor = handle.getDescriptor();
-    LOGGER.info("Attempting to serialize asset with URI=[{}]", descriptor.uri);
+    LOGGER.debug("Attempting to serialize asset with URI=[{}]", descriptor.uri);
 
     if (handle.getAsset() != null) {
       assets.put(descriptor, handle);
     }
 
-    for (AssetSerializer serializer : serializers) {
+    for (AssetSerializer serializer : serializers(descriptor)) {
       if (serializer.serializable(descriptor)) {
-        LOGGER.info("Found serializer=[{}] for asset with URI=[{}]", serializer, descriptor.uri);
+        LOGGER.debug("Found serializer=[{}] for asset with URI=[{}]", serializer, descriptor.uri);
         serializer.serialize(handle);
+        final FileStamp stamp = FileStamp.of(descriptor);
+        if (stamp != null) {
+          saved.put(descriptor, stamp);
+        }
         break;
       }
     }
@@ -131,24 +424,342 @@ public class AssetManager {
 
   }
 
+  /**
+   * Deserializes the asset for the descriptor, blocking until it is loaded.
+   * If the asset is already being loaded by another thread, or queued by
+   * {@link #deserializeAsync(AssetDescriptor)}, this call joins that load
+   * instead of parsing the asset a second time.
+   *
+   * @param descriptor asset descriptor
+   * @return handle for the asset, or null if no resolver accepts the descriptor
+   * @throws IOException if the asset could not be read
+   * @throws AssetException if the asset could not be deserialized
+   */
   public AssetHandle deserialize(AssetDescriptor descriptor)
     throws IOException, AssetException {
-    LOGGER.info("Attempting to deserialize asset with URI=[{}]", descriptor.uri);
+    LOGGER.debug("Attempting to deserialize asset with URI=[{}]", descriptor.uri);
     
-    if (assets.containsKey(descriptor)) {
-      LOGGER.info("Found asset in cache with URI=[{}]", descriptor.uri);
-      return assets.get(descriptor);
+    final AssetHandle cached = cached(descriptor);
+    if (cached != null) {
+      LOGGER.debug("Found asset in cache with URI=[{}]", descriptor.uri);
+      metrics.cacheHit(descriptor);
+      return cached;
+    }
+    metrics.cacheMiss(descriptor);
+
+    LoadTask task = new LoadTask(descriptor);
+    final LoadTask existing = loading.putIfAbsent(descriptor, task);
+    if (existing != null) {
+      task = existing;
+    }
+
+    // Runs the load on this thread unless another thread has already claimed
+    // it, which also keeps a queued asynchronous load from starving a
+    // saturated executor.
+    task.run();
+    return task.join();
+
+  }
+
+  /**
+   * Deserializes the asset for the descriptor on the manager's executor.
+   * Concurrent requests for the same descriptor share a single load.
+   *
+   * @param descriptor asset descriptor
+   * @return future completed with the handle, or exceptionally with the
+   * {@link IOException} or {@link AssetException} raised by the load
+   */
+  public CompletableFuture<AssetHandle> deserializeAsync(AssetDescriptor descriptor) {
+    if (descriptor == null) {
+      throw new NullPointerException();
+    }
+
+    final AssetHandle cached = cached(descriptor);
+    if (cached != null) {
+      metrics.cacheHit(descriptor);
+      return CompletableFuture.completedFuture(cached);
+    }
+    metrics.cacheMiss(descriptor);
+
+    return schedule(descriptor).future;
+  }
+
+  /**
+   * Deserializes the assets for the descriptors, loading them in parallel on
+   * the manager's executor so that reading some files overlaps with parsing
+   * others. The calling thread takes part, loading in request order the
+   * assets no executor thread has started yet. A failed load does not stop
+   * the others, it is reported in its own result.
+   *
+   * @param descriptors asset descriptors, duplicates are loaded once
+   * @return one result per descriptor, in the order of the descriptors
+   */
+  public List<AssetLoadResult> deserializeAll(Collection<AssetDescriptor> descriptors) {
+    final List<AssetDescriptor> requested = new ArrayList<>(descriptors);
+    final List<Object> pending = new ArrayList<>(requested.size());
+    for (AssetDescriptor descriptor : requested) {
+      if (descriptor == null) {
+        throw new NullPointerException();
+      }
+      final AssetHandle cached = cached(descriptor);
+      if (cached != null) {
+        metrics.cacheHit(descriptor);
+        pending.add(cached);
+      } else {
+        metrics.cacheMiss(descriptor);
+        pending.add(schedule(descriptor));
+      }
+    }
+
+    final List<AssetLoadResult> results = new ArrayList<>(requested.size());
+    for (int i = 0; i < requested.size(); i++) {
+      final Object item = pending.get(i);
+      if (item instanceof AssetHandle) {
+        results.add(new AssetLoadResult(requested.get(i), (AssetHandle) item, null));
+        continue;
+      }
+      final LoadTask task = (LoadTask) item;
+      task.run();
+      try {
+        results.add(new AssetLoadResult(requested.get(i), task.join(), null));
+      } catch (IOException | AssetException | RuntimeException ex) {
+        results.add(new AssetLoadResult(requested.get(i), null, ex));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Gets the in-flight load of the descriptor, queueing a new one on the
+   * executor if there is none. A load the executor rejects is run right away.
+   */
+  private LoadTask schedule(AssetDescriptor descriptor) {
+    final LoadTask task = new LoadTask(descriptor);
+    final LoadTask existing = loading.putIfAbsent(descriptor, task);
+    if (existing != null) {
+      return existing;
+    }
+    try {
+      getExecutor().execute(task);
+    } catch (RejectedExecutionException ex) {
+      task.run();
+    }
+    return task;
+  }
+
+  /**
+   * Reloads a cached asset on the manager's executor, for example after its
+   * file has changed. The fresh asset is swapped into the cached handle once
+   * it is fully loaded, so holders of the handle see either the old or the
+   * new asset and never a partially loaded one. Assets that are not cached
+   * are left alone, their next load reads them fresh.
+   * <p>
+   * The cached asset is kept when its file is still as this context last
+   * saved it, so that a save is not read back over the asset that was saved,
+   * and when it is a board with unsaved edits, which a reload would lose.
+   * </p>
+   *
+   * @param descriptor asset descriptor
+   * @return future completed with the cached handle, with null if the asset
+   * was not cached, or exceptionally if the reload failed, in which case the
+   * handle keeps the old asset
+   */
+  public CompletableFuture<AssetHandle> reload(AssetDescriptor descriptor) {
+    if (descriptor == null) {
+      throw new NullPointerException();
+    }
+
+    final AssetHandle live = assets.peek(descriptor);
+    if (live == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    final FileStamp stamp = saved.get(descriptor);
+    if (stamp != null && stamp.equals(FileStamp.of(descriptor))) {
+      LOGGER.debug("Skipping reload of own save with URI=[{}]", descriptor.uri);
+      return CompletableFuture.completedFuture(live);
+    }
+    final Asset current = live.getAsset();
+    if (current instanceof Board && ((Board) current).isDirty()) {
+      LOGGER.warn("Not reloading board with unsaved edits, URI=[{}]", descriptor.uri);
+      return CompletableFuture.completedFuture(live);
+    }
+
+    final CompletableFuture<AssetHandle> future = new CompletableFuture<>();
+    final Runnable task = () -> {
+      try {
+        final AssetHandle fresh = resolve(descriptor);
+        if (fresh != null) {
+          for (AssetSerializer serializer : serializers(descriptor)) {
+            if (serializer.deserializable(descriptor)) {
+              deserialize(serializer, fresh);
+              final Asset asset = fresh.getAsset();
+              if (asset != null) {
+                if (asset instanceof Board) {
+                  ((Board) asset).acquireTileSets();
+                }
+                final Asset previous = live.getAsset();
+                live.setAsset(asset);
+                if (previous instanceof Board && previous != asset) {
+                  ((Board) previous).releaseTileSets();
+                }
+              }
+              break;
+            }
+          }
+        }
+        future.complete(live);
+      } catch (Throwable ex) {
+        future.completeExceptionally(ex);
+      }
+    };
+
+    try {
+      getExecutor().execute(task);
+    } catch (RejectedExecutionException ex) {
+      task.run();
+    }
+    return future;
+  }
+
+  /**
+   * Gets the executor used for asynchronous loads. Unless one has been set, a
+   * pool of daemon threads sized to the number of available processors is
+   * created on first use, and shut down when the context is closed. Once the
+   * context is closed, loads run on the thread that asked for them.
+   *
+   * @return executor for asynchronous loads
+   */
+  public Executor getExecutor() {
+    Executor current = this.executor;
+    if (current == null) {
+      synchronized (this) {
+        current = this.executor;
+        if (current == null) {
+          if (closed) {
+            return Runnable::run;
+          }
+          ownedExecutor = Executors.newFixedThreadPool(
+                  Runtime.getRuntime().availableProcessors(),
+                  new LoaderThreadFactory());
+          current = ownedExecutor;
+          this.executor = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Sets the executor used for asynchronous loads. Loads already queued on the
+   * previous executor are unaffected; a pool the context started itself is
+   * shut down once they have run. The executor set is not shut down when the
+   * context is closed.
+   *
+   * @param executor executor for asynchronous loads
+   */
+  public void setExecutor(Executor executor) {
+    if (executor == null) {
+      throw new NullPointerException();
+    }
+    final ExecutorService previous;
+    synchronized (this) {
+      previous = ownedExecutor;
+      ownedExecutor = null;
+      this.executor = executor;
+    }
+    if (previous != null) {
+      previous.shutdown();
+    }
+  }
+
+  /**
+   * Shuts down the loader pool the context started, once the loads queued on
+   * it have run. The context can still be used afterwards, but loads then run
+   * on the thread that asks for them. Closing the shared default context is
+   * ignored.
+   */
+  @Override
+  public void close() {
+    if (this == INSTANCE) {
+      return;
+    }
+    final ExecutorService previous;
+    synchronized (this) {
+      closed = true;
+      previous = ownedExecutor;
+      ownedExecutor = null;
+      if (previous != null) {
+        this.executor = null;
+      }
+    }
+    if (previous != null) {
+      previous.shutdown();
+    }
+  }
+
+  /**
+   * Gives back the tile sets of a board that left the cache, unless the same
+   * board is still cached under another handle.
+   */
+  private void removed(AssetDescriptor descriptor, AssetHandle handle) {
+    if (!assets.contains(descriptor)) {
+      saved.remove(descriptor);
+    }
+    final Asset asset = handle.getAsset();
+    if (!(asset instanceof Board)) {
+      return;
+    }
+    final AssetHandle current = assets.peek(descriptor);
+    if (current != null && current.getAsset() == asset) {
+      return;
+    }
+    ((Board) asset).releaseTileSets();
+  }
+
+  /**
+   * Gets the handle from this context's cache, or else from the base.
+   */
+  private AssetHandle cached(AssetDescriptor descriptor) {
+    final AssetHandle cached = assets.get(descriptor);
+    if (cached != null || base == null) {
+      return cached;
+    }
+    return base.peek(descriptor);
+  }
+
+  private AssetHandle load(AssetDescriptor descriptor)
+    throws IOException, AssetException {
+
+    // The load that populated the cache may have finished between the
+    // caller's cache check and this task being registered.
+    final AssetHandle cached = cached(descriptor);
+    if (cached != null) {
+      return cached;
     }
 
     final AssetHandle handle = resolve(descriptor);
 
     if (handle != null) {
-      for (AssetSerializer serializer : serializers) {
+      for (AssetSerializer serializer : serializers(descriptor)) {
         if (serializer.deserializable(descriptor)) {
-          LOGGER.info("Found serializer=[{}] for asset with URI=[{}]", serializer, descriptor.uri);
-          serializer.deserialize(handle);
-          if (handle.getAsset() != null) {
-            assets.put(descriptor, handle);
+          LOGGER.debug("Found serializer=[{}] for asset with URI=[{}]", serializer, descriptor.uri);
+          deserialize(serializer, handle);
+          final Asset asset = handle.getAsset();
+          if (asset != null) {
+            // Acquired before caching, so that the removal listener gives the
+            // tile sets back if the cache turns the board away.
+            if (asset instanceof Board) {
+              ((Board) asset).acquireTileSets();
+            }
+            // Another thread may have loaded the same asset meanwhile, keep
+            // the handle that made it into the cache first.
+            final AssetHandle existing = assets.putIfAbsent(descriptor, handle);
+            if (existing != null) {
+              if (asset instanceof Board) {
+                ((Board) asset).releaseTileSets();
+              }
+              return existing;
+            }
           }
           break;
         }
@@ -159,11 +770,103 @@ public class AssetManager {
 
   }
 
+  /**
+   * Runs the serializer, or decodes the asset's snapshot when it has an up to
+   * date one, reporting the load to the metrics and listeners.
+   */
+  private void deserialize(AssetSerializer serializer, AssetHandle handle)
+    throws IOException, AssetException {
+    final AssetDescriptor descriptor = handle.getDescriptor();
+    final AssetMetrics current = this.metrics;
+    final boolean traced = !this.loadListeners.isEmpty();
+
+    current.loadStarted(descriptor, serializer);
+    if (traced) {
+      fireAssetLoadStarted(new AssetLoadEvent(this, descriptor, serializer));
+    }
+
+    final SnapshotCache snapshots = this.snapshots;
+    final long start = System.nanoTime();
+    try {
+      if (snapshots == null) {
+        serializer.deserialize(handle);
+      } else {
+        snapshots.deserialize(handle, serializer);
+      }
+    } catch (IOException | AssetException | RuntimeException ex) {
+      final long elapsed = System.nanoTime() - start;
+      current.loadFailed(descriptor, serializer, elapsed, ex);
+      if (traced) {
+        fireAssetLoadFinished(new AssetLoadEvent(this, descriptor, serializer, elapsed, -1, ex));
+      }
+      throw ex;
+    }
+    final long elapsed = System.nanoTime() - start;
+
+    if (handle.getAsset() instanceof AbstractAsset) {
+      ((AbstractAsset) handle.getAsset()).setAssetManager(this);
+    }
+
+    // Only ask for the size when someone is listening, it may cost a stat.
+    final long bytes = current != AssetMetrics.NONE || traced ? sizeOf(handle) : -1;
+    current.loadCompleted(descriptor, serializer, elapsed, bytes);
+    if (traced) {
+      fireAssetLoadFinished(new AssetLoadEvent(this, descriptor, serializer, elapsed, bytes, null));
+    }
+  }
+
+  private void fireAssetLoadStarted(AssetLoadEvent event) {
+    for (AssetLoadListener listener : this.loadListeners) {
+      listener.assetLoadStarted(event);
+    }
+  }
+
+  private void fireAssetLoadFinished(AssetLoadEvent event) {
+    for (AssetLoadListener listener : this.loadListeners) {
+      listener.assetLoadFinished(event);
+    }
+  }
+
+  private static long sizeOf(AssetHandle handle) {
+    try {
+      return handle.size();
+    } catch (IOException ex) {
+      return -1;
+    }
+  }
+
+  /**
+   * Determines if any registered serializer can deserialize the descriptor.
+   *
+   * @param descriptor asset descriptor
+   * @return true if deserializable, false otherwise
+   */
+  public boolean isDeserializable(AssetDescriptor descriptor) {
+    for (AssetSerializer serializer : serializers(descriptor)) {
+      if (serializer.deserializable(descriptor)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the serializers that may handle the descriptor, in priority order.
+   */
+  private List<AssetSerializer> serializers(AssetDescriptor descriptor) {
+    return this.serializersByExtension.get(Paths.lastExtension(descriptor.getURI()));
+  }
+
   private AssetHandle resolve(final AssetDescriptor descriptor) {
 
-    for (final AssetHandleResolver resolver : resolvers) {
+    final String scheme = descriptor.getURI().getScheme();
+    for (final AssetHandleResolver resolver : resolversByScheme.get(scheme == null ? "" : scheme)) {
       if (resolver.resolvable(descriptor)) {
-        return resolver.resolve(descriptor);
+        final AssetHandle handle = resolver.resolve(descriptor);
+        if (handle != null) {
+          handle.setAssetManager(this);
+        }
+        return handle;
       }
     }
 
@@ -171,4 +874,131 @@ public class AssetManager {
 
   }
 
+  /**
+   * A single in-flight load shared by every caller asking for the same
+   * descriptor. Whichever thread claims the task first performs the load.
+   */
+  private final class LoadTask implements Runnable {
+
+    private final AssetDescriptor descriptor;
+    private final CompletableFuture<AssetHandle> future;
+    private final AtomicBoolean claimed;
+    private volatile Thread owner;
+
+    private LoadTask(AssetDescriptor descriptor) {
+      this.descriptor = descriptor;
+      this.future = new CompletableFuture<>();
+      this.claimed = new AtomicBoolean();
+    }
+
+    @Override
+    public void run() {
+      if (!claimed.compareAndSet(false, true)) {
+        return;
+      }
+      owner = Thread.currentThread();
+      AssetHandle handle = null;
+      Throwable error = null;
+      try {
+        handle = load(descriptor);
+      } catch (Throwable ex) {
+        error = ex;
+      } finally {
+        owner = null;
+        // Unregistered before the waiters are woken, so that a request made
+        // after a failed load tries again instead of joining this one.
+        loading.remove(descriptor, this);
+      }
+      if (error != null) {
+        future.completeExceptionally(error);
+      } else {
+        future.complete(handle);
+      }
+    }
+
+    private AssetHandle join() throws IOException, AssetException {
+      if (owner == Thread.currentThread()) {
+        throw new AssetException("circular dependency on asset " + descriptor);
+      }
+      try {
+        return future.get();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while loading " + descriptor);
+      } catch (ExecutionException ex) {
+        final Throwable cause = ex.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        } else if (cause instanceof AssetException) {
+          throw (AssetException) cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IOException(cause);
+      }
+    }
+
+  }
+
+  /**
+   * Modification time and size of a file, enough to tell whether it has been
+   * written since.
+   */
+  private static final class FileStamp {
+
+    private final long modified;
+    private final long size;
+
+    private FileStamp(long modified, long size) {
+      this.modified = modified;
+      this.size = size;
+    }
+
+    /**
+     * Gets the stamp of the file the descriptor refers to, or null if it does
+     * not refer to an existing file.
+     */
+    private static FileStamp of(AssetDescriptor descriptor) {
+      if (!"file".equals(descriptor.getURI().getScheme())) {
+        return null;
+      }
+      final File file = new File(descriptor.getURI());
+      if (!file.isFile()) {
+        return null;
+      }
+      return new FileStamp(file.lastModified(), file.length());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof FileStamp)) {
+        return false;
+      }
+      final FileStamp stamp = (FileStamp) other;
+      return modified == stamp.modified && size == stamp.size;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(modified) * 31 + Long.hashCode(size);
+    }
+
+  }
+
+  private static final class LoaderThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      final Thread thread = new Thread(runnable,
+              "asset-loader-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+
+  }
+
 }
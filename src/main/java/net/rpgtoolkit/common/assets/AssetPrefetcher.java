@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Loads the assets a board depends on in parallel, ahead of the code that
+ * actually needs them.
+ * <p>
+ * A board references its tile sets, the item files of its sprites, a first run
+ * program and background music. Items in turn reference animations. All of
+ * them are requested through {@link AssetManager#deserializeAsync}, so a later
+ * blocking {@link AssetManager#deserialize} for the same file simply joins the
+ * load already in flight. Files that no registered serializer understands,
+ * such as programs or music without a serializer, are skipped.
+ * </p>
+ */
+public class AssetPrefetcher {
+
+  private final AssetManager manager;
+
+  public AssetPrefetcher(AssetManager manager) {
+    if (manager == null) {
+      throw new NullPointerException();
+    }
+    this.manager = manager;
+  }
+
+  /**
+   * Prefetches every asset referenced by the board.
+   *
+   * @param board board to prefetch dependencies for
+   * @return future completed once every dependency has been loaded
+   */
+  public CompletableFuture<Void> prefetch(Board board) {
+    final Set<String> spriteFiles = new LinkedHashSet<>();
+    for (BoardLayer layer : board.getLayers()) {
+      for (BoardSprite sprite : layer.getSprites()) {
+        spriteFiles.add(sprite.getFileName());
+      }
+    }
+    return prefetch(board, spriteFiles);
+  }
+
+  /**
+   * Prefetches the tile sets, first run program and background music of the
+   * board together with the specified sprite item files. Used while a board is
+   * still being parsed and its sprites have not been created yet.
+   *
+   * @param board board to prefetch dependencies for
+   * @param spriteFiles item file names of the board's sprites
+   * @return future completed once every dependency has been loaded
+   */
+  public CompletableFuture<Void> prefetch(Board board, Collection<String> spriteFiles) {
+    final List<CompletableFuture<?>> loads = new ArrayList<>();
+
+    for (String tileSet : board.getTileSets().keySet()) {
+      loads.add(load("toolkit.directory.tileset", tileSet));
+    }
+    for (String item : new LinkedHashSet<>(spriteFiles)) {
+      loads.add(load("toolkit.directory.item", item)
+              .thenCompose(this::prefetchAnimations));
+    }
+    loads.add(load("toolkit.directory.program", board.getFirstRunProgram()));
+    loads.add(load("toolkit.directory.media", board.getBackgroundMusic()));
+
+    return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[loads.size()]));
+  }
+
+  private CompletableFuture<Void> prefetchAnimations(AssetHandle handle) {
+    if (handle == null || !(handle.getAsset() instanceof AbstractSprite)) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    final AbstractSprite sprite = (AbstractSprite) handle.getAsset();
+    final List<CompletableFuture<?>> loads = new ArrayList<>();
+    for (String animation : new LinkedHashSet<>(sprite.getAnimations().values())) {
+      loads.add(load("toolkit.directory.misc", animation));
+    }
+
+    return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[loads.size()]));
+  }
+
+  private CompletableFuture<AssetHandle> load(String directory, String fileName) {
+    if (fileName == null || fileName.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    final File file = manager.getProjectFile(directory, fileName);
+    final AssetDescriptor descriptor = new AssetDescriptor(file.toURI());
+    if (!manager.isDeserializable(descriptor)) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    return manager.deserializeAsync(descriptor);
+  }
+
+}
@@ -8,7 +8,9 @@
 package net.rpgtoolkit.common.assets;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Set;
 
 
 /**
@@ -56,6 +58,19 @@ public interface AssetSerializer {
 
     boolean deserializable(final AssetDescriptor descriptor);
 
+    /**
+     * Gets the file extensions, including the leading dot, of the assets
+     * this serializer handles. The {@link AssetManager} indexes serializers
+     * by extension and only asks a serializer that declares extensions about
+     * descriptors whose last extension is one of them. Serializers returning
+     * an empty set are asked about every descriptor.
+     *
+     * @return handled extensions, empty if not known in advance
+     */
+    default Set<String> extensions() {
+        return Collections.emptySet();
+    }
+
     void serialize(AssetHandle handle)
             throws IOException, AssetException;
 
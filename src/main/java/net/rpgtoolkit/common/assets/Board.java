@@ -8,11 +8,14 @@
 package net.rpgtoolkit.common.assets;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import net.rpgtoolkit.common.Selectable;
 import net.rpgtoolkit.common.assets.events.BoardChangedEvent;
@@ -48,6 +51,10 @@ public final class Board extends AbstractAsset implements Selectable {
     private final LinkedList<BoardChangeListener> boardChangeListeners;
     private boolean selectedState; // TODO: This is editor specific, move it!
     private Perspective perspective;
+    private CompletableFuture<Void> prefetch;
+    private boolean dirty;
+    private List<String> acquiredTileSets;
+    private TileSetCache acquiredFrom;
 
     // Variables
     private String name;
@@ -55,9 +62,12 @@ public final class Board extends AbstractAsset implements Selectable {
     private int height;
     private int tileWidth;
     private int tileHeight;
-    private LinkedHashMap<String, TileSet> tileSets;
+    private final LinkedHashMap<String, TileSet> tileSets;
+    private final HashMap<String, Integer> tileSetIds;
+    private final ArrayList<TileSet> tileSetTable;
     private LinkedList<BoardLayer> layers;
     private int[][][] boardDimensions; // x, y, z
+    private boolean chunked;
     private StartingPosition startingPosition;
     private String backgroundMusic;
     private String firstRunProgram;
@@ -71,8 +81,13 @@ public final class Board extends AbstractAsset implements Selectable {
         super(descriptor);
         startingPosition = new StartingPosition();
         tileSets = new LinkedHashMap<>();
+        tileSetIds = new HashMap<>();
+        tileSetTable = new ArrayList<>();
         layers = new LinkedList<>();
         boardChangeListeners = new LinkedList<>();
+        prefetch = CompletableFuture.completedFuture(null);
+        dirty = true;
+        acquiredTileSets = Collections.emptyList();
     }
 
     /**
@@ -110,6 +125,7 @@ public final class Board extends AbstractAsset implements Selectable {
      */
     public void setLayers(LinkedList<BoardLayer> layers) {
         this.layers = layers;
+        dirty = true;
     }
 
     public String getName() {
@@ -118,6 +134,7 @@ public final class Board extends AbstractAsset implements Selectable {
 
     public void setName(String name) {
         this.name = name;
+        dirty = true;
     }
 
     /**
@@ -139,6 +156,7 @@ public final class Board extends AbstractAsset implements Selectable {
             throw new IllegalArgumentException("width must be > 0");
         }
         this.width = width;
+        dirty = true;
     }
 
     /**
@@ -160,6 +178,7 @@ public final class Board extends AbstractAsset implements Selectable {
             throw new IllegalArgumentException("height must be > 0");
         }
         this.height = height;
+        dirty = true;
     }
 
     public int getTileWidth() {
@@ -168,6 +187,7 @@ public final class Board extends AbstractAsset implements Selectable {
 
     public void setTileWidth(int tileWidth) {
         this.tileWidth = tileWidth;
+        dirty = true;
     }
 
     public int getTileHeight() {
@@ -176,6 +196,7 @@ public final class Board extends AbstractAsset implements Selectable {
 
     public void setTileHeight(int tileHeight) {
         this.tileHeight = tileHeight;
+        dirty = true;
     }
 
     public void addSprite(BoardSprite sprite) {
@@ -187,7 +208,7 @@ public final class Board extends AbstractAsset implements Selectable {
     public void removeSprite(BoardSprite sprite) {
         BoardLayer boardLayer = layers.get(sprite.getLayer());
         boardLayer.removeBoardSprite(sprite);
-        fireBoardSpriteAdded(sprite);
+        fireBoardSpriteRemoved(sprite);
     }
 
     public StartingPosition getStartingPosition() {
@@ -196,6 +217,7 @@ public final class Board extends AbstractAsset implements Selectable {
 
     public void setStartingPosition(StartingPosition startingPosition) {
         this.startingPosition = startingPosition;
+        dirty = true;
     }
 
     /**
@@ -214,6 +236,7 @@ public final class Board extends AbstractAsset implements Selectable {
      */
     public void setStartingPositionX(int startingPositionX) {
         startingPosition.x = startingPositionX;
+        dirty = true;
     }
 
     /**
@@ -232,6 +255,7 @@ public final class Board extends AbstractAsset implements Selectable {
      */
     public void setStartingPositionY(int startingPositionY) {
         this.startingPosition.y = startingPositionY;
+        dirty = true;
     }
 
     /**
@@ -250,6 +274,7 @@ public final class Board extends AbstractAsset implements Selectable {
      */
     public void setStartingLayer(int startingLayer) {
         this.startingPosition.layer = startingLayer;
+        dirty = true;
     }
 
     /**
@@ -261,7 +286,7 @@ public final class Board extends AbstractAsset implements Selectable {
      * @return tile index
      */
     public int getIndexAtLocation(int x, int y, int z) {
-        return layers.get(z).getTiles()[x][y].getIndex();
+        return layers.get(z).getTileAt(x, y).getIndex();
     }
 
     /**
@@ -280,14 +305,21 @@ public final class Board extends AbstractAsset implements Selectable {
      */
     public void setPerspective(Perspective perspective) {
         this.perspective = perspective;
+        dirty = true;
     }
 
     /**
-     * Gets the board dimensions.
+     * Gets the board dimensions. The array is only allocated on first use.
      *
      * @return x, y, z, where z is the number of layers
+     * @deprecated use {@link #getWidth()}, {@link #getHeight()} and the number
+     * of layers instead, the array holds no data
      */
+    @Deprecated
     public int[][][] getBoardDimensions() {
+        if (boardDimensions == null) {
+            boardDimensions = new int[width][height][layers.size()];
+        }
         return boardDimensions;
     }
 
@@ -295,11 +327,76 @@ public final class Board extends AbstractAsset implements Selectable {
      * Sets the board dimensions.
      *
      * @param boardDimensions new board dimensions x, y, z
+     * @deprecated the array holds no data
      */
+    @Deprecated
     public void setBoardDimensions(int[][][] boardDimensions) {
         this.boardDimensions = boardDimensions;
     }
 
+    /**
+     * Is this board split into chunks that are loaded on demand?
+     *
+     * @return true if chunked
+     */
+    public boolean isChunked() {
+        return chunked;
+    }
+
+    /**
+     * Sets whether new layers of this board use chunked tile storage, existing
+     * layers are left as they are.
+     *
+     * @param chunked true to use chunked storage
+     */
+    public void setChunked(boolean chunked) {
+        this.chunked = chunked;
+    }
+
+    /**
+     * Determines if the board has changed since it was loaded or last saved.
+     * Tile edits made through {@link BoardLayer#setTileAt}, vectors and
+     * sprites added, removed or edited through their setters, property setters
+     * and anything that fires a board change are tracked. New boards are
+     * dirty.
+     *
+     * @return true if the board needs saving
+     */
+    public boolean isDirty() {
+        if (dirty) {
+            return true;
+        }
+        for (BoardLayer layer : layers) {
+            if (layer.isDirty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks the board and its layers as saved, called by serializers once the
+     * board has been loaded or written.
+     */
+    public void markSaved() {
+        dirty = false;
+        for (BoardLayer layer : layers) {
+            layer.markSaved();
+        }
+    }
+
+    /**
+     * Creates the tile storage for a new blank layer of this board.
+     *
+     * @return tile grid sized to the board
+     */
+    public TileGrid createTileGrid() {
+        if (chunked) {
+            return new ChunkedTileGrid(width, height, ChunkSource.BLANK);
+        }
+        return new DenseTileGrid(width, height);
+    }
+
     /**
      * Gets the board layer names.
      *
@@ -351,6 +448,7 @@ public final class Board extends AbstractAsset implements Selectable {
      */
     public void setBackgroundMusic(String backgroundMusic) {
         this.backgroundMusic = backgroundMusic;
+        dirty = true;
     }
 
     /**
@@ -369,10 +467,34 @@ public final class Board extends AbstractAsset implements Selectable {
      */
     public void setFirstRunProgram(String firstRunProgram) {
         this.firstRunProgram = firstRunProgram;
+        dirty = true;
     }
 
     /**
-     * Gets a hash of the board tile sets indexed by name.
+     * Gets the future tracking the prefetch of the assets this board references
+     * (tile sets, sprite items and their animations, first run program and
+     * background music).
+     *
+     * @return future completed once the board's dependencies are loaded
+     */
+    public CompletableFuture<Void> getPrefetch() {
+        return prefetch;
+    }
+
+    /**
+     * Sets the future tracking the prefetch of this board's dependencies.
+     *
+     * @param prefetch prefetch future
+     */
+    public void setPrefetch(CompletableFuture<Void> prefetch) {
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * Gets a hash of the board tile sets indexed by name. Each tile set also
+     * has an id, its position in the iteration order of the hash, see
+     * {@link #getTileSetId(String)}. Ids follow changes made through the hash
+     * once {@link #indexTileSets()} is called.
      *
      * @return tile set hash
      */
@@ -380,6 +502,61 @@ public final class Board extends AbstractAsset implements Selectable {
         return tileSets;
     }
 
+    /**
+     * Rebuilds the tile set id table from the hash of board tile sets.
+     * {@link #setTileSets(Map)} and {@link #loadTiles()} call it, and the
+     * board serializers call it before storing.
+     */
+    public void indexTileSets() {
+        tileSetIds.clear();
+        tileSetTable.clear();
+        for (Map.Entry<String, TileSet> entry : tileSets.entrySet()) {
+            tileSetIds.put(entry.getKey(), tileSetTable.size());
+            tileSetTable.add(entry.getValue());
+        }
+    }
+
+    /**
+     * Gets the id of a board tile set. Ids are assigned in the order tile sets
+     * are added and only change when a tile set is removed, board files use
+     * them as tile set indices.
+     *
+     * @param name tile set name
+     * @return tile set id, or -1 if the board does not use the tile set
+     */
+    public int getTileSetId(String name) {
+        Integer id = tileSetIds.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Gets the id of a board tile set. Tile sets are compared by identity
+     * first, as a loaded tile set's name is not the key it is listed under,
+     * and then by name for placeholders that are not on the board.
+     *
+     * @param tileSet tile set
+     * @return tile set id, or -1 if the board does not use the tile set
+     */
+    public int getTileSetId(TileSet tileSet) {
+        for (int i = 0; i < tileSetTable.size(); i++) {
+            if (tileSetTable.get(i) == tileSet) {
+                return i;
+            }
+        }
+        return getTileSetId(tileSet.getName());
+    }
+
+    /**
+     * Gets the board tile set with the specified id.
+     *
+     * @param id tile set id
+     * @return the tile set
+     * @throws IndexOutOfBoundsException if there is no tile set with the id
+     */
+    public TileSet getTileSet(int id) {
+        return tileSetTable.get(id);
+    }
+
     /**
      * Sets the hash of board tile sets indexed by name
      *
@@ -388,6 +565,8 @@ public final class Board extends AbstractAsset implements Selectable {
     public void setTileSets(Map<String, TileSet> tileSets) {
         this.tileSets.clear();
         this.tileSets.putAll(tileSets);
+        indexTileSets();
+        dirty = true;
     }
 
     /**
@@ -413,6 +592,7 @@ public final class Board extends AbstractAsset implements Selectable {
     @Override
     public void reset() {
         tileSets.clear();
+        indexTileSets();
 
         width = 0;
         height = 0;
@@ -446,6 +626,7 @@ public final class Board extends AbstractAsset implements Selectable {
      * this board has changed.
      */
     public void fireBoardChanged() {
+        dirty = true;
         BoardChangedEvent event = null;
         Iterator iterator = boardChangeListeners.iterator();
 
@@ -465,6 +646,7 @@ public final class Board extends AbstractAsset implements Selectable {
      * @param layer new layer
      */
     public void fireBoardLayerAdded(BoardLayer layer) {
+        dirty = true;
         BoardChangedEvent event = null;
         Iterator iterator = boardChangeListeners.iterator();
 
@@ -485,6 +667,7 @@ public final class Board extends AbstractAsset implements Selectable {
      * @param layer effected layer
      */
     public void fireBoardLayerMovedUp(BoardLayer layer) {
+        dirty = true;
         BoardChangedEvent event = null;
         Iterator iterator = boardChangeListeners.iterator();
 
@@ -505,6 +688,7 @@ public final class Board extends AbstractAsset implements Selectable {
      * @param layer effected layer
      */
     public void fireBoardLayerMovedDown(BoardLayer layer) {
+        dirty = true;
         BoardChangedEvent event = null;
         Iterator iterator = boardChangeListeners.iterator();
 
@@ -525,6 +709,7 @@ public final class Board extends AbstractAsset implements Selectable {
      * @param layer cloned layer
      */
     public void fireBoardLayerCloned(BoardLayer layer) {
+        dirty = true;
         BoardChangedEvent event = null;
         Iterator iterator = boardChangeListeners.iterator();
 
@@ -545,6 +730,7 @@ public final class Board extends AbstractAsset implements Selectable {
      * @param layer deleted layer
      */
     public void fireBoardLayerDeleted(BoardLayer layer) {
+        dirty = true;
         BoardChangedEvent event = null;
         Iterator iterator = boardChangeListeners.iterator();
 
@@ -565,6 +751,7 @@ public final class Board extends AbstractAsset implements Selectable {
      * @param sprite
      */
     public void fireBoardSpriteAdded(BoardSprite sprite) {
+        dirty = true;
         BoardChangedEvent event = null;
         Iterator iterator = boardChangeListeners.iterator();
 
@@ -585,6 +772,7 @@ public final class Board extends AbstractAsset implements Selectable {
      * @param sprite
      */
     public void fireBoardSpriteRemoved(BoardSprite sprite) {
+        dirty = true;
         BoardChangedEvent event = null;
         Iterator iterator = boardChangeListeners.iterator();
 
@@ -706,34 +894,65 @@ public final class Board extends AbstractAsset implements Selectable {
     }
 
     /**
-     * Invoked when the required TileSets exist in the Cache. When first loaded
-     * Boards will have blank Tile rasters.
+     * Invoked when the required TileSets exist in the Cache of the board's
+     * {@link AssetManager}. When first loaded Boards will have placeholder
+     * tiles. Calling it again picks up tile sets that have since been
+     * replaced in the cache.
      */
     public void loadTiles() {
+        TileSetCache cache = getAssetManager().getTileSetCache();
+        // When first loaded the tile sets only have their name.
         for (BoardLayer boardLayer : layers) {
-            int count = width * height;
-            int x = 0;
-            int y = 0;
-            Tile[][] tiles = boardLayer.getTiles();
-            for (int j = 0; j < count; j++) {
-                Tile tile = tiles[x][y];
-
-                if (tile.getTileSet() != null) {
-                    // When first loaded they'll only have the name.
-                    tile.setTileSet(TileSetCache.getTileSet(tile.getTileSet().getName()));
-                    tiles[x][y] = tile.getTileSet().getTile(tile.getIndex());
+            boardLayer.loadTileSets(cache);
+        }
+        for (Map.Entry<String, TileSet> entry : tileSets.entrySet()) {
+            TileSet loaded = cache.get(entry.getKey());
+            if (loaded != null && loaded != entry.getValue()) {
+                // Also relinks layers holding a previously loaded copy.
+                for (BoardLayer boardLayer : layers) {
+                    boardLayer.replaceTileSet(entry.getValue(), loaded);
                 }
+                entry.setValue(loaded);
+            }
+        }
+        indexTileSets();
+    }
 
-                x++;
-                if (x == width) {
-                    x = 0;
-                    y++;
-                    if (y == height) {
-                        break;
-                    }
-                }
+    /**
+     * Takes a reference on every tile set of this board in the
+     * {@link TileSetCache} of its {@link AssetManager}, loading those that are
+     * not cached yet, and then loads the tiles. The {@link AssetManager} calls
+     * it once it has cached a loaded board, and calls
+     * {@link #releaseTileSets()} when the board leaves its cache. Calling it
+     * again, after tile sets have been added to the board, replaces the
+     * previous references.
+     */
+    public synchronized void acquireTileSets() {
+        TileSetCache cache = getAssetManager().getTileSetCache();
+        List<String> acquired = new ArrayList<>(tileSets.size());
+        for (String key : new ArrayList<>(tileSets.keySet())) {
+            if (cache.acquire(key) != null) {
+                acquired.add(key);
             }
         }
+        // Released after taking the new references, so that tile sets kept
+        // are not evicted in between.
+        releaseTileSets();
+        acquiredTileSets = acquired;
+        acquiredFrom = cache;
+        loadTiles();
+    }
+
+    /**
+     * Gives back the references taken by {@link #acquireTileSets()}, so that
+     * tile sets no other board uses may be evicted from the cache.
+     */
+    public synchronized void releaseTileSets() {
+        for (String key : acquiredTileSets) {
+            acquiredFrom.release(key);
+        }
+        acquiredTileSets = Collections.emptyList();
+        acquiredFrom = null;
     }
 
 }
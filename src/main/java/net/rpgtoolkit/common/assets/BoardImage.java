@@ -9,10 +9,6 @@ package net.rpgtoolkit.common.assets;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import javax.imageio.ImageIO;
-import net.rpgtoolkit.common.utilities.CoreProperties;
 
 /**
  * Represents an image as used on a <code>Board</code>.
@@ -30,7 +26,7 @@ public class BoardImage implements Cloneable {
   private double scrollX;
   private double scrollY;
   private String fileName;
-  private BufferedImage image;
+  private LazyImage image = LazyImage.EMPTY;
 
   private int scrollRatio;
 
@@ -44,34 +40,48 @@ public class BoardImage implements Cloneable {
   }
   
   /**
-   * Sets the filename of this image, opens the new file that was specified.
+   * Sets the filename of this image, the new file is decoded in the
+   * background from the project of the shared {@link AssetManager}.
    * 
    * @param fileName 
    */
   public void setFileName(String fileName) {
+    setFileName(fileName, AssetManager.getInstance());
+  }
+
+  /**
+   * Sets the filename of this image, the new file is decoded in the
+   * background.
+   * 
+   * @param fileName 
+   * @param assetManager manager of the project the image belongs to
+   */
+  public void setFileName(String fileName, AssetManager assetManager) {
     this.fileName = fileName;
 
-    try {
-      if (!fileName.equals("")) {
-        FileInputStream fis = new FileInputStream(
-                System.getProperty("project.path") 
-                + File.separator
-                + CoreProperties.getProperty("toolkit.directory.bitmap")
-                + File.separator
-                + fileName);
-        image = ImageIO.read(fis);
-      }
-    } catch (IOException e) {
-      System.out.println(e.toString());
+    if (!fileName.equals("")) {
+      File file = assetManager.getProjectFile("toolkit.directory.bitmap", fileName);
+      image = new LazyImage(() -> assetManager.getImageCache().getImage(file)).decodeAsync();
     }
   }
 
   /**
-   * Gets the board images as a displayable image.
+   * Gets the board images as a displayable image, waits for the image to be
+   * decoded if it is not ready yet.
    * 
    * @return image
    */
   public BufferedImage getAsImage() {
+    return image.get();
+  }
+
+  /**
+   * Gets the reference to the image, which allows drawing a placeholder
+   * until the image has been decoded.
+   * 
+   * @return image reference
+   */
+  public LazyImage getImageReference() {
     return image;
   }
 
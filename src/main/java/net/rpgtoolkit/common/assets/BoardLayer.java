@@ -10,6 +10,12 @@ package net.rpgtoolkit.common.assets;
 import java.awt.geom.Line2D;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import net.rpgtoolkit.common.utilities.TileSetCache;
 
 /**
  * Represents a layer on a board.
@@ -18,6 +24,19 @@ import java.util.ArrayList;
  */
 public class BoardLayer implements Cloneable {
 
+  /**
+   * Cell value of a blank tile.
+   */
+  public static final int BLANK_CELL = 0;
+  public static final int MAX_TILE_INDEX = 0xFFFF;
+  public static final int MAX_TILE_SETS = 0x7FFF;
+
+  /**
+   * Clock stamped on vectors and sprites when they are edited in place, so
+   * that a layer can tell which of them changed since it was saved.
+   */
+  private static final AtomicLong CHANGES = new AtomicLong();
+
   /**
    * The name of the layer.
    */
@@ -31,9 +50,14 @@ public class BoardLayer implements Cloneable {
    */
   private Board board;
   /**
-   * A list of all the tiles used on this layer.
+   * The tiles used on this layer. A cell is either {@link #BLANK_CELL} or
+   * <code>(tileSetId + 1) &lt;&lt; 16 | tileIndex</code>.
    */
-  private Tile[][] tiles;
+  private TileGrid grid;
+  /**
+   * The tile sets referenced by the cells, indexed by tile set id.
+   */
+  private ArrayList<TileSet> tileSets;
   /**
    * A list of all the lights used on this layer.
    */
@@ -41,15 +65,60 @@ public class BoardLayer implements Cloneable {
   /**
    * A list of all the vectors on this layer.
    */
-  private ArrayList<BoardVector> vectors;
+  private TrackedList<BoardVector> vectors;
+  /**
+   * Spatial index over the vectors, rebuilt when the vector list has been
+   * modified directly.
+   */
+  private final BoardVectorIndex vectorIndex;
+  /**
+   * Version of the vector list the index was last synchronized with.
+   */
+  private long vectorIndexVersion;
+  /**
+   * Tile returned for the blank cells of this layer, as the tile array used
+   * to hold one blank tile per layer.
+   */
+  private final Tile blankTile = new Tile();
   /**
    * A list of all the sprites on this layer.
    */
-  private ArrayList<BoardSprite> sprites;
+  private TrackedList<BoardSprite> sprites;
+  /**
+   * Spatial index over the sprites, rebuilt when the sprite list has been
+   * modified directly.
+   */
+  private final BoardSpriteIndex spriteIndex;
+  /**
+   * Version of the sprite list the index was last synchronized with.
+   */
+  private long spriteIndexVersion;
   /**
    * A list of all the images on this layer.
    */
   private ArrayList<BoardImage> images;
+  /**
+   * Rows of the tile grid changed since the layer was last saved, or null if
+   * the whole grid needs saving.
+   */
+  private BitSet dirtyRows;
+  /**
+   * Versions of the vector and sprite lists when the layer was last saved.
+   */
+  private long savedVectorVersion;
+  private long savedSpriteVersion;
+  /**
+   * Whether the vector or sprite lists were replaced since the last save.
+   */
+  private boolean objectsReplaced;
+  /**
+   * Value of the change clock when the layer was last saved.
+   */
+  private long savedChange;
+  /**
+   * Whether the layer's own properties changed since the last save.
+   */
+  private boolean propertiesChanged;
 
   /**
    * Creates a new layer with a parent board.
@@ -57,14 +126,29 @@ public class BoardLayer implements Cloneable {
    * @param parentBoard associated board
    */
   public BoardLayer(Board parentBoard) {
+    this(parentBoard, parentBoard.createTileGrid(), new ArrayList<>());
+  }
+
+  /**
+   * Creates a layer over existing tile storage.
+   *
+   * @param parentBoard associated board
+   * @param grid tile cells of the layer
+   * @param tileSets tile sets referenced by the cells, indexed by tile set id
+   */
+  public BoardLayer(Board parentBoard, TileGrid grid, List<TileSet> tileSets) {
     board = parentBoard;
-    tiles = new Tile[board.getWidth()][board.getHeight()];
+    this.grid = grid;
+    this.tileSets = new ArrayList<>(tileSets);
     lights = new ArrayList<>();
-    vectors = new ArrayList<>();
-    sprites = new ArrayList<>();
+    vectors = new TrackedList<>();
+    vectorIndex = new BoardVectorIndex();
+    vectorIndexVersion = -1;
+    sprites = new TrackedList<>();
+    spriteIndex = new BoardSpriteIndex();
+    spriteIndexVersion = -1;
     images = new ArrayList<>();
-
-    clearTiles();
+    objectsReplaced = true;
   }
 
   /**
@@ -83,6 +167,7 @@ public class BoardLayer implements Cloneable {
    */
   public void setName(String name) {
     this.name = name;
+    propertiesChanged = true;
   }
 
   /**
@@ -122,21 +207,60 @@ public class BoardLayer implements Cloneable {
   }
 
   /**
-   * Gets the tiles used on this layer.
+   * Gets a copy of the tiles used on this layer, indexed by x then y. Changes
+   * to the returned array are not reflected in the layer, use
+   * {@link #setTileAt(int, int, Tile)} instead. On chunked boards this loads
+   * every chunk.
    *
    * @return tiles used on this layer
    */
   public Tile[][] getTiles() {
+    int width = grid.getWidth();
+    int height = grid.getHeight();
+    Tile[][] tiles = new Tile[width][height];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        tiles[x][y] = toTile(grid.getCell(x, y));
+      }
+    }
     return tiles;
   }
 
   /**
    * Sets the tiles used on this layer.
    *
-   * @param tiles tile used on this layer
+   * @param tiles tile used on this layer, indexed by x then y
    */
   public void setTiles(Tile[][] tiles) {
-    this.tiles = tiles;
+    int width = tiles.length;
+    int height = width == 0 ? 0 : tiles[0].length;
+    grid = new DenseTileGrid(width, height);
+    tileSets = new ArrayList<>();
+    dirtyRows = null;
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        grid.setCell(x, y, toCell(tiles[x][y]));
+      }
+    }
+  }
+
+  /**
+   * Gets the storage backing the tiles of this layer.
+   *
+   * @return tile grid
+   */
+  public TileGrid getTileGrid() {
+    return grid;
+  }
+
+  /**
+   * Gets the tile sets referenced by the cells of the tile grid, indexed by
+   * tile set id.
+   *
+   * @return unmodifiable list of tile sets
+   */
+  public List<TileSet> getTileSets() {
+    return Collections.unmodifiableList(tileSets);
   }
 
   /**
@@ -155,6 +279,7 @@ public class BoardLayer implements Cloneable {
    */
   public void setLights(ArrayList<BoardLight> lights) {
     this.lights = lights;
+    propertiesChanged = true;
   }
 
   /**
@@ -172,7 +297,69 @@ public class BoardLayer implements Cloneable {
    * @param vectors vectors on this layer
    */
   public void setVectors(ArrayList<BoardVector> vectors) {
-    this.vectors = vectors;
+    this.vectors = new TrackedList<>(vectors);
+    vectorIndexVersion = -1;
+    objectsReplaced = true;
+  }
+
+  /**
+   * Adds a vector to this layer and to its spatial index.
+   *
+   * @param vector vector to add
+   */
+  public void addVector(BoardVector vector) {
+    boolean synced = isVectorIndexSynced();
+    vectors.add(vector);
+    if (synced) {
+      vectorIndex.insert(vector);
+      vectorIndexVersion = vectors.version();
+    }
+  }
+
+  /**
+   * Removes a vector from this layer and from its spatial index.
+   *
+   * @param vector vector to remove
+   * @return true if the vector was on this layer
+   */
+  public boolean removeVector(BoardVector vector) {
+    for (int i = 0; i < vectors.size(); i++) {
+      if (vectors.get(i) == vector) {
+        boolean synced = isVectorIndexSynced();
+        vectors.remove(i);
+        if (synced) {
+          vectorIndex.remove(vector);
+          vectorIndexVersion = vectors.version();
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Updates the spatial index after the points of a vector on this layer have
+   * been moved in place. Changes made through {@link BoardVector#addPoint}
+   * and {@link BoardVector#setPoints} are picked up automatically.
+   *
+   * @param vector vector that moved
+   */
+  public void updateVector(BoardVector vector) {
+    vectorIndex.update(vector);
+  }
+
+  /**
+   * Gets the spatial index over the vectors of this layer, used for collision
+   * and event queries.
+   *
+   * @return vector index
+   */
+  public BoardVectorIndex getVectorIndex() {
+    if (!isVectorIndexSynced()) {
+      vectorIndex.rebuild(vectors);
+      vectorIndexVersion = vectors.version();
+    }
+    return vectorIndex;
   }
 
   /**
@@ -190,7 +377,23 @@ public class BoardLayer implements Cloneable {
    * @param sprites sprites used on this layer
    */
   public void setSprites(ArrayList<BoardSprite> sprites) {
-    this.sprites = sprites;
+    this.sprites = new TrackedList<>(sprites);
+    spriteIndexVersion = -1;
+    objectsReplaced = true;
+  }
+
+  /**
+   * Gets the spatial index over the sprites of this layer, used for proximity
+   * and activation queries.
+   *
+   * @return sprite index
+   */
+  public BoardSpriteIndex getSpriteIndex() {
+    if (!isSpriteIndexSynced()) {
+      spriteIndex.rebuild(sprites);
+      spriteIndexVersion = sprites.version();
+    }
+    return spriteIndex;
   }
 
   /**
@@ -209,6 +412,7 @@ public class BoardLayer implements Cloneable {
    */
   public void setImages(ArrayList<BoardImage> images) {
     this.images = images;
+    propertiesChanged = true;
   }
 
   /**
@@ -219,7 +423,7 @@ public class BoardLayer implements Cloneable {
    * @return the tile
    */
   public Tile getTileAt(int x, int y) {
-    return tiles[x][y];
+    return toTile(grid.getCell(x, y));
   }
 
   /**
@@ -230,7 +434,10 @@ public class BoardLayer implements Cloneable {
    * @param tile the tile
    */
   public void setTileAt(int x, int y, Tile tile) {
-    tiles[x][y] = tile;
+    grid.setCell(x, y, toCell(tile));
+    if (dirtyRows != null) {
+      dirtyRows.set(y);
+    }
     board.fireBoardChanged();
   }
   
@@ -239,11 +446,112 @@ public class BoardLayer implements Cloneable {
    * @param sprite 
    */
   public void addBoardSprite(BoardSprite sprite) {
+    boolean synced = isSpriteIndexSynced();
     sprites.add(sprite);
+    if (synced) {
+      spriteIndex.insert(sprite);
+      spriteIndexVersion = sprites.version();
+    }
   }
   
-  public void removeBoardSprite(BoardSprite sprite) {
-      sprites.remove(sprite);
+  /**
+   * Removes the sprite from this layer, sprites are compared by identity.
+   *
+   * @param sprite sprite to remove
+   * @return true if the sprite was on this layer
+   */
+  public boolean removeBoardSprite(BoardSprite sprite) {
+    // Search from the end, recently added sprites are removed most often.
+    for (int i = sprites.size() - 1; i >= 0; i--) {
+      if (sprites.get(i) == sprite) {
+        boolean synced = isSpriteIndexSynced();
+        sprites.remove(i);
+        if (synced) {
+          spriteIndex.remove(sprite);
+          spriteIndexVersion = sprites.version();
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Determines if the layer has changed since it was loaded or last saved.
+   * Tiles set through {@link #setTileAt(int, int, Tile)}, changes to the
+   * vector and sprite lists, vectors and sprites edited through their
+   * setters and the layer's own setters are tracked. Points and events
+   * changed through the lists a vector returns are not.
+   *
+   * @return true if the layer needs saving
+   */
+  public boolean isDirty() {
+    return propertiesChanged || isTilesDirty() || isObjectsDirty();
+  }
+
+  /**
+   * Determines if any tile has changed since the layer was last saved.
+   *
+   * @return true if a tile row needs saving
+   */
+  public boolean isTilesDirty() {
+    return dirtyRows == null || !dirtyRows.isEmpty();
+  }
+
+  /**
+   * Determines if vectors or sprites were added, removed, replaced or edited
+   * since the layer was last saved.
+   *
+   * @return true if the vectors or sprites changed
+   */
+  public boolean isObjectsDirty() {
+    if (objectsReplaced
+        || vectors.version() != savedVectorVersion
+        || sprites.version() != savedSpriteVersion) {
+      return true;
+    }
+    for (BoardVector vector : vectors) {
+      if (vector.getLastChange() > savedChange) {
+        return true;
+      }
+    }
+    for (BoardSprite sprite : sprites) {
+      if (sprite.getLastChange() > savedChange) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Finds the next tile row changed since the layer was last saved. Every row
+   * of a layer that has never been saved is changed.
+   *
+   * @param y row to start searching from
+   * @return changed row, or -1 if there are no more
+   */
+  public int nextDirtyRow(int y) {
+    if (dirtyRows == null) {
+      return y < grid.getHeight() ? y : -1;
+    }
+    return dirtyRows.nextSetBit(y);
+  }
+
+  /**
+   * Marks the layer as saved, called once the board has been loaded or
+   * written.
+   */
+  public void markSaved() {
+    if (dirtyRows == null) {
+      dirtyRows = new BitSet();
+    } else {
+      dirtyRows.clear();
+    }
+    savedVectorVersion = vectors.version();
+    savedSpriteVersion = sprites.version();
+    savedChange = CHANGES.get();
+    objectsReplaced = false;
+    propertiesChanged = false;
   }
 
   /**
@@ -258,7 +566,7 @@ public class BoardLayer implements Cloneable {
       return false;
     }
 
-    return x < tiles.length && y < tiles[0].length;
+    return x < grid.getWidth() && y < grid.getHeight();
   }
 
   /**
@@ -317,14 +625,13 @@ public class BoardLayer implements Cloneable {
   public Object clone() throws CloneNotSupportedException {
     super.clone();
     
-    BoardLayer layer = new BoardLayer(board);
+    BoardLayer layer = new BoardLayer(board, grid.copy(), tileSets);
     layer.images = (ArrayList<BoardImage>) images.clone();
     layer.lights = (ArrayList<BoardLight>) lights.clone();
     layer.name = name + "_clone";
     layer.number = number;
-    layer.sprites = (ArrayList<BoardSprite>) sprites.clone();
-    layer.tiles = (Tile[][]) tiles.clone();
-    layer.vectors = (ArrayList<BoardVector>) vectors.clone();
+    layer.sprites = new TrackedList<>(sprites);
+    layer.vectors = new TrackedList<>(vectors);
     layer.moveLayerUp();
 
     return layer;
@@ -341,12 +648,7 @@ public class BoardLayer implements Cloneable {
     // Create a small rectangle to represent the bounds of the mouse.
     Rectangle2D mouse = new Rectangle2D.Double(x - 5, y - 5, 10, 10);
 
-    for (BoardVector vector : vectors) {
-      // There are no lines.
-      if (vector.getPoints().size() < 2) {
-        continue;
-      }
-
+    List<BoardVector> found = getVectorIndex().findIntersecting(mouse, vector -> {
       for (int i = 0; i < vector.getPoints().size() - 1; i++) {
         // Build a line from the points in the polygon.
         Line2D line2D = new Line2D.Double(vector.getPoints().get(i),
@@ -354,12 +656,13 @@ public class BoardLayer implements Cloneable {
 
         // See if the mouse intersects the line of the polygon.
         if (line2D.intersects(mouse)) {
-          return vector;
+          return true;
         }
       }
-    }
+      return false;
+    });
 
-    return null;
+    return found.isEmpty() ? null : found.get(0);
   }
 
   /**
@@ -373,7 +676,7 @@ public class BoardLayer implements Cloneable {
     BoardVector vector = findVectorAt(x, y);
 
     if (vector != null) {
-      vectors.remove(vector);
+      removeVector(vector);
       board.fireBoardChanged();
     }
 
@@ -388,16 +691,15 @@ public class BoardLayer implements Cloneable {
    * @return a sprite or null
    */
   public BoardSprite findSpriteAt(int x, int y) {
-    for (BoardSprite sprite : sprites) {
+    // The radius covers the corners of the 20 pixel box around the click.
+    List<BoardSprite> found = getSpriteIndex().findWithin(x, y, 29, sprite -> {
       int diffX = Math.abs(sprite.getX() - x);
       int diffY = Math.abs(sprite.getY() - y);
-        
-      if (diffX < 20 && diffY < 20) {
-        return sprite;
-      }
-    }
 
-    return null;
+      return diffX < 20 && diffY < 20;
+    });
+
+    return found.isEmpty() ? null : found.get(0);
   }
 
   /**
@@ -411,7 +713,7 @@ public class BoardLayer implements Cloneable {
     BoardSprite sprite = findSpriteAt(x, y);
 
     if (sprite != null) {
-      sprites.remove(sprite);
+      removeBoardSprite(sprite);
       board.fireBoardChanged();
     }
 
@@ -419,26 +721,117 @@ public class BoardLayer implements Cloneable {
   }
 
   /**
-   * Clears this layers tiles.
+   * Replaces the tile sets of this layer with the fully loaded ones held by the
+   * {@link TileSetCache}, tile sets that are not cached are left as they are.
+   *
+   * @param cache tile set cache of the board's context
+   */
+  void loadTileSets(TileSetCache cache) {
+    for (int i = 0; i < tileSets.size(); i++) {
+      TileSet loaded = cache.get(tileSets.get(i).getName());
+      if (loaded != null) {
+        tileSets.set(i, loaded);
+      }
+    }
+  }
+
+  /**
+   * Replaces a tile set of this layer with another one, such as a reloaded
+   * copy, keeping its id so the cells need no changes.
+   *
+   * @param tileSet tile set to replace
+   * @param replacement tile set to use instead
+   */
+  void replaceTileSet(TileSet tileSet, TileSet replacement) {
+    for (int i = 0; i < tileSets.size(); i++) {
+      if (tileSets.get(i) == tileSet) {
+        tileSets.set(i, replacement);
+      }
+    }
+  }
+
+  /**
+   * Advances the change clock, called by vectors and sprites when edited.
+   *
+   * @return stamp of the change
    */
-  private void clearTiles() {
-    int count = board.getWidth() * board.getHeight();
-    Tile blankTile = new Tile();
-    int x = 0;
-    int y = 0;
+  static long nextChange() {
+    return CHANGES.incrementAndGet();
+  }
 
-    for (int i = 0; i < count; i++) {
-      tiles[x][y] = blankTile;
+  private boolean isVectorIndexSynced() {
+    return vectorIndexVersion == vectors.version();
+  }
 
-      x++;
-      if (x == board.getWidth()) {
-        x = 0;
-        y++;
-        if (y == board.getHeight()) {
-          break;
-        }
+  private boolean isSpriteIndexSynced() {
+    return spriteIndexVersion == sprites.version();
+  }
+
+  private Tile toTile(int cell) {
+    if (cell == BLANK_CELL) {
+      return blankTile;
+    }
+    return tileSets.get((cell >>> 16) - 1).lookupTile(cell & MAX_TILE_INDEX);
+  }
+
+  private int toCell(Tile tile) {
+    if (tile == null || tile.getTileSet() == null) {
+      return BLANK_CELL;
+    }
+
+    int index = tile.getIndex();
+    if (index < 0 || index > MAX_TILE_INDEX) {
+      throw new IllegalArgumentException("tile index out of range: " + index);
+    }
+
+    // Tile sets are compared by identity, placeholder sets share a descriptor.
+    TileSet tileSet = tile.getTileSet();
+    int id = -1;
+    for (int i = 0; i < tileSets.size(); i++) {
+      if (tileSets.get(i) == tileSet) {
+        id = i;
+        break;
       }
     }
+    if (id < 0) {
+      if (tileSets.size() == MAX_TILE_SETS) {
+        throw new IllegalStateException("too many tile sets on layer " + name);
+      }
+      tileSets.add(tileSet);
+      id = tileSets.size() - 1;
+    }
+
+    return (id + 1) << 16 | index;
+  }
+
+  /**
+   * List that counts its modifications, so that the spatial indexes can tell
+   * when a list has been changed through {@link #getVectors()} or
+   * {@link #getSprites()}.
+   */
+  private static final class TrackedList<E> extends ArrayList<E> {
+
+    private static final long serialVersionUID = 1L;
+
+    private long replaced;
+
+    private TrackedList() {
+    }
+
+    private TrackedList(Collection<E> elements) {
+      super(elements);
+    }
+
+    @Override
+    public E set(int index, E element) {
+      replaced++;
+      return super.set(index, element);
+    }
+
+    private long version() {
+      return modCount + replaced;
+    }
+
   }
 
 }
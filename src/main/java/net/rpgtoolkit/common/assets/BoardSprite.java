@@ -11,10 +11,10 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.rpgtoolkit.common.Selectable;
-import net.rpgtoolkit.common.utilities.CoreProperties;
 
 /**
  * A board sprite.
@@ -37,7 +37,15 @@ public class BoardSprite implements Cloneable, Selectable {
 
     private boolean selected;
 
-    private BufferedImage southImage;
+    private LazyImage southImage = LazyImage.EMPTY;
+
+    // Spatial indexes that contain this sprite, iterated on every move and
+    // changed only when the sprite is added to or removed from a layer.
+    private CopyOnWriteArrayList<BoardSpriteIndex> indexes;
+
+    // Stamp of the last edit, compared by the layer to tell if it changed
+    // since it was saved.
+    private volatile long lastChange;
 
     /**
      *
@@ -87,11 +95,11 @@ public class BoardSprite implements Cloneable, Selectable {
     }
 
     public int getWidth() {
-        return southImage.getWidth();
+        return southImage.get().getWidth();
     }
 
     public int getHeight() {
-        return southImage.getHeight();
+        return southImage.get().getHeight();
     }
 
     /**
@@ -108,6 +116,7 @@ public class BoardSprite implements Cloneable, Selectable {
      */
     public void setSpriteFile(Item item) {
         spriteFile = item;
+        changed();
     }
 
     /**
@@ -135,24 +144,31 @@ public class BoardSprite implements Cloneable, Selectable {
     }
 
     /**
+     * Sets the item file of this sprite, loaded from the project of the
+     * shared {@link AssetManager}.
      *
      * @param fileName
      */
     public void setFileName(String fileName) {
+        setFileName(fileName, AssetManager.getInstance());
+    }
+
+    /**
+     *
+     * @param fileName
+     * @param assetManager manager of the project the item belongs to
+     */
+    public void setFileName(String fileName, AssetManager assetManager) {
         this.fileName = fileName;
 
         // TODO: This is should not be in here!
-        BufferedImage image = null;
+        LazyImage image = LazyImage.EMPTY;
         if (!fileName.isEmpty()) {
-            File file = new File(
-                    System.getProperty("project.path")
-                    + File.separator
-                    + CoreProperties.getProperty("toolkit.directory.item"),
-                    fileName);
+            File file = assetManager.getProjectFile("toolkit.directory.item", fileName);
 
             AssetHandle handle;
             try {
-                handle = AssetManager.getInstance().deserialize(
+                handle = assetManager.deserialize(
                         new AssetDescriptor(file.toURI()));
 
                 Item item = (Item) handle.getAsset();
@@ -160,21 +176,19 @@ public class BoardSprite implements Cloneable, Selectable {
 
                 String southAnimation = item.animations.get(AnimationEnum.SOUTH.toString());
                 if (!southAnimation.isEmpty()) {
-                    file = new File(
-                            System.getProperty("project.path")
-                            + File.separator
-                            + CoreProperties.getProperty("toolkit.directory.misc"),
-                            southAnimation
-                    );
-
-                    handle = AssetManager.getInstance().deserialize(
+                    file = assetManager.getProjectFile("toolkit.directory.misc", southAnimation);
+
+                    handle = assetManager.deserialize(
                             new AssetDescriptor(file.toURI()));
                     Animation animation = (Animation) handle.getAsset();
 
                     if (animation != null) {
                         if (!animation.getSpriteSheet().getFileName().isEmpty()) {
-                            animation.getSpriteSheet().loadImage();
-                            image = animation.getFrame(0);
+                            // Decode the sheet in the background.
+                            image = new LazyImage(() -> {
+                                animation.getSpriteSheet().loadImage(assetManager);
+                                return animation.getFrame(0);
+                            }).decodeAsync();
                         }
                     }
                 }
@@ -184,6 +198,7 @@ public class BoardSprite implements Cloneable, Selectable {
         }
 
         southImage = image;
+        changed();
     }
 
     /**
@@ -192,6 +207,7 @@ public class BoardSprite implements Cloneable, Selectable {
      */
     public void setX(int x) {
         this.x = x;
+        changed();
     }
 
     /**
@@ -200,6 +216,7 @@ public class BoardSprite implements Cloneable, Selectable {
      */
     public void setY(int y) {
         this.y = y;
+        changed();
     }
 
     /**
@@ -208,6 +225,7 @@ public class BoardSprite implements Cloneable, Selectable {
      */
     public void setLayer(int layer) {
         this.layer = layer;
+        markChanged();
     }
 
     /**
@@ -216,6 +234,7 @@ public class BoardSprite implements Cloneable, Selectable {
      */
     public void setEventType(EventType eventType) {
         this.eventType = eventType;
+        markChanged();
     }
 
     /**
@@ -224,6 +243,7 @@ public class BoardSprite implements Cloneable, Selectable {
      */
     public void setEventProgram(String activationProgram) {
         this.eventProgram = activationProgram;
+        markChanged();
     }
 
     /**
@@ -232,6 +252,7 @@ public class BoardSprite implements Cloneable, Selectable {
      */
     public void setThread(String multitaskingProgram) {
         this.thread = multitaskingProgram;
+        markChanged();
     }
 
     @Override
@@ -244,10 +265,56 @@ public class BoardSprite implements Cloneable, Selectable {
         selected = state;
     }
 
+    /**
+     * Gets the south facing image, waits for it to be decoded if it is not
+     * ready yet.
+     *
+     * @return south facing image
+     */
     public BufferedImage getSouthImage() {
+        return southImage.get();
+    }
+
+    /**
+     * Gets the reference to the south facing image, which allows drawing a
+     * placeholder until the image has been decoded.
+     *
+     * @return south facing image reference
+     */
+    public LazyImage getSouthImageReference() {
         return southImage;
     }
 
+    void attach(BoardSpriteIndex index) {
+        if (indexes == null) {
+            indexes = new CopyOnWriteArrayList<>();
+        }
+        indexes.add(index);
+    }
+
+    void detach(BoardSpriteIndex index) {
+        if (indexes != null) {
+            indexes.remove(index);
+        }
+    }
+
+    long getLastChange() {
+        return lastChange;
+    }
+
+    private void markChanged() {
+        lastChange = BoardLayer.nextChange();
+    }
+
+    private void changed() {
+        markChanged();
+        if (indexes != null) {
+            for (BoardSpriteIndex index : indexes) {
+                index.update(this);
+            }
+        }
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
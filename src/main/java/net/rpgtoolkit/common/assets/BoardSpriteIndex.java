@@ -0,0 +1,386 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.awt.Point;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Spatial hash over the positions of board sprites, used for proximity and
+ * activation queries.
+ * <p>
+ * Each sprite is kept in the bucket of the grid cell holding its position, so
+ * inserting, removing and moving a sprite take constant time. Sprites report
+ * moves through {@link BoardSprite#setX(int)} and {@link BoardSprite#setY(int)},
+ * changes to the activation vector of a sprite's item must be reported with
+ * {@link #update(BoardSprite)}.
+ * </p>
+ * <p>
+ * The activation vector of a sprite is placed at the sprite position plus the
+ * item's activation vector offset. Results are returned in insertion order.
+ * </p>
+ */
+public class BoardSpriteIndex {
+
+  public static final int DEFAULT_CELL_SIZE = 64;
+
+  private final int cellSize;
+  private final HashMap<Long, ArrayList<Entry>> cells;
+  private final IdentityHashMap<BoardSprite, Entry> entries;
+  private final Comparator<BoardSprite> insertionOrder;
+  private long sequence;
+
+  /**
+   * Number of sprites for each activation reach, the largest bounds the cells
+   * searched by activation queries and drops as sprites leave or change.
+   */
+  private final TreeMap<Integer, Integer> reaches;
+
+  public BoardSpriteIndex() {
+    this(DEFAULT_CELL_SIZE);
+  }
+
+  /**
+   * Creates an index with the specified grid cell size.
+   *
+   * @param cellSize cell width and height, in pixels
+   */
+  public BoardSpriteIndex(int cellSize) {
+    if (cellSize < 1) {
+      throw new IllegalArgumentException("cellSize must be >= 1");
+    }
+    this.cellSize = cellSize;
+    this.cells = new HashMap<>();
+    this.entries = new IdentityHashMap<>();
+    this.insertionOrder = (a, b) -> Long.compare(entries.get(a).order, entries.get(b).order);
+    this.reaches = new TreeMap<>();
+  }
+
+  /**
+   * Adds the sprite, or updates its position if it is already indexed.
+   *
+   * @param sprite sprite to add
+   */
+  public synchronized void insert(BoardSprite sprite) {
+    if (entries.containsKey(sprite)) {
+      update(sprite);
+      return;
+    }
+    final Entry entry = new Entry(sprite, sequence++);
+    entries.put(sprite, entry);
+    setReach(entry, reachOf(sprite));
+    place(entry);
+    sprite.attach(this);
+  }
+
+  /**
+   * Removes the sprite.
+   *
+   * @param sprite sprite to remove
+   * @return true if the sprite was indexed
+   */
+  public synchronized boolean remove(BoardSprite sprite) {
+    final Entry entry = entries.remove(sprite);
+    if (entry == null) {
+      return false;
+    }
+    unplace(entry);
+    setReach(entry, -1);
+    sprite.detach(this);
+    return true;
+  }
+
+  /**
+   * Moves the sprite to the cell of its current position.
+   *
+   * @param sprite sprite that changed
+   */
+  public synchronized void update(BoardSprite sprite) {
+    final Entry entry = entries.get(sprite);
+    if (entry == null) {
+      return;
+    }
+    final int reach = reachOf(sprite);
+    if (reach != entry.reach) {
+      setReach(entry, reach);
+    }
+    final long key = key(cell(sprite.getX()), cell(sprite.getY()));
+    if (key != entry.key) {
+      unplace(entry);
+      place(entry);
+    }
+  }
+
+  /**
+   * Replaces the contents of the index with the specified sprites.
+   *
+   * @param sprites sprites to index, in order
+   */
+  public synchronized void rebuild(Collection<BoardSprite> sprites) {
+    clear();
+    for (BoardSprite sprite : sprites) {
+      insert(sprite);
+    }
+  }
+
+  public synchronized void clear() {
+    for (BoardSprite sprite : entries.keySet()) {
+      sprite.detach(this);
+    }
+    entries.clear();
+    cells.clear();
+    reaches.clear();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public List<BoardSprite> findWithin(int x, int y, int radius) {
+    return findWithin(x, y, radius, null);
+  }
+
+  /**
+   * Finds the sprites positioned within the radius of the point.
+   *
+   * @param x x position
+   * @param y y position
+   * @param radius distance in pixels
+   * @param filter only sprites accepted by the filter are returned, may be null
+   * @return matching sprites
+   */
+  public synchronized List<BoardSprite> findWithin(int x, int y, int radius,
+          Predicate<BoardSprite> filter) {
+    final long limit = (long) radius * radius;
+    return find(x, y, x, y, radius, entry -> {
+      final long dx = entry.sprite.getX() - x;
+      final long dy = entry.sprite.getY() - y;
+      return dx * dx + dy * dy <= limit && accept(filter, entry.sprite);
+    });
+  }
+
+  public List<BoardSprite> findActivatedAt(int x, int y) {
+    return findActivatedAt(x, y, null);
+  }
+
+  /**
+   * Finds the sprites whose activation vector contains or touches the point.
+   *
+   * @param x x position
+   * @param y y position
+   * @param filter only sprites accepted by the filter are returned, may be null
+   * @return matching sprites
+   */
+  public synchronized List<BoardSprite> findActivatedAt(int x, int y,
+          Predicate<BoardSprite> filter) {
+    return find(x, y, x, y, reach() + 1, entry -> {
+      final BoardSprite sprite = entry.sprite;
+      if (!reaches(entry, x, y, x, y)) {
+        return false;
+      }
+      final BoardVector activation = activationOf(sprite);
+      if (activation == null || !accept(filter, sprite)) {
+        return false;
+      }
+      final Point origin = originOf(sprite);
+      return BoardVectorIndex.contains(activation, x - origin.x, y - origin.y);
+    });
+  }
+
+  public List<BoardSprite> findActivatedBy(Rectangle2D area) {
+    return findActivatedBy(area, null);
+  }
+
+  /**
+   * Finds the sprites whose activation vector intersects the area, for example
+   * the base of the player.
+   *
+   * @param area axis aligned rectangle
+   * @param filter only sprites accepted by the filter are returned, may be null
+   * @return matching sprites
+   */
+  public synchronized List<BoardSprite> findActivatedBy(Rectangle2D area,
+          Predicate<BoardSprite> filter) {
+    final double minX = area.getMinX();
+    final double minY = area.getMinY();
+    final double maxX = area.getMaxX();
+    final double maxY = area.getMaxY();
+    final Rectangle2D local = new Rectangle2D.Double();
+    return find(minX, minY, maxX, maxY, reach() + 1, entry -> {
+      final BoardSprite sprite = entry.sprite;
+      if (!reaches(entry, minX, minY, maxX, maxY)) {
+        return false;
+      }
+      final BoardVector activation = activationOf(sprite);
+      if (activation == null || !accept(filter, sprite)) {
+        return false;
+      }
+      final Point origin = originOf(sprite);
+      local.setRect(area.getX() - origin.x, area.getY() - origin.y,
+              area.getWidth(), area.getHeight());
+      return BoardVectorIndex.intersects(activation, local);
+    });
+  }
+
+  /**
+   * Tests the sprites positioned within the margin of the bounds, returning
+   * those that match in insertion order. Buckets are scanned row by row, so
+   * the matches are only sorted when they were found out of order.
+   */
+  private List<BoardSprite> find(double minX, double minY, double maxX, double maxY,
+          int margin, Predicate<Entry> match) {
+    final List<BoardSprite> result = new ArrayList<>();
+    long last = -1;
+    boolean ordered = true;
+    final int left = cell(minX - margin);
+    final int top = cell(minY - margin);
+    final int right = cell(maxX + margin);
+    final int bottom = cell(maxY + margin);
+    for (int cy = top; cy <= bottom; cy++) {
+      for (int cx = left; cx <= right; cx++) {
+        final List<Entry> bucket = cells.get(key(cx, cy));
+        if (bucket == null) {
+          continue;
+        }
+        for (int i = 0; i < bucket.size(); i++) {
+          final Entry entry = bucket.get(i);
+          if (match.test(entry)) {
+            ordered &= entry.order > last;
+            last = entry.order;
+            result.add(entry.sprite);
+          }
+        }
+      }
+    }
+    if (!ordered) {
+      result.sort(insertionOrder);
+    }
+    return result;
+  }
+
+  /**
+   * Returns whether the activation vector of the entry can reach the bounds,
+   * without looking at its points.
+   */
+  private static boolean reaches(Entry entry, double minX, double minY, double maxX, double maxY) {
+    if (entry.reach < 0) {
+      return false; // No activation vector.
+    }
+    final int margin = entry.reach + 1;
+    final int x = entry.sprite.getX();
+    final int y = entry.sprite.getY();
+    return x >= minX - margin && x <= maxX + margin && y >= minY - margin && y <= maxY + margin;
+  }
+
+  /**
+   * Largest distance from a sprite position to the far edge of its activation
+   * vector, bounds the cells searched by activation queries.
+   */
+  private int reach() {
+    return reaches.isEmpty() ? 0 : reaches.lastKey();
+  }
+
+  private void setReach(Entry entry, int reach) {
+    if (entry.reach >= 0) {
+      reaches.merge(entry.reach, -1, (count, delta) -> count + delta == 0 ? null : count + delta);
+    }
+    entry.reach = reach;
+    if (reach >= 0) {
+      reaches.merge(reach, 1, Integer::sum);
+    }
+  }
+
+  private void place(Entry entry) {
+    final BoardSprite sprite = entry.sprite;
+    entry.key = key(cell(sprite.getX()), cell(sprite.getY()));
+    final ArrayList<Entry> bucket = cells.computeIfAbsent(entry.key, k -> new ArrayList<>(4));
+    entry.slot = bucket.size();
+    bucket.add(entry);
+  }
+
+  /**
+   * Removes the entry from its bucket by moving the last entry of the bucket
+   * into its slot.
+   */
+  private void unplace(Entry entry) {
+    final ArrayList<Entry> bucket = cells.get(entry.key);
+    final Entry last = bucket.remove(bucket.size() - 1);
+    if (last != entry) {
+      bucket.set(entry.slot, last);
+      last.slot = entry.slot;
+    }
+    if (bucket.isEmpty()) {
+      cells.remove(entry.key);
+    }
+  }
+
+  private int cell(double coordinate) {
+    return (int) Math.floor(coordinate / cellSize);
+  }
+
+  private static long key(int cx, int cy) {
+    return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+  }
+
+  private static boolean accept(Predicate<BoardSprite> filter, BoardSprite sprite) {
+    return filter == null || filter.test(sprite);
+  }
+
+  private static BoardVector activationOf(BoardSprite sprite) {
+    final Item item = sprite.getSpriteFile();
+    return item == null ? null : item.getActivationVector();
+  }
+
+  private static Point originOf(BoardSprite sprite) {
+    final Point offset = sprite.getSpriteFile().getActivationVectorOffset();
+    if (offset == null) {
+      return new Point(sprite.getX(), sprite.getY());
+    }
+    return new Point(sprite.getX() + offset.x, sprite.getY() + offset.y);
+  }
+
+  private static int reachOf(BoardSprite sprite) {
+    final BoardVector activation = activationOf(sprite);
+    if (activation == null) {
+      return -1;
+    }
+    final Point offset = sprite.getSpriteFile().getActivationVectorOffset();
+    final int dx = offset == null ? 0 : offset.x;
+    final int dy = offset == null ? 0 : offset.y;
+    int result = 0;
+    for (Point point : activation.getPoints()) {
+      result = Math.max(result, Math.max(Math.abs(point.x + dx), Math.abs(point.y + dy)));
+    }
+    return result;
+  }
+
+  private static final class Entry {
+
+    private final BoardSprite sprite;
+    private final long order;
+    private long key;
+    private int slot;
+    // Reach of the activation vector, or -1 without one.
+    private int reach = -1;
+
+    private Entry(BoardSprite sprite, long order) {
+      this.sprite = sprite;
+      this.order = order;
+    }
+
+  }
+
+}
@@ -35,6 +35,13 @@ public class BoardVector implements Cloneable, Selectable {
     private Polygon polygon;
     private boolean selected;
 
+    // Spatial indexes that contain this vector.
+    private ArrayList<BoardVectorIndex> indexes;
+
+    // Stamp of the last edit, compared by the layer to tell if it changed
+    // since it was saved.
+    private volatile long lastChange;
+
     /**
      *
      */
@@ -137,6 +144,7 @@ public class BoardVector implements Cloneable, Selectable {
     public void addPoint(long xVal, long yVal) {
         points.add(new Point((int) xVal, (int) yVal));
         polygon.addPoint((int) xVal, (int) yVal);
+        geometryChanged();
     }
 
     /**
@@ -145,6 +153,7 @@ public class BoardVector implements Cloneable, Selectable {
      */
     public void setLayer(int layer) {
         this.layer = layer;
+        markChanged();
     }
 
     /**
@@ -153,6 +162,7 @@ public class BoardVector implements Cloneable, Selectable {
      */
     public void setClosed(boolean closed) {
         isClosed = closed;
+        markChanged();
     }
 
     /**
@@ -161,6 +171,7 @@ public class BoardVector implements Cloneable, Selectable {
      */
     public void setHandle(String handle) {
         this.handle = handle;
+        markChanged();
     }
 
     /**
@@ -169,6 +180,7 @@ public class BoardVector implements Cloneable, Selectable {
      */
     public void setType(BoardVectorType type) {
         this.type = type;
+        markChanged();
     }
 
     /**
@@ -185,6 +197,7 @@ public class BoardVector implements Cloneable, Selectable {
      */
     public void setIsClosed(boolean isClosed) {
         this.isClosed = isClosed;
+        markChanged();
     }
 
     /**
@@ -198,6 +211,7 @@ public class BoardVector implements Cloneable, Selectable {
         for (Point point : this.points) {
             this.polygon.addPoint((int) point.getX(), (int) point.getY());
         }
+        geometryChanged();
     }
 
     /**
@@ -206,6 +220,7 @@ public class BoardVector implements Cloneable, Selectable {
      */
     public void setPolygon(Polygon polygon) {
         this.polygon = polygon;
+        markChanged();
     }
 
     @Override
@@ -224,10 +239,42 @@ public class BoardVector implements Cloneable, Selectable {
 
     public void setEvents(ArrayList<Event> events) {
         this.events = events;
+        markChanged();
     }
 
     public void addEvent(Event event) {
         events.add(event);
+        markChanged();
+    }
+
+    void attach(BoardVectorIndex index) {
+        if (indexes == null) {
+            indexes = new ArrayList<>(1);
+        }
+        indexes.add(index);
+    }
+
+    void detach(BoardVectorIndex index) {
+        if (indexes != null) {
+            indexes.remove(index);
+        }
+    }
+
+    long getLastChange() {
+        return lastChange;
+    }
+
+    private void markChanged() {
+        lastChange = BoardLayer.nextChange();
+    }
+
+    private void geometryChanged() {
+        markChanged();
+        if (indexes != null) {
+            for (BoardVectorIndex index : new ArrayList<>(indexes)) {
+                index.update(this);
+            }
+        }
     }
 
     /**
@@ -0,0 +1,460 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.awt.Point;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Uniform grid over the bounding boxes of board vectors, used to answer point,
+ * area and segment queries without testing every vector on a layer.
+ * <p>
+ * Each vector is registered in every grid cell its bounding box overlaps,
+ * vectors spanning a very large number of cells are kept in a separate list
+ * that every query checks. Vectors report changes to their points through
+ * {@link BoardVector#addPoint(long, long)} and
+ * {@link BoardVector#setPoints(java.util.ArrayList)}, points that are moved in
+ * place must be reported with {@link #update(BoardVector)}. Results are
+ * returned in insertion order. A query visits each candidate once by stamping
+ * it, and only sorts its matches when they were found out of order.
+ * </p>
+ */
+public class BoardVectorIndex {
+
+  public static final int DEFAULT_CELL_SIZE = 64;
+
+  /**
+   * Distance in pixels within which a point touches a vector edge.
+   */
+  public static final double TOLERANCE = 0.5;
+
+  private static final int MAX_CELLS_PER_VECTOR = 4096;
+
+  private final int cellSize;
+  private final HashMap<Long, ArrayList<Entry>> cells;
+  private final IdentityHashMap<BoardVector, Entry> entries;
+  private final ArrayList<Entry> oversized;
+  private final Comparator<BoardVector> insertionOrder;
+  private long sequence;
+  private long queries;
+  // Order of the last match of the running query, and whether its matches
+  // have all been found in insertion order so far.
+  private long lastMatch;
+  private boolean ordered;
+
+  public BoardVectorIndex() {
+    this(DEFAULT_CELL_SIZE);
+  }
+
+  /**
+   * Creates an index with the specified grid cell size.
+   *
+   * @param cellSize cell width and height, in pixels
+   */
+  public BoardVectorIndex(int cellSize) {
+    if (cellSize < 1) {
+      throw new IllegalArgumentException("cellSize must be >= 1");
+    }
+    this.cellSize = cellSize;
+    this.cells = new HashMap<>();
+    this.entries = new IdentityHashMap<>();
+    this.oversized = new ArrayList<>();
+    this.insertionOrder = (a, b) -> Long.compare(entries.get(a).order, entries.get(b).order);
+  }
+
+  /**
+   * Returns a filter accepting vectors of the specified type.
+   *
+   * @param type vector type
+   * @return type filter
+   */
+  public static Predicate<BoardVector> ofType(BoardVectorType type) {
+    return vector -> vector.getType() == type;
+  }
+
+  /**
+   * Returns a filter accepting vectors with at least one event program.
+   *
+   * @return event filter
+   */
+  public static Predicate<BoardVector> withEvents() {
+    return vector -> {
+      for (Event event : vector.getEvents()) {
+        if (event.getProgram() != null && !event.getProgram().isEmpty()) {
+          return true;
+        }
+      }
+      return false;
+    };
+  }
+
+  /**
+   * Adds the vector, or updates its position if it is already indexed.
+   *
+   * @param vector vector to add
+   */
+  public synchronized void insert(BoardVector vector) {
+    if (entries.containsKey(vector)) {
+      update(vector);
+      return;
+    }
+    final Entry entry = new Entry(vector, sequence++);
+    entries.put(vector, entry);
+    place(entry);
+    vector.attach(this);
+  }
+
+  /**
+   * Removes the vector.
+   *
+   * @param vector vector to remove
+   * @return true if the vector was indexed
+   */
+  public synchronized boolean remove(BoardVector vector) {
+    final Entry entry = entries.remove(vector);
+    if (entry == null) {
+      return false;
+    }
+    unplace(entry);
+    vector.detach(this);
+    return true;
+  }
+
+  /**
+   * Moves the vector to the grid cells covered by its current points.
+   *
+   * @param vector vector that changed
+   */
+  public synchronized void update(BoardVector vector) {
+    final Entry entry = entries.get(vector);
+    if (entry != null) {
+      unplace(entry);
+      place(entry);
+    }
+  }
+
+  /**
+   * Replaces the contents of the index with the specified vectors.
+   *
+   * @param vectors vectors to index, in order
+   */
+  public synchronized void rebuild(Collection<BoardVector> vectors) {
+    clear();
+    for (BoardVector vector : vectors) {
+      insert(vector);
+    }
+  }
+
+  public synchronized void clear() {
+    for (BoardVector vector : entries.keySet()) {
+      vector.detach(this);
+    }
+    entries.clear();
+    cells.clear();
+    oversized.clear();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public List<BoardVector> findAt(int x, int y) {
+    return findAt(x, y, null);
+  }
+
+  /**
+   * Finds the vectors that contain or touch the point. Closed vectors contain
+   * the points inside them, open vectors only touch the points on their edges.
+   *
+   * @param x x position
+   * @param y y position
+   * @param filter only vectors accepted by the filter are returned, may be null
+   * @return matching vectors
+   */
+  public synchronized List<BoardVector> findAt(int x, int y, Predicate<BoardVector> filter) {
+    return find(x, y, x, y, vector -> accept(filter, vector) && contains(vector, x, y));
+  }
+
+  public List<BoardVector> findIntersecting(Rectangle2D area) {
+    return findIntersecting(area, null);
+  }
+
+  /**
+   * Finds the vectors that intersect the area.
+   *
+   * @param area axis aligned rectangle
+   * @param filter only vectors accepted by the filter are returned, may be null
+   * @return matching vectors
+   */
+  public synchronized List<BoardVector> findIntersecting(Rectangle2D area, Predicate<BoardVector> filter) {
+    return find(area.getMinX(), area.getMinY(), area.getMaxX(), area.getMaxY(),
+            vector -> accept(filter, vector) && intersects(vector, area));
+  }
+
+  public List<BoardVector> findIntersecting(Line2D segment) {
+    return findIntersecting(segment, null);
+  }
+
+  /**
+   * Finds the vectors crossed by the segment, or enclosing it.
+   *
+   * @param segment line segment, for example the path of a moving sprite
+   * @param filter only vectors accepted by the filter are returned, may be null
+   * @return matching vectors
+   */
+  public synchronized List<BoardVector> findIntersecting(Line2D segment, Predicate<BoardVector> filter) {
+    final Rectangle2D bounds = segment.getBounds2D();
+    return find(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(),
+            vector -> accept(filter, vector) && intersects(vector, segment));
+  }
+
+  /**
+   * Tests every vector whose cells overlap the bounds once, returning those
+   * that match in insertion order.
+   */
+  private List<BoardVector> find(double minX, double minY, double maxX, double maxY,
+          Predicate<BoardVector> match) {
+    final long stamp = ++queries;
+    final List<BoardVector> result = new ArrayList<>();
+    lastMatch = -1;
+    ordered = true;
+    for (Entry entry : oversized) {
+      visit(entry, stamp, match, result);
+    }
+
+    final int left = cell(minX - TOLERANCE);
+    final int top = cell(minY - TOLERANCE);
+    final int right = cell(maxX + TOLERANCE);
+    final int bottom = cell(maxY + TOLERANCE);
+    for (int cy = top; cy <= bottom; cy++) {
+      for (int cx = left; cx <= right; cx++) {
+        final List<Entry> bucket = cells.get(key(cx, cy));
+        if (bucket != null) {
+          for (int i = 0; i < bucket.size(); i++) {
+            visit(bucket.get(i), stamp, match, result);
+          }
+        }
+      }
+    }
+
+    if (!ordered) {
+      result.sort(insertionOrder);
+    }
+    return result;
+  }
+
+  private void visit(Entry entry, long stamp, Predicate<BoardVector> match, List<BoardVector> result) {
+    if (entry.stamp == stamp) {
+      return; // Already seen in another cell.
+    }
+    entry.stamp = stamp;
+    if (match.test(entry.vector)) {
+      ordered &= entry.order > lastMatch;
+      lastMatch = entry.order;
+      result.add(entry.vector);
+    }
+  }
+
+  private void place(Entry entry) {
+    final List<Point> points = entry.vector.getPoints();
+    if (points.isEmpty()) {
+      entry.placed = false;
+      return;
+    }
+
+    int minX = Integer.MAX_VALUE;
+    int minY = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int maxY = Integer.MIN_VALUE;
+    for (Point point : points) {
+      minX = Math.min(minX, point.x);
+      minY = Math.min(minY, point.y);
+      maxX = Math.max(maxX, point.x);
+      maxY = Math.max(maxY, point.y);
+    }
+    entry.left = cell(minX);
+    entry.top = cell(minY);
+    entry.right = cell(maxX);
+    entry.bottom = cell(maxY);
+    entry.placed = true;
+
+    final long count = (long) (entry.right - entry.left + 1) * (entry.bottom - entry.top + 1);
+    entry.oversized = count > MAX_CELLS_PER_VECTOR;
+    if (entry.oversized) {
+      oversized.add(entry);
+      return;
+    }
+    for (int cy = entry.top; cy <= entry.bottom; cy++) {
+      for (int cx = entry.left; cx <= entry.right; cx++) {
+        cells.computeIfAbsent(key(cx, cy), k -> new ArrayList<>(4)).add(entry);
+      }
+    }
+  }
+
+  private void unplace(Entry entry) {
+    if (!entry.placed) {
+      return;
+    }
+    if (entry.oversized) {
+      oversized.remove(entry);
+      return;
+    }
+    for (int cy = entry.top; cy <= entry.bottom; cy++) {
+      for (int cx = entry.left; cx <= entry.right; cx++) {
+        final Long key = key(cx, cy);
+        final List<Entry> bucket = cells.get(key);
+        if (bucket != null) {
+          bucket.remove(entry);
+          if (bucket.isEmpty()) {
+            cells.remove(key);
+          }
+        }
+      }
+    }
+  }
+
+  private int cell(double coordinate) {
+    return (int) Math.floor(coordinate / cellSize);
+  }
+
+  private static Long key(int cx, int cy) {
+    return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+  }
+
+  private static boolean accept(Predicate<BoardVector> filter, BoardVector vector) {
+    return filter == null || filter.test(vector);
+  }
+
+  /**
+   * Number of edges of the vector, closed vectors have an extra edge joining
+   * the last point to the first.
+   */
+  private static int edgeCount(BoardVector vector) {
+    final int count = vector.getPoints().size();
+    if (count < 2) {
+      return 0;
+    }
+    return vector.isClosed() && count > 2 ? count : count - 1;
+  }
+
+  private static Point edgeStart(BoardVector vector, int edge) {
+    return vector.getPoints().get(edge);
+  }
+
+  private static Point edgeEnd(BoardVector vector, int edge) {
+    final List<Point> points = vector.getPoints();
+    return points.get((edge + 1) % points.size());
+  }
+
+  /**
+   * Determines if the point lies inside a closed vector or on its edges.
+   */
+  static boolean contains(BoardVector vector, double x, double y) {
+    return touches(vector, x, y) || encloses(vector, x, y);
+  }
+
+  private static boolean touches(BoardVector vector, double x, double y) {
+    final List<Point> points = vector.getPoints();
+    if (points.size() == 1) {
+      return points.get(0).distance(x, y) <= TOLERANCE;
+    }
+    final int edges = edgeCount(vector);
+    for (int i = 0; i < edges; i++) {
+      final Point a = edgeStart(vector, i);
+      final Point b = edgeEnd(vector, i);
+      if (Line2D.ptSegDist(a.x, a.y, b.x, b.y, x, y) <= TOLERANCE) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Even-odd test for points inside closed vectors.
+   */
+  private static boolean encloses(BoardVector vector, double x, double y) {
+    final List<Point> points = vector.getPoints();
+    if (!vector.isClosed() || points.size() < 3) {
+      return false;
+    }
+    boolean inside = false;
+    for (int i = 0, j = points.size() - 1; i < points.size(); j = i++) {
+      final Point a = points.get(i);
+      final Point b = points.get(j);
+      if ((a.y > y) != (b.y > y)
+              && x < (double) (b.x - a.x) * (y - a.y) / (b.y - a.y) + a.x) {
+        inside = !inside;
+      }
+    }
+    return inside;
+  }
+
+  static boolean intersects(BoardVector vector, Rectangle2D area) {
+    final List<Point> points = vector.getPoints();
+    if (points.isEmpty()) {
+      return false;
+    }
+    if (area.contains(points.get(0))) {
+      return true;
+    }
+    final int edges = edgeCount(vector);
+    for (int i = 0; i < edges; i++) {
+      final Point a = edgeStart(vector, i);
+      final Point b = edgeEnd(vector, i);
+      if (area.intersectsLine(a.x, a.y, b.x, b.y)) {
+        return true;
+      }
+    }
+    return encloses(vector, area.getCenterX(), area.getCenterY());
+  }
+
+  private static boolean intersects(BoardVector vector, Line2D segment) {
+    final List<Point> points = vector.getPoints();
+    if (points.size() == 1) {
+      return segment.ptSegDist(points.get(0)) <= TOLERANCE;
+    }
+    final int edges = edgeCount(vector);
+    for (int i = 0; i < edges; i++) {
+      final Point a = edgeStart(vector, i);
+      final Point b = edgeEnd(vector, i);
+      if (segment.intersectsLine(a.x, a.y, b.x, b.y)) {
+        return true;
+      }
+    }
+    return encloses(vector, segment.getX1(), segment.getY1());
+  }
+
+  private static final class Entry {
+
+    private final BoardVector vector;
+    private final long order;
+    private boolean placed;
+    private boolean oversized;
+    private int left;
+    private int top;
+    private int right;
+    private int bottom;
+    // Query that last visited the entry.
+    private long stamp;
+
+    private Entry(BoardVector vector, long order) {
+      this.vector = vector;
+      this.order = order;
+    }
+
+  }
+
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.io.IOException;
+
+/**
+ * Supplies the chunks of a {@link ChunkedTileGrid} on demand.
+ */
+public interface ChunkSource {
+
+  /**
+   * Source for grids that start out blank and have nowhere to store changes.
+   */
+  ChunkSource BLANK = (chunkX, chunkY) -> null;
+
+  /**
+   * Loads the cells of a chunk in row-major order, cells outside of the grid
+   * are ignored.
+   *
+   * @param chunkX chunk column
+   * @param chunkY chunk row
+   * @return chunk cells, or null if the chunk is blank
+   * @throws IOException if the chunk could not be read
+   */
+  int[] load(int chunkX, int chunkY) throws IOException;
+
+  /**
+   * Stores a modified chunk before it is evicted. Sources that cannot store
+   * chunks return false, the chunk then stays in memory until the grid is
+   * saved.
+   *
+   * @param chunkX chunk column
+   * @param chunkY chunk row
+   * @param cells chunk cells in row-major order
+   * @return true if the chunk was stored
+   * @throws IOException if the chunk could not be written
+   */
+  default boolean store(int chunkX, int chunkY, int[] cells) throws IOException {
+    return false;
+  }
+
+}
@@ -0,0 +1,314 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tile grid that is split into square chunks which are loaded from a
+ * {@link ChunkSource} when first touched.
+ * <p>
+ * At most a bounded number of chunks are kept in memory, the least recently
+ * used ones are dropped first. {@link #retainAround(int, int, int)} drops the
+ * chunks that are far from the viewport. Modified chunks are handed to the
+ * source before they are dropped, when the source cannot store them they stay
+ * in memory until {@link #markSaved()} is called.
+ * </p>
+ */
+public class ChunkedTileGrid implements TileGrid {
+
+  public static final int CHUNK_SIZE = 32;
+  public static final int DEFAULT_MAX_CHUNKS = 256;
+
+  private static final int CHUNK_SHIFT = 5;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final int width;
+  private final int height;
+  private final ChunkSource source;
+  private final int maxChunks;
+  private final LinkedHashMap<Long, Chunk> chunks;
+  /**
+   * The most recently used chunk and its key, looked up without boxing the
+   * key. Neighbouring cells mostly fall into the same chunk.
+   */
+  private long lastKey;
+  private Chunk lastChunk;
+
+  public ChunkedTileGrid(int width, int height, ChunkSource source) {
+    this(width, height, source, DEFAULT_MAX_CHUNKS);
+  }
+
+  /**
+   * Creates a chunked grid.
+   *
+   * @param width grid width
+   * @param height grid height
+   * @param source supplies chunks as they are needed
+   * @param maxChunks number of chunks kept in memory, not counting modified
+   * chunks that could not be stored
+   */
+  public ChunkedTileGrid(int width, int height, ChunkSource source, int maxChunks) {
+    if (source == null) {
+      throw new NullPointerException();
+    }
+    if (width < 0 || height < 0) {
+      throw new IllegalArgumentException("negative grid size");
+    }
+    if (maxChunks < 1) {
+      throw new IllegalArgumentException("maxChunks must be >= 1");
+    }
+    this.width = width;
+    this.height = height;
+    this.source = source;
+    this.maxChunks = maxChunks;
+    this.chunks = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  @Override
+  public int getWidth() {
+    return width;
+  }
+
+  @Override
+  public int getHeight() {
+    return height;
+  }
+
+  public ChunkSource getSource() {
+    return source;
+  }
+
+  public int getMaxChunks() {
+    return maxChunks;
+  }
+
+  @Override
+  public synchronized int getCell(int x, int y) {
+    checkBounds(x, y);
+    return chunk(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT).cells[offset(x, y)];
+  }
+
+  @Override
+  public synchronized void setCell(int x, int y, int cell) {
+    checkBounds(x, y);
+    final Chunk chunk = chunk(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT);
+    final int offset = offset(x, y);
+    if (chunk.cells[offset] != cell) {
+      chunk.cells[offset] = cell;
+      chunk.dirty = true;
+    }
+  }
+
+  /**
+   * Copies the grid. Unmodified chunks are loaded again from the shared
+   * source, modified chunks are copied.
+   *
+   * @return copy of the grid
+   */
+  @Override
+  public synchronized TileGrid copy() {
+    final ChunkedTileGrid copy = new ChunkedTileGrid(width, height, source, maxChunks);
+    for (Map.Entry<Long, Chunk> entry : chunks.entrySet()) {
+      if (entry.getValue().dirty) {
+        final Chunk chunk = new Chunk(entry.getValue().cells.clone());
+        chunk.dirty = true;
+        copy.chunks.put(entry.getKey(), chunk);
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * Drops every chunk that lies further than the radius from the specified
+   * tile, measured in tiles along either axis.
+   *
+   * @param x x position of the viewport center
+   * @param y y position of the viewport center
+   * @param radius number of tiles to keep around the center
+   */
+  public synchronized void retainAround(int x, int y, int radius) {
+    final Iterator<Map.Entry<Long, Chunk>> iterator = chunks.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final Map.Entry<Long, Chunk> entry = iterator.next();
+      final int chunkX = (int) (entry.getKey() >> 32);
+      final int chunkY = (int) (long) entry.getKey();
+      final int left = chunkX << CHUNK_SHIFT;
+      final int top = chunkY << CHUNK_SHIFT;
+      final int dx = Math.max(0, Math.max(left - x, x - (left + CHUNK_MASK)));
+      final int dy = Math.max(0, Math.max(top - y, y - (top + CHUNK_MASK)));
+      if (Math.max(dx, dy) > radius && release(chunkX, chunkY, entry.getValue())) {
+        iterator.remove();
+        forget(entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Marks every chunk as unmodified, called once the grid has been saved so
+   * that chunks the source could not store may be dropped.
+   */
+  public synchronized void markSaved() {
+    for (Chunk chunk : chunks.values()) {
+      chunk.dirty = false;
+    }
+    trim(null);
+  }
+
+  /**
+   * Determines if any chunk in memory has been modified.
+   *
+   * @return true if modified
+   */
+  public synchronized boolean isDirty() {
+    for (Chunk chunk : chunks.values()) {
+      if (chunk.dirty) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Copies the cells of a chunk, laid out as rows of {@link #CHUNK_SIZE}
+   * cells. A chunk that is not in memory is read from the source without
+   * being kept, so that walking the whole grid, as saving does, does not
+   * push the chunks in use out of memory.
+   *
+   * @param chunkX chunk column
+   * @param chunkY chunk row
+   * @return copy of the chunk's cells
+   */
+  public synchronized int[] readChunk(int chunkX, int chunkY) {
+    final long key = ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+    final Chunk chunk = chunks.get(key);
+    if (chunk != null) {
+      lastKey = key;
+      lastChunk = chunk;
+      return chunk.cells.clone();
+    }
+    final int[] cells;
+    try {
+      cells = source.load(chunkX, chunkY);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return cells != null ? cells : new int[CHUNK_SIZE * CHUNK_SIZE];
+  }
+
+  /**
+   * Returns the number of chunks currently held in memory.
+   *
+   * @return chunk count
+   */
+  public synchronized int getLoadedChunkCount() {
+    return chunks.size();
+  }
+
+  private Chunk chunk(int chunkX, int chunkY) {
+    final long key = ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+    if (lastChunk != null && lastKey == key) {
+      // Already the most recently used entry, the access order is unchanged.
+      return lastChunk;
+    }
+    Chunk chunk = chunks.get(key);
+    if (chunk == null) {
+      int[] cells;
+      try {
+        cells = source.load(chunkX, chunkY);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+      if (cells == null) {
+        cells = new int[CHUNK_SIZE * CHUNK_SIZE];
+      } else if (cells.length != CHUNK_SIZE * CHUNK_SIZE) {
+        throw new IllegalStateException("chunk (" + chunkX + ", " + chunkY
+                + ") has " + cells.length + " cells");
+      }
+      chunk = new Chunk(cells);
+      chunks.put(key, chunk);
+      trim(chunk);
+    }
+    lastKey = key;
+    lastChunk = chunk;
+    return chunk;
+  }
+
+  /**
+   * Drops the least recently used chunks until the grid is within budget,
+   * the chunk that was just loaded is kept.
+   */
+  private void trim(Chunk newest) {
+    if (chunks.size() <= maxChunks) {
+      return;
+    }
+    final List<Long> victims = new ArrayList<>();
+    int remaining = chunks.size();
+    for (Map.Entry<Long, Chunk> entry : chunks.entrySet()) {
+      if (remaining <= maxChunks) {
+        break;
+      }
+      final long key = entry.getKey();
+      if (entry.getValue() == newest) {
+        continue;
+      }
+      if (release((int) (key >> 32), (int) key, entry.getValue())) {
+        victims.add(key);
+        remaining--;
+      }
+    }
+    for (Long key : victims) {
+      forget(chunks.remove(key));
+    }
+  }
+
+  private void forget(Chunk chunk) {
+    if (chunk == lastChunk) {
+      lastChunk = null;
+    }
+  }
+
+  private boolean release(int chunkX, int chunkY, Chunk chunk) {
+    if (!chunk.dirty) {
+      return true;
+    }
+    try {
+      return source.store(chunkX, chunkY, chunk.cells);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private void checkBounds(int x, int y) {
+    if (x < 0 || y < 0 || x >= width || y >= height) {
+      throw new ArrayIndexOutOfBoundsException("(" + x + ", " + y + ")");
+    }
+  }
+
+  private static int offset(int x, int y) {
+    return ((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK);
+  }
+
+  private static final class Chunk {
+
+    private final int[] cells;
+    private boolean dirty;
+
+    private Chunk(int[] cells) {
+      this.cells = cells;
+    }
+
+  }
+
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+/**
+ * Tile grid that keeps every cell in memory, in row-major order.
+ */
+public class DenseTileGrid implements TileGrid {
+
+  private final int width;
+  private final int height;
+  private final int[] cells;
+
+  public DenseTileGrid(int width, int height) {
+    this(width, height, new int[width * height]);
+  }
+
+  /**
+   * Creates a grid over existing cells, the array is used directly.
+   *
+   * @param width grid width
+   * @param height grid height
+   * @param cells cells in row-major order
+   */
+  public DenseTileGrid(int width, int height, int[] cells) {
+    if (cells.length != width * height) {
+      throw new IllegalArgumentException("expected " + (width * height) + " cells");
+    }
+    this.width = width;
+    this.height = height;
+    this.cells = cells;
+  }
+
+  @Override
+  public int getWidth() {
+    return width;
+  }
+
+  @Override
+  public int getHeight() {
+    return height;
+  }
+
+  @Override
+  public int getCell(int x, int y) {
+    return cells[index(x, y)];
+  }
+
+  @Override
+  public void setCell(int x, int y, int cell) {
+    cells[index(x, y)] = cell;
+  }
+
+  @Override
+  public TileGrid copy() {
+    return new DenseTileGrid(width, height, cells.clone());
+  }
+
+  private int index(int x, int y) {
+    if (x < 0 || y < 0 || x >= width || y >= height) {
+      throw new ArrayIndexOutOfBoundsException("(" + x + ", " + y + ")");
+    }
+    return y * width + x;
+  }
+
+}
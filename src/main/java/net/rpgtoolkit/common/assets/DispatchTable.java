@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Immutable index from a key, such as a file extension or URI scheme, to the
+ * handlers that may accept it. Handlers that declare no keys are candidates
+ * for every key. Candidates keep the order the handlers were given in, so the
+ * first candidate accepting a descriptor is the one a linear scan would have
+ * found.
+ *
+ * @param <T> handler type
+ */
+final class DispatchTable<T> {
+
+  private final Map<String, List<T>> indexed;
+  private final List<T> fallback;
+
+  /**
+   * Builds the table.
+   *
+   * @param handlers handlers in dispatch order
+   * @param keys gets the keys a handler declares
+   */
+  DispatchTable(Iterable<? extends T> handlers, Function<? super T, Set<String>> keys) {
+    final List<T> all = new ArrayList<>();
+    final List<Set<String>> declared = new ArrayList<>();
+    final Set<String> known = new LinkedHashSet<>();
+    final List<T> unkeyed = new ArrayList<>();
+    for (T handler : handlers) {
+      final Set<String> k = keys.apply(handler);
+      all.add(handler);
+      declared.add(k);
+      known.addAll(k);
+      if (k.isEmpty()) {
+        unkeyed.add(handler);
+      }
+    }
+
+    this.indexed = new HashMap<>();
+    for (String key : known) {
+      final List<T> candidates = new ArrayList<>();
+      for (int i = 0; i < all.size(); i++) {
+        final Set<String> k = declared.get(i);
+        if (k.isEmpty() || k.contains(key)) {
+          candidates.add(all.get(i));
+        }
+      }
+      this.indexed.put(key, Collections.unmodifiableList(candidates));
+    }
+    this.fallback = Collections.unmodifiableList(unkeyed);
+  }
+
+  /**
+   * Gets the handlers that may accept the key, in dispatch order.
+   *
+   * @param key lookup key
+   * @return candidates, never null
+   */
+  List<T> get(String key) {
+    final List<T> candidates = this.indexed.get(key);
+    return candidates != null ? candidates : this.fallback;
+  }
+
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reference to an image that is read and decoded when it is first needed,
+ * either by the first caller of {@link #get()} or by the shared decoder pool
+ * after {@link #decodeAsync()}.
+ * <p>
+ * The image is decoded at most once. Images that fail to load are logged and
+ * resolve to null, as they did when they were decoded eagerly.
+ * </p>
+ */
+public final class LazyImage {
+
+  /**
+   * Reads and decodes the image.
+   */
+  public interface Loader {
+
+    BufferedImage load() throws IOException;
+
+  }
+
+  /**
+   * Reference without an image.
+   */
+  public static final LazyImage EMPTY = of(null);
+
+  private static volatile Executor decoder;
+
+  private final Loader loader;
+  private final AtomicBoolean started;
+  private final CompletableFuture<BufferedImage> image;
+
+  public LazyImage(Loader loader) {
+    if (loader == null) {
+      throw new NullPointerException();
+    }
+    this.loader = loader;
+    this.started = new AtomicBoolean();
+    this.image = new CompletableFuture<>();
+  }
+
+  /**
+   * Creates a reference to an image that is already decoded.
+   *
+   * @param image decoded image, may be null
+   * @return ready reference
+   */
+  public static LazyImage of(BufferedImage image) {
+    final LazyImage reference = new LazyImage(() -> image);
+    reference.decode();
+    return reference;
+  }
+
+  /**
+   * Gets the image, decoding it on the calling thread if no decode has been
+   * started yet, or waiting for the decode in progress.
+   *
+   * @return image, or null if it could not be loaded
+   * @throws java.util.concurrent.CompletionException wrapping the
+   * {@link Error} the decoder failed with, if any
+   */
+  public BufferedImage get() {
+    decode();
+    return image.join();
+  }
+
+  /**
+   * Gets the image if it is ready, otherwise schedules it on the decoder pool
+   * and returns the placeholder. Never blocks.
+   *
+   * @param placeholder image to use until the image is ready
+   * @return image, or the placeholder
+   */
+  public BufferedImage getNow(BufferedImage placeholder) {
+    if (!image.isDone()) {
+      decodeAsync();
+      return placeholder;
+    } else if (image.isCompletedExceptionally()) {
+      return placeholder;
+    }
+    final BufferedImage result = image.join();
+    return result != null ? result : placeholder;
+  }
+
+  /**
+   * Determines if the image has been decoded, or failed to load.
+   *
+   * @return true if ready
+   */
+  public boolean isReady() {
+    return image.isDone();
+  }
+
+  /**
+   * Registers a callback invoked with the image once it is ready, immediately
+   * on the calling thread if it already is. Callbacks otherwise run on the
+   * thread that decoded the image.
+   *
+   * @param callback callback receiving the image, or null if it failed to load
+   */
+  public void whenReady(Consumer<BufferedImage> callback) {
+    image.thenAccept(callback);
+  }
+
+  /**
+   * Schedules the image on the decoder pool unless a decode has already been
+   * started.
+   *
+   * @return this reference
+   */
+  public LazyImage decodeAsync() {
+    if (!started.get()) {
+      try {
+        getDecoder().execute(this::decode);
+      } catch (RejectedExecutionException ex) {
+        decode();
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Gets the executor used to decode images in the background. Unless one has
+   * been set, a pool of daemon threads sized to the number of available
+   * processors is created on first use.
+   *
+   * @return decoder executor
+   */
+  public static Executor getDecoder() {
+    Executor current = decoder;
+    if (current == null) {
+      synchronized (LazyImage.class) {
+        current = decoder;
+        if (current == null) {
+          current = Executors.newFixedThreadPool(
+                  Runtime.getRuntime().availableProcessors(),
+                  new DecoderThreadFactory());
+          decoder = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Sets the executor used to decode images in the background.
+   *
+   * @param executor decoder executor
+   */
+  public static void setDecoder(Executor executor) {
+    if (executor == null) {
+      throw new NullPointerException();
+    }
+    decoder = executor;
+  }
+
+  private void decode() {
+    if (!started.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      image.complete(loader.load());
+    } catch (IOException | RuntimeException ex) {
+      Logger.getLogger(LazyImage.class.getName()).log(Level.SEVERE, null, ex);
+      image.complete(null);
+    } catch (Throwable ex) {
+      // Errors are not swallowed, but waiters must not hang on them.
+      image.completeExceptionally(ex);
+      throw ex;
+    }
+  }
+
+  private static final class DecoderThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      final Thread thread = new Thread(runnable,
+              "image-decoder-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+
+  }
+
+}
@@ -12,8 +12,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.imageio.ImageIO;
-import net.rpgtoolkit.common.utilities.CoreProperties;
+import net.rpgtoolkit.common.utilities.ImageCache;
 
 /**
  *
@@ -29,6 +28,9 @@ public class SpriteSheet {
 
     // Non-IO.
     private BufferedImage image;
+
+    // Frames sliced from the image for the last requested frame size.
+    private volatile FrameTable frames;
     
     public SpriteSheet() {
         fileName = "";
@@ -70,20 +72,75 @@ public class SpriteSheet {
         return image;
     }
 
+    /**
+     * Loads the sheet image from the project of the shared
+     * {@link AssetManager}, see {@link #loadImage(AssetManager)}.
+     *
+     * @return sheet image
+     * @throws IOException if the image could not be read
+     */
     public BufferedImage loadImage() throws IOException {
-        File file = new File(
-                System.getProperty("project.path")
-                + File.separator
-                + CoreProperties.getProperty("toolkit.directory.bitmap")
-                + File.separator
-                + fileName
-        );
-        image = ImageIO.read(file);
+        return loadImage(AssetManager.getInstance());
+    }
+
+    /**
+     * Loads the sheet image. Decoded images are shared through the manager's
+     * {@link ImageCache}, so sheets using the same file only decode it once.
+     *
+     * @param assetManager manager of the project the image belongs to
+     * @return sheet image
+     * @throws IOException if the image could not be read
+     */
+    public BufferedImage loadImage(AssetManager assetManager) throws IOException {
+        File file = assetManager.getProjectFile("toolkit.directory.bitmap", fileName);
+        BufferedImage loaded = assetManager.getImageCache().getImage(file);
+        if (loaded != image) {
+            image = loaded;
+            frames = null;
+        }
         
         return image;
     }
     
+    /**
+     * Gets a frame of the sheet. The frames for a frame size are sliced once
+     * and reused, so repeated calls with the same size do not allocate.
+     *
+     * @param index frame index, row by row
+     * @param width frame width
+     * @param height frame height
+     * @return frame image, sharing the pixels of the sheet
+     */
     public BufferedImage getFrame(int index, int width, int height) {
+        FrameTable table = frames;
+        if (table == null || width != table.width || height != table.height) {
+            table = slice(width, height);
+        }
+        if (index >= 0 && index < table.frames.length) {
+            return table.frames[index];
+        }
+        
+        // Outside of the sliced grid, fails as getSubimage does.
+        return subimage(index, width, height);
+    }
+    
+    private synchronized FrameTable slice(int width, int height) {
+        FrameTable table = frames;
+        if (table != null && width == table.width && height == table.height) {
+            return table;
+        }
+        
+        BufferedImage[] sliced = new BufferedImage[getFrameCount(width, height)];
+        for (int i = 0; i < sliced.length; i++) {
+            sliced[i] = subimage(i, width, height);
+        }
+        
+        table = new FrameTable(width, height, sliced);
+        frames = table;
+        return table;
+    }
+    
+    private BufferedImage subimage(int index, int width, int height) {
         if (width > image.getWidth()) {
             width = image.getWidth();
         }
@@ -112,4 +169,18 @@ public class SpriteSheet {
         return columns * rows;
     }
 
+    private static final class FrameTable {
+
+        private final int width;
+        private final int height;
+        private final BufferedImage[] frames;
+
+        private FrameTable(int width, int height, BufferedImage[] frames) {
+            this.width = width;
+            this.height = height;
+            this.frames = frames;
+        }
+
+    }
+
 }
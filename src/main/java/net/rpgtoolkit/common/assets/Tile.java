@@ -134,6 +134,17 @@ public class Tile extends WritableRaster {
         return tileImage;
     }
 
+    /**
+     * Drops the image decoded by {@link #getTileAsImage()}, it is decoded
+     * again from the pixels on the next call.
+     */
+    public void discardImage() {
+        if (tileImage != null) {
+            tileImage.flush();
+            tileImage = null;
+        }
+    }
+
     @Override
     public int hashCode() {
         int hash = 7;
@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tiles of one or more tile sets packed into a few large images, so that
+ * renderers can draw many tiles from the same image.
+ * <p>
+ * Atlases are created with a {@link TileAtlasBuilder} and are a snapshot of
+ * the tile pixels at that time, they are not updated when tiles change.
+ * </p>
+ */
+public final class TileAtlas {
+
+  private final List<BufferedImage> pages;
+  private final IdentityHashMap<TileSet, Region[]> regions;
+  private final HashMap<String, Region[]> regionsByName;
+
+  TileAtlas(List<BufferedImage> pages, IdentityHashMap<TileSet, Region[]> regions) {
+    this.pages = Collections.unmodifiableList(pages);
+    this.regions = regions;
+    this.regionsByName = new HashMap<>();
+    for (Map.Entry<TileSet, Region[]> entry : regions.entrySet()) {
+      if (entry.getKey().getName() != null) {
+        regionsByName.putIfAbsent(entry.getKey().getName(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Gets the page images of this atlas.
+   *
+   * @return page images
+   */
+  public List<BufferedImage> getPages() {
+    return pages;
+  }
+
+  /**
+   * Determines if the atlas holds the tiles of the tile set.
+   *
+   * @param tileSet tile set
+   * @return true if the tile set was packed
+   */
+  public boolean contains(TileSet tileSet) {
+    return find(tileSet) != null;
+  }
+
+  /**
+   * Gets the region holding a tile. Tile sets are matched by identity first,
+   * then by name so that the placeholder tiles of a board that has not yet
+   * been given its loaded tile sets are found too.
+   *
+   * @param tileSet tile set of the tile
+   * @param index index of the tile in its set
+   * @return region, or null if the tile is not in this atlas
+   */
+  public Region getRegion(TileSet tileSet, int index) {
+    final Region[] table = find(tileSet);
+    if (table == null || index < 0 || index >= table.length) {
+      return null;
+    }
+    return table[index];
+  }
+
+  /**
+   * Gets the region holding a tile.
+   *
+   * @param tile tile
+   * @return region, or null if the tile is not in this atlas
+   */
+  public Region getRegion(Tile tile) {
+    if (tile == null || tile.getTileSet() == null) {
+      return null;
+    }
+    return getRegion(tile.getTileSet(), tile.getIndex());
+  }
+
+  private Region[] find(TileSet tileSet) {
+    final Region[] table = regions.get(tileSet);
+    if (table != null || tileSet == null || tileSet.getName() == null) {
+      return table;
+    }
+    return regionsByName.get(tileSet.getName());
+  }
+
+  /**
+   * Sub-rectangle of an atlas page holding the pixels of one tile.
+   */
+  public static final class Region {
+
+    private final BufferedImage page;
+    private final int pageIndex;
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+
+    Region(BufferedImage page, int pageIndex, int x, int y, int width, int height) {
+      this.page = page;
+      this.pageIndex = pageIndex;
+      this.x = x;
+      this.y = y;
+      this.width = width;
+      this.height = height;
+    }
+
+    public BufferedImage getPage() {
+      return page;
+    }
+
+    public int getPageIndex() {
+      return pageIndex;
+    }
+
+    public int getX() {
+      return x;
+    }
+
+    public int getY() {
+      return y;
+    }
+
+    public int getWidth() {
+      return width;
+    }
+
+    public int getHeight() {
+      return height;
+    }
+
+    /**
+     * Returns a view of the region that shares the page pixels.
+     *
+     * @return tile image
+     */
+    public BufferedImage getImage() {
+      return page.getSubimage(x, y, width, height);
+    }
+
+  }
+
+}
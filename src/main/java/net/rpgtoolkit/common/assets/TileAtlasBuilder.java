@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packs the tiles of tile sets into the pages of a {@link TileAtlas}.
+ * <p>
+ * Tiles are placed on shelves, rows of tiles that are as high as their
+ * tallest tile, a new page is started once a page is full. The last page is
+ * only as high as the shelves it holds.
+ * </p>
+ */
+public class TileAtlasBuilder {
+
+  public static final int DEFAULT_PAGE_SIZE = 2048;
+
+  private final int pageSize;
+  private final List<TileSet> tileSets;
+  private final Map<TileSet, Boolean> added;
+
+  public TileAtlasBuilder() {
+    this(DEFAULT_PAGE_SIZE);
+  }
+
+  /**
+   * Creates a builder with the specified page size.
+   *
+   * @param pageSize width and maximum height of each page, in pixels
+   */
+  public TileAtlasBuilder(int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("pageSize must be >= 1");
+    }
+    this.pageSize = pageSize;
+    this.tileSets = new ArrayList<>();
+    this.added = new IdentityHashMap<>();
+  }
+
+  /**
+   * Adds the tiles of a tile set, tile sets that were already added are
+   * ignored.
+   *
+   * @param tileSet tile set to pack
+   * @return this builder
+   */
+  public TileAtlasBuilder add(TileSet tileSet) {
+    if (tileSet != null && added.put(tileSet, Boolean.TRUE) == null) {
+      tileSets.add(tileSet);
+    }
+    return this;
+  }
+
+  /**
+   * Adds every tile set the layers of the board reference. Should be called
+   * once the board tiles have been loaded, as only the tiles that are in
+   * memory are packed.
+   *
+   * @param board board
+   * @return this builder
+   */
+  public TileAtlasBuilder add(Board board) {
+    for (BoardLayer layer : board.getLayers()) {
+      for (TileSet tileSet : layer.getTileSets()) {
+        add(tileSet);
+      }
+    }
+    for (TileSet tileSet : board.getTileSets().values()) {
+      add(tileSet);
+    }
+    return this;
+  }
+
+  /**
+   * Packs the added tile sets.
+   *
+   * @return atlas holding every tile of the added tile sets
+   */
+  public TileAtlas build() {
+    // Tile sets are kept in lists, as their equality is based on descriptors.
+    final List<Tile[]> sources = new ArrayList<>(tileSets.size());
+    for (TileSet tileSet : tileSets) {
+      sources.add(tileSet.getTiles().toArray(new Tile[0]));
+    }
+
+    // Place every tile before allocating pages, so that the last page can be
+    // trimmed to its shelves.
+    final List<int[][]> placements = new ArrayList<>(sources.size());
+    final List<Integer> pageHeights = new ArrayList<>();
+    int page = 0;
+    int x = 0;
+    int y = 0;
+    int shelfHeight = 0;
+    for (int set = 0; set < sources.size(); set++) {
+      final Tile[] tiles = sources.get(set);
+      final int[][] placed = new int[tiles.length][];
+      for (int i = 0; i < tiles.length; i++) {
+        final int width = tiles[i].getWidth();
+        final int height = tiles[i].getHeight();
+        if (width > pageSize || height > pageSize) {
+          throw new IllegalArgumentException("tile " + i + " of "
+                  + tileSets.get(set).getName() + " does not fit on a page");
+        }
+        if (x + width > pageSize) {
+          x = 0;
+          y += shelfHeight;
+          shelfHeight = 0;
+        }
+        if (y + height > pageSize) {
+          pageHeights.add(y);
+          page++;
+          x = 0;
+          y = 0;
+          shelfHeight = 0;
+        }
+        placed[i] = new int[]{page, x, y};
+        x += width;
+        shelfHeight = Math.max(shelfHeight, height);
+      }
+      placements.add(placed);
+    }
+    if (shelfHeight > 0) {
+      pageHeights.add(y + shelfHeight);
+    }
+
+    final List<BufferedImage> pages = new ArrayList<>(pageHeights.size());
+    for (int height : pageHeights) {
+      pages.add(new BufferedImage(pageSize, height, BufferedImage.TYPE_INT_ARGB));
+    }
+
+    final IdentityHashMap<TileSet, TileAtlas.Region[]> regions = new IdentityHashMap<>();
+    for (int set = 0; set < sources.size(); set++) {
+      final Tile[] tiles = sources.get(set);
+      final int[][] placed = placements.get(set);
+      final TileAtlas.Region[] table = new TileAtlas.Region[tiles.length];
+      for (int i = 0; i < tiles.length; i++) {
+        final BufferedImage image = pages.get(placed[i][0]);
+        image.getRaster().setRect(placed[i][1], placed[i][2], tiles[i]);
+        table[i] = new TileAtlas.Region(image, placed[i][0], placed[i][1],
+                placed[i][2], tiles[i].getWidth(), tiles[i].getHeight());
+      }
+      regions.put(tileSets.get(set), table);
+    }
+
+    return new TileAtlas(pages, regions);
+  }
+
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+/**
+ * Storage for the tile cells of a board layer. Cells use the encoding
+ * described by {@link BoardLayer}.
+ */
+public interface TileGrid {
+
+  int getWidth();
+
+  int getHeight();
+
+  /**
+   * Gets the cell at the specified coordinates.
+   *
+   * @param x x position of the cell
+   * @param y y position of the cell
+   * @return cell value
+   */
+  int getCell(int x, int y);
+
+  /**
+   * Sets the cell at the specified coordinates.
+   *
+   * @param x x position of the cell
+   * @param y y position of the cell
+   * @param cell cell value
+   */
+  void setCell(int x, int y, int cell);
+
+  /**
+   * Creates an independent copy of this grid.
+   *
+   * @return copy of the grid
+   */
+  TileGrid copy();
+
+}
@@ -8,6 +8,7 @@
 package net.rpgtoolkit.common.assets;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -29,6 +30,10 @@ public class TileSet extends AbstractAsset {
 
     private LinkedList<Tile> tiles;
 
+    // Tiles by index for lookupTile, rebuilt when the number of tiles changes.
+    private volatile Tile[] lookup = new Tile[0];
+    private volatile int lookupSize = -1;
+
     public TileSet() {
         super(null);
         images = new ArrayList<>();
@@ -68,6 +73,26 @@ public class TileSet extends AbstractAsset {
         return tiles.get(index);
     }
 
+    /**
+     * Gets the tile at the specified index in constant time. While the tile
+     * images have not been loaded a shared placeholder that only knows its
+     * tile set and index is returned, so boards never need a tile instance
+     * per cell.
+     *
+     * @param index index of the tile
+     * @return the loaded tile or a placeholder for it
+     */
+    public Tile lookupTile(int index) {
+        final Tile[] table = lookup;
+        if (index < table.length && lookupSize == tiles.size()) {
+            final Tile tile = table[index];
+            if (tile != null) {
+                return tile;
+            }
+        }
+        return updateLookup(index);
+    }
+
     public int getTileIndex(Tile tile) {
         return tiles.indexOf(tile);
     }
@@ -119,4 +144,30 @@ public class TileSet extends AbstractAsset {
         tiles.add(newTile);
     }
 
+    /**
+     * Drops the decoded images of every tile, see {@link Tile#discardImage()}.
+     */
+    public void discardImages() {
+        for (Tile tile : tiles) {
+            tile.discardImage();
+        }
+    }
+
+    private synchronized Tile updateLookup(int index) {
+        Tile[] table = lookup;
+        final int size = tiles.size();
+        if (lookupSize != size) {
+            table = tiles.toArray(new Tile[size]);
+        }
+        if (index >= table.length) {
+            table = Arrays.copyOf(table, index + 1);
+        }
+        if (table[index] == null) {
+            table[index] = new Tile(this, index);
+        }
+        lookup = table;
+        lookupSize = size;
+        return table[index];
+    }
+
 }
@@ -0,0 +1,446 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetHandle;
+import net.rpgtoolkit.common.assets.metrics.AssetMetrics;
+
+/**
+ * Thread-safe cache of asset handles bounded by an estimated memory budget.
+ * <p>
+ * Each entry is weighed with an {@link AssetWeigher} when it is added. Once the
+ * total weight exceeds the capacity, entries are evicted in the order chosen by
+ * the {@link EvictionPolicy} until the cache fits again. Pinned descriptors are
+ * never evicted, so a cache full of pinned entries may stay over budget until
+ * they are unpinned. An entry heavier than the whole capacity is not kept
+ * unless its descriptor is pinned, rather than evicting everything else first
+ * and then the entry itself.
+ * </p>
+ * <p>
+ * A {@link RemovalListener} is told about every handle that leaves the cache,
+ * once the cache lock has been released.
+ * </p>
+ */
+public class AssetCache {
+
+  public static final long UNBOUNDED = Long.MAX_VALUE;
+
+  private final ConcurrentHashMap<AssetDescriptor, Entry> entries;
+  private final Map<AssetDescriptor, Integer> pins;
+  private final EvictionPolicy policy;
+  private final AssetWeigher weigher;
+  private volatile AssetMetrics metrics;
+  private volatile RemovalListener removalListener;
+
+  // Entries removed while holding the lock, passed to the removal listener
+  // once it has been released. Guarded by this.
+  private final List<Entry> removed;
+
+  private long capacity;
+  private long weight;
+  private long evictions;
+
+  /**
+   * Creates an unbounded cache with least recently used eviction.
+   */
+  public AssetCache() {
+    this(UNBOUNDED, new LruEvictionPolicy(), new FootprintWeigher());
+  }
+
+  /**
+   * Creates a cache with the specified budget and eviction policy.
+   *
+   * @param capacity maximum total weight, in bytes
+   * @param policy eviction policy, must not be shared with another cache
+   * @param weigher estimates the footprint of each entry
+   */
+  public AssetCache(long capacity, EvictionPolicy policy, AssetWeigher weigher) {
+    if (policy == null || weigher == null) {
+      throw new NullPointerException();
+    }
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity must be >= 0");
+    }
+    this.entries = new ConcurrentHashMap<>();
+    this.pins = new HashMap<>();
+    this.policy = policy;
+    this.weigher = weigher;
+    this.capacity = capacity;
+    this.metrics = AssetMetrics.NONE;
+    this.removalListener = RemovalListener.NONE;
+    this.removed = new ArrayList<>();
+  }
+
+  /**
+   * Gets the cached handle for the descriptor.
+   *
+   * @param descriptor asset descriptor
+   * @return cached handle, or null if not present
+   */
+  public AssetHandle get(AssetDescriptor descriptor) {
+    final Entry entry = this.entries.get(descriptor);
+    if (entry == null) {
+      return null;
+    }
+    synchronized (this) {
+      if (this.entries.get(descriptor) == entry) {
+        this.policy.accessed(descriptor);
+      }
+    }
+    return entry.handle;
+  }
+
+  /**
+   * Gets the cached handle for the descriptor without counting it as an
+   * access, so looking at entries does not change which one is evicted next.
+   *
+   * @param descriptor asset descriptor
+   * @return cached handle, or null if not present
+   */
+  public AssetHandle peek(AssetDescriptor descriptor) {
+    final Entry entry = this.entries.get(descriptor);
+    return entry == null ? null : entry.handle;
+  }
+
+  /**
+   * Returns the descriptors of the cached handles at the time of the call.
+   *
+   * @return snapshot of the cached descriptors
+   */
+  public List<AssetDescriptor> getDescriptors() {
+    return new ArrayList<>(this.entries.keySet());
+  }
+
+  /**
+   * Determines if a handle is cached for the descriptor.
+   *
+   * @param descriptor asset descriptor
+   * @return true if cached, false otherwise
+   */
+  public boolean contains(AssetDescriptor descriptor) {
+    return this.entries.containsKey(descriptor);
+  }
+
+  /**
+   * Adds or replaces the handle for the descriptor, evicting other entries if
+   * the cache grows beyond its capacity.
+   *
+   * @param descriptor asset descriptor
+   * @param handle handle to cache
+   * @return the previously cached handle, or null
+   */
+  public AssetHandle put(AssetDescriptor descriptor, AssetHandle handle) {
+    if (descriptor == null || handle == null) {
+      throw new NullPointerException();
+    }
+    final Entry previous;
+    synchronized (this) {
+      previous = this.entries.get(descriptor);
+      if (previous != null) {
+        if (previous.handle == handle) {
+          this.policy.accessed(descriptor);
+          return handle;
+        }
+        removeEntry(previous);
+      }
+      insert(descriptor, handle);
+    }
+    notifyRemoved();
+    return previous == null ? null : previous.handle;
+  }
+
+  /**
+   * Adds the handle only if no handle is cached for the descriptor yet.
+   *
+   * @param descriptor asset descriptor
+   * @param handle handle to cache
+   * @return the handle already cached, or null if the new handle was added or
+   * was too heavy to be kept
+   */
+  public AssetHandle putIfAbsent(AssetDescriptor descriptor, AssetHandle handle) {
+    if (descriptor == null || handle == null) {
+      throw new NullPointerException();
+    }
+    synchronized (this) {
+      final Entry existing = this.entries.get(descriptor);
+      if (existing != null) {
+        this.policy.accessed(descriptor);
+        return existing.handle;
+      }
+      insert(descriptor, handle);
+    }
+    notifyRemoved();
+    return null;
+  }
+
+  /**
+   * Removes the handle for the descriptor. Pins are left untouched.
+   *
+   * @param descriptor asset descriptor
+   * @return the removed handle, or null
+   */
+  public AssetHandle remove(AssetDescriptor descriptor) {
+    final Entry entry;
+    synchronized (this) {
+      entry = this.entries.get(descriptor);
+      if (entry == null) {
+        return null;
+      }
+      removeEntry(entry);
+    }
+    notifyRemoved();
+    return entry.handle;
+  }
+
+  /**
+   * Removes every entry. Pins are left untouched.
+   */
+  public void clear() {
+    synchronized (this) {
+      if (this.removalListener != RemovalListener.NONE) {
+        this.removed.addAll(this.entries.values());
+      }
+      this.entries.clear();
+      this.policy.clear();
+      this.weight = 0;
+    }
+    notifyRemoved();
+  }
+
+  /**
+   * Pins the descriptor so that its entry is never evicted. Pins are counted,
+   * each call must be balanced by a call to {@link #unpin(AssetDescriptor)}.
+   * A descriptor may be pinned before its handle is cached.
+   *
+   * @param descriptor asset descriptor
+   */
+  public synchronized void pin(AssetDescriptor descriptor) {
+    if (descriptor == null) {
+      throw new NullPointerException();
+    }
+    this.pins.merge(descriptor, 1, Integer::sum);
+  }
+
+  /**
+   * Releases a pin taken with {@link #pin(AssetDescriptor)}. Once the last
+   * pin is released the entry becomes evictable again.
+   *
+   * @param descriptor asset descriptor
+   */
+  public void unpin(AssetDescriptor descriptor) {
+    synchronized (this) {
+      final Integer count = this.pins.get(descriptor);
+      if (count == null) {
+        return;
+      }
+      if (count <= 1) {
+        this.pins.remove(descriptor);
+        evict();
+      } else {
+        this.pins.put(descriptor, count - 1);
+      }
+    }
+    notifyRemoved();
+  }
+
+  /**
+   * Determines if the descriptor is currently pinned.
+   *
+   * @param descriptor asset descriptor
+   * @return true if pinned, false otherwise
+   */
+  public synchronized boolean isPinned(AssetDescriptor descriptor) {
+    return this.pins.containsKey(descriptor);
+  }
+
+  /**
+   * Returns the number of cached handles.
+   *
+   * @return count of cached handles
+   */
+  public int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * Returns the estimated total weight of all cached handles.
+   *
+   * @return total weight, in bytes
+   */
+  public synchronized long getWeight() {
+    return this.weight;
+  }
+
+  /**
+   * Returns the number of entries evicted since the cache was created.
+   *
+   * @return eviction count
+   */
+  public synchronized long getEvictionCount() {
+    return this.evictions;
+  }
+
+  public synchronized long getCapacity() {
+    return this.capacity;
+  }
+
+  /**
+   * Sets the maximum total weight, evicting entries immediately if the cache
+   * no longer fits.
+   *
+   * @param capacity maximum total weight, in bytes
+   */
+  public void setCapacity(long capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity must be >= 0");
+    }
+    synchronized (this) {
+      this.capacity = capacity;
+      evict();
+    }
+    notifyRemoved();
+  }
+
+  public AssetMetrics getMetrics() {
+    return this.metrics;
+  }
+
+  /**
+   * Sets the metrics informed of evictions.
+   *
+   * @param metrics metrics, {@link AssetMetrics#NONE} to disable
+   */
+  public void setMetrics(AssetMetrics metrics) {
+    if (metrics == null) {
+      throw new NullPointerException();
+    }
+    this.metrics = metrics;
+  }
+
+  public RemovalListener getRemovalListener() {
+    return this.removalListener;
+  }
+
+  /**
+   * Sets the listener told about handles leaving the cache.
+   *
+   * @param listener removal listener, {@link RemovalListener#NONE} to disable
+   */
+  public void setRemovalListener(RemovalListener listener) {
+    if (listener == null) {
+      throw new NullPointerException();
+    }
+    this.removalListener = listener;
+  }
+
+  private void insert(AssetDescriptor descriptor, AssetHandle handle) {
+    final long w = Math.max(0, this.weigher.weigh(handle));
+    if (w > this.capacity && !this.pins.containsKey(descriptor)) {
+      // It can never fit, turn it away as if evicted right away.
+      this.evictions++;
+      this.metrics.evicted(descriptor, w);
+      if (this.removalListener != RemovalListener.NONE) {
+        this.removed.add(new Entry(descriptor, handle, w));
+      }
+      return;
+    }
+    this.entries.put(descriptor, new Entry(descriptor, handle, w));
+    this.policy.inserted(descriptor, w);
+    this.weight += w;
+    evict(descriptor);
+  }
+
+  private void removeEntry(Entry entry) {
+    this.entries.remove(entry.descriptor);
+    this.policy.removed(entry.descriptor);
+    this.weight -= entry.weight;
+    if (this.removalListener != RemovalListener.NONE) {
+      this.removed.add(entry);
+    }
+  }
+
+  /**
+   * Passes the entries removed so far to the removal listener, called once
+   * the lock has been released.
+   */
+  private void notifyRemoved() {
+    final List<Entry> drained;
+    synchronized (this) {
+      if (this.removed.isEmpty()) {
+        return;
+      }
+      drained = new ArrayList<>(this.removed);
+      this.removed.clear();
+    }
+    final RemovalListener listener = this.removalListener;
+    for (final Entry entry : drained) {
+      listener.removed(entry.descriptor, entry.handle);
+    }
+  }
+
+  private void evict() {
+    evict(null);
+  }
+
+  /**
+   * Evicts entries until the cache fits its capacity. The newest entry is only
+   * chosen as a last resort, otherwise a policy like LFU would always evict
+   * what was just loaded.
+   */
+  private void evict(AssetDescriptor newest) {
+    if (this.weight <= this.capacity) {
+      return;
+    }
+
+    // Choose victims first, the policy must not change while iterating.
+    final List<AssetDescriptor> victims = new ArrayList<>();
+    long remaining = this.weight;
+    final Iterator<AssetDescriptor> candidates = this.policy.candidates();
+    while (remaining > this.capacity && candidates.hasNext()) {
+      final AssetDescriptor candidate = candidates.next();
+      final Entry entry = this.entries.get(candidate);
+      if (entry == null || candidate.equals(newest) || this.pins.containsKey(candidate)) {
+        continue;
+      }
+      victims.add(candidate);
+      remaining -= entry.weight;
+    }
+    if (remaining > this.capacity && newest != null && !this.pins.containsKey(newest)) {
+      victims.add(newest);
+    }
+
+    for (final AssetDescriptor victim : victims) {
+      final Entry entry = this.entries.get(victim);
+      removeEntry(entry);
+      this.evictions++;
+      this.metrics.evicted(victim, entry.weight);
+    }
+  }
+
+  private static final class Entry {
+
+    private final AssetDescriptor descriptor;
+    private final AssetHandle handle;
+    private final long weight;
+
+    private Entry(AssetDescriptor descriptor, AssetHandle handle, long weight) {
+      this.descriptor = descriptor;
+      this.handle = handle;
+      this.weight = weight;
+    }
+
+  }
+
+}
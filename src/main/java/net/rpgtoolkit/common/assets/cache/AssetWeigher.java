@@ -0,0 +1,27 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.cache;
+
+import net.rpgtoolkit.common.assets.AssetHandle;
+
+/**
+ * Estimates how much memory a cached asset occupies. Weights are relative to
+ * the capacity of the {@link AssetCache} they are used with, which by
+ * convention is expressed in bytes.
+ */
+public interface AssetWeigher {
+
+  /**
+   * Estimates the footprint of the asset held by the handle.
+   *
+   * @param handle handle to weigh, never null
+   * @return estimated footprint, must be &gt;= 0
+   */
+  long weigh(AssetHandle handle);
+
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.cache;
+
+import java.util.Iterator;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+
+/**
+ * Decides the order in which an {@link AssetCache} evicts entries once it has
+ * exceeded its capacity.
+ * <p>
+ * Policies are only ever invoked while the owning cache holds its lock, so
+ * implementations do not need to be thread-safe. A policy instance must not be
+ * shared between caches.
+ * </p>
+ */
+public interface EvictionPolicy {
+
+  /**
+   * Invoked when an entry is added to the cache.
+   *
+   * @param descriptor descriptor of the new entry
+   * @param weight estimated footprint of the new entry
+   */
+  void inserted(AssetDescriptor descriptor, long weight);
+
+  /**
+   * Invoked when an existing entry is read from the cache.
+   *
+   * @param descriptor descriptor of the entry
+   */
+  void accessed(AssetDescriptor descriptor);
+
+  /**
+   * Invoked when an entry leaves the cache, whether it was evicted or removed
+   * explicitly.
+   *
+   * @param descriptor descriptor of the entry
+   */
+  void removed(AssetDescriptor descriptor);
+
+  /**
+   * Returns the tracked descriptors ordered from most to least evictable. The
+   * cache does not modify the policy while iterating.
+   *
+   * @return eviction candidates, best candidate first
+   */
+  Iterator<AssetDescriptor> candidates();
+
+  /**
+   * Forgets every tracked entry.
+   */
+  void clear();
+
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.cache;
+
+import java.io.IOException;
+import net.rpgtoolkit.common.assets.Asset;
+import net.rpgtoolkit.common.assets.AssetHandle;
+import net.rpgtoolkit.common.assets.Board;
+import net.rpgtoolkit.common.assets.BoardLayer;
+import net.rpgtoolkit.common.assets.ChunkedTileGrid;
+import net.rpgtoolkit.common.assets.TileGrid;
+import net.rpgtoolkit.common.assets.TileSet;
+
+/**
+ * Default weigher that estimates the in-memory size of an asset in bytes.
+ * Boards and tile sets are estimated from their dimensions, everything else
+ * falls back to the size of its serialized form. A chunked layer is weighed
+ * by the chunks it may keep in memory rather than by the whole board.
+ */
+public class FootprintWeigher implements AssetWeigher {
+
+  // Rough per-object costs, good enough to rank assets against each other.
+  private static final long CELL_BYTES = 4;
+  private static final long PIXEL_BYTES = 4;
+  private static final long MINIMUM_BYTES = 64;
+
+  @Override
+  public long weigh(AssetHandle handle) {
+    final Asset asset = handle.getAsset();
+    long estimate;
+    if (asset instanceof Board) {
+      final Board board = (Board) asset;
+      final long cells = (long) board.getWidth() * board.getHeight();
+      estimate = board.getLayers().isEmpty() ? cells * CELL_BYTES : 0;
+      for (final BoardLayer layer : board.getLayers()) {
+        estimate += weighGrid(layer.getTileGrid(), cells);
+      }
+    } else if (asset instanceof TileSet) {
+      final TileSet tileSet = (TileSet) asset;
+      estimate = (long) tileSet.getTiles().size()
+              * tileSet.getTileWidth() * tileSet.getTileHeight() * PIXEL_BYTES;
+    } else {
+      try {
+        estimate = handle.size();
+      } catch (IOException ex) {
+        estimate = 0;
+      }
+    }
+    return Math.max(MINIMUM_BYTES, estimate);
+  }
+
+  private static long weighGrid(TileGrid grid, long cells) {
+    if (grid instanceof ChunkedTileGrid) {
+      final ChunkedTileGrid chunked = (ChunkedTileGrid) grid;
+      final int size = ChunkedTileGrid.CHUNK_SIZE;
+      final long chunks = (long) ((chunked.getWidth() + size - 1) / size)
+              * ((chunked.getHeight() + size - 1) / size);
+      cells = Math.min(cells, Math.min(chunks, chunked.getMaxChunks()) * size * size);
+    }
+    return cells * CELL_BYTES;
+  }
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+
+/**
+ * Evicts the least frequently used entry first; entries with the same use
+ * count are evicted in least recently used order.
+ */
+public class LfuEvictionPolicy implements EvictionPolicy {
+
+  private final Map<AssetDescriptor, Usage> usages;
+  private long clock;
+
+  public LfuEvictionPolicy() {
+    this.usages = new HashMap<>();
+  }
+
+  @Override
+  public void inserted(AssetDescriptor descriptor, long weight) {
+    this.usages.put(descriptor, new Usage(descriptor, ++this.clock));
+  }
+
+  @Override
+  public void accessed(AssetDescriptor descriptor) {
+    final Usage usage = this.usages.get(descriptor);
+    if (usage != null) {
+      usage.count++;
+      usage.tick = ++this.clock;
+    }
+  }
+
+  @Override
+  public void removed(AssetDescriptor descriptor) {
+    this.usages.remove(descriptor);
+  }
+
+  @Override
+  public Iterator<AssetDescriptor> candidates() {
+    final List<Usage> sorted = new ArrayList<>(this.usages.values());
+    sorted.sort((a, b) -> {
+      final int byCount = Long.compare(a.count, b.count);
+      return byCount != 0 ? byCount : Long.compare(a.tick, b.tick);
+    });
+    final List<AssetDescriptor> descriptors = new ArrayList<>(sorted.size());
+    for (final Usage usage : sorted) {
+      descriptors.add(usage.descriptor);
+    }
+    return descriptors.iterator();
+  }
+
+  @Override
+  public void clear() {
+    this.usages.clear();
+  }
+
+  private static final class Usage {
+
+    private final AssetDescriptor descriptor;
+    private long count;
+    private long tick;
+
+    private Usage(AssetDescriptor descriptor, long tick) {
+      this.descriptor = descriptor;
+      this.count = 1;
+      this.tick = tick;
+    }
+
+  }
+
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+
+/**
+ * Evicts the least recently used entry first.
+ */
+public class LruEvictionPolicy implements EvictionPolicy {
+
+  private final LinkedHashMap<AssetDescriptor, Boolean> order;
+
+  public LruEvictionPolicy() {
+    this.order = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  @Override
+  public void inserted(AssetDescriptor descriptor, long weight) {
+    this.order.put(descriptor, Boolean.TRUE);
+  }
+
+  @Override
+  public void accessed(AssetDescriptor descriptor) {
+    this.order.get(descriptor);
+  }
+
+  @Override
+  public void removed(AssetDescriptor descriptor) {
+    this.order.remove(descriptor);
+  }
+
+  @Override
+  public Iterator<AssetDescriptor> candidates() {
+    return this.order.keySet().iterator();
+  }
+
+  @Override
+  public void clear() {
+    this.order.clear();
+  }
+
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.cache;
+
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetHandle;
+
+/**
+ * Informed when a handle leaves an {@link AssetCache}, whether it was
+ * evicted, removed, replaced by another handle or cleared. It is invoked
+ * after the cache has released its lock, so it may use the cache.
+ */
+public interface RemovalListener {
+
+  /**
+   * Listener that ignores every removal.
+   */
+  RemovalListener NONE = (descriptor, handle) -> {
+  };
+
+  /**
+   * Invoked once the handle has left the cache.
+   *
+   * @param descriptor asset descriptor
+   * @param handle handle that was removed
+   */
+  void removed(AssetDescriptor descriptor, AssetHandle handle);
+
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+
+/**
+ * Evicts entries that are both large and cold first. Each entry is scored by
+ * its estimated footprint multiplied by the number of cache operations since
+ * it was last used, so a single huge board that has not been touched in a while
+ * goes before many small, recently used items.
+ */
+public class SizeWeightedEvictionPolicy implements EvictionPolicy {
+
+  private final Map<AssetDescriptor, Usage> usages;
+  private long clock;
+
+  public SizeWeightedEvictionPolicy() {
+    this.usages = new HashMap<>();
+  }
+
+  @Override
+  public void inserted(AssetDescriptor descriptor, long weight) {
+    this.usages.put(descriptor, new Usage(descriptor, weight, ++this.clock));
+  }
+
+  @Override
+  public void accessed(AssetDescriptor descriptor) {
+    final Usage usage = this.usages.get(descriptor);
+    if (usage != null) {
+      usage.tick = ++this.clock;
+    }
+  }
+
+  @Override
+  public void removed(AssetDescriptor descriptor) {
+    this.usages.remove(descriptor);
+  }
+
+  @Override
+  public Iterator<AssetDescriptor> candidates() {
+    final long now = this.clock + 1;
+    final List<Usage> sorted = new ArrayList<>(this.usages.values());
+    sorted.sort((a, b) -> Double.compare(b.score(now), a.score(now)));
+    final List<AssetDescriptor> descriptors = new ArrayList<>(sorted.size());
+    for (final Usage usage : sorted) {
+      descriptors.add(usage.descriptor);
+    }
+    return descriptors.iterator();
+  }
+
+  @Override
+  public void clear() {
+    this.usages.clear();
+  }
+
+  private static final class Usage {
+
+    private final AssetDescriptor descriptor;
+    private final long weight;
+    private long tick;
+
+    private Usage(AssetDescriptor descriptor, long weight, long tick) {
+      this.descriptor = descriptor;
+      this.weight = weight;
+      this.tick = tick;
+    }
+
+    private double score(long now) {
+      return (double) this.weight * (now - this.tick);
+    }
+
+  }
+
+}
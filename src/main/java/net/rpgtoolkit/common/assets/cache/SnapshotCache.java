@@ -0,0 +1,490 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import net.rpgtoolkit.common.assets.Asset;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetException;
+import net.rpgtoolkit.common.assets.AssetHandle;
+import net.rpgtoolkit.common.assets.AssetManager;
+import net.rpgtoolkit.common.assets.AssetSerializer;
+import net.rpgtoolkit.common.assets.Board;
+import net.rpgtoolkit.common.assets.serialization.BinaryBoardSerializer;
+import net.rpgtoolkit.common.io.ByteBufferChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk cache of decoded assets, so that a restarted process can skip
+ * parsing the source files that did not change since they were last loaded.
+ * <p>
+ * After an asset is deserialized from a loose file, it is encoded with the
+ * snapshot codec registered for its type, and the snapshot is written to one
+ * file of the cache directory in the background. The next load of the same
+ * file decodes the snapshot instead, provided the source still has the size
+ * and modification time recorded in it; a source that was only touched is
+ * recognised by its content checksum. Snapshots of changed sources are
+ * simply rewritten after the load that parses them again.
+ * </p>
+ * <p>
+ * The size and modification time recorded are the ones the source had
+ * before it was parsed. A source that changes while it is parsed, or before
+ * its checksum has been taken, is not snapshotted.
+ * </p>
+ * <p>
+ * Only types with a binary encoding have snapshots. Boards, by far the
+ * largest assets, are registered by default with the
+ * {@link BinaryBoardSerializer}. Assets read from packs or resources, and
+ * assets whose source is already in the codec's format, are never
+ * snapshotted.
+ * </p>
+ */
+public class SnapshotCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotCache.class);
+
+  public static final int MAGIC = 0x4E535452; // "RTSN"
+  public static final int FORMAT_VERSION = 1;
+
+  private static final String EXTENSION = ".snapshot";
+
+  // Offset of the modification time, rewritten when only the time changed.
+  private static final int MODIFIED_POSITION = 16;
+
+  private final File directory;
+  private final Map<String, AssetSerializer> codecs;
+  // Snapshot writes that have not finished yet, by snapshot file.
+  private final Map<Path, CompletableFuture<Void>> pending;
+
+  private Executor executor;
+
+  /**
+   * Creates a cache keeping its snapshots in the directory, which is created
+   * when the first snapshot is written.
+   *
+   * @param directory snapshot directory
+   */
+  public SnapshotCache(File directory) {
+    if (directory == null) {
+      throw new NullPointerException();
+    }
+    this.directory = directory;
+    this.codecs = new ConcurrentHashMap<>();
+    this.pending = new ConcurrentHashMap<>();
+    register(Board.class, new BinaryBoardSerializer());
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Gets the executor snapshots are written on, by default a single
+   * background thread started on the first write.
+   *
+   * @return snapshot writer
+   */
+  public synchronized Executor getExecutor() {
+    if (executor == null) {
+      executor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "snapshot-writer");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return executor;
+  }
+
+  public synchronized void setExecutor(Executor executor) {
+    if (executor == null) {
+      throw new NullPointerException();
+    }
+    this.executor = executor;
+  }
+
+  /**
+   * Sets the codec snapshots of assets of the type are written with. The
+   * codec must deserialize what it serializes without looking at the
+   * descriptor's extension.
+   *
+   * @param type asset type
+   * @param codec binary serializer for the type
+   */
+  public void register(Class<? extends Asset> type, AssetSerializer codec) {
+    if (type == null || codec == null) {
+      throw new NullPointerException();
+    }
+    codecs.put(type.getName(), codec);
+  }
+
+  /**
+   * Loads the asset of the handle from its snapshot, if it has an up to date
+   * one. Snapshots that can not be decoded are deleted.
+   *
+   * @param handle handle of the source file
+   * @return true if the handle's asset was set from the snapshot
+   */
+  public boolean read(AssetHandle handle) {
+    final Path source = getSource(handle.getDescriptor());
+    if (source == null) {
+      return false;
+    }
+    final Path snapshot = getSnapshot(handle.getDescriptor());
+    if (!Files.isRegularFile(snapshot)) {
+      return false;
+    }
+
+    try {
+      final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshot))
+          .order(ByteOrder.LITTLE_ENDIAN);
+      if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+        return delete(snapshot);
+      }
+      final long size = buffer.getLong();
+      final long modified = buffer.getLong();
+      final long checksum = buffer.getLong();
+      final String uri = getString(buffer);
+      final AssetSerializer codec = codecs.get(getString(buffer));
+      if (codec == null || !uri.equals(handle.getDescriptor().getURI().toString())) {
+        return delete(snapshot);
+      }
+
+      if (Files.size(source) != size) {
+        return false;
+      }
+      final long sourceModified = Files.getLastModifiedTime(source).toMillis();
+      if (sourceModified != modified) {
+        if (checksum(source) != checksum) {
+          return false;
+        }
+        touch(snapshot, sourceModified);
+      }
+
+      final SnapshotHandle contents = new SnapshotHandle(handle, buffer.slice());
+      codec.deserialize(contents);
+      handle.setAsset(contents.getAsset());
+      return contents.getAsset() != null;
+    } catch (IOException | AssetException | BufferUnderflowException
+        | IndexOutOfBoundsException ex) {
+      LOGGER.debug("Discarding unreadable snapshot=[{}].", snapshot, ex);
+      return delete(snapshot);
+    }
+  }
+
+  /**
+   * Deserializes the asset of the handle, from its snapshot if it has an up
+   * to date one, otherwise with the serializer. A source parsed again gets a
+   * new snapshot, written in the background.
+   *
+   * @param handle handle of the source file
+   * @param serializer serializer for the source
+   * @throws IOException if the source could not be read
+   * @throws AssetException if the source could not be deserialized
+   */
+  public void deserialize(AssetHandle handle, AssetSerializer serializer)
+      throws IOException, AssetException {
+    if (read(handle)) {
+      return;
+    }
+
+    // Taken before parsing, so that a save made meanwhile is not recorded
+    // against the contents that were parsed.
+    final Path source = getSource(handle.getDescriptor());
+    long size = -1;
+    long modified = -1;
+    if (source != null) {
+      try {
+        size = Files.size(source);
+        modified = Files.getLastModifiedTime(source).toMillis();
+      } catch (IOException ex) {
+        LOGGER.debug("Could not stat source=[{}].", source, ex);
+      }
+    }
+
+    serializer.deserialize(handle);
+
+    if (size >= 0) {
+      write(handle, serializer, source, size, modified);
+    }
+  }
+
+  /**
+   * Waits for the snapshots being written in the background.
+   */
+  public void flush() {
+    for (CompletableFuture<Void> write : pending.values()) {
+      try {
+        write.join();
+      } catch (RuntimeException ex) {
+        // Logged by the write.
+      }
+    }
+  }
+
+  /**
+   * Encodes the asset the handle was just deserialized into and schedules
+   * the snapshot to be written. Failing to write a snapshot does not fail
+   * the load, so problems are only logged.
+   */
+  private void write(AssetHandle handle, AssetSerializer serializer, Path source,
+      long size, long modified) {
+    final Asset asset = handle.getAsset();
+    if (asset == null) {
+      return;
+    }
+    final AssetSerializer codec = codecs.get(asset.getClass().getName());
+    if (codec == null || codec.getClass() == serializer.getClass()) {
+      return;
+    }
+
+    final Path snapshot = getSnapshot(handle.getDescriptor());
+    if (pending.containsKey(snapshot)) {
+      return; // Already being written.
+    }
+    final SnapshotHandle contents = new SnapshotHandle(snapshot, asset);
+    try {
+      if (!isUnchanged(source, size, modified)) {
+        return; // Saved while parsing, snapshot it on a later load.
+      }
+      // Encoded now, before the asset can be modified by its users.
+      codec.serialize(contents);
+    } catch (IOException | AssetException | RuntimeException ex) {
+      LOGGER.warn("Could not encode snapshot of asset with URI=[{}].",
+          handle.getDescriptor().getURI(), ex);
+      return;
+    }
+
+    final CompletableFuture<Void> write = new CompletableFuture<>();
+    if (pending.putIfAbsent(snapshot, write) != null) {
+      return;
+    }
+    try {
+      getExecutor().execute(() -> {
+        try {
+          store(handle.getDescriptor(), asset, contents.contents, source, size, modified);
+        } finally {
+          pending.remove(snapshot, write);
+          write.complete(null);
+        }
+      });
+    } catch (RuntimeException ex) {
+      pending.remove(snapshot, write);
+      write.complete(null);
+      LOGGER.warn("Could not schedule snapshot of asset with URI=[{}].",
+          handle.getDescriptor().getURI(), ex);
+    }
+  }
+
+  /**
+   * Checksums the source and writes the snapshot, unless the source has
+   * changed since it was parsed.
+   */
+  private void store(AssetDescriptor descriptor, Asset asset, byte[] payload, Path source,
+      long size, long modified) {
+    final Path snapshot = getSnapshot(descriptor);
+    Path temporary = null;
+    try {
+      final long checksum = checksum(source);
+      if (!isUnchanged(source, size, modified)) {
+        return;
+      }
+
+      final byte[] uri = descriptor.getURI().toString().getBytes(StandardCharsets.UTF_8);
+      final byte[] type = asset.getClass().getName().getBytes(StandardCharsets.UTF_8);
+      final ByteBuffer header = ByteBuffer.allocate(40 + uri.length + type.length)
+          .order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(FORMAT_VERSION);
+      header.putLong(size).putLong(modified).putLong(checksum);
+      header.putInt(uri.length).put(uri);
+      header.putInt(type.length).put(type);
+      header.flip();
+
+      // Written aside and moved in place, so that a reader never sees half a
+      // snapshot.
+      Files.createDirectories(directory.toPath());
+      temporary = Files.createTempFile(directory.toPath(), "snapshot", ".tmp");
+      try (final FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+        final ByteBuffer contents = ByteBuffer.wrap(payload);
+        while (header.hasRemaining() || contents.hasRemaining()) {
+          channel.write(new ByteBuffer[] {header, contents});
+        }
+      }
+      try {
+        Files.move(temporary, snapshot,
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING);
+      }
+      temporary = null;
+    } catch (IOException | RuntimeException ex) {
+      LOGGER.warn("Could not write snapshot of asset with URI=[{}].", descriptor.getURI(), ex);
+    } finally {
+      if (temporary != null) {
+        delete(temporary);
+      }
+    }
+  }
+
+  /**
+   * Deletes every snapshot in the cache directory.
+   *
+   * @throws IOException if a snapshot could not be deleted
+   */
+  public void clear() throws IOException {
+    final File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      Files.deleteIfExists(file.toPath());
+    }
+  }
+
+  /**
+   * Gets the snapshot file of the source, named after its URI.
+   *
+   * @param descriptor source descriptor
+   * @return snapshot path, which may not exist
+   */
+  public Path getSnapshot(AssetDescriptor descriptor) {
+    final String uri = descriptor.getURI().toString();
+    return directory.toPath().resolve(
+        UUID.nameUUIDFromBytes(uri.getBytes(StandardCharsets.UTF_8)) + EXTENSION);
+  }
+
+  private static Path getSource(AssetDescriptor descriptor) {
+    if (!"file".equals(descriptor.getURI().getScheme())) {
+      return null;
+    }
+    final Path path = new File(descriptor.getURI()).toPath();
+    return Files.isRegularFile(path) ? path : null;
+  }
+
+  private static boolean isUnchanged(Path source, long size, long modified) throws IOException {
+    return Files.size(source) == size
+        && Files.getLastModifiedTime(source).toMillis() == modified;
+  }
+
+  private static long checksum(Path path) throws IOException {
+    final CRC32 crc = new CRC32();
+    final byte[] buffer = new byte[8192];
+    try (final InputStream input = Files.newInputStream(path)) {
+      int n;
+      while ((n = input.read(buffer)) >= 0) {
+        crc.update(buffer, 0, n);
+      }
+    }
+    return crc.getValue();
+  }
+
+  private static void touch(Path snapshot, long modified) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putLong(modified).flip();
+    try (final FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, MODIFIED_POSITION + buffer.position());
+      }
+    }
+  }
+
+  private static boolean delete(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException ex) {
+      LOGGER.debug("Could not delete file=[{}].", path, ex);
+    }
+    return false;
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    final byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Hands a snapshot's payload to the codec, or collects what it encodes.
+   */
+  private static final class SnapshotHandle extends AssetHandle {
+
+    private final AssetHandle source;
+    private final ByteBuffer payload;
+    private byte[] contents = new byte[0];
+
+    private SnapshotHandle(AssetHandle source, ByteBuffer payload) {
+      // Decoded assets take the descriptor of their source.
+      super(source.getDescriptor());
+      this.source = source;
+      this.payload = payload;
+    }
+
+    private SnapshotHandle(Path snapshot, Asset asset) {
+      // A descriptor other than the asset's own, so that the codec does not
+      // treat the snapshot as a save of the asset.
+      super(new AssetDescriptor(snapshot.toFile().toURI()));
+      this.source = null;
+      this.payload = null;
+      setAsset(asset);
+    }
+
+    @Override
+    public AssetManager getAssetManager() {
+      return source == null ? super.getAssetManager() : source.getAssetManager();
+    }
+
+    @Override
+    public ReadableByteChannel read() throws IOException {
+      if (payload == null) {
+        throw new IOException("write only");
+      }
+      return new ByteBufferChannel(payload);
+    }
+
+    @Override
+    public WritableByteChannel write() throws IOException {
+      final ByteArrayOutputStream output = new ByteArrayOutputStream() {
+        @Override
+        public void close() {
+          contents = toByteArray();
+        }
+      };
+      return Channels.newChannel(output);
+    }
+
+    @Override
+    public long size() {
+      return payload == null ? contents.length : payload.remaining();
+    }
+
+  }
+
+}
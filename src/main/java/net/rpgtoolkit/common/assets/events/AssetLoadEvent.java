@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.events;
+
+import java.util.EventObject;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetManager;
+import net.rpgtoolkit.common.assets.AssetSerializer;
+
+/**
+ * An <code>EventObject</code> describing an asset load performed by an
+ * <code>AssetManager</code>.
+ */
+public class AssetLoadEvent extends EventObject {
+
+  private static final long serialVersionUID = 1L;
+
+  private final AssetDescriptor descriptor;
+  private final AssetSerializer serializer;
+  private final long duration;
+  private final long bytes;
+  private final Throwable error;
+
+  public AssetLoadEvent(AssetManager manager, AssetDescriptor descriptor,
+      AssetSerializer serializer) {
+    this(manager, descriptor, serializer, 0, -1, null);
+  }
+
+  public AssetLoadEvent(AssetManager manager, AssetDescriptor descriptor,
+      AssetSerializer serializer, long duration, long bytes, Throwable error) {
+    super(manager);
+    this.descriptor = descriptor;
+    this.serializer = serializer;
+    this.duration = duration;
+    this.bytes = bytes;
+    this.error = error;
+  }
+
+  public AssetDescriptor getDescriptor() {
+    return descriptor;
+  }
+
+  public AssetSerializer getSerializer() {
+    return serializer;
+  }
+
+  /**
+   * Returns the time spent in the serializer.
+   *
+   * @return duration in nanoseconds, 0 for a load that has just started
+   */
+  public long getDuration() {
+    return duration;
+  }
+
+  /**
+   * Returns the size of the asset.
+   *
+   * @return bytes read, or -1 if unknown
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Returns the failure of the load.
+   *
+   * @return error, or null if the load succeeded or is still running
+   */
+  public Throwable getError() {
+    return error;
+  }
+
+}
@@ -7,6 +7,8 @@
  */
 package net.rpgtoolkit.common.assets.files;
 
+import java.util.Collections;
+import java.util.Set;
 import net.rpgtoolkit.common.assets.AssetDescriptor;
 import net.rpgtoolkit.common.assets.AssetHandle;
 import net.rpgtoolkit.common.assets.AssetHandleResolver;
@@ -29,4 +31,9 @@ public class FileAssetHandleResolver
     return new FileAssetHandle(descriptor);
   }
 
+  @Override
+  public Set<String> schemes() {
+    return Collections.singleton("file");
+  }
+
 }
@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.files;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetHandle;
+import net.rpgtoolkit.common.io.ByteBufferChannel;
+
+/**
+ * Handle for an asset stored in a {@link PackFile}. Packed assets are
+ * read-only.
+ */
+public class PackAssetHandle extends AssetHandle {
+
+  private final PackFile pack;
+  private final String name;
+
+  public PackAssetHandle(AssetDescriptor descriptor, PackFile pack, String name) {
+    super(descriptor);
+    this.pack = pack;
+    this.name = name;
+  }
+
+  public PackFile getPack() {
+    return pack;
+  }
+
+  /**
+   * Returns the name of the asset's entry in the pack.
+   *
+   * @return entry name
+   */
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public ReadableByteChannel read() throws IOException {
+    final ByteBuffer contents = pack.read(name);
+    if (contents == null) {
+      throw new FileNotFoundException(name + " is not in " + pack.getFile());
+    }
+    return new ByteBufferChannel(contents);
+  }
+
+  @Override
+  public WritableByteChannel write() throws IOException {
+    throw new IOException("Packed assets are read-only " + descriptor.getURI());
+  }
+
+  @Override
+  public long size() {
+    return pack.getSize(name);
+  }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.files;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Set;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetHandle;
+import net.rpgtoolkit.common.assets.AssetHandleResolver;
+
+/**
+ * Resolves file descriptors below a project directory to the entries of a
+ * {@link PackFile}, so a packed project is loaded through the same paths as
+ * a loose one. Register it before a {@link FileAssetHandleResolver} to fall
+ * back to loose files for anything the pack does not contain.
+ */
+public class PackAssetHandleResolver
+  implements AssetHandleResolver {
+
+  private final PackFile pack;
+  private final String root;
+
+  /**
+   * Creates a resolver serving the pack's entries as if they were files
+   * below the root directory, which does not need to exist.
+   *
+   * @param pack opened pack
+   * @param root project directory the entry names are relative to
+   */
+  public PackAssetHandleResolver(PackFile pack, File root) {
+    if (pack == null) {
+      throw new NullPointerException();
+    }
+    final String path = root.getAbsoluteFile().toURI().getPath();
+    this.pack = pack;
+    this.root = path.endsWith("/") ? path : path + "/";
+  }
+
+  public PackFile getPack() {
+    return pack;
+  }
+
+  @Override
+  public boolean resolvable(AssetDescriptor descriptor) {
+    final String name = getName(descriptor.getURI());
+    return name != null && pack.contains(name);
+  }
+
+  @Override
+  public AssetHandle resolve(AssetDescriptor descriptor) {
+    final String name = getName(descriptor.getURI());
+    if (name == null || !pack.contains(name)) {
+      return null;
+    }
+    return new PackAssetHandle(descriptor, pack, name);
+  }
+
+  @Override
+  public Set<String> schemes() {
+    return Collections.singleton("file");
+  }
+
+  private String getName(URI uri) {
+    if (!"file".equals(uri.getScheme())) {
+      return null;
+    }
+    final String path = uri.getPath();
+    if (path == null || !path.startsWith(root)) {
+      return null;
+    }
+    return path.substring(root.length());
+  }
+
+}
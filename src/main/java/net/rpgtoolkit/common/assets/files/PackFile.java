@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A read-only zip archive mapped into memory. The central directory is
+ * indexed once when the archive is opened; stored entries are then served as
+ * slices of the mapping, and deflated entries are inflated in memory, without
+ * any further file system access.
+ * <p>
+ * Entry names use forward slashes and are relative to the archive root, for
+ * example "Boards/Room.board". Zip64 and encrypted archives are not supported.
+ * </p>
+ */
+public class PackFile {
+
+  private static final int LOCAL_HEADER = 0x04034b50;
+  private static final int CENTRAL_HEADER = 0x02014b50;
+  private static final int END_OF_DIRECTORY = 0x06054b50;
+  private static final int END_OF_DIRECTORY_SIZE = 22;
+  private static final int MAX_COMMENT_SIZE = 0xffff;
+
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+
+  private final File file;
+  private final ByteBuffer data;
+  private final Map<String, Entry> entries;
+
+  private PackFile(File file, ByteBuffer data, Map<String, Entry> entries) {
+    this.file = file;
+    this.data = data;
+    this.entries = entries;
+  }
+
+  /**
+   * Maps the archive and indexes its entries. The file is closed again
+   * immediately; the mapping stays valid until the pack is garbage collected.
+   *
+   * @param file zip archive
+   * @return the opened pack
+   * @throws IOException if the file cannot be read or is not a supported zip
+   */
+  public static PackFile open(File file) throws IOException {
+    final ByteBuffer data;
+    try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Pack larger than 2 GB " + file);
+      }
+      data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+          .order(ByteOrder.LITTLE_ENDIAN);
+    }
+    return new PackFile(file, data, index(file, data));
+  }
+
+  public File getFile() {
+    return this.file;
+  }
+
+  /**
+   * Returns the names of every file in the archive.
+   *
+   * @return entry names
+   */
+  public Set<String> getNames() {
+    return Collections.unmodifiableSet(this.entries.keySet());
+  }
+
+  public boolean contains(String name) {
+    return this.entries.containsKey(name);
+  }
+
+  /**
+   * Returns the uncompressed size of the entry.
+   *
+   * @param name entry name
+   * @return size in bytes, or -1 if there is no such entry
+   */
+  public long getSize(String name) {
+    final Entry entry = this.entries.get(name);
+    return entry == null ? -1 : entry.size;
+  }
+
+  /**
+   * Reads the contents of the entry. Stored entries share the mapping,
+   * deflated entries are inflated into a new buffer.
+   *
+   * @param name entry name
+   * @return read-only contents, or null if there is no such entry
+   * @throws IOException if the entry is corrupt
+   */
+  public ByteBuffer read(String name) throws IOException {
+    final Entry entry = this.entries.get(name);
+    if (entry == null) {
+      return null;
+    }
+
+    final ByteBuffer header = this.data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    header.position(entry.headerOffset);
+    if (header.getInt() != LOCAL_HEADER) {
+      throw new IOException("Corrupt pack entry " + name + " in " + this.file);
+    }
+    final int nameLength = header.getShort(entry.headerOffset + 26) & 0xffff;
+    final int extraLength = header.getShort(entry.headerOffset + 28) & 0xffff;
+    final int start = entry.headerOffset + 30 + nameLength + extraLength;
+    if (start + entry.compressedSize > this.data.limit()) {
+      throw new IOException("Truncated pack entry " + name + " in " + this.file);
+    }
+
+    final ByteBuffer contents = this.data.duplicate();
+    contents.limit(start + entry.compressedSize).position(start);
+    if (entry.method == STORED) {
+      return contents.slice().asReadOnlyBuffer();
+    }
+    return inflate(name, contents, entry.size);
+  }
+
+  private ByteBuffer inflate(String name, ByteBuffer contents, int size) throws IOException {
+    final byte[] input = new byte[contents.remaining()];
+    contents.get(input);
+    final byte[] output = new byte[size];
+
+    final Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(input);
+      int length = 0;
+      while (length < size && !inflater.finished()) {
+        final int n = inflater.inflate(output, length, size - length);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        length += n;
+      }
+      if (length != size) {
+        throw new IOException("Corrupt pack entry " + name + " in " + this.file);
+      }
+    } catch (DataFormatException ex) {
+      throw new IOException("Corrupt pack entry " + name + " in " + this.file, ex);
+    } finally {
+      inflater.end();
+    }
+    return ByteBuffer.wrap(output).asReadOnlyBuffer();
+  }
+
+  private static Map<String, Entry> index(File file, ByteBuffer data) throws IOException {
+    final int end = findEndOfDirectory(data);
+    if (end < 0) {
+      throw new IOException("Not a zip file " + file);
+    }
+    final int count = data.getShort(end + 10) & 0xffff;
+    final long directorySize = data.getInt(end + 12) & 0xffffffffL;
+    final long directoryOffset = data.getInt(end + 16) & 0xffffffffL;
+    if (count == 0xffff || directoryOffset == 0xffffffffL) {
+      throw new IOException("Zip64 packs are not supported " + file);
+    }
+    if (directoryOffset + directorySize > end) {
+      throw new IOException("Corrupt zip directory " + file);
+    }
+
+    final Map<String, Entry> entries = new HashMap<>(count * 4 / 3 + 1);
+    int position = (int) directoryOffset;
+    for (int i = 0; i < count; i++) {
+      if (position + 46 > end || data.getInt(position) != CENTRAL_HEADER) {
+        throw new IOException("Corrupt zip directory " + file);
+      }
+      final int flags = data.getShort(position + 8) & 0xffff;
+      final int method = data.getShort(position + 10) & 0xffff;
+      final long compressedSize = data.getInt(position + 20) & 0xffffffffL;
+      final long size = data.getInt(position + 24) & 0xffffffffL;
+      final int nameLength = data.getShort(position + 28) & 0xffff;
+      final int extraLength = data.getShort(position + 30) & 0xffff;
+      final int commentLength = data.getShort(position + 32) & 0xffff;
+      final long headerOffset = data.getInt(position + 42) & 0xffffffffL;
+
+      final byte[] bytes = new byte[nameLength];
+      final ByteBuffer nameBuffer = data.duplicate();
+      nameBuffer.position(position + 46);
+      nameBuffer.get(bytes);
+      final String name = new String(bytes, StandardCharsets.UTF_8);
+      position += 46 + nameLength + extraLength + commentLength;
+
+      if (name.endsWith("/")) {
+        continue;
+      }
+      if ((flags & 1) != 0) {
+        throw new IOException("Encrypted pack entry " + name + " in " + file);
+      }
+      if (method != STORED && method != DEFLATED) {
+        throw new IOException("Unsupported compression for " + name + " in " + file);
+      }
+      if (size > Integer.MAX_VALUE || headerOffset + 30 > end) {
+        throw new IOException("Corrupt pack entry " + name + " in " + file);
+      }
+      entries.put(name, new Entry(method, (int) compressedSize, (int) size, (int) headerOffset));
+    }
+    return entries;
+  }
+
+  /**
+   * Finds the end of central directory record, searching backwards past a
+   * possible archive comment.
+   */
+  private static int findEndOfDirectory(ByteBuffer data) {
+    final int last = data.limit() - END_OF_DIRECTORY_SIZE;
+    final int first = Math.max(0, last - MAX_COMMENT_SIZE);
+    for (int i = last; i >= first; i--) {
+      if (data.getInt(i) == END_OF_DIRECTORY
+          && i + END_OF_DIRECTORY_SIZE + (data.getShort(i + 20) & 0xffff) == data.limit()) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static final class Entry {
+
+    private final int method;
+    private final int compressedSize;
+    private final int size;
+    private final int headerOffset;
+
+    private Entry(int method, int compressedSize, int size, int headerOffset) {
+      this.method = method;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.headerOffset = headerOffset;
+    }
+
+  }
+
+}
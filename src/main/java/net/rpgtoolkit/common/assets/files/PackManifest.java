@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.files;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Index stored alongside the assets of a packed project, naming the project
+ * file and the asset type of every packed asset so that a runtime can find
+ * what it needs without probing entries.
+ */
+public class PackManifest {
+
+  /**
+   * Name of the manifest entry in a pack.
+   */
+  public static final String NAME = "manifest.json";
+
+  public static final int FORMAT_VERSION = 1;
+
+  private String project;
+  private final Map<String, String> assets = new TreeMap<>();
+
+  public PackManifest() {
+
+  }
+
+  /**
+   * Reads the manifest of a pack.
+   *
+   * @param pack opened pack
+   * @return the manifest, or null if the pack has none
+   * @throws IOException if the manifest is corrupt or of a newer version
+   */
+  public static PackManifest read(PackFile pack) throws IOException {
+    final ByteBuffer buffer = pack.read(NAME);
+    if (buffer == null) {
+      return null;
+    }
+
+    final PackManifest manifest = new PackManifest();
+    try {
+      final JSONObject json = new JSONObject(StandardCharsets.UTF_8.decode(buffer).toString());
+      final int version = json.getInt("version");
+      if (version > FORMAT_VERSION) {
+        throw new IOException("Unsupported pack manifest version " + version);
+      }
+      manifest.setProject(json.optString("project", null));
+      final JSONObject assets = json.getJSONObject("assets");
+      for (String name : assets.keySet()) {
+        manifest.putAsset(name, assets.getString(name));
+      }
+    } catch (JSONException ex) {
+      throw new IOException("Corrupt pack manifest in " + pack.getFile(), ex);
+    }
+    return manifest;
+  }
+
+  /**
+   * Returns the entry name of the project file.
+   *
+   * @return project entry name, or null if not known
+   */
+  public String getProject() {
+    return project;
+  }
+
+  public void setProject(String project) {
+    this.project = project;
+  }
+
+  /**
+   * Returns the packed assets keyed by entry name, sorted by name. Values are
+   * the simple class names of the assets, for example "Board".
+   *
+   * @return asset types by entry name
+   */
+  public Map<String, String> getAssets() {
+    return Collections.unmodifiableMap(assets);
+  }
+
+  /**
+   * Returns the asset type of the entry.
+   *
+   * @param name entry name
+   * @return asset type, or null if the entry is not a packed asset
+   */
+  public String getType(String name) {
+    return assets.get(name);
+  }
+
+  public void putAsset(String name, String type) {
+    assets.put(name, type);
+  }
+
+  /**
+   * Encodes the manifest as stored in a pack.
+   *
+   * @return UTF-8 JSON
+   */
+  public byte[] toBytes() {
+    final JSONObject json = new JSONObject();
+    json.put("version", FORMAT_VERSION);
+    json.put("project", project);
+    final JSONObject entries = new JSONObject();
+    for (Map.Entry<String, String> entry : assets.entrySet()) {
+      entries.put(entry.getKey(), entry.getValue());
+    }
+    json.put("assets", entries);
+    return json.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+}
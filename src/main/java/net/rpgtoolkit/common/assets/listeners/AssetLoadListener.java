@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.listeners;
+
+import java.util.EventListener;
+import net.rpgtoolkit.common.assets.events.AssetLoadEvent;
+
+/**
+ * Implementors of this interface are informed of every asset an
+ * <code>AssetManager</code> loads, for example to trace loading. Both methods
+ * are invoked on the loading thread.
+ */
+public interface AssetLoadListener extends EventListener {
+
+  /**
+   * A serializer is about to read an asset.
+   *
+   * @param e
+   */
+  public void assetLoadStarted(AssetLoadEvent e);
+
+  /**
+   * A serializer has finished reading an asset, successfully or not.
+   *
+   * @param e
+   */
+  public void assetLoadFinished(AssetLoadEvent e);
+
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.metrics;
+
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetSerializer;
+
+/**
+ * Receives measurements from an {@link net.rpgtoolkit.common.assets.AssetManager}
+ * and its cache. Every method has an empty default, so implementations only
+ * override what they record.
+ * <p>
+ * Methods are invoked on the loading threads, and {@link #evicted} while the
+ * cache holds its lock, so implementations must be thread-safe and must not
+ * block.
+ * </p>
+ */
+public interface AssetMetrics {
+
+  /**
+   * Metrics that discard every measurement.
+   */
+  AssetMetrics NONE = new AssetMetrics() {
+  };
+
+  /**
+   * Invoked when a requested asset is served from the cache.
+   *
+   * @param descriptor asset descriptor
+   */
+  default void cacheHit(AssetDescriptor descriptor) {
+  }
+
+  /**
+   * Invoked when a requested asset is not cached, whether a new load is
+   * started or one already in flight is joined.
+   *
+   * @param descriptor asset descriptor
+   */
+  default void cacheMiss(AssetDescriptor descriptor) {
+  }
+
+  /**
+   * Invoked before the serializer starts reading the asset.
+   *
+   * @param descriptor asset descriptor
+   * @param serializer serializer reading the asset
+   */
+  default void loadStarted(AssetDescriptor descriptor, AssetSerializer serializer) {
+  }
+
+  /**
+   * Invoked after the serializer has read the asset.
+   *
+   * @param descriptor asset descriptor
+   * @param serializer serializer that read the asset
+   * @param nanos time spent in the serializer, in nanoseconds
+   * @param bytes size of the asset, or -1 if unknown
+   */
+  default void loadCompleted(AssetDescriptor descriptor, AssetSerializer serializer,
+      long nanos, long bytes) {
+  }
+
+  /**
+   * Invoked when the serializer failed to read the asset.
+   *
+   * @param descriptor asset descriptor
+   * @param serializer serializer that failed
+   * @param nanos time spent in the serializer, in nanoseconds
+   * @param error the failure
+   */
+  default void loadFailed(AssetDescriptor descriptor, AssetSerializer serializer,
+      long nanos, Throwable error) {
+  }
+
+  /**
+   * Invoked when the cache evicts an entry to stay within its capacity.
+   *
+   * @param descriptor descriptor of the evicted entry
+   * @param weight estimated footprint of the evicted entry
+   */
+  default void evicted(AssetDescriptor descriptor, long weight) {
+  }
+
+}
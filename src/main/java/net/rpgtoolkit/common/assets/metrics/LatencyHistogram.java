@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram of durations in nanoseconds. Values are counted in
+ * power of two buckets, so percentiles are accurate to within a factor of two,
+ * while recording is a handful of atomic increments.
+ */
+public class LatencyHistogram {
+
+  private static final int BUCKETS = 64;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder total = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a duration. Negative durations are counted as zero.
+   *
+   * @param nanos duration in nanoseconds
+   */
+  public void record(long nanos) {
+    final long value = Math.max(0, nanos);
+    this.buckets.incrementAndGet(value == 0 ? 0 : BUCKETS - 1 - Long.numberOfLeadingZeros(value));
+    this.count.increment();
+    this.total.add(value);
+    this.max.accumulateAndGet(value, Math::max);
+  }
+
+  public long getCount() {
+    return this.count.sum();
+  }
+
+  /**
+   * Returns the sum of all recorded durations.
+   *
+   * @return total in nanoseconds
+   */
+  public long getTotal() {
+    return this.total.sum();
+  }
+
+  /**
+   * Returns the longest recorded duration.
+   *
+   * @return maximum in nanoseconds
+   */
+  public long getMax() {
+    return this.max.get();
+  }
+
+  /**
+   * Returns the mean of all recorded durations.
+   *
+   * @return mean in nanoseconds, or 0 if nothing was recorded
+   */
+  public double getMean() {
+    final long n = getCount();
+    return n == 0 ? 0 : (double) getTotal() / n;
+  }
+
+  /**
+   * Estimates the duration below which the given fraction of recorded
+   * durations fall, as the upper bound of the bucket holding it.
+   *
+   * @param fraction between 0 and 1, for example 0.99
+   * @return estimated percentile in nanoseconds, or 0 if nothing was recorded
+   */
+  public long getPercentile(double fraction) {
+    if (fraction < 0 || fraction > 1) {
+      throw new IllegalArgumentException("fraction must be between 0 and 1");
+    }
+    long n = 0;
+    final long[] counts = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = this.buckets.get(i);
+      n += counts[i];
+    }
+    if (n == 0) {
+      return 0;
+    }
+    final long rank = Math.max(1, (long) Math.ceil(fraction * n));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        // Bucket i holds [2^i, 2^(i+1)), the last bound overflows to MAX_VALUE.
+        return Math.min((2L << i) - 1, getMax());
+      }
+    }
+    return getMax();
+  }
+
+  /**
+   * Discards every recorded duration.
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      this.buckets.set(i, 0);
+    }
+    this.count.reset();
+    this.total.reset();
+    this.max.set(0);
+  }
+
+}
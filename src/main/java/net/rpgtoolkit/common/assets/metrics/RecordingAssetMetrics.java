@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetSerializer;
+
+/**
+ * Keeps running counters of every measurement and a latency histogram per
+ * serializer type, suitable for periodic polling by a monitoring tool.
+ */
+public class RecordingAssetMetrics implements AssetMetrics {
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder loads = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder bytesRead = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final ConcurrentHashMap<Class<?>, LatencyHistogram> latencies =
+      new ConcurrentHashMap<>();
+
+  @Override
+  public void cacheHit(AssetDescriptor descriptor) {
+    this.hits.increment();
+  }
+
+  @Override
+  public void cacheMiss(AssetDescriptor descriptor) {
+    this.misses.increment();
+  }
+
+  @Override
+  public void loadStarted(AssetDescriptor descriptor, AssetSerializer serializer) {
+    this.inFlight.incrementAndGet();
+  }
+
+  @Override
+  public void loadCompleted(AssetDescriptor descriptor, AssetSerializer serializer,
+      long nanos, long bytes) {
+    this.inFlight.decrementAndGet();
+    this.loads.increment();
+    if (bytes > 0) {
+      this.bytesRead.add(bytes);
+    }
+    histogram(serializer).record(nanos);
+  }
+
+  @Override
+  public void loadFailed(AssetDescriptor descriptor, AssetSerializer serializer,
+      long nanos, Throwable error) {
+    this.inFlight.decrementAndGet();
+    this.failures.increment();
+    histogram(serializer).record(nanos);
+  }
+
+  @Override
+  public void evicted(AssetDescriptor descriptor, long weight) {
+    this.evictions.increment();
+  }
+
+  public long getHitCount() {
+    return this.hits.sum();
+  }
+
+  public long getMissCount() {
+    return this.misses.sum();
+  }
+
+  /**
+   * Returns the fraction of requests served from the cache.
+   *
+   * @return hit ratio between 0 and 1, or 0 if nothing was requested
+   */
+  public double getHitRatio() {
+    final long h = getHitCount();
+    final long total = h + getMissCount();
+    return total == 0 ? 0 : (double) h / total;
+  }
+
+  public long getLoadCount() {
+    return this.loads.sum();
+  }
+
+  public long getFailureCount() {
+    return this.failures.sum();
+  }
+
+  /**
+   * Returns the total size of the assets loaded, as reported by their
+   * handles.
+   *
+   * @return bytes read
+   */
+  public long getBytesRead() {
+    return this.bytesRead.sum();
+  }
+
+  public long getEvictionCount() {
+    return this.evictions.sum();
+  }
+
+  /**
+   * Returns the number of loads currently inside a serializer.
+   *
+   * @return loads in flight
+   */
+  public int getInFlightCount() {
+    return this.inFlight.get();
+  }
+
+  /**
+   * Gets the latency histogram of the serializer type, covering successful
+   * and failed loads.
+   *
+   * @param type serializer type
+   * @return histogram, or null if the type has not loaded anything
+   */
+  public LatencyHistogram getLatency(Class<? extends AssetSerializer> type) {
+    return this.latencies.get(type);
+  }
+
+  /**
+   * Returns the latency histograms of every serializer type that has loaded
+   * something.
+   *
+   * @return histograms keyed by serializer type
+   */
+  public Map<Class<?>, LatencyHistogram> getLatencies() {
+    return Collections.unmodifiableMap(new HashMap<>(this.latencies));
+  }
+
+  /**
+   * Resets every counter and histogram. Loads in flight are still tracked.
+   */
+  public void reset() {
+    this.hits.reset();
+    this.misses.reset();
+    this.loads.reset();
+    this.failures.reset();
+    this.bytesRead.reset();
+    this.evictions.reset();
+    this.latencies.clear();
+  }
+
+  private LatencyHistogram histogram(AssetSerializer serializer) {
+    return this.latencies.computeIfAbsent(serializer.getClass(), k -> new LatencyHistogram());
+  }
+
+}
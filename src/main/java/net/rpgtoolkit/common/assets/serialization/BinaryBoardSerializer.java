@@ -0,0 +1,879 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.serialization;
+
+import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.rpgtoolkit.common.assets.AbstractAssetSerializer;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetException;
+import net.rpgtoolkit.common.assets.AssetHandle;
+import net.rpgtoolkit.common.assets.AssetManager;
+import net.rpgtoolkit.common.assets.AssetPrefetcher;
+import net.rpgtoolkit.common.assets.Board;
+import net.rpgtoolkit.common.assets.BoardLayer;
+import net.rpgtoolkit.common.assets.BoardSprite;
+import net.rpgtoolkit.common.assets.BoardVector;
+import net.rpgtoolkit.common.assets.BoardVectorType;
+import net.rpgtoolkit.common.assets.ChunkSource;
+import net.rpgtoolkit.common.assets.ChunkedTileGrid;
+import net.rpgtoolkit.common.assets.DenseTileGrid;
+import net.rpgtoolkit.common.assets.Event;
+import net.rpgtoolkit.common.assets.EventType;
+import net.rpgtoolkit.common.assets.StartingPosition;
+import net.rpgtoolkit.common.assets.TileGrid;
+import net.rpgtoolkit.common.assets.TileSet;
+import net.rpgtoolkit.common.io.ByteBufferChannel;
+import net.rpgtoolkit.common.io.Paths;
+import net.rpgtoolkit.common.utilities.CoreProperties;
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * Stores boards in a compact little-endian binary format.
+ * <p>
+ * Each layer's tiles are kept as a packed int array that is read in bulk with
+ * positional reads, so loading a board involves no text parsing. The file is
+ * never memory-mapped: a mapping outlives the load until it is garbage
+ * collected, and on Windows a mapped file cannot be truncated or replaced
+ * when the board is saved. A cell
+ * uses the same encoding as {@link BoardLayer}, with the tile set index
+ * referring to the tile set table in the header. Layout:
+ * </p>
+ * <pre>
+ * header   magic, version, width, height, tileWidth, tileHeight,
+ *          layer count, tile set count, objects offset (long)
+ *          name, first run program, background music, starting position
+ *          tile set names
+ *          per layer: name, offset of its tile grid (long)
+ * grids    per layer: width * height ints, 4 byte aligned
+ * objects  per layer: vectors, sprites
+ * </pre>
+ * <p>
+ * Vectors and sprites are stored after the tile grids so that the grids stay
+ * at fixed offsets while objects are added or removed. Strings are stored as a
+ * byte length followed by UTF-8 bytes, a length of -1 denotes null. Version 1
+ * files, which are still read, store the offsets as ints.
+ * </p>
+ * <p>
+ * Files whose layers are larger than the chunked threshold are loaded as
+ * chunked boards, their layers read chunks straight from the file as they are
+ * needed instead of loading the whole grid.
+ * </p>
+ */
+public class BinaryBoardSerializer extends AbstractAssetSerializer {
+
+    public static final int MAGIC = 0x44425452; // "RTBD"
+    public static final int FILE_FORMAT_VERSION = 2;
+
+    /**
+     * Number of cells per layer above which boards are loaded chunked.
+     */
+    public static final long DEFAULT_CHUNKED_THRESHOLD = 2048 * 2048;
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final int OBJECTS_OFFSET_POSITION = 32;
+    // Bytes read for the header at first, grown until it fits.
+    private static final int HEADER_READ = 4096;
+
+    private final long chunkedThreshold;
+
+    public BinaryBoardSerializer() {
+        this(DEFAULT_CHUNKED_THRESHOLD);
+    }
+
+    /**
+     * Creates a serializer that loads boards chunked once a layer has more
+     * than the specified number of cells.
+     *
+     * @param chunkedThreshold cells per layer, Long.MAX_VALUE to never chunk
+     */
+    public BinaryBoardSerializer(long chunkedThreshold) {
+        this.chunkedThreshold = chunkedThreshold;
+    }
+
+    @Override
+    public boolean serializable(AssetDescriptor descriptor) {
+        final String ext = Paths.extension(descriptor.getURI());
+        return (ext.equals(CoreProperties.getFullExtension("toolkit.board.extension.binary")));
+    }
+
+    @Override
+    public boolean deserializable(AssetDescriptor descriptor) {
+        return serializable(descriptor);
+    }
+
+    @Override
+    public Set<String> extensions() {
+        return Collections.singleton(CoreProperties.getFullExtension("toolkit.board.extension.binary"));
+    }
+
+    @Override
+    public void serialize(AssetHandle handle) throws IOException, AssetException {
+        final Board board = (Board) handle.getAsset();
+        board.indexTileSets();
+        final List<String> tileSetNames = new ArrayList<>(board.getTileSets().keySet());
+        final int[][] tileSetIds = getFileTileSetIds(board, tileSetNames);
+        final long[] gridOffsets = new long[board.getLayers().size()];
+        final ByteBuffer header = encodeHeader(board, tileSetNames, gridOffsets);
+        final Encoder out = new Encoder(4096);
+        encodeObjects(out, board);
+        final ByteBuffer objects = out.finish();
+
+        final Path path = getPath(handle.getDescriptor());
+        if (!patch(handle, board, header, objects.duplicate(), tileSetIds, gridOffsets)) {
+            if (path != null && isChunkSource(board, path)) {
+                // Chunked layers still read from the file while it is written,
+                // so it is written aside and only replaced once complete.
+                final Path temporary = Files.createTempFile(
+                        path.toAbsolutePath().getParent(), "board", ".tmp");
+                try {
+                    try (final FileChannel channel = FileChannel.open(temporary,
+                            StandardOpenOption.WRITE)) {
+                        writeBoard(channel, board, header, objects, tileSetIds);
+                    }
+                    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(temporary);
+                }
+            } else {
+                try (final WritableByteChannel channel = handle.write()) {
+                    writeBoard(channel, board, header, objects, tileSetIds);
+                }
+            }
+        }
+
+        // Chunked layers loaded from this file now have to read from the new
+        // grids, their modified chunks have been saved.
+        for (int i = 0; i < gridOffsets.length; i++) {
+            final BoardLayer layer = board.getLayers().get(i);
+            if (!(layer.getTileGrid() instanceof ChunkedTileGrid)) {
+                continue;
+            }
+            final ChunkedTileGrid grid = (ChunkedTileGrid) layer.getTileGrid();
+            if (!(grid.getSource() instanceof BinaryChunkSource)) {
+                continue;
+            }
+            final BinaryChunkSource source = (BinaryChunkSource) grid.getSource();
+            if (source.getPath().equals(path)) {
+                source.relocate(gridOffsets[i], getLayerTileSetIds(board, layer));
+                grid.markSaved();
+            }
+        }
+        if (handle.getDescriptor().equals(board.getDescriptor())) {
+            board.markSaved();
+        }
+    }
+
+    /**
+     * Saves only what changed into the file the board was loaded from, when
+     * the file's header, and so the position of every tile grid, is still
+     * the same. Changed tile rows are written in place and the objects
+     * section, which is small, is rewritten and the file truncated after it.
+     *
+     * @return true if the file was patched, false if it has to be rewritten
+     */
+    private boolean patch(AssetHandle handle, Board board, ByteBuffer header, ByteBuffer objects,
+            int[][] tileSetIds, long[] gridOffsets) throws IOException, AssetException {
+        final Path path = getPath(handle.getDescriptor());
+        if (path == null || !handle.getDescriptor().equals(board.getDescriptor())
+                || !Files.isRegularFile(path)) {
+            return false;
+        }
+
+        final List<BoardLayer> layers = board.getLayers();
+        final int width = board.getWidth();
+        final long objectsOffset = header.getLong(OBJECTS_OFFSET_POSITION);
+        try (final FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < objectsOffset) {
+                return false;
+            }
+            final ByteBuffer existing = ByteBuffer.allocate(header.remaining());
+            while (existing.hasRemaining()) {
+                if (channel.read(existing, existing.position()) < 0) {
+                    return false;
+                }
+            }
+            existing.flip();
+            if (!existing.equals(header)) {
+                return false;
+            }
+
+            final ByteBuffer row = ByteBuffer.allocate(width * 4).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < layers.size(); i++) {
+                final BoardLayer layer = layers.get(i);
+                final TileGrid grid = layer.getTileGrid();
+                for (int y = layer.nextDirtyRow(0); y >= 0; y = layer.nextDirtyRow(y + 1)) {
+                    row.clear();
+                    for (int x = 0; x < width; x++) {
+                        row.putInt(toFileCell(grid.getCell(x, y), tileSetIds[i]));
+                    }
+                    row.flip();
+                    write(channel, row, gridOffsets[i] + (long) y * width * 4);
+                }
+            }
+
+            write(channel, objects, objectsOffset);
+            channel.truncate(objectsOffset + objects.limit());
+        }
+        return true;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * Writes the whole file. The tile grids are written a band of chunk rows
+     * at a time, so that neither the file nor a chunked layer has to be held
+     * in memory at once.
+     */
+    private static void writeBoard(WritableByteChannel channel, Board board, ByteBuffer header,
+            ByteBuffer objects, int[][] tileSetIds) throws IOException, AssetException {
+        writeFully(channel, header.duplicate());
+
+        final int width = board.getWidth();
+        final int height = board.getHeight();
+        final int size = ChunkedTileGrid.CHUNK_SIZE;
+        final long bandSize = (long) width * Math.min(size, height) * 4;
+        if (bandSize > Integer.MAX_VALUE) {
+            throw new AssetException("Board too wide for a binary board " + board.getDescriptor());
+        }
+        final ByteBuffer band = ByteBuffer.allocate((int) bandSize).order(ByteOrder.LITTLE_ENDIAN);
+
+        final List<BoardLayer> layers = board.getLayers();
+        for (int i = 0; i < layers.size(); i++) {
+            final TileGrid grid = layers.get(i).getTileGrid();
+            final int[] ids = tileSetIds[i];
+            for (int top = 0; top < height; top += size) {
+                final int rows = Math.min(size, height - top);
+                band.clear();
+                band.limit(rows * width * 4);
+                if (grid instanceof ChunkedTileGrid) {
+                    // Chunk by chunk, each chunk of the band is read once.
+                    final ChunkedTileGrid chunked = (ChunkedTileGrid) grid;
+                    for (int left = 0; left < width; left += size) {
+                        final int[] cells = chunked.readChunk(left / size, top / size);
+                        final int columns = Math.min(size, width - left);
+                        for (int y = 0; y < rows; y++) {
+                            for (int x = 0; x < columns; x++) {
+                                band.putInt((y * width + left + x) * 4,
+                                        toFileCell(cells[y * size + x], ids));
+                            }
+                        }
+                    }
+                } else {
+                    for (int y = 0; y < rows; y++) {
+                        for (int x = 0; x < width; x++) {
+                            band.putInt(toFileCell(grid.getCell(x, top + y), ids));
+                        }
+                    }
+                }
+                band.position(0);
+                writeFully(channel, band);
+            }
+        }
+
+        writeFully(channel, objects.duplicate());
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Determines if a chunked layer of the board reads its chunks from the
+     * file.
+     */
+    private static boolean isChunkSource(Board board, Path path) {
+        for (BoardLayer layer : board.getLayers()) {
+            if (layer.getTileGrid() instanceof ChunkedTileGrid) {
+                final ChunkSource source = ((ChunkedTileGrid) layer.getTileGrid()).getSource();
+                if (source instanceof BinaryChunkSource
+                        && ((BinaryChunkSource) source).getPath().equals(path)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void deserialize(AssetHandle handle) throws IOException, AssetException {
+        try (final ReadableByteChannel channel = handle.read()) {
+            final Contents contents = new Contents(channel, handle.size());
+            // Only boards read from a loose file can page their chunks back
+            // in later, packed boards are decoded completely.
+            final Path path = channel instanceof FileChannel
+                    ? getPath(handle.getDescriptor()) : null;
+            try {
+                handle.setAsset(decode(handle, path, contents));
+            } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+                throw new AssetException("Truncated binary board " + handle.getDescriptor());
+            }
+        }
+    }
+
+    private Board decode(AssetHandle handle, Path path, Contents contents)
+            throws IOException, AssetException {
+        final AssetDescriptor descriptor = handle.getDescriptor();
+        // The header is followed by the grids, read separately below.
+        final ByteBuffer buffer = readHeader(contents);
+
+        if (buffer.getInt() != MAGIC) {
+            throw new AssetException("Not a binary board " + descriptor);
+        }
+        final int version = buffer.getInt();
+        if (version != 1 && version != FILE_FORMAT_VERSION) {
+            throw new AssetException("Unsupported binary board version " + version);
+        }
+
+        final Board board = new Board(descriptor);
+        board.setAssetManager(handle.getAssetManager());
+        board.setWidth(buffer.getInt());
+        board.setHeight(buffer.getInt());
+        board.setTileWidth(buffer.getInt());
+        board.setTileHeight(buffer.getInt());
+        final int layerCount = buffer.getInt();
+        final int tileSetCount = buffer.getInt();
+        // Version 1 files store offsets as ints.
+        final long objectsOffset = version == 1 ? buffer.getInt() : buffer.getLong();
+
+        board.setName(getString(buffer));
+        board.setFirstRunProgram(getString(buffer));
+        board.setBackgroundMusic(getString(buffer));
+        board.setStartingPosition(new StartingPosition(
+                buffer.getInt(), buffer.getInt(), buffer.getInt()));
+
+        final TileSet[] tileSets = new TileSet[tileSetCount];
+        final Map<String, TileSet> tileSetMap = new LinkedHashMap<>();
+        for (int i = 0; i < tileSetCount; i++) {
+            final TileSet tileSet = new TileSet();
+            tileSet.setName(getString(buffer));
+            tileSets[i] = tileSet;
+            tileSetMap.put(tileSet.getName(), tileSet);
+        }
+        board.setTileSets(tileSetMap);
+
+        final String[] layerNames = new String[layerCount];
+        final long[] gridOffsets = new long[layerCount];
+        for (int i = 0; i < layerCount; i++) {
+            layerNames[i] = getString(buffer);
+            gridOffsets[i] = version == 1 ? buffer.getInt() : buffer.getLong();
+        }
+
+        // Objects come last in the file but the sprite item names are needed
+        // first, so that their loads overlap with creating the tiles.
+        final ByteBuffer objects = contents.region(objectsOffset, contents.size() - objectsOffset);
+        final List<List<BoardVector>> vectors = new ArrayList<>(layerCount);
+        final List<List<BoardSprite>> sprites = new ArrayList<>(layerCount);
+        final List<List<String>> spriteNames = new ArrayList<>(layerCount);
+        final Set<String> spriteFiles = new LinkedHashSet<>();
+        for (int i = 0; i < layerCount; i++) {
+            vectors.add(getVectors(objects, i));
+
+            final int spriteCount = objects.getInt();
+            final List<BoardSprite> layerSprites = new ArrayList<>(spriteCount);
+            final List<String> layerSpriteNames = new ArrayList<>(spriteCount);
+            for (int j = 0; j < spriteCount; j++) {
+                final String fileName = getString(objects);
+                final BoardSprite sprite = new BoardSprite();
+                sprite.setX(objects.getInt());
+                sprite.setY(objects.getInt());
+                sprite.setLayer(objects.getInt());
+                final String eventType = getString(objects);
+                if (eventType != null) {
+                    sprite.setEventType(EventType.valueOf(eventType));
+                }
+                sprite.setEventProgram(getString(objects));
+                sprite.setThread(getString(objects));
+
+                layerSprites.add(sprite);
+                layerSpriteNames.add(fileName);
+                if (fileName != null) {
+                    spriteFiles.add(fileName);
+                }
+            }
+            sprites.add(layerSprites);
+            spriteNames.add(layerSpriteNames);
+        }
+        board.setPrefetch(new AssetPrefetcher(board.getAssetManager())
+                .prefetch(board, spriteFiles));
+
+        // Layers use the tile set table as their tile set ids, so the cells
+        // are used as they are stored.
+        final int width = board.getWidth();
+        final int height = board.getHeight();
+        board.setChunked(path != null && (long) width * height > chunkedThreshold);
+
+        final LinkedList<BoardLayer> layers = new LinkedList<>();
+        for (int i = 0; i < layerCount; i++) {
+            final TileGrid grid;
+            if (board.isChunked()) {
+                grid = new ChunkedTileGrid(width, height,
+                        new BinaryChunkSource(path, gridOffsets[i], width, height, null));
+            } else {
+                final long gridSize = (long) width * height * 4;
+                if (gridSize > Integer.MAX_VALUE) {
+                    throw new AssetException("Board too large to load without chunking " + descriptor);
+                }
+                final int[] cells = new int[width * height];
+                contents.region(gridOffsets[i], gridSize).asIntBuffer().get(cells);
+                checkCells(cells, tileSetCount);
+                grid = new DenseTileGrid(width, height, cells);
+            }
+
+            final BoardLayer layer = new BoardLayer(board, grid, Arrays.asList(tileSets));
+            layer.setName(layerNames[i]);
+            layer.setNumber(i);
+
+            layer.setVectors(new ArrayList<>(vectors.get(i)));
+
+            // Setting the file name loads the sprite's item, which joins the
+            // prefetch started above.
+            final List<BoardSprite> layerSprites = sprites.get(i);
+            for (int j = 0; j < layerSprites.size(); j++) {
+                final BoardSprite sprite = layerSprites.get(j);
+                final String fileName = spriteNames.get(i).get(j);
+                if (fileName != null) {
+                    sprite.setFileName(fileName, board.getAssetManager());
+                }
+                layer.getSprites().add(sprite);
+            }
+
+            layers.add(layer);
+        }
+        board.setLayers(layers);
+        board.markSaved();
+
+        return board;
+    }
+
+    /**
+     * Checks that every cell refers to a tile set of the table. The tile index
+     * is not checked here, the tile sets are only names until they are
+     * loaded; an index past the end of its tile set resolves to a placeholder
+     * tile, see {@link TileSet#lookupTile(int)}.
+     */
+    private static void checkCells(int[] cells, int tileSetCount) throws AssetException {
+        for (final int cell : cells) {
+            final int tileSet = cell >>> 16;
+            if (tileSet > tileSetCount) {
+                throw new AssetException("Invalid tile set index " + (tileSet - 1));
+            }
+            if (tileSet == 0 && cell != BoardLayer.BLANK_CELL) {
+                throw new AssetException("Tile index without a tile set " + cell);
+            }
+        }
+    }
+
+    /**
+     * Reads the header, which has no stored length: a prefix of the file is
+     * read and grown until the header fits in it.
+     */
+    private static ByteBuffer readHeader(Contents contents) throws IOException {
+        final long limit = Math.min(contents.size(), Integer.MAX_VALUE);
+        long length = Math.min(limit, HEADER_READ);
+        while (true) {
+            final ByteBuffer buffer = contents.region(0, length);
+            try {
+                skipHeader(buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN));
+                return buffer;
+            } catch (BufferUnderflowException ex) {
+                if (length == limit) {
+                    throw ex;
+                }
+                length = Math.min(limit, length * 4);
+            }
+        }
+    }
+
+    /**
+     * Moves past the header without decoding it.
+     */
+    private static void skipHeader(ByteBuffer buffer) {
+        buffer.getInt();
+        final int version = buffer.getInt();
+        skip(buffer, 16);
+        final int layerCount = buffer.getInt();
+        final int tileSetCount = buffer.getInt();
+        final int offsetBytes = version == 1 ? 4 : 8;
+        skip(buffer, offsetBytes);
+        for (int i = 0; i < 3; i++) {
+            skipString(buffer);
+        }
+        skip(buffer, 12);
+        for (int i = 0; i < tileSetCount; i++) {
+            skipString(buffer);
+        }
+        for (int i = 0; i < layerCount; i++) {
+            skipString(buffer);
+            skip(buffer, offsetBytes);
+        }
+    }
+
+    private static void skipString(ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length > 0) {
+            skip(buffer, length);
+        }
+    }
+
+    private static void skip(ByteBuffer buffer, int length) {
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        buffer.position(buffer.position() + length);
+    }
+
+    /**
+     * Maps each entry of the tile set table to the layer's tile set id for the
+     * same tile set, or -1 if the layer does not use it.
+     */
+    private static int[] getLayerTileSetIds(Board board, BoardLayer layer) {
+        final List<TileSet> layerTileSets = layer.getTileSets();
+        final int[] ids = new int[board.getTileSets().size()];
+        Arrays.fill(ids, -1);
+        for (int j = 0; j < layerTileSets.size(); j++) {
+            final int id = board.getTileSetId(layerTileSets.get(j));
+            if (id >= 0 && ids[id] < 0) {
+                ids[id] = j;
+            }
+        }
+        return ids;
+    }
+
+    private ArrayList<BoardVector> getVectors(ByteBuffer buffer, int layer) {
+        final int count = buffer.getInt();
+        final ArrayList<BoardVector> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final BoardVector vector = new BoardVector();
+            vector.setHandle(getString(buffer));
+            final String type = getString(buffer);
+            if (type != null) {
+                vector.setType(BoardVectorType.valueOf(type));
+            }
+            vector.setClosed(buffer.get() != 0);
+
+            final int pointCount = buffer.getInt();
+            final ArrayList<Point> points = new ArrayList<>(pointCount);
+            for (int j = 0; j < pointCount; j++) {
+                points.add(new Point(buffer.getInt(), buffer.getInt()));
+            }
+            vector.setPoints(points);
+
+            final int eventCount = buffer.getInt();
+            final ArrayList<Event> events = new ArrayList<>(eventCount);
+            for (int j = 0; j < eventCount; j++) {
+                events.add(new Event(EventType.valueOf(getString(buffer)), getString(buffer)));
+            }
+            vector.setEvents(events);
+            vector.setLayer(layer);
+
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    /**
+     * Writes the header, with the grid and objects offsets filled in, aligned
+     * to the start of the first tile grid.
+     */
+    private ByteBuffer encodeHeader(Board board, List<String> tileSetNames, long[] gridOffsets) {
+        final List<BoardLayer> layers = board.getLayers();
+        final Encoder out = new Encoder(256);
+
+        out.putInt(MAGIC);
+        out.putInt(FILE_FORMAT_VERSION);
+        out.putInt(board.getWidth());
+        out.putInt(board.getHeight());
+        out.putInt(board.getTileWidth());
+        out.putInt(board.getTileHeight());
+        out.putInt(layers.size());
+        out.putInt(tileSetNames.size());
+        out.putLong(0); // Objects offset, patched below.
+
+        out.putString(board.getName());
+        out.putString(serializePath(board.getFirstRunProgram()));
+        out.putString(serializePath(board.getBackgroundMusic()));
+        out.putInt(board.getStartingPositionX());
+        out.putInt(board.getStartingPositionY());
+        out.putInt(board.getStartingLayer());
+
+        for (String name : tileSetNames) {
+            out.putString(serializePath(name));
+        }
+
+        final int[] gridOffsetPositions = new int[layers.size()];
+        for (int i = 0; i < layers.size(); i++) {
+            out.putString(layers.get(i).getName());
+            gridOffsetPositions[i] = out.position();
+            out.putLong(0); // Grid offset, patched below.
+        }
+        out.align(4);
+
+        final long gridSize = (long) board.getWidth() * board.getHeight() * 4;
+        for (int i = 0; i < layers.size(); i++) {
+            gridOffsets[i] = out.position() + i * gridSize;
+            out.putLong(gridOffsetPositions[i], gridOffsets[i]);
+        }
+        out.putLong(OBJECTS_OFFSET_POSITION, out.position() + layers.size() * gridSize);
+        return out.finish();
+    }
+
+    private void encodeObjects(Encoder out, Board board) {
+        for (BoardLayer layer : board.getLayers()) {
+            out.putInt(layer.getVectors().size());
+            for (BoardVector vector : layer.getVectors()) {
+                putVector(out, vector);
+            }
+
+            out.putInt(layer.getSprites().size());
+            for (BoardSprite sprite : layer.getSprites()) {
+                out.putString(serializePath(sprite.getFileName()));
+                out.putInt(sprite.getX());
+                out.putInt(sprite.getY());
+                out.putInt(sprite.getLayer());
+                out.putString(sprite.getEventType() == null ? null : sprite.getEventType().name());
+                out.putString(serializePath(sprite.getEventProgram()));
+                out.putString(serializePath(sprite.getThread()));
+            }
+        }
+    }
+
+    private void putVector(Encoder out, BoardVector vector) {
+        out.putString(vector.getHandle());
+        out.putString(vector.getType() == null ? null : vector.getType().name());
+        out.putByte(vector.isClosed() ? 1 : 0);
+
+        out.putInt(vector.getPoints().size());
+        for (Point point : vector.getPoints()) {
+            out.putInt(point.x);
+            out.putInt(point.y);
+        }
+
+        out.putInt(vector.getEvents().size());
+        for (Event event : vector.getEvents()) {
+            out.putString(event.getType().name());
+            out.putString(event.getProgram());
+        }
+    }
+
+    /**
+     * Maps the tile set ids of every layer to the entries of the tile set
+     * table, so that cells are converted without looking up tiles.
+     */
+    private static int[][] getFileTileSetIds(Board board, List<String> tileSetNames)
+            throws AssetException {
+        if (tileSetNames.size() > BoardLayer.MAX_TILE_SETS) {
+            throw new AssetException("Too many tile sets for a binary board");
+        }
+
+        final List<BoardLayer> layers = board.getLayers();
+        final int[][] ids = new int[layers.size()][];
+        for (int i = 0; i < ids.length; i++) {
+            final List<TileSet> layerTileSets = layers.get(i).getTileSets();
+            ids[i] = new int[layerTileSets.size()];
+            for (int j = 0; j < ids[i].length; j++) {
+                ids[i][j] = board.getTileSetId(layerTileSets.get(j));
+            }
+        }
+        return ids;
+    }
+
+    private static int toFileCell(int cell, int[] tileSetIds) throws AssetException {
+        if (cell == BoardLayer.BLANK_CELL) {
+            return cell;
+        }
+        final int index = tileSetIds[(cell >>> 16) - 1];
+        if (index < 0) {
+            throw new AssetException("Tile set " + ((cell >>> 16) - 1) + " of the layer"
+                    + " is not used by the board");
+        }
+        return (index + 1) << 16 | (cell & BoardLayer.MAX_TILE_INDEX);
+    }
+
+    private static Path getPath(AssetDescriptor descriptor) {
+        if (!"file".equals(descriptor.getURI().getScheme())) {
+            return null;
+        }
+        return new File(descriptor.getURI()).toPath();
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    private static String serializePath(String path) {
+        // Same as the JSON format, *nix path separators everywhere.
+        return FilenameUtils.separatorsToUnix(path);
+    }
+
+    /**
+     * Contents of a board file. Sections of a file are copied out with
+     * positional reads on their own, so that no single buffer has to span a
+     * file larger than 2 GB and nothing keeps the file mapped.
+     */
+    private static final class Contents {
+
+        private final FileChannel file;
+        private final ByteBuffer buffer;
+        private final long size;
+
+        private Contents(ReadableByteChannel channel, long size) throws IOException {
+            if (channel instanceof FileChannel) {
+                this.file = (FileChannel) channel;
+                this.buffer = null;
+                this.size = file.size();
+            } else {
+                this.file = null;
+                this.buffer = channel instanceof ByteBufferChannel
+                        ? ((ByteBufferChannel) channel).getBuffer() : read(channel, size);
+                this.size = buffer.remaining();
+            }
+        }
+
+        private long size() {
+            return size;
+        }
+
+        private ByteBuffer region(long offset, long length) throws IOException {
+            if (offset < 0 || length < 0 || length > Integer.MAX_VALUE || offset + length > size) {
+                throw new BufferUnderflowException();
+            }
+            final ByteBuffer region;
+            if (file != null) {
+                region = ByteBuffer.allocate((int) length);
+                while (region.hasRemaining()) {
+                    if (file.read(region, offset + region.position()) < 0) {
+                        throw new BufferUnderflowException();
+                    }
+                }
+                region.flip();
+            } else {
+                final ByteBuffer contents = buffer.duplicate();
+                contents.limit((int) (offset + length));
+                contents.position((int) offset);
+                region = contents.slice();
+            }
+            return region.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private static ByteBuffer read(ReadableByteChannel channel, long size) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the buffer is full or the channel ends.
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+    }
+
+    /**
+     * Growable little-endian output buffer.
+     */
+    private static final class Encoder {
+
+        private ByteBuffer buffer;
+
+        private Encoder(int capacity) {
+            buffer = ByteBuffer.allocate(Math.max(capacity, 64)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private int position() {
+            return buffer.position();
+        }
+
+        private void putByte(int value) {
+            ensure(1);
+            buffer.put((byte) value);
+        }
+
+        private void putInt(int value) {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        private void putLong(long value) {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        private void putLong(int index, long value) {
+            buffer.putLong(index, value);
+        }
+
+        private void putString(String value) {
+            if (value == null) {
+                putInt(-1);
+                return;
+            }
+            final byte[] bytes = value.getBytes(CHARSET);
+            putInt(bytes.length);
+            ensure(bytes.length);
+            buffer.put(bytes);
+        }
+
+        private void align(int alignment) {
+            while (buffer.position() % alignment != 0) {
+                putByte(0);
+            }
+        }
+
+        private ByteBuffer finish() {
+            buffer.flip();
+            return buffer;
+        }
+
+        private void ensure(int length) {
+            if (buffer.remaining() >= length) {
+                return;
+            }
+            final int capacity = Math.max(buffer.capacity() * 2, buffer.position() + length);
+            final ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.serialization;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import net.rpgtoolkit.common.assets.BoardLayer;
+import net.rpgtoolkit.common.assets.ChunkSource;
+import net.rpgtoolkit.common.assets.ChunkedTileGrid;
+
+/**
+ * Reads the chunks of one layer directly from its tile grid in a binary board
+ * file. The file is read with positional reads rather than mapped, so that the
+ * board can be saved over the file it was loaded from.
+ */
+final class BinaryChunkSource implements ChunkSource {
+
+    private final Path path;
+    private final int width;
+    private final int height;
+
+    private volatile long gridOffset;
+    private volatile int[] tileSetIds;
+
+    /**
+     * @param path board file
+     * @param gridOffset position of the layer's tile grid in the file
+     * @param width board width
+     * @param height board height
+     * @param tileSetIds layer tile set id for each entry of the file's tile set
+     * table, or null if they are the same
+     */
+    BinaryChunkSource(Path path, long gridOffset, int width, int height, int[] tileSetIds) {
+        this.path = path;
+        this.gridOffset = gridOffset;
+        this.width = width;
+        this.height = height;
+        this.tileSetIds = tileSetIds;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Points the source at the tile grid of the layer after the file has been
+     * rewritten.
+     */
+    synchronized void relocate(long gridOffset, int[] tileSetIds) {
+        this.gridOffset = gridOffset;
+        this.tileSetIds = tileSetIds;
+    }
+
+    @Override
+    public synchronized int[] load(int chunkX, int chunkY) throws IOException {
+        final int size = ChunkedTileGrid.CHUNK_SIZE;
+        final int left = chunkX * size;
+        final int top = chunkY * size;
+        final int columns = Math.min(size, width - left);
+        final int rows = Math.min(size, height - top);
+        if (columns <= 0 || rows <= 0) {
+            return null;
+        }
+
+        final int[] cells = new int[size * size];
+        final ByteBuffer row = ByteBuffer.allocate(columns * 4).order(ByteOrder.LITTLE_ENDIAN);
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (int y = 0; y < rows; y++) {
+                row.clear();
+                final long position = gridOffset + ((long) (top + y) * width + left) * 4;
+                while (row.hasRemaining()) {
+                    if (channel.read(row, position + row.position()) < 0) {
+                        throw new IOException("Truncated binary board " + path);
+                    }
+                }
+                row.flip();
+                for (int x = 0; x < columns; x++) {
+                    cells[y * size + x] = toLayerCell(row.getInt());
+                }
+            }
+        }
+        return cells;
+    }
+
+    private int toLayerCell(int cell) throws IOException {
+        final int[] ids = tileSetIds;
+        if (cell == BoardLayer.BLANK_CELL || ids == null) {
+            return cell;
+        }
+        final int fileId = (cell >>> 16) - 1;
+        if (fileId >= ids.length || ids[fileId] < 0) {
+            throw new IOException("Invalid tile set index " + fileId + " in " + path);
+        }
+        return (ids[fileId] + 1) << 16 | (cell & BoardLayer.MAX_TILE_INDEX);
+    }
+
+}
@@ -7,6 +7,8 @@
  */
 package net.rpgtoolkit.common.assets.serialization;
 
+import java.util.Collections;
+import java.util.Set;
 import net.rpgtoolkit.common.assets.Animation;
 import net.rpgtoolkit.common.assets.AssetDescriptor;
 import net.rpgtoolkit.common.assets.AssetException;
@@ -33,6 +35,11 @@ public class JsonAnimationSerializer extends AbstractJsonSerializer {
         return serializable(descriptor);
     }
 
+    @Override
+    public Set<String> extensions() {
+        return Collections.singleton(CoreProperties.getFullExtension("toolkit.animation.extension.json"));
+    }
+
     @Override
     protected void load(AssetHandle handle, JSONObject json) throws AssetException {
         final Animation animation = new Animation(handle.getDescriptor());
@@ -7,27 +7,39 @@
  */
 package net.rpgtoolkit.common.assets.serialization;
 
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import net.rpgtoolkit.common.assets.AssetDescriptor;
 import net.rpgtoolkit.common.assets.AssetException;
 import net.rpgtoolkit.common.assets.AssetHandle;
+import net.rpgtoolkit.common.assets.AssetManager;
+import net.rpgtoolkit.common.assets.AssetPrefetcher;
 import net.rpgtoolkit.common.assets.Board;
 import net.rpgtoolkit.common.assets.BoardLayer;
 import net.rpgtoolkit.common.assets.BoardSprite;
 import net.rpgtoolkit.common.assets.BoardVector;
+import net.rpgtoolkit.common.assets.DenseTileGrid;
 import net.rpgtoolkit.common.assets.EventType;
+import net.rpgtoolkit.common.io.JsonPullParser;
 import net.rpgtoolkit.common.io.Paths;
 import net.rpgtoolkit.common.utilities.CoreProperties;
 import net.rpgtoolkit.common.assets.StartingPosition;
-import net.rpgtoolkit.common.assets.Tile;
+import net.rpgtoolkit.common.assets.TileGrid;
 import net.rpgtoolkit.common.assets.TileSet;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 /**
@@ -36,6 +48,12 @@ import org.json.JSONObject;
  */
 public class JsonBoardSerializer extends AbstractJsonSerializer {
 
+    private static final String[] REQUIRED_KEYS = {
+        "name", "width", "height", "tileWidth", "tileHeight", "tileSets",
+        "sprites", "layers", "startingPosition", "firstRunProgram",
+        "backgroundMusic"
+    };
+
     @Override
     public boolean serializable(AssetDescriptor descriptor) {
         final String ext = Paths.extension(descriptor.getURI());
@@ -47,10 +65,42 @@ public class JsonBoardSerializer extends AbstractJsonSerializer {
         return serializable(descriptor);
     }
 
+    @Override
+    public Set<String> extensions() {
+        return Collections.singleton(CoreProperties.getFullExtension("toolkit.board.extension.json"));
+    }
+
+    /**
+     * Writes the whole board, JSON has no fixed layout to patch in place. A
+     * board saved back to the file it was loaded from is marked as saved.
+     *
+     * @param handle handle holding the board
+     * @throws IOException if the board could not be written
+     * @throws AssetException if the board could not be encoded
+     */
+    @Override
+    public void serialize(AssetHandle handle) throws IOException, AssetException {
+        super.serialize(handle);
+        final Board board = (Board) handle.getAsset();
+        if (handle.getDescriptor().equals(board.getDescriptor())) {
+            board.markSaved();
+        }
+    }
+
+    @Override
+    public void deserialize(AssetHandle handle) throws IOException, AssetException {
+        try (final ReadableByteChannel channel = handle.read();
+                final JsonPullParser parser = new JsonPullParser(
+                        Channels.newReader(channel, DEFAULT_CHARSET.newDecoder(), -1))) {
+            read(handle, parser);
+        }
+    }
+
     @Override
     protected void load(AssetHandle handle, JSONObject json) throws AssetException {
 
         final Board board = new Board(handle.getDescriptor());
+        board.setAssetManager(handle.getAssetManager());
 
         board.setName(json.getString("name"));
         board.setWidth(json.getInt("width"));
@@ -59,12 +109,19 @@ public class JsonBoardSerializer extends AbstractJsonSerializer {
         board.setTileHeight(json.getInt("tileHeight"));
 
         JSONArray tileSets = json.getJSONArray("tileSets");
-        List<String> tileSetNames = getStringArrayList(tileSets);
         board.setTileSets(getTileSets(tileSets));
 
-        List<BoardSprite> sprites = getSprites(json.getJSONArray("sprites"));
+        board.setFirstRunProgram(json.getString("firstRunProgram"));
+        board.setBackgroundMusic(json.getString("backgroundMusic"));
 
-        board.setLayers(getBoardLayers(json.getJSONArray("layers"), board, tileSetNames, sprites));
+        // Start loading everything the board references before the sprites
+        // are created, their item lookups then join the loads in flight.
+        JSONArray spriteArray = json.getJSONArray("sprites");
+        board.setPrefetch(prefetch(board, spriteArray));
+
+        List<BoardSprite> sprites = getSprites(board, spriteArray);
+
+        board.setLayers(getBoardLayers(json.getJSONArray("layers"), board, sprites));
 
         JSONObject startingPosition = json.getJSONObject("startingPosition");
         board.setStartingPosition(new StartingPosition(
@@ -72,11 +129,7 @@ public class JsonBoardSerializer extends AbstractJsonSerializer {
                 startingPosition.getInt("y"),
                 startingPosition.getInt("layer"))
         );
-
-        board.setFirstRunProgram(json.getString("firstRunProgram"));
-        board.setBackgroundMusic(json.getString("backgroundMusic"));
-
-        board.setBoardDimensions(new int[board.getWidth()][board.getHeight()][board.getLayers().size()]);
+        board.markSaved();
 
         handle.setAsset(board);
 
@@ -87,6 +140,7 @@ public class JsonBoardSerializer extends AbstractJsonSerializer {
         super.store(handle, json);
 
         final Board board = (Board) handle.getAsset();
+        board.indexTileSets();
 
         json.put("name", board.getName());
         json.put("width", board.getWidth());
@@ -97,8 +151,9 @@ public class JsonBoardSerializer extends AbstractJsonSerializer {
         // Serialize TileSets.
         // Stored in LinkedHashMap which the original insertion order.
         final JSONArray tileSets = new JSONArray();
-        for (TileSet tileSet : board.getTileSets().values()) {
-            tileSets.put(serializePath(tileSet.getName()));
+        // By key, loaded tile sets are named without their extension.
+        for (String tileSet : board.getTileSets().keySet()) {
+            tileSets.put(serializePath(tileSet));
         }
         json.put("tileSets", tileSets);
 
@@ -141,37 +196,31 @@ public class JsonBoardSerializer extends AbstractJsonSerializer {
             JSONObject layer = new JSONObject();
             layer.put("name", boardLayer.getName());
 
-            // Tiles.
+            // Tiles, converted straight from the cells. Tile sets the board
+            // does not list are written with index -1.
             int width = board.getWidth();
             int height = board.getHeight();
-            JSONArray tiles = new JSONArray();
-            Tile[][] layerTiles = boardLayer.getTiles();
-
-            int count = width * height;
-            int x = 0;
-            int y = 0;
-            for (int j = 0; j < count; j++) {
-                // Default values for a blank tile.
-                int tileSetIndex = -1;
-                int tileIndex = -1;
-
-                Tile tile = layerTiles[x][y];
-                if (tile.getTileSet() != null) {
-                    tileSetIndex = new ArrayList<>(board.getTileSets().keySet())
-                            .indexOf(tile.getTileSet().getName());
-                    tileIndex = tile.getIndex();
-                }
-
-                String tileIndexer = tileSetIndex + ":" + tileIndex;
-                tiles.put(tileIndexer);
+            TileGrid grid = boardLayer.getTileGrid();
+            List<TileSet> layerTileSets = boardLayer.getTileSets();
+            int[] tileSetIds = new int[layerTileSets.size()];
+            for (int i = 0; i < tileSetIds.length; i++) {
+                tileSetIds[i] = board.getTileSetId(layerTileSets.get(i));
+            }
 
-                x++;
-                if (x == width) {
-                    x = 0;
-                    y++;
-                    if (y == height) {
-                        break;
+            JSONArray tiles = new JSONArray();
+            StringBuilder tileIndexer = new StringBuilder(16);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int cell = grid.getCell(x, y);
+                    tileIndexer.setLength(0);
+                    if (cell == BoardLayer.BLANK_CELL) {
+                        tileIndexer.append("-1:-1");
+                    } else {
+                        tileIndexer.append(tileSetIds[(cell >>> 16) - 1])
+                                .append(':')
+                                .append(cell & BoardLayer.MAX_TILE_INDEX);
                     }
+                    tiles.put(tileIndexer.toString());
                 }
             }
             layer.put("tiles", tiles);
@@ -197,7 +246,8 @@ public class JsonBoardSerializer extends AbstractJsonSerializer {
     }
 
     private Map<String, TileSet> getTileSets(JSONArray array) {
-        Map<String, TileSet> tileSets = new HashMap<>();
+        // Keep the file order, the board's tile set ids are the file indices.
+        Map<String, TileSet> tileSets = new LinkedHashMap<>();
 
         TileSet tileSet;
         int length = array.length();
@@ -212,70 +262,325 @@ public class JsonBoardSerializer extends AbstractJsonSerializer {
         return tileSets;
     }
 
-    private LinkedList<BoardLayer> getBoardLayers(JSONArray array, Board board, List<String> tileSetNames, List<BoardSprite> sprites) {
+    private LinkedList<BoardLayer> getBoardLayers(JSONArray array, Board board, List<BoardSprite> sprites) {
         LinkedList<BoardLayer> layers = new LinkedList<>();
 
-        int width = board.getWidth();
-        int height = board.getHeight();
+        int count = board.getWidth() * board.getHeight();
+        int tileSetCount = board.getTileSets().size();
+        int[] tileIndexer = new int[2];
 
         BoardLayer layer;
         int length = array.length();
         for (int i = 0; i < length; i++) {
             JSONObject object = array.getJSONObject(i);
-            layer = new BoardLayer(board);
-            layer.setName(object.getString("name"));
-            layer.setNumber(i);
 
             // Tiles.
             JSONArray tiles = object.getJSONArray("tiles");
-            int count = width * height;
-            int x = 0;
-            int y = 0;
+            int[] cells = new int[count];
             for (int j = 0; j < count; j++) {
-                String[] tileIndexer = tiles.getString(j).split(":");
-                int tileSetIndex = Integer.parseInt(tileIndexer[0]);
-                int tileIndex = Integer.parseInt(tileIndexer[1]);
-
-                Tile tile = new Tile();
-                if (!(tileSetIndex == -1 && tileIndex == -1)) { // Check for blank tile.
-                    TileSet tileSet = board.getTileSets().get(tileSetNames.get(tileSetIndex));
-                    tile = new Tile(tileSet, tileIndex);
-                }
+                parseTileIndexer(tiles.getString(j), tileIndexer);
+                cells[j] = toCell(tileIndexer[0], tileIndexer[1], tileSetCount);
+            }
+            layer = createLayer(board, cells);
+            layer.setName(object.getString("name"));
+            layer.setNumber(i);
+
+            // Vectors.
+            layer.setVectors(getLayerVectors(object.getJSONArray("vectors"), i));
+
+            layers.add(layer);
+        }
 
-                layer.setTileAt(x, y, tile);
+        addSprites(layers, sprites);
+
+        return layers;
+    }
 
-                x++;
-                if (x == width) {
-                    x = 0;
-                    y++;
-                    if (y == height) {
-                        break;
+    /**
+     * Reads a board directly from the token stream. Layer tiles are packed
+     * into the cells of their <code>BoardLayer</code> as they are read, so the
+     * tile arrays never exist as JSON values. The streaming path needs the board
+     * dimensions and tile sets before the layers; boards that store them later
+     * fall back to materializing the layers first.
+     */
+    private void read(AssetHandle handle, JsonPullParser parser) throws IOException {
+        final Board board = new Board(handle.getDescriptor());
+        board.setAssetManager(handle.getAssetManager());
+        final Set<String> keys = new HashSet<>();
+
+        List<String> tileSetNames = null;
+        JSONArray spriteArray = null;
+        JSONArray bufferedLayers = null;
+        LinkedList<BoardLayer> layers = null;
+        JSONObject startingPosition = null;
+        boolean prefetching = false;
+
+        parser.beginObject();
+        while (parser.hasNext()) {
+            final String key = parser.nextName();
+            keys.add(key);
+            switch (key) {
+                case "name":
+                    board.setName(parser.nextString());
+                    break;
+                case "width":
+                    board.setWidth(parser.nextInt());
+                    break;
+                case "height":
+                    board.setHeight(parser.nextInt());
+                    break;
+                case "tileWidth":
+                    board.setTileWidth(parser.nextInt());
+                    break;
+                case "tileHeight":
+                    board.setTileHeight(parser.nextInt());
+                    break;
+                case "tileSets":
+                    JSONArray tileSets = nextArray(parser, key);
+                    tileSetNames = getStringArrayList(tileSets);
+                    board.setTileSets(getTileSets(tileSets));
+                    break;
+                case "sprites":
+                    spriteArray = nextArray(parser, key);
+                    break;
+                case "layers":
+                    if (keys.contains("width") && keys.contains("height") && tileSetNames != null) {
+                        layers = readLayers(parser, board);
+                    } else {
+                        bufferedLayers = nextArray(parser, key);
                     }
-                }
+                    break;
+                case "startingPosition":
+                    startingPosition = nextObject(parser, key);
+                    break;
+                case "firstRunProgram":
+                    board.setFirstRunProgram(parser.nextString());
+                    break;
+                case "backgroundMusic":
+                    board.setBackgroundMusic(parser.nextString());
+                    break;
+                default:
+                    parser.skipValue();
+                    break;
             }
 
-            // Vectors.
-            JSONArray vectors = object.getJSONArray("vectors");
-            ArrayList<BoardVector> boardVectors = deserializeBoardVectors(vectors);
-            for (BoardVector boardVector : boardVectors) {
-                boardVector.setLayer(i);
+            // Start loading everything the board references as soon as it is
+            // known, the remaining layers are parsed meanwhile.
+            if (!prefetching && tileSetNames != null && spriteArray != null) {
+                board.setPrefetch(prefetch(board, spriteArray));
+                prefetching = true;
             }
-            layer.setVectors(boardVectors);
+        }
+        parser.endObject();
 
-            // Sprites.
-            for (BoardSprite sprite : sprites) {
-                if (sprite.getLayer() == i) {
-                    layer.getSprites().add(sprite);
-                }
+        for (String key : REQUIRED_KEYS) {
+            if (!keys.contains(key)) {
+                throw new JSONException("JSONObject[" + JSONObject.quote(key) + "] not found.");
             }
+        }
 
-            layers.add(layer);
+        List<BoardSprite> sprites = getSprites(board, spriteArray);
+
+        if (layers == null) {
+            layers = getBoardLayers(bufferedLayers, board, sprites);
+        } else {
+            addSprites(layers, sprites);
         }
+        board.setLayers(layers);
+
+        board.setStartingPosition(new StartingPosition(
+                startingPosition.getInt("x"),
+                startingPosition.getInt("y"),
+                startingPosition.getInt("layer"))
+        );
+        board.markSaved();
+
+        handle.setAsset(board);
+    }
+
+    private LinkedList<BoardLayer> readLayers(JsonPullParser parser, Board board) throws IOException {
+        LinkedList<BoardLayer> layers = new LinkedList<>();
+
+        parser.beginArray();
+        int i = 0;
+        while (parser.hasNext()) {
+            layers.add(readLayer(parser, board, i++));
+        }
+        parser.endArray();
 
         return layers;
     }
 
-    private ArrayList<BoardSprite> getSprites(JSONArray array) {
+    private BoardLayer readLayer(JsonPullParser parser, Board board, int number) throws IOException {
+        String name = null;
+        int[] cells = null;
+        ArrayList<BoardVector> vectors = null;
+
+        parser.beginObject();
+        while (parser.hasNext()) {
+            switch (parser.nextName()) {
+                case "name":
+                    name = parser.nextString();
+                    break;
+                case "tiles":
+                    cells = readTiles(parser, board);
+                    break;
+                case "vectors":
+                    vectors = getLayerVectors(nextArray(parser, "vectors"), number);
+                    break;
+                default:
+                    parser.skipValue();
+                    break;
+            }
+        }
+        parser.endObject();
+
+        if (name == null || cells == null || vectors == null) {
+            throw new JSONException("Board layer " + number + " is missing its name, tiles or vectors.");
+        }
+
+        BoardLayer layer = createLayer(board, cells);
+        layer.setName(name);
+        layer.setNumber(number);
+        layer.setVectors(vectors);
+        return layer;
+    }
+
+    private int[] readTiles(JsonPullParser parser, Board board) throws IOException {
+        int count = board.getWidth() * board.getHeight();
+        int tileSetCount = board.getTileSets().size();
+        int[] cells = new int[count];
+        int[] tileIndexer = new int[2];
+
+        int j = 0;
+        parser.beginArray();
+        while (parser.hasNext()) {
+            if (j >= count) {
+                parser.skipValue();
+                continue;
+            }
+
+            parseTileIndexer(parser.nextCharSequence(), tileIndexer);
+            cells[j++] = toCell(tileIndexer[0], tileIndexer[1], tileSetCount);
+        }
+        parser.endArray();
+
+        if (j < count) {
+            throw new JSONException("JSONArray[" + j + "] not found.");
+        }
+        return cells;
+    }
+
+    /**
+     * Creates a layer over cells packed as {@link BoardLayer} stores them,
+     * with the board's tile set table as the layer's tile sets, so that the
+     * cells are used as they are and loading fires no change per cell.
+     */
+    private static BoardLayer createLayer(Board board, int[] cells) {
+        int tileSetCount = board.getTileSets().size();
+        List<TileSet> tileSets = new ArrayList<>(tileSetCount);
+        for (int i = 0; i < tileSetCount; i++) {
+            tileSets.add(board.getTileSet(i));
+        }
+        return new BoardLayer(board, new DenseTileGrid(board.getWidth(), board.getHeight(), cells),
+                tileSets);
+    }
+
+    /**
+     * Packs a "tileSetIndex:tileIndex" pair the way {@link BoardLayer} stores
+     * its cells, using the board's tile set ids as the layer's.
+     */
+    private static int toCell(int tileSetIndex, int tileIndex, int tileSetCount) {
+        if (tileSetIndex == -1 && tileIndex == -1) { // Check for blank tile.
+            return BoardLayer.BLANK_CELL;
+        }
+        if (tileSetIndex < 0 || tileSetIndex >= tileSetCount) {
+            throw new JSONException("Invalid tile set index " + tileSetIndex);
+        }
+        if (tileIndex < 0 || tileIndex > BoardLayer.MAX_TILE_INDEX) {
+            throw new JSONException("Invalid tile index " + tileIndex);
+        }
+        return (tileSetIndex + 1) << 16 | tileIndex;
+    }
+
+    private CompletableFuture<Void> prefetch(Board board, JSONArray spriteArray) {
+        List<String> spriteFiles = new ArrayList<>();
+        for (int i = 0; i < spriteArray.length(); i++) {
+            spriteFiles.add(spriteArray.getJSONObject(i).getString("name"));
+        }
+        return new AssetPrefetcher(board.getAssetManager()).prefetch(board, spriteFiles);
+    }
+
+    private ArrayList<BoardVector> getLayerVectors(JSONArray vectors, int layer) {
+        ArrayList<BoardVector> boardVectors = deserializeBoardVectors(vectors);
+        for (BoardVector boardVector : boardVectors) {
+            boardVector.setLayer(layer);
+        }
+        return boardVectors;
+    }
+
+    private void addSprites(List<BoardLayer> layers, List<BoardSprite> sprites) {
+        for (BoardSprite sprite : sprites) {
+            if (sprite.getLayer() >= 0 && sprite.getLayer() < layers.size()) {
+                layers.get(sprite.getLayer()).getSprites().add(sprite);
+            }
+        }
+    }
+
+    /**
+     * Parses a "tileSetIndex:tileIndex" cell without splitting it into
+     * intermediate strings.
+     */
+    private static void parseTileIndexer(CharSequence value, int[] tileIndexer) {
+        int separator = -1;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) == ':') {
+                separator = i;
+                break;
+            }
+        }
+        if (separator < 0) {
+            throw new NumberFormatException("Invalid tile \"" + value + "\"");
+        }
+        tileIndexer[0] = parseInt(value, 0, separator);
+        tileIndexer[1] = parseInt(value, separator + 1, length);
+    }
+
+    private static int parseInt(CharSequence value, int start, int end) {
+        boolean negative = start < end && value.charAt(start) == '-';
+        int i = negative ? start + 1 : start;
+        if (i == end) {
+            throw new NumberFormatException("Invalid tile \"" + value + "\"");
+        }
+        int result = 0;
+        for (; i < end; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid tile \"" + value + "\"");
+            }
+            result = result * 10 + digit;
+        }
+        return negative ? -result : result;
+    }
+
+    private static JSONArray nextArray(JsonPullParser parser, String key) throws IOException {
+        Object value = parser.nextValue();
+        if (!(value instanceof JSONArray)) {
+            throw new JSONException("JSONObject[" + JSONObject.quote(key) + "] is not a JSONArray.");
+        }
+        return (JSONArray) value;
+    }
+
+    private static JSONObject nextObject(JsonPullParser parser, String key) throws IOException {
+        Object value = parser.nextValue();
+        if (!(value instanceof JSONObject)) {
+            throw new JSONException("JSONObject[" + JSONObject.quote(key) + "] is not a JSONObject.");
+        }
+        return (JSONObject) value;
+    }
+
+    private ArrayList<BoardSprite> getSprites(Board board, JSONArray array) {
         ArrayList<BoardSprite> sprites = new ArrayList<>();
 
         BoardSprite sprite;
@@ -283,7 +588,7 @@ public class JsonBoardSerializer extends AbstractJsonSerializer {
         for (int i = 0; i < length; i++) {
             JSONObject object = array.getJSONObject(i);
             sprite = new BoardSprite();
-            sprite.setFileName(object.getString("name"));
+            sprite.setFileName(object.getString("name"), board.getAssetManager());
 
             JSONObject startingPosition = object.getJSONObject("startingPosition");
             sprite.setX(startingPosition.getInt("x"));
@@ -7,6 +7,8 @@
  */
 package net.rpgtoolkit.common.assets.serialization;
 
+import java.util.Collections;
+import java.util.Set;
 import net.rpgtoolkit.common.assets.AssetDescriptor;
 import net.rpgtoolkit.common.assets.AssetException;
 import net.rpgtoolkit.common.assets.AssetHandle;
@@ -32,6 +34,11 @@ public class JsonItemSerializer extends AbstractSpriteSerializer {
     return serializable(descriptor);
   }
 
+  @Override
+  public Set<String> extensions() {
+    return Collections.singleton(CoreProperties.getFullExtension("toolkit.item.extension.json"));
+  }
+
   @Override
   protected void load(AssetHandle handle, JSONObject json) throws AssetException {
     final Item item = super.load(new Item(handle.getDescriptor()), json);
@@ -7,6 +7,8 @@
  */
 package net.rpgtoolkit.common.assets.serialization;
 
+import java.util.Collections;
+import java.util.Set;
 import net.rpgtoolkit.common.assets.AssetDescriptor;
 import net.rpgtoolkit.common.assets.AssetException;
 import net.rpgtoolkit.common.assets.AssetHandle;
@@ -32,6 +34,11 @@ public class JsonPlayerSerializer extends AbstractSpriteSerializer {
         return serializable(descriptor);
     }
 
+    @Override
+    public Set<String> extensions() {
+        return Collections.singleton(CoreProperties.getFullExtension("toolkit.character.extension.json"));
+    }
+
     @Override
     protected void load(AssetHandle handle, JSONObject json) throws AssetException {
         final Player player = super.load(new Player(handle.getDescriptor()), json);
@@ -8,6 +8,8 @@
 package net.rpgtoolkit.common.assets.serialization;
 
 
+import java.util.Collections;
+import java.util.Set;
 import net.rpgtoolkit.common.assets.AssetDescriptor;
 import net.rpgtoolkit.common.assets.AssetException;
 import net.rpgtoolkit.common.assets.AssetHandle;
@@ -34,6 +36,11 @@ public class JsonProjectSerializer extends AbstractJsonSerializer {
         return serializable(descriptor);
     }
 
+    @Override
+    public Set<String> extensions() {
+        return Collections.singleton(CoreProperties.getFullExtension("toolkit.project.extension.json"));
+    }
+
     @Override
     protected void load(AssetHandle handle, JSONObject json) throws AssetException {
 
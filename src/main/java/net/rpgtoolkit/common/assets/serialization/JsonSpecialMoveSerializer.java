@@ -7,6 +7,8 @@
  */
 package net.rpgtoolkit.common.assets.serialization;
 
+import java.util.Collections;
+import java.util.Set;
 import net.rpgtoolkit.common.assets.AssetDescriptor;
 import net.rpgtoolkit.common.assets.AssetException;
 import net.rpgtoolkit.common.assets.AssetHandle;
@@ -34,6 +36,11 @@ public class JsonSpecialMoveSerializer extends AbstractJsonSerializer {
     return this.serializable(descriptor);
   }
 
+  @Override
+  public Set<String> extensions() {
+    return Collections.singleton(CoreProperties.getFullExtension("toolkit.specialmove.extension.json"));
+  }
+
   @Override
   public void load(AssetHandle handle, JSONObject json) {
 
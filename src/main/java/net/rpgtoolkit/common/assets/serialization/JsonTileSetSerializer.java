@@ -8,7 +8,9 @@
 package net.rpgtoolkit.common.assets.serialization;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import net.rpgtoolkit.common.assets.AssetDescriptor;
 import net.rpgtoolkit.common.assets.AssetException;
 import net.rpgtoolkit.common.assets.AssetHandle;
@@ -33,6 +35,11 @@ public class JsonTileSetSerializer extends AbstractJsonSerializer {
     public boolean deserializable(AssetDescriptor descriptor) {
         return serializable(descriptor);
     }
+
+    @Override
+    public Set<String> extensions() {
+        return Collections.singleton(CoreProperties.getFullExtension("toolkit.tileset.extension.json"));
+    }
     
     @Override
     protected void load(AssetHandle handle, JSONObject json) throws AssetException {
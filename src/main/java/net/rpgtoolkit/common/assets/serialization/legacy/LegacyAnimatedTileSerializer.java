@@ -20,7 +20,9 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import net.rpgtoolkit.common.utilities.CoreProperties;
 
 /**
@@ -49,6 +51,11 @@ public class LegacyAnimatedTileSerializer extends AbstractAssetSerializer {
     return this.serializable(descriptor);
   }
 
+  @Override
+  public Set<String> extensions() {
+    return Collections.singleton(CoreProperties.getFullExtension("toolkit.animatedtile.extension.legacy"));
+  }
+
   @Override
   public void serialize(AssetHandle handle) throws IOException, AssetException {
 
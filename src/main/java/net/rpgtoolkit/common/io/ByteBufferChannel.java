@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.io;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Readable channel over the remaining contents of a buffer. Readers that can
+ * work on a buffer directly may use {@link #getBuffer()} instead of copying
+ * the contents out.
+ */
+public class ByteBufferChannel implements ReadableByteChannel {
+
+  private final ByteBuffer buffer;
+  private boolean open;
+
+  /**
+   * Creates a channel over the buffer's remaining bytes. The buffer's
+   * position and limit are not changed.
+   *
+   * @param buffer contents
+   */
+  public ByteBufferChannel(ByteBuffer buffer) {
+    this.buffer = buffer.duplicate();
+    this.open = true;
+  }
+
+  /**
+   * Returns the bytes not read yet, sharing the channel's storage.
+   *
+   * @return unread contents
+   */
+  public synchronized ByteBuffer getBuffer() {
+    return this.buffer.slice();
+  }
+
+  @Override
+  public synchronized int read(ByteBuffer dst) throws ClosedChannelException {
+    if (!this.open) {
+      throw new ClosedChannelException();
+    }
+    if (!this.buffer.hasRemaining()) {
+      return -1;
+    }
+    final int n = Math.min(dst.remaining(), this.buffer.remaining());
+    final ByteBuffer chunk = this.buffer.duplicate();
+    chunk.limit(chunk.position() + n);
+    dst.put(chunk);
+    this.buffer.position(this.buffer.position() + n);
+    return n;
+  }
+
+  @Override
+  public synchronized boolean isOpen() {
+    return this.open;
+  }
+
+  @Override
+  public synchronized void close() {
+    this.open = false;
+  }
+
+}
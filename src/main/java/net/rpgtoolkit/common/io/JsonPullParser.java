@@ -0,0 +1,495 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Pull parser that reads a JSON document one token at a time, without
+ * building a tree for the whole document.
+ * <p>
+ * Large arrays can be consumed element by element, while small sub-trees may
+ * still be materialized as org.json values with {@link #nextValue()}.
+ * Malformed input is reported with a {@link JSONException}, matching the
+ * behaviour of the org.json parser.
+ * </p>
+ */
+public final class JsonPullParser implements Closeable {
+
+  /**
+   * Kinds of token the parser can be positioned on.
+   */
+  public enum Token {
+
+    BEGIN_OBJECT,
+    END_OBJECT,
+    BEGIN_ARRAY,
+    END_ARRAY,
+    NAME,
+    STRING,
+    NUMBER,
+    BOOLEAN,
+    NULL,
+    END_DOCUMENT
+
+  }
+
+  private static final int EMPTY_DOCUMENT = 0;
+  private static final int NONEMPTY_DOCUMENT = 1;
+  private static final int EMPTY_OBJECT = 2;
+  private static final int NONEMPTY_OBJECT = 3;
+  private static final int DANGLING_NAME = 4;
+  private static final int EMPTY_ARRAY = 5;
+  private static final int NONEMPTY_ARRAY = 6;
+
+  private final Reader reader;
+  private final char[] buffer;
+  private final StringBuilder scratch;
+  private int position;
+  private int limit;
+  private long offset;
+
+  private int[] stack;
+  private int depth;
+  private Token peeked;
+
+  public JsonPullParser(Reader reader) {
+    if (reader == null) {
+      throw new NullPointerException();
+    }
+    this.reader = reader;
+    this.buffer = new char[8192];
+    this.scratch = new StringBuilder();
+    this.stack = new int[32];
+    this.stack[this.depth++] = EMPTY_DOCUMENT;
+  }
+
+  /**
+   * Returns the type of the next token without consuming it.
+   *
+   * @return next token
+   * @throws IOException if the underlying reader fails
+   */
+  public Token peek() throws IOException {
+    if (peeked != null) {
+      return peeked;
+    }
+
+    int c;
+    switch (stack[depth - 1]) {
+      case EMPTY_DOCUMENT:
+        stack[depth - 1] = NONEMPTY_DOCUMENT;
+        return peeked = peekValue();
+      case NONEMPTY_DOCUMENT:
+        if (nextNonWhitespace() != -1) {
+          throw syntaxError("expected end of document");
+        }
+        return peeked = Token.END_DOCUMENT;
+      case EMPTY_ARRAY:
+        stack[depth - 1] = NONEMPTY_ARRAY;
+        c = nextNonWhitespace();
+        if (c == ']') {
+          return peeked = Token.END_ARRAY;
+        } else if (c == -1) {
+          throw syntaxError("unexpected end of document");
+        }
+        position--;
+        return peeked = peekValue();
+      case NONEMPTY_ARRAY:
+        c = nextNonWhitespace();
+        if (c == ']') {
+          return peeked = Token.END_ARRAY;
+        } else if (c != ',') {
+          throw syntaxError("expected ',' or ']'");
+        }
+        return peeked = peekValue();
+      case EMPTY_OBJECT:
+      case NONEMPTY_OBJECT:
+        c = nextNonWhitespace();
+        if (c == '}') {
+          return peeked = Token.END_OBJECT;
+        } else if (c == -1) {
+          throw syntaxError("unexpected end of document");
+        }
+        if (stack[depth - 1] == NONEMPTY_OBJECT) {
+          if (c != ',') {
+            throw syntaxError("expected ',' or '}'");
+          }
+          c = nextNonWhitespace();
+        }
+        if (c != '"') {
+          throw syntaxError("expected a name");
+        }
+        stack[depth - 1] = DANGLING_NAME;
+        return peeked = Token.NAME;
+      case DANGLING_NAME:
+        if (nextNonWhitespace() != ':') {
+          throw syntaxError("expected ':'");
+        }
+        stack[depth - 1] = NONEMPTY_OBJECT;
+        return peeked = peekValue();
+      default:
+        throw new IllegalStateException();
+    }
+  }
+
+  /**
+   * Determines if the current array or object has another element.
+   *
+   * @return true if another element follows
+   * @throws IOException if the underlying reader fails
+   */
+  public boolean hasNext() throws IOException {
+    final Token token = peek();
+    return token != Token.END_OBJECT && token != Token.END_ARRAY
+            && token != Token.END_DOCUMENT;
+  }
+
+  public void beginObject() throws IOException {
+    expect(Token.BEGIN_OBJECT);
+    push(EMPTY_OBJECT);
+  }
+
+  public void endObject() throws IOException {
+    expect(Token.END_OBJECT);
+    depth--;
+  }
+
+  public void beginArray() throws IOException {
+    expect(Token.BEGIN_ARRAY);
+    push(EMPTY_ARRAY);
+  }
+
+  public void endArray() throws IOException {
+    expect(Token.END_ARRAY);
+    depth--;
+  }
+
+  /**
+   * Consumes the next property name.
+   *
+   * @return property name
+   * @throws IOException if the underlying reader fails
+   */
+  public String nextName() throws IOException {
+    expect(Token.NAME);
+    return readQuoted().toString();
+  }
+
+  /**
+   * Consumes the next string value. Numbers are returned in their literal
+   * form.
+   *
+   * @return string value
+   * @throws IOException if the underlying reader fails
+   */
+  public String nextString() throws IOException {
+    return nextCharSequence().toString();
+  }
+
+  /**
+   * Consumes the next string value into a buffer owned by the parser, which
+   * avoids allocating a String for values that are parsed further by the
+   * caller. The returned sequence is only valid until the next call on this
+   * parser.
+   *
+   * @return string value
+   * @throws IOException if the underlying reader fails
+   */
+  public CharSequence nextCharSequence() throws IOException {
+    final Token token = peek();
+    if (token == Token.STRING) {
+      peeked = null;
+      return readQuoted();
+    } else if (token == Token.NUMBER) {
+      peeked = null;
+      return readLiteral();
+    }
+    throw syntaxError("expected a string but was " + token);
+  }
+
+  /**
+   * Consumes the next value as an int. Numeric strings are accepted, as they
+   * are by {@link JSONObject#getInt(String)}.
+   *
+   * @return int value
+   * @throws IOException if the underlying reader fails
+   */
+  public int nextInt() throws IOException {
+    final double value = nextDouble();
+    return (int) value;
+  }
+
+  /**
+   * Consumes the next value as a double. Numeric strings are accepted.
+   *
+   * @return double value
+   * @throws IOException if the underlying reader fails
+   */
+  public double nextDouble() throws IOException {
+    final String literal = nextString();
+    try {
+      return Double.parseDouble(literal);
+    } catch (NumberFormatException ex) {
+      throw syntaxError("expected a number but was '" + literal + "'");
+    }
+  }
+
+  public boolean nextBoolean() throws IOException {
+    expect(Token.BOOLEAN);
+    final String literal = readLiteral().toString();
+    if (literal.equals("true")) {
+      return true;
+    } else if (literal.equals("false")) {
+      return false;
+    }
+    throw syntaxError("expected a boolean but was '" + literal + "'");
+  }
+
+  public void nextNull() throws IOException {
+    expect(Token.NULL);
+    final String literal = readLiteral().toString();
+    if (!literal.equals("null")) {
+      throw syntaxError("expected null but was '" + literal + "'");
+    }
+  }
+
+  /**
+   * Consumes the next value, including any nested arrays or objects.
+   *
+   * @throws IOException if the underlying reader fails
+   */
+  public void skipValue() throws IOException {
+    int nesting = 0;
+    do {
+      switch (peek()) {
+        case BEGIN_OBJECT:
+          beginObject();
+          nesting++;
+          break;
+        case BEGIN_ARRAY:
+          beginArray();
+          nesting++;
+          break;
+        case END_OBJECT:
+          endObject();
+          nesting--;
+          break;
+        case END_ARRAY:
+          endArray();
+          nesting--;
+          break;
+        case NAME:
+          nextName();
+          break;
+        case STRING:
+        case NUMBER:
+          nextCharSequence();
+          break;
+        case BOOLEAN:
+          nextBoolean();
+          break;
+        case NULL:
+          nextNull();
+          break;
+        default:
+          throw syntaxError("unexpected end of document");
+      }
+    } while (nesting > 0);
+  }
+
+  /**
+   * Consumes the next value and materializes it as an org.json value, that is
+   * a {@link JSONObject}, {@link JSONArray}, String, Number, Boolean or
+   * {@link JSONObject#NULL}. Only intended for small sub-trees.
+   *
+   * @return materialized value
+   * @throws IOException if the underlying reader fails
+   */
+  public Object nextValue() throws IOException {
+    switch (peek()) {
+      case BEGIN_OBJECT:
+        final JSONObject object = new JSONObject();
+        beginObject();
+        while (hasNext()) {
+          final String name = nextName();
+          object.put(name, nextValue());
+        }
+        endObject();
+        return object;
+      case BEGIN_ARRAY:
+        final JSONArray array = new JSONArray();
+        beginArray();
+        while (hasNext()) {
+          array.put(nextValue());
+        }
+        endArray();
+        return array;
+      case STRING:
+        return nextString();
+      case NUMBER:
+        return JSONObject.stringToValue(nextString());
+      case BOOLEAN:
+        return nextBoolean();
+      case NULL:
+        nextNull();
+        return JSONObject.NULL;
+      default:
+        throw syntaxError("expected a value but was " + peek());
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+  private Token peekValue() throws IOException {
+    final int c = nextNonWhitespace();
+    switch (c) {
+      case '{':
+        return Token.BEGIN_OBJECT;
+      case '[':
+        return Token.BEGIN_ARRAY;
+      case '"':
+        return Token.STRING;
+      case 't':
+      case 'f':
+        position--;
+        return Token.BOOLEAN;
+      case 'n':
+        position--;
+        return Token.NULL;
+      case -1:
+        throw syntaxError("unexpected end of document");
+      default:
+        if (c == '-' || (c >= '0' && c <= '9')) {
+          position--;
+          return Token.NUMBER;
+        }
+        throw syntaxError("unexpected character '" + (char) c + "'");
+    }
+  }
+
+  private void expect(Token token) throws IOException {
+    final Token actual = peek();
+    if (actual != token) {
+      throw syntaxError("expected " + token + " but was " + actual);
+    }
+    peeked = null;
+  }
+
+  private void push(int state) {
+    if (depth == stack.length) {
+      stack = Arrays.copyOf(stack, depth * 2);
+    }
+    stack[depth++] = state;
+  }
+
+  private int nextNonWhitespace() throws IOException {
+    while (position < limit || fill()) {
+      final char c = buffer[position++];
+      if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+        return c;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Reads the remainder of a quoted string, the opening quote has already been
+   * consumed.
+   */
+  private StringBuilder readQuoted() throws IOException {
+    scratch.setLength(0);
+    while (true) {
+      if (position == limit && !fill()) {
+        throw syntaxError("unterminated string");
+      }
+      final char c = buffer[position++];
+      if (c == '"') {
+        return scratch;
+      } else if (c == '\\') {
+        scratch.append(readEscape());
+      } else {
+        scratch.append(c);
+      }
+    }
+  }
+
+  private char readEscape() throws IOException {
+    if (position == limit && !fill()) {
+      throw syntaxError("unterminated escape sequence");
+    }
+    final char c = buffer[position++];
+    switch (c) {
+      case 'b':
+        return '\b';
+      case 'f':
+        return '\f';
+      case 'n':
+        return '\n';
+      case 'r':
+        return '\r';
+      case 't':
+        return '\t';
+      case 'u':
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+          if (position == limit && !fill()) {
+            throw syntaxError("unterminated escape sequence");
+          }
+          final int digit = Character.digit(buffer[position++], 16);
+          if (digit < 0) {
+            throw syntaxError("invalid unicode escape");
+          }
+          value = (value << 4) | digit;
+        }
+        return (char) value;
+      default:
+        return c;
+    }
+  }
+
+  private StringBuilder readLiteral() throws IOException {
+    scratch.setLength(0);
+    while (position < limit || fill()) {
+      final char c = buffer[position];
+      if (c == ',' || c == ']' || c == '}' || c == ':'
+              || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+        break;
+      }
+      scratch.append(c);
+      position++;
+    }
+    return scratch;
+  }
+
+  private boolean fill() throws IOException {
+    offset += limit;
+    position = 0;
+    limit = 0;
+    final int read = reader.read(buffer, 0, buffer.length);
+    if (read <= 0) {
+      return false;
+    }
+    limit = read;
+    return true;
+  }
+
+  private JSONException syntaxError(String message) {
+    return new JSONException(message + " at character " + (offset + position));
+  }
+
+}
@@ -8,8 +8,6 @@
 package net.rpgtoolkit.common.io;
 
 import java.net.URI;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  *
@@ -17,9 +15,6 @@ import java.util.regex.Pattern;
  */
 public final class Paths {
 
-  private static final Pattern PATH_EXTENSION_PATTERN =
-    Pattern.compile(".*/.*?(\\..*)");
-
   /**
    * Extracts the file extension (if present) from a filesystem path.
    *
@@ -31,17 +26,42 @@ public final class Paths {
   }
 
   /***
-   * Extracts the file extension (if present) from a filesystem path.
+   * Extracts the file extension (if present) from a filesystem path. The
+   * extension starts at the first dot of the last path segment containing
+   * one, so compound extensions such as ".tar.gz" are kept whole.
    *
    * @param path path contents
    * @return String if extension present, empty string otherwise
    */
   public static String extension(String path) {
-    final Matcher m = PATH_EXTENSION_PATTERN.matcher(path);
-    if (m.matches()) {
-      return m.group(1);
+    final int dot = path.lastIndexOf('.');
+    if (dot < 0) {
+      return "";
+    }
+    final int slash = path.lastIndexOf('/', dot);
+    if (slash < 0) {
+      return "";
+    }
+    return path.substring(path.indexOf('.', slash + 1));
+  }
+
+  /***
+   * Extracts the last extension (if present) from the final segment of a
+   * URI path, for example ".board" for "file:///Boards/room.v2.board".
+   *
+   * @param uri file URI
+   * @return last extension including the dot, empty string if not present
+   */
+  public static String lastExtension(final URI uri) {
+    final String path = uri.getPath();
+    if (path == null) {
+      return "";
+    }
+    final int dot = path.lastIndexOf('.');
+    if (dot < 0 || dot < path.lastIndexOf('/')) {
+      return "";
     }
-    return "";
+    return path.substring(dot);
   }
 
   /***
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.rpgtoolkit.common.assets.AbstractSprite;
+import net.rpgtoolkit.common.assets.Animation;
+import net.rpgtoolkit.common.assets.Asset;
+import net.rpgtoolkit.common.assets.Board;
+import net.rpgtoolkit.common.assets.BoardLayer;
+import net.rpgtoolkit.common.assets.BoardSprite;
+import net.rpgtoolkit.common.assets.BoardVector;
+import net.rpgtoolkit.common.assets.Event;
+import net.rpgtoolkit.common.assets.Project;
+import net.rpgtoolkit.common.assets.TileSet;
+
+/**
+ * Lists the files an asset refers to, as paths relative to the project
+ * directory using '/' as separator, for example "Boards/Start.board".
+ */
+public final class AssetReferences {
+
+  private AssetReferences() {
+  }
+
+  /**
+   * Gets the files referred to by the asset. Assets of a type that does not
+   * refer to other files have no references.
+   *
+   * @param asset asset to inspect
+   * @return referenced paths, in the order they appear in the asset
+   */
+  public static List<String> of(Asset asset) {
+    final List<String> references = new ArrayList<>();
+    if (asset instanceof Project) {
+      final Project project = (Project) asset;
+      add(references, "board", project.getInitialBoard());
+      add(references, "character", project.getInitialCharacter());
+      add(references, "program", project.getStartupProgram());
+      add(references, "program", project.getGameOverProgram());
+    } else if (asset instanceof Board) {
+      final Board board = (Board) asset;
+      for (String tileSet : board.getTileSets().keySet()) {
+        add(references, "tileset", tileSet);
+      }
+      add(references, "program", board.getFirstRunProgram());
+      add(references, "media", board.getBackgroundMusic());
+      for (BoardLayer layer : board.getLayers()) {
+        for (BoardVector vector : layer.getVectors()) {
+          for (Event event : vector.getEvents()) {
+            add(references, "program", event.getProgram());
+          }
+        }
+        for (BoardSprite sprite : layer.getSprites()) {
+          add(references, "item", sprite.getFileName());
+          add(references, "program", sprite.getEventProgram());
+        }
+      }
+    } else if (asset instanceof TileSet) {
+      for (String image : ((TileSet) asset).getImages()) {
+        add(references, "bitmap", image);
+      }
+    } else if (asset instanceof AbstractSprite) {
+      for (String animation : ((AbstractSprite) asset).getAnimations().values()) {
+        add(references, "misc", animation);
+      }
+    } else if (asset instanceof Animation) {
+      final Animation animation = (Animation) asset;
+      if (animation.getSpriteSheet() != null) {
+        add(references, "bitmap", animation.getSpriteSheet().getFileName());
+      }
+      add(references, "media", animation.getSoundEffect());
+    }
+    return references;
+  }
+
+  /**
+   * Gets the path of a file in one of the project directories.
+   *
+   * @param directoryKey directory property suffix, such as "tileset"
+   * @param fileName file name relative to that directory
+   * @return path relative to the project directory
+   */
+  public static String path(String directoryKey, String fileName) {
+    return CoreProperties.getProperty("toolkit.directory." + directoryKey)
+        + "/" + fileName.replace('\\', '/');
+  }
+
+  private static void add(List<String> references, String directoryKey, String reference) {
+    if (reference != null && !reference.isEmpty()) {
+      references.add(path(directoryKey, reference));
+    }
+  }
+
+}
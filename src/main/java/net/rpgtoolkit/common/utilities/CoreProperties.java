@@ -11,6 +11,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.rpgtoolkit.common.assets.AbstractAsset;
@@ -33,6 +34,8 @@ public class CoreProperties {
 
   private static final CoreProperties INSTANCE = new CoreProperties();
   private final Properties properties = new Properties();
+  // Properties is synchronized, extensions are looked up on every load.
+  private final ConcurrentHashMap<String, String> extensions = new ConcurrentHashMap<>();
   private String[] directories;
   
   private CoreProperties() {
@@ -61,7 +64,8 @@ public class CoreProperties {
   }
   
     public static String getFullExtension(String key) {
-    return "." + INSTANCE.properties.getProperty(key);
+    return INSTANCE.extensions.computeIfAbsent(key,
+            k -> "." + INSTANCE.properties.getProperty(k));
   }
   
   public static String getProjectsDirectory() {
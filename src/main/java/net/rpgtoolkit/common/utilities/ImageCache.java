@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.utilities;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.imageio.ImageIO;
+import net.rpgtoolkit.common.assets.AssetManager;
+
+/**
+ * Stores decoded images for reuse between sprite sheets, keyed by canonical
+ * file path, so that an image shared by many sprites is only decoded once.
+ * Each {@link AssetManager} context has its own, see
+ * {@link AssetManager#getImageCache()}.
+ * <p>
+ * The estimated memory of the cached images is kept within a budget, the
+ * least recently used images are dropped first. An image that has been
+ * dropped stays valid for whoever holds it, it is only decoded again on the
+ * next request.
+ * </p>
+ * <p>
+ * Cached images are shared and must not be drawn onto. An image is decoded
+ * again when its file has been modified since it was cached.
+ * </p>
+ */
+public class ImageCache {
+
+  public static final long UNBOUNDED = Long.MAX_VALUE;
+  public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+  private static final long PIXEL_BYTES = 4;
+  private static final long MINIMUM_BYTES = 64;
+
+  private final ConcurrentHashMap<String, Entry> images = new ConcurrentHashMap<>();
+
+  // Decoded images, least recently used first. Guarded by this.
+  private final LinkedHashMap<String, Entry> decoded = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long budget;
+  private long usage;
+
+  public ImageCache() {
+    this(DEFAULT_MEMORY_BUDGET);
+  }
+
+  /**
+   * Creates a cache with the specified memory budget.
+   *
+   * @param budget budget in bytes, {@link #UNBOUNDED} to never evict
+   */
+  public ImageCache(long budget) {
+    if (budget < 0) {
+      throw new IllegalArgumentException("budget must be >= 0");
+    }
+    this.budget = budget;
+  }
+
+  /**
+   * Gets the decoded image of the file, decoding it if it is not cached or
+   * has changed. Concurrent requests for the same file share one decode.
+   *
+   * @param file image file
+   * @return decoded image, or null if no registered reader understands the
+   * file
+   * @throws IOException if the file could not be read
+   */
+  public BufferedImage getImage(File file) throws IOException {
+    final String key = file.getCanonicalPath();
+    final long modified = file.lastModified();
+
+    while (true) {
+      Entry entry = images.get(key);
+      if (entry == null || entry.modified != modified) {
+        final Entry created = new Entry(modified);
+        final boolean added = entry == null
+                ? images.putIfAbsent(key, created) == null
+                : images.replace(key, entry, created);
+        if (!added) {
+          continue;
+        }
+        if (entry != null) {
+          forget(key, entry);
+        }
+        entry = created;
+        try {
+          final BufferedImage image = ImageIO.read(file);
+          entry.complete(image, null);
+          admit(key, entry, image);
+        } catch (IOException | RuntimeException ex) {
+          images.remove(key, entry);
+          entry.complete(null, ex);
+        }
+      } else {
+        touch(key);
+      }
+      return entry.await();
+    }
+  }
+
+  /**
+   * Determines if a decoded image of the file is cached.
+   *
+   * @param file image file
+   * @return true if cached
+   * @throws IOException if the canonical path could not be resolved
+   */
+  public boolean contains(File file) throws IOException {
+    return images.containsKey(file.getCanonicalPath());
+  }
+
+  /**
+   * Removes the decoded image of the file from the cache.
+   *
+   * @param file image file
+   * @throws IOException if the canonical path could not be resolved
+   */
+  public void remove(File file) throws IOException {
+    final String key = file.getCanonicalPath();
+    final Entry entry = images.remove(key);
+    if (entry != null) {
+      forget(key, entry);
+    }
+  }
+
+  public synchronized void clear() {
+    images.clear();
+    decoded.clear();
+    usage = 0;
+  }
+
+  public int size() {
+    return images.size();
+  }
+
+  public synchronized long getMemoryBudget() {
+    return budget;
+  }
+
+  /**
+   * Sets the estimated memory the cached images may occupy, dropping images
+   * immediately if the cache no longer fits.
+   *
+   * @param bytes budget in bytes, {@link #UNBOUNDED} to never evict
+   */
+  public synchronized void setMemoryBudget(long bytes) {
+    if (bytes < 0) {
+      throw new IllegalArgumentException("budget must be >= 0");
+    }
+    budget = bytes;
+    trim();
+  }
+
+  /**
+   * Returns the estimated memory of the cached images.
+   *
+   * @return estimate in bytes
+   */
+  public synchronized long getMemoryUsage() {
+    return usage;
+  }
+
+  private synchronized void admit(String key, Entry entry, BufferedImage image) {
+    if (images.get(key) != entry) {
+      return; // Replaced or removed while decoding.
+    }
+    entry.weight = image == null ? MINIMUM_BYTES : Math.max(MINIMUM_BYTES,
+            (long) image.getWidth() * image.getHeight() * PIXEL_BYTES);
+    decoded.put(key, entry);
+    usage += entry.weight;
+    trim();
+  }
+
+  private synchronized void touch(String key) {
+    decoded.get(key);
+  }
+
+  private synchronized void forget(String key, Entry entry) {
+    if (decoded.remove(key, entry)) {
+      usage -= entry.weight;
+    }
+  }
+
+  private void trim() {
+    final Iterator<Map.Entry<String, Entry>> iterator = decoded.entrySet().iterator();
+    while (usage > budget && iterator.hasNext()) {
+      final Map.Entry<String, Entry> next = iterator.next();
+      iterator.remove();
+      images.remove(next.getKey(), next.getValue());
+      usage -= next.getValue().weight;
+    }
+  }
+
+  private static final class Entry {
+
+    private final long modified;
+    private BufferedImage image;
+    private Exception failure;
+    private boolean done;
+    private long weight;
+
+    private Entry(long modified) {
+      this.modified = modified;
+    }
+
+    private synchronized void complete(BufferedImage image, Exception failure) {
+      this.image = image;
+      this.failure = failure;
+      this.done = true;
+      notifyAll();
+    }
+
+    private synchronized BufferedImage await() throws IOException {
+      boolean interrupted = false;
+      while (!done) {
+        try {
+          wait();
+        } catch (InterruptedException ex) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      if (failure instanceof IOException) {
+        throw new IOException(failure.getMessage(), failure);
+      } else if (failure != null) {
+        throw (RuntimeException) failure;
+      }
+      return image;
+    }
+
+  }
+
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.utilities;
+
+import java.io.File;
+import net.rpgtoolkit.common.assets.AssetManager;
+import net.rpgtoolkit.common.assets.files.FileAssetHandleResolver;
+import net.rpgtoolkit.common.assets.serialization.JsonAnimationSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonBoardSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonEnemySerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonItemSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonPlayerSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonProjectSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonTileSetSerializer;
+
+/**
+ * Creates the contexts the project tools use when they are not given one.
+ */
+final class ProjectContexts {
+
+  private ProjectContexts() {
+  }
+
+  /**
+   * Creates a context for the project in the directory with a file resolver
+   * and the JSON serializers registered. The caller owns the context and must
+   * close it.
+   *
+   * @param directory project root
+   * @return new context
+   */
+  static AssetManager create(File directory) {
+    final AssetManager assetManager = new AssetManager(directory, null);
+    assetManager.registerResolver(new FileAssetHandleResolver());
+    assetManager.registerSerializer(new JsonAnimationSerializer());
+    assetManager.registerSerializer(new JsonPlayerSerializer());
+    assetManager.registerSerializer(new JsonBoardSerializer());
+    assetManager.registerSerializer(new JsonProjectSerializer());
+    assetManager.registerSerializer(new JsonEnemySerializer());
+    assetManager.registerSerializer(new JsonItemSerializer());
+    assetManager.registerSerializer(new JsonTileSetSerializer());
+    return assetManager;
+  }
+
+}
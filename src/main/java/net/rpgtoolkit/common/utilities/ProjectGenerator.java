@@ -0,0 +1,575 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.utilities;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import net.rpgtoolkit.common.assets.AbstractSprite;
+import net.rpgtoolkit.common.assets.Animation;
+import net.rpgtoolkit.common.assets.AnimationEnum;
+import net.rpgtoolkit.common.assets.Asset;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetException;
+import net.rpgtoolkit.common.assets.AssetHandle;
+import net.rpgtoolkit.common.assets.AssetManager;
+import net.rpgtoolkit.common.assets.AssetSerializer;
+import net.rpgtoolkit.common.assets.Board;
+import net.rpgtoolkit.common.assets.BoardLayer;
+import net.rpgtoolkit.common.assets.BoardSprite;
+import net.rpgtoolkit.common.assets.BoardVector;
+import net.rpgtoolkit.common.assets.BoardVectorType;
+import net.rpgtoolkit.common.assets.Enemy;
+import net.rpgtoolkit.common.assets.Event;
+import net.rpgtoolkit.common.assets.EventType;
+import net.rpgtoolkit.common.assets.Item;
+import net.rpgtoolkit.common.assets.Player;
+import net.rpgtoolkit.common.assets.Project;
+import net.rpgtoolkit.common.assets.SpriteSheet;
+import net.rpgtoolkit.common.assets.StartingPosition;
+import net.rpgtoolkit.common.assets.TileSet;
+import net.rpgtoolkit.common.assets.files.FileAssetHandle;
+import net.rpgtoolkit.common.assets.serialization.JsonAnimationSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonBoardSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonEnemySerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonItemSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonPlayerSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonProjectSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonTileSetSerializer;
+
+/**
+ * Writes a synthetic project of configurable size, laid out the way
+ * {@link CoreProperties} expects, for load and stress testing. Output is
+ * deterministic for a given seed.
+ * <p>
+ * Board sprites resolve their items through the generator's
+ * {@link AssetManager}, a context for the new project. A context passed to
+ * the generator must have a file resolver and the JSON item and animation
+ * serializers registered.
+ * </p>
+ * <p>
+ * Closing the generator closes the context it created; a context passed to
+ * it is left open.
+ * </p>
+ */
+public class ProjectGenerator implements Closeable {
+
+  private static final int TILE_SIZE = 32;
+  private static final int TILES_PER_ROW = 8;
+  private static final int TILES_PER_SET = TILES_PER_ROW * TILES_PER_ROW;
+  private static final int FRAME_WIDTH = 32;
+  private static final int FRAME_HEIGHT = 48;
+  private static final int FRAME_COUNT = 4;
+
+  private final File directory;
+  private final AssetManager assetManager;
+  private final boolean ownsContext;
+
+  private String name = "Generated";
+  private long seed = 1;
+  private int boardCount = 4;
+  private int boardWidth = 64;
+  private int boardHeight = 64;
+  private int layerCount = 4;
+  private int vectorCount = 32;
+  private int spriteCount = 32;
+  private int tileSetCount = 4;
+  private int itemCount = 8;
+  private int characterCount = 2;
+  private int enemyCount = 8;
+  private int programCount = 8;
+
+  private Random random;
+
+  /**
+   * Creates a generator that writes into the directory, which is created if
+   * it does not exist. Existing files with generated names are overwritten.
+   * Sprites are resolved through a new context for the project, which is
+   * closed with the generator.
+   *
+   * @param directory project root
+   */
+  public ProjectGenerator(File directory) {
+    this(directory, ProjectContexts.create(directory), true);
+  }
+
+  /**
+   * Creates a generator that writes into the directory and resolves sprites
+   * through the context.
+   *
+   * @param directory project root
+   * @param assetManager context for the project in the directory
+   */
+  public ProjectGenerator(File directory, AssetManager assetManager) {
+    this(directory, assetManager, false);
+  }
+
+  private ProjectGenerator(File directory, AssetManager assetManager,
+          boolean ownsContext) {
+    if (directory == null || assetManager == null) {
+      throw new NullPointerException();
+    }
+    this.directory = directory;
+    this.assetManager = assetManager;
+    this.ownsContext = ownsContext;
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  public AssetManager getAssetManager() {
+    return assetManager;
+  }
+
+  /**
+   * Closes the context the generator created, if it created one.
+   */
+  @Override
+  public void close() {
+    if (ownsContext) {
+      assetManager.close();
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  public int getBoardCount() {
+    return boardCount;
+  }
+
+  public void setBoardCount(int boardCount) {
+    this.boardCount = requirePositive(boardCount);
+  }
+
+  public int getBoardWidth() {
+    return boardWidth;
+  }
+
+  /**
+   * Sets the board width in tiles.
+   *
+   * @param boardWidth width in tiles
+   */
+  public void setBoardWidth(int boardWidth) {
+    this.boardWidth = requirePositive(boardWidth);
+  }
+
+  public int getBoardHeight() {
+    return boardHeight;
+  }
+
+  /**
+   * Sets the board height in tiles.
+   *
+   * @param boardHeight height in tiles
+   */
+  public void setBoardHeight(int boardHeight) {
+    this.boardHeight = requirePositive(boardHeight);
+  }
+
+  public int getLayerCount() {
+    return layerCount;
+  }
+
+  public void setLayerCount(int layerCount) {
+    this.layerCount = requirePositive(layerCount);
+  }
+
+  public int getVectorCount() {
+    return vectorCount;
+  }
+
+  /**
+   * Sets the number of vectors on each layer of each board.
+   *
+   * @param vectorCount vectors per layer
+   */
+  public void setVectorCount(int vectorCount) {
+    this.vectorCount = requireNonNegative(vectorCount);
+  }
+
+  public int getSpriteCount() {
+    return spriteCount;
+  }
+
+  /**
+   * Sets the number of sprites on each board, spread across its layers.
+   *
+   * @param spriteCount sprites per board
+   */
+  public void setSpriteCount(int spriteCount) {
+    this.spriteCount = requireNonNegative(spriteCount);
+  }
+
+  public int getTileSetCount() {
+    return tileSetCount;
+  }
+
+  public void setTileSetCount(int tileSetCount) {
+    this.tileSetCount = requirePositive(tileSetCount);
+  }
+
+  public int getItemCount() {
+    return itemCount;
+  }
+
+  public void setItemCount(int itemCount) {
+    this.itemCount = requirePositive(itemCount);
+  }
+
+  public int getCharacterCount() {
+    return characterCount;
+  }
+
+  public void setCharacterCount(int characterCount) {
+    this.characterCount = requirePositive(characterCount);
+  }
+
+  public int getEnemyCount() {
+    return enemyCount;
+  }
+
+  public void setEnemyCount(int enemyCount) {
+    this.enemyCount = requireNonNegative(enemyCount);
+  }
+
+  public int getProgramCount() {
+    return programCount;
+  }
+
+  public void setProgramCount(int programCount) {
+    this.programCount = requirePositive(programCount);
+  }
+
+  /**
+   * Writes the project. Assets are written in dependency order: graphics,
+   * tile sets, animations, programs, sprites, boards and finally the project
+   * file, named after the project.
+   *
+   * @return the generated project
+   * @throws IOException if a file could not be written
+   * @throws AssetException if an asset could not be serialized
+   * @throws IllegalStateException if sprites are requested and items cannot
+   * be loaded through the asset manager
+   */
+  public Project generate() throws IOException, AssetException {
+    random = new Random(seed);
+
+    if (spriteCount > 0 && !assetManager.isDeserializable(
+        new AssetDescriptor(file("item", itemName(0), "item").toURI()))) {
+      throw new IllegalStateException(
+          "item serializer must be registered to generate board sprites");
+    }
+
+    for (String key : new String[]{"bitmap", "board", "character", "enemy",
+      "item", "misc", "program", "tileset"}) {
+      final File folder = new File(directory, CoreProperties.getProperty("toolkit.directory." + key));
+      if (!folder.isDirectory() && !folder.mkdirs()) {
+        throw new IOException("could not create " + folder);
+      }
+    }
+
+    final List<String> tileSets = writeTileSets();
+    final List<String> programs = writePrograms();
+
+    final List<String> items = new ArrayList<>();
+    final JsonItemSerializer itemSerializer = new JsonItemSerializer();
+    for (int i = 0; i < itemCount; i++) {
+      final Item item = new Item(descriptor("item", itemName(i), "item"));
+      item.setDescription("Generated item " + i + ".");
+      items.add(writeSprite(itemSerializer, item, itemName(i)));
+    }
+
+    final List<String> characters = new ArrayList<>();
+    final JsonPlayerSerializer playerSerializer = new JsonPlayerSerializer();
+    for (int i = 0; i < characterCount; i++) {
+      final String characterName = "Character" + i;
+      final Player player = new Player(descriptor("character", characterName, "character"));
+      player.setLevel(1);
+      player.setMaxLevel(99);
+      player.setHealth(100);
+      player.setMaxHealth(100);
+      characters.add(writeSprite(playerSerializer, player, characterName));
+    }
+
+    final JsonEnemySerializer enemySerializer = new JsonEnemySerializer();
+    for (int i = 0; i < enemyCount; i++) {
+      final String enemyName = "Enemy" + i;
+      final Enemy enemy = new Enemy(descriptor("enemy", enemyName, "enemy"));
+      enemy.setLevel(1 + random.nextInt(50));
+      enemy.setHealth(10 + random.nextInt(1000));
+      enemy.setExperienceReward(random.nextInt(500));
+      enemy.setGoldReward(random.nextInt(500));
+      writeSprite(enemySerializer, enemy, enemyName);
+    }
+
+    final List<String> boards = writeBoards(tileSets, items, programs);
+
+    final Project project = new Project(
+        new AssetDescriptor(new File(directory, name + extension("project")).toURI()), name);
+    project.setResolutionWidth(640);
+    project.setResolutionHeight(480);
+    project.setInitialBoard(boards.get(0));
+    project.setInitialCharacter(characters.get(0));
+    project.setStartupProgram(programs.get(0));
+    project.setGameOverProgram(programs.get(programs.size() - 1));
+    write(new JsonProjectSerializer(), project);
+
+    return project;
+  }
+
+  private List<String> writeTileSets() throws IOException, AssetException {
+    final List<String> names = new ArrayList<>();
+    final JsonTileSetSerializer serializer = new JsonTileSetSerializer();
+    for (int i = 0; i < tileSetCount; i++) {
+      final String image = "TileSet" + i + ".png";
+      writeImage(image, TILES_PER_ROW * TILE_SIZE, TILES_PER_ROW * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+
+      final TileSet tileSet = new TileSet(descriptor("tileset", "TileSet" + i, "tileset"),
+          TILE_SIZE, TILE_SIZE);
+      tileSet.setName("TileSet" + i);
+      tileSet.setImages(new ArrayList<>(Collections.singletonList(image)));
+      write(serializer, tileSet);
+      names.add(tileSet.getName() + extension("tileset"));
+    }
+    return names;
+  }
+
+  private List<String> writePrograms() throws IOException {
+    final List<String> names = new ArrayList<>();
+    for (int i = 0; i < programCount; i++) {
+      final String fileName = "Program" + i + ".program";
+      final String source = "// Generated program " + i + ".\n"
+          + "var count = " + random.nextInt(100) + ";\n"
+          + "for (var i = 0; i < count; i++) {\n"
+          + "  rpgcode.log(\"Program" + i + ": \" + i);\n"
+          + "}\n";
+      Files.write(file("program", fileName).toPath(), source.getBytes(StandardCharsets.UTF_8));
+      names.add(fileName);
+    }
+    return names;
+  }
+
+  /**
+   * Writes the sprite with a south facing animation and its sprite sheet.
+   *
+   * @return sprite file name
+   */
+  private String writeSprite(AssetSerializer serializer, AbstractSprite sprite, String spriteName)
+      throws IOException, AssetException {
+    final String sheet = spriteName + "_south.png";
+    writeImage(sheet, FRAME_WIDTH * FRAME_COUNT, FRAME_HEIGHT, FRAME_WIDTH, FRAME_HEIGHT);
+
+    final String animationName = spriteName + "_south";
+    final Animation animation = new Animation(descriptor("misc", animationName, "animation"));
+    animation.setAnimationWidth(FRAME_WIDTH);
+    animation.setAnimationHeight(FRAME_HEIGHT);
+    animation.setFramRate(4);
+    animation.setSpriteSheet(new SpriteSheet(sheet, 0, 0, FRAME_WIDTH, FRAME_HEIGHT));
+    write(new JsonAnimationSerializer(), animation);
+
+    sprite.setName(spriteName);
+    sprite.updateAnimation(AnimationEnum.SOUTH.toString(), animationName + extension("animation"));
+    write(serializer, sprite);
+    return spriteName + CoreProperties.getDefaultExtension(sprite.getClass());
+  }
+
+  private List<String> writeBoards(List<String> tileSets, List<String> items,
+      List<String> programs) throws IOException, AssetException {
+    final List<String> names = new ArrayList<>();
+    final JsonBoardSerializer serializer = new JsonBoardSerializer();
+    final int width = boardWidth * TILE_SIZE;
+    final int height = boardHeight * TILE_SIZE;
+
+    for (int i = 0; i < boardCount; i++) {
+      final String boardName = "Board" + i;
+      final Board board = new Board(descriptor("board", boardName, "board"),
+          boardWidth, boardHeight, TILE_SIZE, TILE_SIZE);
+      board.setAssetManager(assetManager);
+      board.setName(boardName);
+      board.setFirstRunProgram(pick(programs));
+      board.setStartingPosition(new StartingPosition(
+          random.nextInt(width), random.nextInt(height), 0));
+      while (board.getLayers().size() < layerCount) {
+        board.addLayer();
+      }
+
+      // Placeholder sets, as the board serializer only keeps their names.
+      final List<TileSet> palette = new ArrayList<>();
+      for (String tileSetName : tileSets) {
+        final TileSet tileSet = new TileSet(null, TILE_SIZE, TILE_SIZE);
+        tileSet.setName(tileSetName);
+        board.getTileSets().put(tileSetName, tileSet);
+        palette.add(tileSet);
+      }
+
+      for (BoardLayer layer : board.getLayers()) {
+        final int number = layer.getNumber();
+        // Upper layers are sparse, as they are in real boards.
+        final int fill = number == 0 ? 100 : Math.max(10, 60 / number);
+        for (int y = 0; y < boardHeight; y++) {
+          for (int x = 0; x < boardWidth; x++) {
+            if (random.nextInt(100) < fill) {
+              final TileSet tileSet = palette.get(random.nextInt(palette.size()));
+              layer.setTileAt(x, y, tileSet.lookupTile(random.nextInt(TILES_PER_SET)));
+            }
+          }
+        }
+
+        for (int v = 0; v < vectorCount; v++) {
+          layer.addVector(createVector(number, v, width, height, programs));
+        }
+      }
+
+      for (int s = 0; s < spriteCount; s++) {
+        final BoardSprite sprite = new BoardSprite();
+        sprite.setLayer(random.nextInt(layerCount));
+        sprite.setX(random.nextInt(width));
+        sprite.setY(random.nextInt(height));
+        sprite.setEventType(EventType.OVERLAP);
+        sprite.setEventProgram(pick(programs));
+        sprite.setFileName(pick(items), assetManager);
+        board.addSprite(sprite);
+      }
+
+      write(serializer, board);
+      names.add(boardName + extension("board"));
+    }
+    return names;
+  }
+
+  /**
+   * Creates a solid wall, or a passable zone running a program, of a few
+   * tiles in size somewhere on the board.
+   */
+  private BoardVector createVector(int layer, int index, int width, int height,
+      List<String> programs) {
+    final BoardVector vector = new BoardVector();
+    vector.setLayer(layer);
+    vector.setHandle("vector" + layer + "_" + index);
+
+    final int x = random.nextInt(width);
+    final int y = random.nextInt(height);
+    final int w = TILE_SIZE * (1 + random.nextInt(4));
+    final int h = TILE_SIZE * (1 + random.nextInt(4));
+    if (random.nextBoolean()) {
+      vector.setType(BoardVectorType.SOLID);
+      vector.addPoint(x, y);
+      vector.addPoint(Math.min(x + w, width), y);
+      vector.addPoint(Math.min(x + w, width), Math.min(y + h, height));
+      vector.setClosed(random.nextBoolean());
+    } else {
+      vector.setType(BoardVectorType.PASSABLE);
+      vector.addPoint(x, y);
+      vector.addPoint(Math.min(x + w, width), y);
+      vector.addPoint(Math.min(x + w, width), Math.min(y + h, height));
+      vector.addPoint(x, Math.min(y + h, height));
+      vector.setClosed(true);
+      vector.addEvent(new Event(EventType.OVERLAP, pick(programs)));
+    }
+    return vector;
+  }
+
+  /**
+   * Writes a sheet of solid colored cells with a darker border, so tiles
+   * and frames are distinguishable when rendered.
+   */
+  private void writeImage(String fileName, int width, int height, int cellWidth, int cellHeight)
+      throws IOException {
+    final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    final Graphics2D g = image.createGraphics();
+    try {
+      for (int y = 0; y < height; y += cellHeight) {
+        for (int x = 0; x < width; x += cellWidth) {
+          final Color color = new Color(random.nextInt(0x1000000));
+          g.setColor(color.darker());
+          g.fillRect(x, y, cellWidth, cellHeight);
+          g.setColor(color);
+          g.fillRect(x + 1, y + 1, cellWidth - 2, cellHeight - 2);
+        }
+      }
+    } finally {
+      g.dispose();
+    }
+    if (!ImageIO.write(image, "png", file("bitmap", fileName))) {
+      throw new IOException("no png writer available");
+    }
+  }
+
+  private String pick(List<String> names) {
+    return names.get(random.nextInt(names.size()));
+  }
+
+  private static void write(AssetSerializer serializer, Asset asset)
+      throws IOException, AssetException {
+    final AssetHandle handle = new FileAssetHandle(asset.getDescriptor());
+    handle.setAsset(asset);
+    serializer.serialize(handle);
+  }
+
+  private AssetDescriptor descriptor(String directoryKey, String baseName, String type) {
+    return new AssetDescriptor(file(directoryKey, baseName, type).toURI());
+  }
+
+  private File file(String directoryKey, String baseName, String type) {
+    return file(directoryKey, baseName + extension(type));
+  }
+
+  private File file(String directoryKey, String fileName) {
+    return new File(new File(directory,
+        CoreProperties.getProperty("toolkit.directory." + directoryKey)), fileName);
+  }
+
+  private static String extension(String type) {
+    return CoreProperties.getFullExtension("toolkit." + type + ".extension.json");
+  }
+
+  private static String itemName(int index) {
+    return "Item" + index;
+  }
+
+  private static int requirePositive(int value) {
+    if (value < 1) {
+      throw new IllegalArgumentException("must be positive: " + value);
+    }
+    return value;
+  }
+
+  private static int requireNonNegative(int value) {
+    if (value < 0) {
+      throw new IllegalArgumentException("must not be negative: " + value);
+    }
+    return value;
+  }
+
+}
@@ -0,0 +1,335 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.utilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import net.rpgtoolkit.common.assets.Asset;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetException;
+import net.rpgtoolkit.common.assets.AssetHandle;
+import net.rpgtoolkit.common.assets.AssetLoadResult;
+import net.rpgtoolkit.common.assets.AssetManager;
+import net.rpgtoolkit.common.assets.Board;
+import net.rpgtoolkit.common.assets.Project;
+import net.rpgtoolkit.common.assets.files.PackManifest;
+import net.rpgtoolkit.common.assets.serialization.BinaryBoardSerializer;
+import org.json.JSONObject;
+
+/**
+ * Bakes a project directory into a single zip bundle that can be served by a
+ * {@link net.rpgtoolkit.common.assets.files.PackAssetHandleResolver}.
+ * <p>
+ * Every asset is loaded through the packer's {@link AssetManager} first, a
+ * context for the project, and the files its assets refer to are checked to
+ * exist. A context passed to the packer must have a file resolver and the
+ * serializers of the project's assets registered. Boards are converted to the binary board
+ * format, renamed to the binary extension, and the project's initial board
+ * is updated to match. Other files are packed unchanged. A
+ * {@link PackManifest} naming the project file and the type of every asset
+ * is written as the last entry.
+ * </p>
+ * <p>
+ * Entries are stored uncompressed by default, so that a mapped bundle serves
+ * them without copying.
+ * </p>
+ * <p>
+ * Closing the packer closes the context it created; a context passed to it
+ * is left open.
+ * </p>
+ */
+public class ProjectPacker implements Closeable {
+
+  private final File directory;
+  private final AssetManager assetManager;
+  private final boolean ownsContext;
+
+  private boolean binaryBoards = true;
+  private boolean compressed = false;
+
+  private final List<String> problems = new ArrayList<>();
+
+  /**
+   * Creates a packer for the project in the directory, loading its assets
+   * through a new context with the JSON serializers registered, which is
+   * closed with the packer.
+   *
+   * @param directory project root, containing the project file
+   */
+  public ProjectPacker(File directory) {
+    this(directory, ProjectContexts.create(directory), true);
+  }
+
+  /**
+   * Creates a packer for the project in the directory, loading its assets
+   * through the context.
+   *
+   * @param directory project root, containing the project file
+   * @param assetManager context for the project in the directory
+   */
+  public ProjectPacker(File directory, AssetManager assetManager) {
+    this(directory, assetManager, false);
+  }
+
+  private ProjectPacker(File directory, AssetManager assetManager,
+          boolean ownsContext) {
+    if (directory == null || assetManager == null) {
+      throw new NullPointerException();
+    }
+    this.directory = directory;
+    this.assetManager = assetManager;
+    this.ownsContext = ownsContext;
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  public AssetManager getAssetManager() {
+    return assetManager;
+  }
+
+  /**
+   * Closes the context the packer created, if it created one.
+   */
+  @Override
+  public void close() {
+    if (ownsContext) {
+      assetManager.close();
+    }
+  }
+
+  public boolean isBinaryBoards() {
+    return binaryBoards;
+  }
+
+  /**
+   * Sets whether boards are converted to the binary board format.
+   *
+   * @param binaryBoards false to pack boards unchanged
+   */
+  public void setBinaryBoards(boolean binaryBoards) {
+    this.binaryBoards = binaryBoards;
+  }
+
+  public boolean isCompressed() {
+    return compressed;
+  }
+
+  /**
+   * Sets whether entries are deflated. Compressed bundles are smaller but
+   * every load has to inflate its entry.
+   *
+   * @param compressed true to deflate entries
+   */
+  public void setCompressed(boolean compressed) {
+    this.compressed = compressed;
+  }
+
+  /**
+   * Returns the problems found by the last call to {@link #pack(File)}, such
+   * as references to missing files.
+   *
+   * @return problem descriptions, empty if there were none
+   */
+  public List<String> getProblems() {
+    return problems;
+  }
+
+  /**
+   * Loads and checks every asset of the project and writes the bundle.
+   * Missing references do not stop packing, they are reported through
+   * {@link #getProblems()}.
+   *
+   * @param bundle zip file to write, overwritten if it exists
+   * @return the manifest written to the bundle
+   * @throws IOException if a file could not be read or the bundle written
+   * @throws AssetException if an asset could not be loaded
+   */
+  public PackManifest pack(File bundle) throws IOException, AssetException {
+    problems.clear();
+
+    final List<String> names = list();
+    final Map<String, Asset> assets = new TreeMap<>();
+    final List<String> loaded = new ArrayList<>();
+    final List<AssetDescriptor> descriptors = new ArrayList<>();
+    for (String name : names) {
+      final AssetDescriptor descriptor = new AssetDescriptor(file(name).toURI());
+      if (assetManager.isDeserializable(descriptor)) {
+        loaded.add(name);
+        descriptors.add(descriptor);
+      }
+    }
+    final List<AssetLoadResult> results = assetManager.deserializeAll(descriptors);
+    for (int i = 0; i < results.size(); i++) {
+      final AssetHandle handle = results.get(i).get();
+      if (handle == null || handle.getAsset() == null) {
+        throw new AssetException("Could not load " + loaded.get(i));
+      }
+      assets.put(loaded.get(i), handle.getAsset());
+    }
+
+    final Set<String> index = new HashSet<>(names);
+    for (Map.Entry<String, Asset> entry : assets.entrySet()) {
+      check(entry.getKey(), entry.getValue(), index);
+    }
+
+    final PackManifest manifest = new PackManifest();
+    try (final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(bundle))) {
+      for (String name : names) {
+        final Asset asset = assets.get(name);
+        String entryName = name;
+        byte[] contents;
+        if (binaryBoards && asset instanceof Board) {
+          entryName = binaryBoardName(name);
+          contents = encodeBoard((Board) asset, entryName);
+        } else {
+          contents = Files.readAllBytes(file(name).toPath());
+        }
+        if (asset instanceof Project) {
+          manifest.setProject(entryName);
+          if (binaryBoards) {
+            contents = rewriteInitialBoard(contents);
+          }
+        }
+        if (asset != null) {
+          manifest.putAsset(entryName, asset.getClass().getSimpleName());
+        }
+        putEntry(out, entryName, contents);
+      }
+      putEntry(out, PackManifest.NAME, manifest.toBytes());
+    }
+
+    return manifest;
+  }
+
+  /**
+   * Lists the files of the project as entry names, sorted so that bundles
+   * of the same project are laid out the same way.
+   */
+  private List<String> list() throws IOException {
+    final Path root = directory.toPath();
+    try (final Stream<Path> paths = Files.walk(root)) {
+      return paths.filter(Files::isRegularFile)
+          .map(path -> root.relativize(path).toString().replace(File.separatorChar, '/'))
+          .filter(name -> !name.equals(PackManifest.NAME))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private void check(String name, Asset asset, Collection<String> names) {
+    for (String target : AssetReferences.of(asset)) {
+      if (!names.contains(target)) {
+        problems.add(name + " refers to missing file " + target);
+      }
+    }
+  }
+
+  private byte[] encodeBoard(Board board, String entryName) throws IOException, AssetException {
+    final MemoryAssetHandle handle = new MemoryAssetHandle(
+        new AssetDescriptor(file(entryName).toURI()));
+    handle.setAsset(board);
+    new BinaryBoardSerializer().serialize(handle);
+    return handle.contents;
+  }
+
+  private static byte[] rewriteInitialBoard(byte[] contents) {
+    final JSONObject json = new JSONObject(new String(contents, StandardCharsets.UTF_8));
+    final String initialBoard = json.optString("initialBoard", "");
+    if (initialBoard.isEmpty()) {
+      return contents;
+    }
+    json.put("initialBoard", binaryBoardName(initialBoard));
+    return json.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private void putEntry(ZipOutputStream out, String name, byte[] contents) throws IOException {
+    final ZipEntry entry = new ZipEntry(name);
+    if (compressed) {
+      entry.setMethod(ZipEntry.DEFLATED);
+    } else {
+      final CRC32 crc = new CRC32();
+      crc.update(contents);
+      entry.setMethod(ZipEntry.STORED);
+      entry.setCrc(crc.getValue());
+      entry.setSize(contents.length);
+      entry.setCompressedSize(contents.length);
+    }
+    out.putNextEntry(entry);
+    out.write(contents);
+    out.closeEntry();
+  }
+
+  private File file(String name) {
+    return new File(directory, name.replace('/', File.separatorChar));
+  }
+
+  private static String binaryBoardName(String name) {
+    final int dot = name.lastIndexOf('.');
+    return (dot < 0 ? name : name.substring(0, dot))
+        + CoreProperties.getFullExtension("toolkit.board.extension.binary");
+  }
+
+  /**
+   * Collects what the binary board serializer writes.
+   */
+  private static final class MemoryAssetHandle extends AssetHandle {
+
+    private byte[] contents = new byte[0];
+
+    private MemoryAssetHandle(AssetDescriptor descriptor) {
+      super(descriptor);
+    }
+
+    @Override
+    public ReadableByteChannel read() throws IOException {
+      throw new IOException("write only");
+    }
+
+    @Override
+    public WritableByteChannel write() throws IOException {
+      final OutputStream output = new ByteArrayOutputStream() {
+        @Override
+        public void close() {
+          contents = toByteArray();
+        }
+      };
+      return Channels.newChannel(output);
+    }
+
+    @Override
+    public long size() {
+      return contents.length;
+    }
+
+  }
+
+}
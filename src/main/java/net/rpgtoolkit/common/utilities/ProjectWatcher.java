@@ -0,0 +1,278 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.utilities;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import net.rpgtoolkit.common.assets.Animation;
+import net.rpgtoolkit.common.assets.Asset;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetHandle;
+import net.rpgtoolkit.common.assets.AssetManager;
+import net.rpgtoolkit.common.assets.Board;
+import net.rpgtoolkit.common.assets.TileSet;
+import net.rpgtoolkit.common.assets.cache.AssetCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the directories of a project, as listed by
+ * {@link CoreProperties#getDirectories()}, and refreshes the loaded assets
+ * whose files change, so that content can be edited while the game runs.
+ * <p>
+ * Only what is affected by a change is touched. A changed asset that is
+ * cached by the {@link AssetManager} is reloaded in the background and
+ * swapped into its cached handle with {@link AssetManager#reload}, and a
+ * reloaded tile set replaces the one in the manager's {@link TileSetCache}.
+ * Cached assets that refer to the changed file, see {@link AssetReferences},
+ * are relinked rather than reloaded: boards pick up replaced tile sets and
+ * animations decode their changed sprite sheet. Assets that are not loaded
+ * are left alone, they are read fresh on their next load. Files the manager
+ * has just saved itself, and boards with unsaved edits, keep their cached
+ * asset, see {@link AssetManager#reload}.
+ * </p>
+ */
+public class ProjectWatcher implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ProjectWatcher.class);
+
+  // Editors often save a file in several steps, wait for them to settle.
+  private static final long SETTLE_MILLIS = 50;
+
+  private final File directory;
+  private final AssetManager assetManager;
+  private final ConcurrentHashMap<WatchKey, Path> keys = new ConcurrentHashMap<>();
+
+  private WatchService watchService;
+  private Thread thread;
+
+  /**
+   * Creates a watcher for the project directory of the manager.
+   *
+   * @param assetManager manager whose cached assets are refreshed
+   */
+  public ProjectWatcher(AssetManager assetManager) {
+    this(assetManager.getProjectDirectory(), assetManager);
+  }
+
+  /**
+   * Creates a watcher for the project in the directory, refreshing the assets
+   * of the shared {@link AssetManager}.
+   *
+   * @param directory project root
+   */
+  public ProjectWatcher(File directory) {
+    this(directory, AssetManager.getInstance());
+  }
+
+  /**
+   * Creates a watcher for the project in the directory.
+   *
+   * @param directory project root
+   * @param assetManager manager whose cached assets are refreshed
+   */
+  public ProjectWatcher(File directory, AssetManager assetManager) {
+    if (directory == null || assetManager == null) {
+      throw new NullPointerException();
+    }
+    this.directory = directory.getAbsoluteFile();
+    this.assetManager = assetManager;
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Starts watching the project directories, and their subdirectories, on a
+   * daemon thread. Directories that do not exist yet are not watched.
+   *
+   * @throws IOException if the directories could not be watched
+   */
+  public synchronized void start() throws IOException {
+    if (watchService != null) {
+      throw new IllegalStateException("already started");
+    }
+    watchService = FileSystems.getDefault().newWatchService();
+    try {
+      for (String name : CoreProperties.getDirectories()) {
+        final Path path = directory.toPath().resolve(name);
+        if (Files.isDirectory(path)) {
+          register(path);
+        }
+      }
+    } catch (IOException ex) {
+      watchService.close();
+      watchService = null;
+      throw ex;
+    }
+
+    thread = new Thread(this::run, "project-watcher");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Stops watching. Reloads already started still complete.
+   *
+   * @throws IOException if the watch service could not be closed
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (watchService == null) {
+      return;
+    }
+    watchService.close();
+    watchService = null;
+    keys.clear();
+    thread = null;
+  }
+
+  private void register(Path root) throws IOException {
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes)
+          throws IOException {
+        keys.put(dir.register(watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY,
+            StandardWatchEventKinds.ENTRY_DELETE), dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private void run() {
+    final WatchService service;
+    synchronized (this) {
+      service = watchService;
+    }
+    if (service == null) {
+      return;
+    }
+
+    try {
+      while (true) {
+        final Set<Path> changed = new LinkedHashSet<>();
+        WatchKey key = service.take();
+        do {
+          collect(key, changed);
+          key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+        } while (key != null);
+
+        for (Path path : changed) {
+          try {
+            changed(path);
+          } catch (RuntimeException ex) {
+            LOGGER.warn("Could not refresh assets for file=[{}].", path, ex);
+          }
+        }
+      }
+    } catch (ClosedWatchServiceException ex) {
+      // Closed, stop watching.
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void collect(WatchKey key, Set<Path> changed) {
+    final Path dir = keys.get(key);
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (dir == null || event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        LOGGER.warn("Missed file changes in directory=[{}].", dir);
+        continue;
+      }
+      final Path path = dir.resolve((Path) event.context());
+      if (Files.isDirectory(path)) {
+        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+          try {
+            register(path);
+          } catch (IOException | ClosedWatchServiceException ex) {
+            LOGGER.warn("Could not watch directory=[{}].", path, ex);
+          }
+        }
+      } else {
+        changed.add(path);
+      }
+    }
+    if (!key.reset()) {
+      keys.remove(key);
+    }
+  }
+
+  /**
+   * Refreshes the assets affected by a change to the file.
+   */
+  private void changed(Path path) {
+    final String name = directory.toPath().relativize(path).toString()
+        .replace(File.separatorChar, '/');
+    LOGGER.debug("Project file=[{}] changed.", name);
+
+    // Descriptors are made from files the same way the loaders make them.
+    final File file = new File(directory, name.replace('/', File.separatorChar));
+    if (!file.isFile()) {
+      return; // Deleted, keep what is loaded.
+    }
+    assetManager.reload(new AssetDescriptor(file.toURI())).whenComplete((handle, ex) -> {
+      if (ex != null) {
+        LOGGER.warn("Could not reload file=[{}].", name, ex);
+      } else if (handle != null && handle.getAsset() instanceof TileSet) {
+        final String tileSetDirectory = AssetReferences.path("tileset", "");
+        if (name.startsWith(tileSetDirectory)) {
+          assetManager.getTileSetCache().replace(name.substring(tileSetDirectory.length()),
+              (TileSet) handle.getAsset());
+        }
+      }
+      relinkDependents(name);
+    });
+  }
+
+  private void relinkDependents(String name) {
+    final AssetCache cache = assetManager.getCache();
+    for (AssetDescriptor descriptor : cache.getDescriptors()) {
+      final AssetHandle handle = cache.peek(descriptor);
+      final Asset asset = handle == null ? null : handle.getAsset();
+      if (asset != null && AssetReferences.of(asset).contains(name)) {
+        relink(asset);
+      }
+    }
+  }
+
+  private static void relink(Asset asset) {
+    if (asset instanceof Board) {
+      ((Board) asset).loadTiles();
+    } else if (asset instanceof Animation) {
+      final Animation animation = (Animation) asset;
+      if (animation.getSpriteSheet() != null && animation.getSpriteSheet().getImage() != null) {
+        try {
+          animation.getSpriteSheet().loadImage(animation.getAssetManager());
+        } catch (IOException ex) {
+          LOGGER.warn("Could not reload sprite sheet of animation=[{}].",
+              asset.getDescriptor(), ex);
+        }
+      }
+    }
+  }
+
+}
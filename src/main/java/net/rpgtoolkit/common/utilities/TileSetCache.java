@@ -9,8 +9,11 @@ package net.rpgtoolkit.common.utilities;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.rpgtoolkit.common.assets.AssetDescriptor;
@@ -20,109 +23,410 @@ import net.rpgtoolkit.common.assets.AssetManager;
 import net.rpgtoolkit.common.assets.TileSet;
 
 /**
- * Stores a cache of loaded TileSets for reuse between boards.
+ * Stores a cache of loaded TileSets for reuse between boards. Each
+ * {@link AssetManager} context has its own, see
+ * {@link AssetManager#getTileSetCache()}, which loads tile sets from the
+ * context's project.
+ * <p>
+ * Boards take a reference to each of their tile sets with
+ * {@link #acquire(String)} when the {@link AssetManager} caches them and give
+ * it back with {@link #release(String)} when they leave its cache. Tile sets
+ * that are no longer referenced stay cached until the estimated memory of the
+ * cache exceeds its budget, {@link #DEFAULT_MEMORY_BUDGET} unless changed
+ * with {@link #setMemoryBudget(long)}, then the least recently released ones
+ * are evicted: they
+ * are removed from the cache and from the {@link AssetManager}'s cache, and
+ * their decoded tile images are dropped. Referenced tile sets are never
+ * evicted.
+ * </p>
+ * <p>
+ * Lookups are lock free, loading happens outside of the cache lock so that
+ * concurrent loads of different tile sets do not wait for each other.
+ * </p>
+ * <p>
+ * The static methods of earlier versions remain as deprecated shims that use
+ * the cache of the shared default context.
+ * </p>
  *
  * @author Geoff Wilson
  * @author Joshua Michael Daly
  */
 public class TileSetCache {
 
-  private static final HashMap<String, TileSet> TILE_SETS = new HashMap<>();
+  public static final long UNBOUNDED = Long.MAX_VALUE;
+  public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+  // Rough cost of a pixel, once in the tile raster and once decoded.
+  private static final long PIXEL_BYTES = 8;
+  private static final long MINIMUM_BYTES = 64;
+
+  private final AssetManager assetManager;
+
+  private final ConcurrentHashMap<String, Cached> tileSets = new ConcurrentHashMap<>();
+
+  // Unreferenced entries, least recently released first. Guarded by this.
+  private final LinkedHashMap<String, Cached> unreferenced = new LinkedHashMap<>();
+
+  private long budget = DEFAULT_MEMORY_BUDGET;
+  private long usage;
 
   /**
-   * Gets the tile set with the specified key, if it is present in the cache
+   * Creates a cache loading tile sets through the manager.
+   *
+   * @param assetManager manager of the project the tile sets belong to
+   */
+  public TileSetCache(AssetManager assetManager) {
+    if (assetManager == null) {
+      throw new NullPointerException();
+    }
+    this.assetManager = assetManager;
+  }
+
+  /**
+   * Gets the tile set with the specified key from the cache of the shared default context.
    *
    * @param key Filename of the tile set to retrieve
    * @return the Tile set with the corresponding filename
+   * @deprecated use {@link #get(String)} on the cache of the board's {@link AssetManager}
    */
+  @Deprecated
   public static TileSet getTileSet(String key) {
-    if (TILE_SETS.containsKey(key)) {
-      return TILE_SETS.get(key);
-    } else {
-      return null;
-    }
+    return AssetManager.getInstance().getTileSetCache().get(key);
   }
 
   /**
-   * Allows the calling object to check if the tile set has already been loaded, this should be
-   * checked before calling loadTileSet
+   * Checks if the tile set is in the cache of the shared default context.
    *
    * @param key Tile Set file to check for
    * @return true if the tile set is already present in the cache
+   * @deprecated use {@link #isCached(String)} on the cache of the board's {@link AssetManager}
    */
+  @Deprecated
   public static boolean contains(String key) {
-    return TILE_SETS.containsKey(key);
+    return AssetManager.getInstance().getTileSetCache().isCached(key);
   }
 
   /**
-   * Adds the specified tile set into the cache, it will only load the file if it is not already
-   * present in the cache, it is important to call contains(String key) before calling this method.
+   * Adds the specified tile set into the cache of the shared default context.
    *
    * @param fileName Tile set to attempt to load into the cache
-   * @return The loaded tile set is returned, this is to remove the need to call getTileSet(String
-   * key) straight after loading a set
+   * @return the loaded tile set, or null if it could not be loaded
+   * @deprecated use {@link #add(String)} on the cache of the board's {@link AssetManager}
    */
+  @Deprecated
   public static TileSet addTileSet(String fileName) {
-    TileSet set;
+    return AssetManager.getInstance().getTileSetCache().add(fileName);
+  }
 
-    if (!TILE_SETS.containsKey(fileName)) {
-      try {
-        File file = new File(
-                System.getProperty("project.path")
-                + File.separator
-                + CoreProperties.getProperty("toolkit.directory.tileset")
-                + File.separator + fileName);
+  /**
+   * Releases a reference to the specified TileSet in the cache of the shared default context.
+   *
+   * @param fileName TileSet to release
+   * @return the removed TileSet, or null if it is still referenced or was not cached
+   * @deprecated use {@link #remove(String)} on the cache of the board's {@link AssetManager}
+   */
+  @Deprecated
+  public static TileSet removeTileSet(String fileName) {
+    return AssetManager.getInstance().getTileSetCache().remove(fileName);
+  }
 
-        AssetHandle handle = AssetManager.getInstance().deserialize(
-                new AssetDescriptor(file.toURI()));
-        set = (TileSet) handle.getAsset();
+  /**
+   * Releases a reference to each of the specified TileSets in the cache of the shared default
+   * context.
+   *
+   * @param fileNames list of TileSet file names to remove
+   * @return the removed TileSets, with null for those that are still referenced
+   * @deprecated use {@link #removeAll(LinkedList)} on the cache of the board's
+   * {@link AssetManager}
+   */
+  @Deprecated
+  public static LinkedList<TileSet> removeTileSets(LinkedList<String> fileNames) {
+    return AssetManager.getInstance().getTileSetCache().removeAll(fileNames);
+  }
 
-        TILE_SETS.put(set.getName(), set);
+  /**
+   * Gets the tile set with the specified key, if it is present in the cache
+   *
+   * @param key Filename of the tile set to retrieve
+   * @return the Tile set with the corresponding filename
+   */
+  public TileSet get(String key) {
+    final Cached entry = tileSets.get(key);
+    return entry == null ? null : entry.tileSet;
+  }
 
-        return set;
-      } catch (IOException | AssetException ex) {
-        Logger.getLogger(TileSetCache.class.getName()).log(Level.SEVERE, null, ex);
-        return null;
-      }
-    } else {
-      set = getTileSet(fileName);
+  /**
+   * Allows the calling object to check if the tile set has already been loaded, this should be
+   * checked before calling {@link #add(String)}
+   *
+   * @param key Tile Set file to check for
+   * @return true if the tile set is already present in the cache
+   */
+  public boolean isCached(String key) {
+    return tileSets.containsKey(key);
+  }
 
-      return set;
-    }
+  /**
+   * Adds the specified tile set into the cache, it will only load the file if it is not already
+   * present in the cache. No reference is taken, so the tile set may be evicted once the cache is
+   * over budget.
+   *
+   * @param fileName Tile set to attempt to load into the cache
+   * @return The loaded tile set is returned, this is to remove the need to call get(String key)
+   * straight after loading a set
+   */
+  public TileSet add(String fileName) {
+    return fetch(fileName, false);
   }
 
   /**
-   * Removes the specified TileSet from the cache, it will only remove the TileSet if the number of
-   * board references have reached 0.
+   * Takes a reference to the specified tile set, loading it into the cache if it is not already
+   * present. Each call must be balanced by a call to {@link #release(String)}.
    *
-   * @param fileName TileSet to attempt to load into the cache
-   * @return the remove TileSet is returned.
+   * @param fileName Tile set to reference
+   * @return the tile set, or null if it could not be loaded
    */
-  public static TileSet removeTileSet(String fileName) {
-    if (TILE_SETS.containsKey(fileName)) {
-      TileSet set = TILE_SETS.get(fileName);
+  public TileSet acquire(String fileName) {
+    return fetch(fileName, true);
+  }
 
-      return set;
+  /**
+   * Gives back a reference taken with {@link #acquire(String)}. Once the last reference is
+   * released the tile set may be evicted when the cache is over budget.
+   *
+   * @param fileName Tile set to release
+   */
+  public synchronized void release(String fileName) {
+    if (unreference(fileName) != null) {
+      trim();
     }
+  }
 
-    return null;
+  /**
+   * Releases a reference to the specified TileSet, it will only remove the TileSet from the cache
+   * if the number of board references have reached 0.
+   *
+   * @param fileName TileSet to release
+   * @return the removed TileSet, or null if it is still referenced or was not cached
+   */
+  public synchronized TileSet remove(String fileName) {
+    final Cached entry = unreference(fileName);
+    if (entry == null) {
+      return null;
+    }
+    evict(fileName, entry);
+    return entry.tileSet;
   }
 
   /**
-   * Removes the specified TileSets from the cache, it will only remove the TileSet if the number of
-   * board references have reached 0.
+   * Releases a reference to each of the specified TileSets, it will only remove a TileSet from the
+   * cache if the number of board references have reached 0.
    *
    * @param fileNames list of TileSet file names to remove
-   * @return the removed TileSets
+   * @return the removed TileSets, with null for those that are still referenced
    */
-  public static LinkedList<TileSet> removeTileSets(LinkedList<String> fileNames) {
+  public LinkedList<TileSet> removeAll(LinkedList<String> fileNames) {
     LinkedList<TileSet> removedSets = new LinkedList<>();
 
     for (String fileName : fileNames) {
-      removedSets.add(removeTileSet(fileName));
+      removedSets.add(remove(fileName));
     }
 
     return removedSets;
   }
 
+  /**
+   * Replaces a cached tile set with another one, such as a copy reloaded after its file changed.
+   * The references are kept and the decoded images of the old tile set are dropped. Boards pick up
+   * the replacement on their next {@link net.rpgtoolkit.common.assets.Board#loadTiles()}.
+   *
+   * @param fileName tile set file name
+   * @param tileSet replacement tile set
+   * @return true if the tile set was cached and has been replaced
+   */
+  public synchronized boolean replace(String fileName, TileSet tileSet) {
+    final Cached old = tileSets.get(fileName);
+    if (old == null || old.tileSet == tileSet) {
+      return false;
+    }
+    final Cached entry = new Cached(tileSet);
+    entry.references = old.references;
+    tileSets.put(fileName, entry);
+    if (unreferenced.containsKey(fileName)) {
+      unreferenced.put(fileName, entry);
+    }
+    usage -= old.weight;
+    weigh(entry);
+    if (!assetManager.isShared(old.tileSet.getDescriptor())) {
+      old.tileSet.discardImages();
+    }
+    trim();
+    return true;
+  }
+
+  /**
+   * Returns the number of references held on the tile set.
+   *
+   * @param fileName tile set file name
+   * @return reference count, 0 if not referenced or not cached
+   */
+  public synchronized int getReferenceCount(String fileName) {
+    final Cached entry = tileSets.get(fileName);
+    return entry == null ? 0 : entry.references;
+  }
+
+  public synchronized long getMemoryBudget() {
+    return budget;
+  }
+
+  /**
+   * Sets the estimated memory that unreferenced tile sets may keep occupied, evicting them
+   * immediately if the cache no longer fits.
+   *
+   * @param bytes budget in bytes, {@link #UNBOUNDED} to never evict
+   */
+  public synchronized void setMemoryBudget(long bytes) {
+    if (bytes < 0) {
+      throw new IllegalArgumentException("budget must be >= 0");
+    }
+    budget = bytes;
+    trim();
+  }
+
+  /**
+   * Returns the estimated memory of every cached tile set, referenced or not.
+   *
+   * @return estimate in bytes
+   */
+  public synchronized long getMemoryUsage() {
+    return usage;
+  }
+
+  public int size() {
+    return tileSets.size();
+  }
+
+  /**
+   * Evicts every tile set, including referenced ones, and forgets all references.
+   */
+  public synchronized void clear() {
+    for (Cached entry : tileSets.values()) {
+      discard(entry);
+    }
+    tileSets.clear();
+    unreferenced.clear();
+    usage = 0;
+  }
+
+  private TileSet fetch(String fileName, boolean reference) {
+    Cached entry = tileSets.get(fileName);
+    if (entry == null) {
+      final TileSet loaded = read(fileName);
+      if (loaded == null) {
+        return null;
+      }
+      entry = new Cached(loaded);
+    }
+
+    synchronized (this) {
+      final Cached existing = tileSets.putIfAbsent(fileName, entry);
+      if (existing != null) {
+        entry = existing; // Cached meanwhile, or already present.
+      } else {
+        weigh(entry);
+      }
+      if (reference) {
+        if (entry.references++ == 0) {
+          unreferenced.remove(fileName);
+        }
+      } else if (entry.references == 0) {
+        // Touching an unreferenced tile set makes it the last to go.
+        unreferenced.remove(fileName);
+        unreferenced.put(fileName, entry);
+      }
+      trim();
+      return entry.tileSet;
+    }
+  }
+
+  private TileSet read(String fileName) {
+    try {
+      File file = assetManager.getProjectFile("toolkit.directory.tileset", fileName);
+
+      AssetHandle handle = assetManager.deserialize(new AssetDescriptor(file.toURI()));
+      return handle == null ? null : (TileSet) handle.getAsset();
+    } catch (IOException | AssetException ex) {
+      Logger.getLogger(TileSetCache.class.getName()).log(Level.SEVERE, null, ex);
+      return null;
+    }
+  }
+
+  /**
+   * Drops one reference, returning the entry if it is now unreferenced.
+   */
+  private Cached unreference(String fileName) {
+    final Cached entry = tileSets.get(fileName);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.references > 0 && --entry.references > 0) {
+      return null;
+    }
+    unreferenced.put(fileName, entry);
+    // Tiles are usually added after loading, weigh what is actually held.
+    weigh(entry);
+    return entry;
+  }
+
+  private void weigh(Cached entry) {
+    final TileSet tileSet = entry.tileSet;
+    final long weight = Math.max(MINIMUM_BYTES, (long) tileSet.getTiles().size()
+            * tileSet.getTileWidth() * tileSet.getTileHeight() * PIXEL_BYTES);
+    usage += weight - entry.weight;
+    entry.weight = weight;
+  }
+
+  private void trim() {
+    final Iterator<Map.Entry<String, Cached>> iterator =
+            unreferenced.entrySet().iterator();
+    while (usage > budget && iterator.hasNext()) {
+      final Map.Entry<String, Cached> next = iterator.next();
+      iterator.remove();
+      tileSets.remove(next.getKey(), next.getValue());
+      usage -= next.getValue().weight;
+      discard(next.getValue());
+    }
+  }
+
+  private void evict(String fileName, Cached entry) {
+    unreferenced.remove(fileName);
+    if (tileSets.remove(fileName, entry)) {
+      usage -= entry.weight;
+      discard(entry);
+    }
+  }
+
+  private void discard(Cached entry) {
+    final AssetDescriptor descriptor = entry.tileSet.getDescriptor();
+    if (assetManager.isShared(descriptor)) {
+      return; // Still used by other contexts.
+    }
+    entry.tileSet.discardImages();
+    if (descriptor != null) {
+      assetManager.getCache().remove(descriptor);
+    }
+  }
+
+  private static final class Cached {
+
+    private final TileSet tileSet;
+    private long weight;
+    private int references;
+
+    private Cached(TileSet tileSet) {
+      this.tileSet = tileSet;
+    }
+
+  }
+
 }
@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import net.rpgtoolkit.common.assets.files.FileAssetHandleResolver;
+import net.rpgtoolkit.common.assets.serialization.JsonAnimationSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonBoardSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonEnemySerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonItemSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonPlayerSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonProjectSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonTileSetSerializer;
+import net.rpgtoolkit.common.utilities.ProjectGenerator;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that asset manager contexts keep their projects apart.
+ */
+public class AssetManagerContextTest {
+
+    private static File first;
+    private static File second;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        first = generate(10);
+        second = generate(20);
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        FileUtils.deleteDirectory(first);
+        FileUtils.deleteDirectory(second);
+    }
+
+    @Test
+    public void testContextsResolveTheirOwnProject() throws Exception {
+        AssetManager one = register(new AssetManager(first));
+        AssetManager two = register(new AssetManager(second));
+
+        // Both projects use the same relative names.
+        Board boardOne = load(one, one.getProjectFile("toolkit.directory.board", "Board0.board"));
+        Board boardTwo = load(two, two.getProjectFile("toolkit.directory.board", "Board0.board"));
+        Assert.assertEquals(10, boardOne.getWidth());
+        Assert.assertEquals(20, boardTwo.getWidth());
+        Assert.assertSame(one, boardOne.getAssetManager());
+        Assert.assertSame(two, boardTwo.getAssetManager());
+
+        boardOne.acquireTileSets();
+        boardTwo.acquireTileSets();
+        TileSet tileSetOne = boardOne.getTileSets().get("TileSet0.tileset");
+        TileSet tileSetTwo = boardTwo.getTileSets().get("TileSet0.tileset");
+        Assert.assertNotSame(tileSetOne, tileSetTwo);
+        Assert.assertTrue(tileSetOne.getFile().getPath().startsWith(first.getPath()));
+        Assert.assertTrue(tileSetTwo.getFile().getPath().startsWith(second.getPath()));
+        Assert.assertEquals(1, one.getTileSetCache().getReferenceCount("TileSet0.tileset"));
+        Assert.assertEquals(0, AssetManager.getInstance().getTileSetCache()
+                .getReferenceCount("TileSet0.tileset"));
+
+        boardOne.releaseTileSets();
+        boardTwo.releaseTileSets();
+    }
+
+    @Test
+    public void testSharedBase() throws Exception {
+        AssetManager shared = register(new AssetManager(first));
+        File file = shared.getProjectFile("toolkit.directory.tileset", "TileSet1.tileset");
+        AssetHandle handle = shared.deserialize(new AssetDescriptor(file.toURI()));
+
+        AssetManager context = register(new AssetManager(first, shared.getCache()));
+        Assert.assertSame(handle, context.deserialize(new AssetDescriptor(file.toURI())));
+        Assert.assertTrue(context.isShared(handle.getDescriptor()));
+        Assert.assertEquals(0, context.getAssetCount());
+
+        // Evicting from the context leaves the shared tile set intact.
+        Assert.assertSame(handle.getAsset(), context.getTileSetCache().acquire("TileSet1.tileset"));
+        context.getTileSetCache().remove("TileSet1.tileset");
+        Assert.assertFalse(context.getTileSetCache().isCached("TileSet1.tileset"));
+        Assert.assertTrue(shared.getCache().contains(handle.getDescriptor()));
+    }
+
+    @Test
+    public void testDeserializeAll() throws Exception {
+        AssetManager context = register(new AssetManager(second));
+        AssetDescriptor board = new AssetDescriptor(
+                context.getProjectFile("toolkit.directory.board", "Board0.board").toURI());
+        AssetDescriptor tileSet = new AssetDescriptor(
+                context.getProjectFile("toolkit.directory.tileset", "TileSet0.tileset").toURI());
+        AssetDescriptor missing = new AssetDescriptor(
+                context.getProjectFile("toolkit.directory.item", "Missing.item").toURI());
+
+        List<AssetLoadResult> results = context.deserializeAll(
+                Arrays.asList(tileSet, missing, board, tileSet));
+        Assert.assertEquals(4, results.size());
+        Assert.assertEquals(tileSet, results.get(0).getDescriptor());
+        Assert.assertTrue(results.get(0).getHandle().getAsset() instanceof TileSet);
+
+        // A failed load is reported in place and does not stop the others.
+        Assert.assertFalse(results.get(1).isLoaded());
+        Assert.assertNotNull(results.get(1).getError());
+        try {
+            results.get(1).get();
+            Assert.fail();
+        } catch (IOException | AssetException ex) {
+            Assert.assertSame(results.get(1).getError(), ex);
+        }
+
+        Assert.assertTrue(results.get(2).isLoaded());
+        Assert.assertEquals(20, ((Board) results.get(2).get().getAsset()).getWidth());
+        Assert.assertSame(results.get(0).getHandle(), results.get(3).getHandle());
+        Assert.assertSame(results.get(2).getHandle(), context.deserialize(board));
+    }
+
+    @Test
+    public void testCloseStopsLoaderThreads() throws Exception {
+        AssetManager context = register(new AssetManager(first));
+        AssetDescriptor tileSet = new AssetDescriptor(
+                context.getProjectFile("toolkit.directory.tileset", "TileSet0.tileset").toURI());
+        ExecutorService executor = (ExecutorService) context.getExecutor();
+        Assert.assertTrue(context.deserializeAll(Arrays.asList(tileSet)).get(0).isLoaded());
+
+        context.close();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Loads still work once closed, on the calling thread.
+        context.getCache().clear();
+        Assert.assertTrue(context.deserializeAll(Arrays.asList(tileSet)).get(0).isLoaded());
+        Assert.assertNotSame(executor, context.getExecutor());
+    }
+
+    private static AssetManager register(AssetManager assetManager) {
+        assetManager.registerResolver(new FileAssetHandleResolver());
+        assetManager.registerSerializer(new JsonAnimationSerializer());
+        assetManager.registerSerializer(new JsonPlayerSerializer());
+        assetManager.registerSerializer(new JsonBoardSerializer());
+        assetManager.registerSerializer(new JsonProjectSerializer());
+        assetManager.registerSerializer(new JsonEnemySerializer());
+        assetManager.registerSerializer(new JsonItemSerializer());
+        assetManager.registerSerializer(new JsonTileSetSerializer());
+        return assetManager;
+    }
+
+    private static File generate(int boardSize) throws Exception {
+        File directory = Files.createTempDirectory("context").toFile();
+        try (ProjectGenerator generator = new ProjectGenerator(directory)) {
+            generator.setBoardCount(1);
+            generator.setBoardWidth(boardSize);
+            generator.setBoardHeight(boardSize);
+            generator.generate();
+        }
+        return directory;
+    }
+
+    private static Board load(AssetManager assetManager, File file) throws Exception {
+        return (Board) assetManager.deserialize(new AssetDescriptor(file.toURI())).getAsset();
+    }
+
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that concurrent loads of one asset share a single deserialize.
+ */
+public class AssetManagerLoadTest {
+
+    private ExecutorService executor;
+    private AssetManager assetManager;
+    private TestSerializer serializer;
+
+    @Before
+    public void before() {
+        executor = Executors.newFixedThreadPool(2);
+        serializer = new TestSerializer();
+        assetManager = new AssetManager();
+        assetManager.setExecutor(executor);
+        assetManager.registerResolver(new TestResolver());
+        assetManager.registerSerializer(serializer);
+    }
+
+    @After
+    public void after() {
+        serializer.release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentLoadsShareOneDeserialize() throws Exception {
+        AssetDescriptor descriptor = descriptor("slow");
+        CompletableFuture<AssetHandle> async = assetManager.deserializeAsync(descriptor);
+        Assert.assertTrue(serializer.entered.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, assetManager.getLoadingCount());
+
+        AtomicReference<AssetHandle> joined = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                joined.set(assetManager.deserialize(descriptor));
+            } catch (IOException | AssetException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        thread.start();
+        Thread.sleep(50);
+        // The second load waits for the first rather than parsing again.
+        Assert.assertNull(joined.get());
+
+        serializer.release.countDown();
+        thread.join(5000);
+        AssetHandle handle = async.get(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(handle.getAsset());
+        Assert.assertSame(handle, joined.get());
+        Assert.assertSame(handle, assetManager.deserialize(descriptor));
+        Assert.assertEquals(1, serializer.count.get());
+        Assert.assertEquals(0, assetManager.getLoadingCount());
+    }
+
+    @Test
+    public void testFailurePropagatesToEveryWaiter() throws Exception {
+        serializer.release.countDown();
+        AssetDescriptor descriptor = descriptor("fail");
+        try {
+            assetManager.deserializeAsync(descriptor).get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof AssetException);
+        }
+        try {
+            assetManager.deserialize(descriptor);
+            Assert.fail();
+        } catch (AssetException ex) {
+            Assert.assertEquals("broken " + descriptor, ex.getMessage());
+        }
+
+        // Failed loads are not cached, each request tries again.
+        Assert.assertEquals(2, serializer.count.get());
+        Assert.assertEquals(0, assetManager.getAssetCount());
+        Assert.assertEquals(0, assetManager.getLoadingCount());
+    }
+
+    @Test
+    public void testCircularDependencyFails() throws Exception {
+        serializer.release.countDown();
+        try {
+            assetManager.deserialize(descriptor("cycle"));
+            Assert.fail();
+        } catch (AssetException ex) {
+            Assert.assertTrue(ex.getMessage().startsWith("circular dependency"));
+        }
+        Assert.assertEquals(0, assetManager.getLoadingCount());
+    }
+
+    private static AssetDescriptor descriptor(String name) {
+        return new AssetDescriptor(URI.create("test:/" + name + ".test"));
+    }
+
+    private static final class TestSerializer extends AbstractAssetSerializer {
+
+        private final AtomicInteger count = new AtomicInteger();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public boolean serializable(AssetDescriptor descriptor) {
+            return false;
+        }
+
+        @Override
+        public boolean deserializable(AssetDescriptor descriptor) {
+            return true;
+        }
+
+        @Override
+        public Set<String> extensions() {
+            return Collections.singleton(".test");
+        }
+
+        @Override
+        public void serialize(AssetHandle handle) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deserialize(AssetHandle handle) throws IOException, AssetException {
+            count.incrementAndGet();
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            final String path = handle.getDescriptor().getURI().getPath();
+            if (path.contains("fail")) {
+                throw new AssetException("broken " + handle.getDescriptor());
+            } else if (path.contains("cycle")) {
+                handle.getAssetManager().deserialize(handle.getDescriptor());
+            }
+            handle.setAsset(new Program(handle.getDescriptor()));
+        }
+
+    }
+
+    private static final class TestResolver implements AssetHandleResolver {
+
+        @Override
+        public boolean resolvable(AssetDescriptor descriptor) {
+            return "test".equals(descriptor.getURI().getScheme());
+        }
+
+        @Override
+        public AssetHandle resolve(AssetDescriptor descriptor) {
+            return new AssetHandle(descriptor) {
+                @Override
+                public ReadableByteChannel read() throws IOException {
+                    throw new IOException("no contents");
+                }
+
+                @Override
+                public WritableByteChannel write() throws IOException {
+                    throw new IOException("no contents");
+                }
+
+                @Override
+                public long size() {
+                    return 0;
+                }
+            };
+        }
+
+    }
+
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks how a layer encodes its tiles into the cells of a dense grid.
+ */
+public class BoardLayerTileGridTest {
+
+    @Test
+    public void testCellEncoding() {
+        Board board = new Board(null, 4, 3, 32, 32);
+        BoardLayer layer = board.getLayers().get(0);
+        TileSet grass = tileSet("grass.tileset", 3);
+        TileSet water = tileSet("water.tileset", 2);
+
+        layer.setTileAt(0, 0, grass.getTiles().get(2));
+        layer.setTileAt(3, 1, water.getTiles().get(1));
+        layer.setTileAt(1, 2, grass.getTiles().get(0));
+
+        TileGrid grid = layer.getTileGrid();
+        Assert.assertTrue(grid instanceof DenseTileGrid);
+        Assert.assertEquals(4, grid.getWidth());
+        Assert.assertEquals(3, grid.getHeight());
+        // Tile set ids are assigned in order of first use, 0 is kept for blanks.
+        Assert.assertEquals(1 << 16 | 2, grid.getCell(0, 0));
+        Assert.assertEquals(2 << 16 | 1, grid.getCell(3, 1));
+        Assert.assertEquals(1 << 16, grid.getCell(1, 2));
+        Assert.assertEquals(BoardLayer.BLANK_CELL, grid.getCell(2, 2));
+        Assert.assertSame(grass, layer.getTileSets().get(0));
+        Assert.assertSame(water, layer.getTileSets().get(1));
+
+        Assert.assertSame(grass.getTiles().get(2), layer.getTileAt(0, 0));
+        Assert.assertSame(water.getTiles().get(1), layer.getTileAt(3, 1));
+        Assert.assertSame(grass.getTiles().get(0), layer.getTiles()[1][2]);
+
+        // Clearing a cell with a blank or null tile stores a blank cell.
+        layer.setTileAt(0, 0, new Tile());
+        layer.setTileAt(3, 1, null);
+        Assert.assertEquals(BoardLayer.BLANK_CELL, grid.getCell(0, 0));
+        Assert.assertEquals(BoardLayer.BLANK_CELL, grid.getCell(3, 1));
+    }
+
+    @Test
+    public void testBlankTiles() {
+        Board board = new Board(null, 2, 2, 32, 32);
+        board.addLayer();
+        BoardLayer first = board.getLayers().get(0);
+        BoardLayer second = board.getLayers().get(1);
+
+        Tile blank = first.getTileAt(0, 0);
+        Assert.assertNotNull(blank);
+        Assert.assertNull(blank.getTileSet());
+        Assert.assertSame(blank, first.getTileAt(1, 1));
+        // Blank tiles are not shared between layers.
+        Assert.assertNotSame(blank, second.getTileAt(0, 0));
+    }
+
+    @Test
+    public void testDenseGridLayout() {
+        int[] cells = new int[6];
+        DenseTileGrid grid = new DenseTileGrid(3, 2, cells);
+        grid.setCell(2, 0, 7);
+        grid.setCell(0, 1, 9);
+        // Cells are stored row by row in the array the grid was created over.
+        Assert.assertArrayEquals(new int[]{0, 0, 7, 9, 0, 0}, cells);
+
+        TileGrid copy = grid.copy();
+        copy.setCell(2, 0, 8);
+        Assert.assertEquals(7, grid.getCell(2, 0));
+        Assert.assertEquals(8, copy.getCell(2, 0));
+        Assert.assertEquals(9, copy.getCell(0, 1));
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void testDenseGridBounds() {
+        new DenseTileGrid(3, 2).getCell(3, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTileIndexOutOfRange() {
+        Board board = new Board(null, 2, 2, 32, 32);
+        TileSet tileSet = tileSet("grass.tileset", 0);
+        board.getLayers().get(0).setTileAt(0, 0, new Tile(tileSet, BoardLayer.MAX_TILE_INDEX + 1));
+    }
+
+    private static TileSet tileSet(String name, int tiles) {
+        TileSet tileSet = new TileSet(null, 32, 32);
+        tileSet.setName(name);
+        for (int i = 0; i < tiles; i++) {
+            tileSet.addTile(new Tile(tileSet, i));
+        }
+        return tileSet;
+    }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.awt.Point;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the proximity and activation queries of board sprite indexes.
+ */
+public class BoardSpriteIndexTest {
+
+    @Test
+    public void testProximityFollowsMoves() {
+        BoardSprite near = sprite(10, 10);
+        BoardSprite far = sprite(500, 500);
+        BoardSpriteIndex index = new BoardSpriteIndex(32);
+        index.rebuild(Arrays.asList(near, far));
+
+        Assert.assertEquals(Collections.singletonList(near), index.findWithin(0, 0, 20));
+
+        far.setX(5);
+        far.setY(0);
+        Assert.assertEquals(Arrays.asList(near, far), index.findWithin(0, 0, 20));
+
+        Assert.assertTrue(index.remove(near));
+        Assert.assertEquals(Collections.singletonList(far), index.findWithin(0, 0, 20));
+    }
+
+    @Test
+    public void testActivationVectorUsesOffset() {
+        BoardSprite sprite = sprite(100, 100);
+        sprite.getSpriteFile().setActivationVectorOffset(new Point(-15, -10), false);
+        BoardSpriteIndex index = new BoardSpriteIndex(16);
+        index.insert(sprite);
+
+        // The default activation vector is a 30 by 20 rectangle.
+        Assert.assertEquals(Collections.singletonList(sprite), index.findActivatedAt(90, 95));
+        Assert.assertEquals(Collections.emptyList(), index.findActivatedAt(120, 95));
+        Assert.assertEquals(Collections.singletonList(sprite),
+                index.findActivatedBy(new Rectangle2D.Double(112, 105, 20, 20)));
+    }
+
+    @Test
+    public void testResultsFollowInsertionOrderAndReach() {
+        BoardSprite low = sprite(0, 100);
+        BoardSprite high = sprite(0, 0);
+        BoardSpriteIndex index = new BoardSpriteIndex(16);
+        index.rebuild(Arrays.asList(low, high));
+
+        // The lower row is scanned last, so the earlier sprite is found second.
+        Assert.assertEquals(Arrays.asList(low, high), index.findWithin(0, 50, 60));
+
+        Assert.assertEquals(Collections.emptyList(), index.findActivatedAt(200, 100));
+        low.getSpriteFile().setActivationVectorOffset(new Point(190, 0), false);
+        index.update(low);
+        Assert.assertEquals(Collections.singletonList(low), index.findActivatedAt(200, 100));
+
+        low.getSpriteFile().setActivationVectorOffset(new Point(0, 0), false);
+        index.update(low);
+        Assert.assertEquals(Collections.emptyList(), index.findActivatedAt(200, 100));
+    }
+
+    private static BoardSprite sprite(int x, int y) {
+        BoardSprite sprite = new BoardSprite();
+        sprite.setSpriteFile(new Item(null));
+        sprite.setX(x);
+        sprite.setY(y);
+        return sprite;
+    }
+
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that the board's tile set ids follow its tile set map.
+ */
+public class BoardTileSetTableTest {
+
+    @Test
+    public void testIdsFollowInsertionOrder() {
+        Board board = new Board(null, 10, 10, 32, 32);
+        TileSet grass = tileSet("grass.tileset");
+        TileSet water = tileSet("water.tileset");
+        board.getTileSets().put(grass.getName(), grass);
+        board.getTileSets().put(water.getName(), water);
+        board.indexTileSets();
+
+        Assert.assertEquals(0, board.getTileSetId("grass.tileset"));
+        Assert.assertEquals(1, board.getTileSetId("water.tileset"));
+        Assert.assertEquals(-1, board.getTileSetId("sand.tileset"));
+        Assert.assertSame(grass, board.getTileSet(0));
+        Assert.assertSame(water, board.getTileSet(1));
+
+        // Replacing a tile set keeps its id.
+        TileSet other = tileSet("grass.tileset");
+        board.getTileSets().put(other.getName(), other);
+        board.indexTileSets();
+        Assert.assertEquals(0, board.getTileSetId("grass.tileset"));
+        Assert.assertSame(other, board.getTileSet(0));
+    }
+
+    @Test
+    public void testIdsCompactAfterRemoval() {
+        Board board = new Board(null, 10, 10, 32, 32);
+        for (String name : new String[]{"a.tileset", "b.tileset", "c.tileset"}) {
+            board.getTileSets().put(name, tileSet(name));
+        }
+
+        board.getTileSets().remove("a.tileset");
+        board.indexTileSets();
+        Assert.assertEquals(-1, board.getTileSetId("a.tileset"));
+        Assert.assertEquals(0, board.getTileSetId("b.tileset"));
+        Assert.assertEquals(1, board.getTileSetId("c.tileset"));
+
+        // Removal through a view is picked up as well.
+        board.getTileSets().keySet().remove("b.tileset");
+        board.indexTileSets();
+        Assert.assertEquals(0, board.getTileSetId("c.tileset"));
+        Assert.assertEquals("c.tileset", board.getTileSet(0).getName());
+    }
+
+    @Test
+    public void testSetTileSetsAndLoadTilesIndex() {
+        Board board = new Board(null, 10, 10, 32, 32);
+        Map<String, TileSet> tileSets = new LinkedHashMap<>();
+        tileSets.put("a.tileset", tileSet("a.tileset"));
+        tileSets.put("b.tileset", tileSet("b.tileset"));
+        board.setTileSets(tileSets);
+        Assert.assertEquals(1, board.getTileSetId("b.tileset"));
+
+        // Values replaced through an entry are picked up on the next index.
+        TileSet other = tileSet("b.tileset");
+        board.getTileSets().entrySet().stream()
+                .filter(entry -> entry.getKey().equals("b.tileset"))
+                .findFirst().get().setValue(other);
+        board.indexTileSets();
+        Assert.assertSame(other, board.getTileSet(1));
+        Assert.assertEquals(1, board.getTileSetId(other));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testUnknownId() {
+        new Board(null, 10, 10, 32, 32).getTileSet(0);
+    }
+
+    private static TileSet tileSet(String name) {
+        TileSet tileSet = new TileSet(null, 32, 32);
+        tileSet.setName(name);
+        return tileSet;
+    }
+
+}
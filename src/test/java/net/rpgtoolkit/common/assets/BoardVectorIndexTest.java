@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the queries and updates of board vector indexes.
+ */
+public class BoardVectorIndexTest {
+
+    @Test
+    public void testQueries() {
+        BoardVector wall = vector(BoardVectorType.SOLID, false, 0, 0, 200, 0);
+        BoardVector room = vector(BoardVectorType.PASSABLE, true, 300, 300, 400, 300, 400, 400, 300, 400);
+        BoardVectorIndex index = new BoardVectorIndex(32);
+        index.rebuild(Arrays.asList(wall, room));
+
+        Assert.assertEquals(Collections.singletonList(wall), index.findAt(100, 0));
+        Assert.assertEquals(Collections.emptyList(), index.findAt(100, 1));
+        Assert.assertEquals(Collections.singletonList(room), index.findAt(350, 350));
+        Assert.assertEquals(Collections.emptyList(),
+                index.findAt(350, 350, BoardVectorIndex.ofType(BoardVectorType.SOLID)));
+        Assert.assertEquals(Arrays.asList(wall, room),
+                index.findIntersecting(new Line2D.Double(50, -10, 350, 350)));
+        Assert.assertEquals(Collections.singletonList(room),
+                index.findIntersecting(new Rectangle2D.Double(340, 340, 10, 10)));
+    }
+
+    @Test
+    public void testResultsAreUniqueAndInInsertionOrder() {
+        BoardVector low = vector(BoardVectorType.SOLID, false, 0, 300, 300, 300);
+        BoardVector high = vector(BoardVectorType.SOLID, false, 0, 0, 300, 0);
+        BoardVectorIndex index = new BoardVectorIndex(32);
+        index.rebuild(Arrays.asList(low, high));
+
+        // The bottom row is scanned last, so the earlier vector is found second.
+        Assert.assertEquals(Arrays.asList(low, high),
+                index.findIntersecting(new Rectangle2D.Double(-10, -10, 320, 320)));
+        Assert.assertEquals(Arrays.asList(low, high),
+                index.findIntersecting(new Rectangle2D.Double(-10, -10, 320, 320)));
+    }
+
+    @Test
+    public void testVectorsAreMovedAndRemoved() {
+        BoardVector wall = vector(BoardVectorType.SOLID, false, 0, 0, 10, 0);
+        BoardVectorIndex index = new BoardVectorIndex(32);
+        index.insert(wall);
+
+        wall.addPoint(1000, 0);
+        Assert.assertEquals(Collections.singletonList(wall), index.findAt(900, 0));
+
+        Assert.assertTrue(index.remove(wall));
+        Assert.assertEquals(Collections.emptyList(), index.findAt(5, 0));
+        Assert.assertEquals(0, index.size());
+    }
+
+    private static BoardVector vector(BoardVectorType type, boolean closed, int... coordinates) {
+        BoardVector vector = new BoardVector();
+        vector.setType(type);
+        vector.setClosed(closed);
+        for (int i = 0; i < coordinates.length; i += 2) {
+            vector.addPoint(coordinates[i], coordinates[i + 1]);
+        }
+        return vector;
+    }
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks chunk loading and eviction of chunked tile grids.
+ */
+public class ChunkedTileGridTest {
+
+    private static final int SIZE = ChunkedTileGrid.CHUNK_SIZE;
+
+    @Test
+    public void testChunksAreLoadedOnDemand() {
+        ChunkedTileGrid grid = new ChunkedTileGrid(SIZE * 4, SIZE * 4, ChunkedTileGridTest::fill, 2);
+
+        Assert.assertEquals(0, grid.getLoadedChunkCount());
+        Assert.assertEquals(1, grid.getCell(0, 0));
+        Assert.assertEquals(4, grid.getCell(SIZE * 2, SIZE));
+        Assert.assertEquals(6, grid.getCell(SIZE * 3, SIZE * 3 - 1));
+        Assert.assertEquals(2, grid.getLoadedChunkCount());
+    }
+
+    @Test
+    public void testModifiedChunksAreKeptUntilSaved() {
+        ChunkedTileGrid grid = new ChunkedTileGrid(SIZE * 4, SIZE * 4, ChunkSource.BLANK, 1);
+
+        grid.setCell(0, 0, 7);
+        grid.getCell(SIZE * 3, SIZE * 3);
+        grid.retainAround(SIZE * 3, SIZE * 3, 0);
+        Assert.assertEquals(2, grid.getLoadedChunkCount());
+        Assert.assertEquals(7, grid.getCell(0, 0));
+
+        grid.markSaved();
+        Assert.assertEquals(1, grid.getLoadedChunkCount());
+        Assert.assertFalse(grid.isDirty());
+    }
+
+    @Test
+    public void testEvictedChunksAreNotReused() {
+        Map<Long, int[]> stored = new HashMap<>();
+        AtomicInteger loads = new AtomicInteger();
+        ChunkSource source = new ChunkSource() {
+            @Override
+            public int[] load(int chunkX, int chunkY) {
+                loads.incrementAndGet();
+                int[] cells = stored.get(((long) chunkX << 32) | chunkY);
+                return cells != null ? cells.clone() : fill(chunkX, chunkY);
+            }
+
+            @Override
+            public boolean store(int chunkX, int chunkY, int[] cells) {
+                stored.put(((long) chunkX << 32) | chunkY, cells.clone());
+                return true;
+            }
+        };
+        ChunkedTileGrid grid = new ChunkedTileGrid(SIZE * 4, SIZE * 4, source, 1);
+
+        // Cells of the last used chunk do not load it again.
+        grid.setCell(0, 0, 7);
+        Assert.assertEquals(7, grid.getCell(0, 0));
+        Assert.assertEquals(1, grid.getCell(SIZE - 1, SIZE - 1));
+        Assert.assertEquals(1, loads.get());
+
+        // Loading another chunk stores and drops the last one.
+        Assert.assertEquals(3, grid.getCell(SIZE, SIZE));
+        grid.setCell(0, 1, 8);
+        Assert.assertEquals(7, grid.getCell(0, 0));
+        Assert.assertEquals(3, loads.get());
+
+        grid.retainAround(SIZE * 3, SIZE * 3, 0);
+        Assert.assertEquals(0, grid.getLoadedChunkCount());
+        Assert.assertEquals(8, grid.getCell(0, 1));
+        Assert.assertEquals(4, loads.get());
+    }
+
+    private static int[] fill(int chunkX, int chunkY) {
+        int[] cells = new int[SIZE * SIZE];
+        Arrays.fill(cells, chunkX + chunkY + 1);
+        return cells;
+    }
+
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import net.rpgtoolkit.common.io.Paths;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that indexed dispatch picks the same handlers as a linear scan.
+ */
+public class DispatchTableTest {
+
+    @Test
+    public void testCandidatesKeepOrder() {
+        Map<String, Set<String>> keys = new HashMap<>();
+        keys.put("board", Collections.singleton(".board"));
+        keys.put("any", Collections.<String>emptySet());
+        keys.put("images", new HashSet<>(Arrays.asList(".png", ".gif")));
+        keys.put("binary", Collections.singleton(".board"));
+
+        DispatchTable<String> table = new DispatchTable<>(
+                Arrays.asList("board", "any", "images", "binary"), keys::get);
+
+        Assert.assertEquals(Arrays.asList("board", "any", "binary"), table.get(".board"));
+        Assert.assertEquals(Arrays.asList("any", "images"), table.get(".png"));
+        Assert.assertEquals(Collections.singletonList("any"), table.get(".item"));
+        Assert.assertEquals(Collections.singletonList("any"), table.get(""));
+    }
+
+    @Test
+    public void testLastExtension() {
+        Assert.assertEquals(".board", Paths.lastExtension(URI.create("file:///Boards/room.v2.board")));
+        Assert.assertEquals(".board", Paths.lastExtension(URI.create("file:///a.b/room.board")));
+        Assert.assertEquals("", Paths.lastExtension(URI.create("file:///a.b/room")));
+        Assert.assertEquals("", Paths.lastExtension(URI.create("mailto:help@rpgtoolkit.net")));
+        Assert.assertEquals(".v2.board", Paths.extension("/Boards/room.v2.board"));
+        Assert.assertEquals(".b/room", Paths.extension("/a.b/room"));
+    }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LazyImageTest {
+
+    @Test
+    public void testConcurrentGetsDecodeOnce() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BufferedImage decoded = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        LazyImage image = new LazyImage(() -> {
+            count.incrementAndGet();
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return decoded;
+        });
+
+        AtomicReference<BufferedImage> first = new AtomicReference<>();
+        Thread thread = new Thread(() -> first.set(image.get()));
+        thread.start();
+        Assert.assertTrue(entered.await(5, TimeUnit.SECONDS));
+        Assert.assertNull(image.getNow(null));
+        Assert.assertFalse(image.isReady());
+
+        release.countDown();
+        Assert.assertSame(decoded, image.get());
+        thread.join(5000);
+        Assert.assertSame(decoded, first.get());
+        Assert.assertEquals(1, count.get());
+    }
+
+    @Test
+    public void testErrorCompletesWaiters() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        LazyImage image = new LazyImage(() -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            throw new OutOfMemoryError("decode");
+        });
+
+        Thread thread = new Thread(() -> {
+            try {
+                image.get();
+            } catch (Throwable ex) {
+                // Expected, the decoding thread sees the error.
+            }
+        });
+        thread.start();
+        Assert.assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        AtomicReference<Throwable> waited = new AtomicReference<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                image.get();
+            } catch (CompletionException ex) {
+                waited.set(ex.getCause());
+            }
+        });
+        waiter.start();
+        release.countDown();
+        waiter.join(5000);
+        thread.join(5000);
+
+        Assert.assertFalse(waiter.isAlive());
+        Assert.assertTrue(waited.get() instanceof OutOfMemoryError);
+        Assert.assertTrue(image.isReady());
+        Assert.assertNull(image.getNow(null));
+    }
+
+}
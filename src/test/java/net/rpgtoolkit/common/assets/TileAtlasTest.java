@@ -0,0 +1,46 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets;
+
+import java.awt.Color;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the packing of tiles into atlas pages.
+ */
+public class TileAtlasTest {
+
+    @Test
+    public void testTilesArePacked() throws TilePixelOutOfRangeException {
+        TileSet tileSet = new TileSet(null, 32, 32);
+        tileSet.setName("atlas.tst");
+        for (int i = 0; i < 5; i++) {
+            Tile tile = new Tile(tileSet, i);
+            tile.setPixel(1, 2, new Color(i * 40, 0, 0, 255));
+            tileSet.addTile(tile);
+        }
+
+        TileAtlas atlas = new TileAtlasBuilder(64).add(tileSet).build();
+
+        // Two pages of two shelves, then one page holding the last tile.
+        Assert.assertEquals(2, atlas.getPages().size());
+        Assert.assertEquals(32, atlas.getPages().get(1).getHeight());
+
+        for (int i = 0; i < 5; i++) {
+            TileAtlas.Region region = atlas.getRegion(tileSet, i);
+            Assert.assertEquals(i / 4, region.getPageIndex());
+            Assert.assertEquals(new Color(i * 40, 0, 0, 255).getRGB(),
+                    region.getPage().getRGB(region.getX() + 1, region.getY() + 2));
+        }
+
+        Assert.assertSame(atlas.getRegion(tileSet, 3), atlas.getRegion(tileSet.lookupTile(3)));
+        Assert.assertNull(atlas.getRegion(tileSet, 5));
+    }
+
+}
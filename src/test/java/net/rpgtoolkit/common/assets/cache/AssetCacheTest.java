@@ -0,0 +1,230 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.cache;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetHandle;
+import net.rpgtoolkit.common.assets.Board;
+import net.rpgtoolkit.common.assets.BoardLayer;
+import net.rpgtoolkit.common.assets.ChunkSource;
+import net.rpgtoolkit.common.assets.ChunkedTileGrid;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the eviction behaviour of the bounded asset cache.
+ */
+public class AssetCacheTest {
+
+    private static final AssetWeigher UNIT_WEIGHER = handle -> 1;
+
+    @Test
+    public void testLruEvictsLeastRecentlyUsed() {
+        AssetCache cache = new AssetCache(2, new LruEvictionPolicy(), UNIT_WEIGHER);
+        AssetDescriptor a = descriptor("a");
+        AssetDescriptor b = descriptor("b");
+        AssetDescriptor c = descriptor("c");
+
+        cache.put(a, new TestHandle(a));
+        cache.put(b, new TestHandle(b));
+        cache.get(a);
+        cache.put(c, new TestHandle(c));
+
+        Assert.assertTrue(cache.contains(a));
+        Assert.assertFalse(cache.contains(b));
+        Assert.assertTrue(cache.contains(c));
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertEquals(2, cache.getWeight());
+    }
+
+    @Test
+    public void testLfuEvictsLeastFrequentlyUsed() {
+        AssetCache cache = new AssetCache(2, new LfuEvictionPolicy(), UNIT_WEIGHER);
+        AssetDescriptor a = descriptor("a");
+        AssetDescriptor b = descriptor("b");
+        AssetDescriptor c = descriptor("c");
+
+        cache.put(a, new TestHandle(a));
+        cache.put(b, new TestHandle(b));
+        cache.get(b);
+        cache.get(b);
+        cache.get(a);
+        cache.put(c, new TestHandle(c));
+
+        Assert.assertFalse(cache.contains(a));
+        Assert.assertTrue(cache.contains(b));
+        Assert.assertTrue(cache.contains(c));
+    }
+
+    @Test
+    public void testSizeWeightedEvictsLargeEntries() {
+        AssetDescriptor big = descriptor("big");
+        AssetDescriptor small = descriptor("small");
+        AssetDescriptor other = descriptor("other");
+        AssetWeigher weigher = handle -> handle.getDescriptor().equals(big) ? 8 : 1;
+        AssetCache cache = new AssetCache(10, new SizeWeightedEvictionPolicy(), weigher);
+
+        cache.put(small, new TestHandle(small));
+        cache.put(big, new TestHandle(big));
+        cache.put(other, new TestHandle(other));
+        cache.setCapacity(5);
+
+        Assert.assertFalse(cache.contains(big));
+        Assert.assertTrue(cache.contains(small));
+        Assert.assertTrue(cache.contains(other));
+    }
+
+    @Test
+    public void testPinnedEntriesAreNotEvicted() {
+        AssetCache cache = new AssetCache(1, new LruEvictionPolicy(), UNIT_WEIGHER);
+        AssetDescriptor a = descriptor("a");
+        AssetDescriptor b = descriptor("b");
+
+        cache.pin(a);
+        cache.put(a, new TestHandle(a));
+        cache.put(b, new TestHandle(b));
+
+        Assert.assertTrue(cache.contains(a));
+        Assert.assertFalse(cache.contains(b));
+
+        cache.setCapacity(0);
+        Assert.assertTrue(cache.contains(a));
+
+        cache.unpin(a);
+        Assert.assertFalse(cache.contains(a));
+        Assert.assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void testPutIfAbsentKeepsFirstHandle() {
+        AssetCache cache = new AssetCache();
+        AssetDescriptor a = descriptor("a");
+        TestHandle first = new TestHandle(a);
+
+        Assert.assertNull(cache.putIfAbsent(a, first));
+        Assert.assertSame(first, cache.putIfAbsent(a, new TestHandle(a)));
+        Assert.assertSame(first, cache.get(a));
+    }
+
+    @Test
+    public void testRemovalListenerSeesEveryRemoval() {
+        AssetCache cache = new AssetCache(2, new LruEvictionPolicy(), UNIT_WEIGHER);
+        AssetDescriptor a = descriptor("a");
+        AssetDescriptor b = descriptor("b");
+        AssetDescriptor c = descriptor("c");
+        TestHandle first = new TestHandle(a);
+        List<AssetHandle> removed = new ArrayList<>();
+        cache.setRemovalListener((descriptor, handle) -> {
+            // Called without the lock held, so the cache may be used.
+            Assert.assertFalse(Thread.holdsLock(cache));
+            Assert.assertFalse(cache.contains(descriptor) && cache.peek(descriptor) == handle);
+            removed.add(handle);
+        });
+
+        cache.put(a, first);
+        TestHandle replacement = new TestHandle(a);
+        cache.put(a, replacement);
+        Assert.assertEquals(Arrays.asList(first), removed);
+
+        TestHandle second = new TestHandle(b);
+        cache.put(b, second);
+        cache.put(c, new TestHandle(c));
+        Assert.assertEquals(Arrays.asList(first, replacement), removed);
+
+        cache.remove(b);
+        Assert.assertEquals(Arrays.asList(first, replacement, second), removed);
+
+        cache.clear();
+        Assert.assertEquals(4, removed.size());
+    }
+
+    private static AssetDescriptor descriptor(String name) {
+        return new AssetDescriptor(URI.create("file:///cache/" + name));
+    }
+
+    @Test
+    public void testOversizedEntryIsTurnedAway() {
+        AssetDescriptor big = descriptor("big");
+        AssetDescriptor a = descriptor("a");
+        AssetDescriptor b = descriptor("b");
+        AssetWeigher weigher = handle -> handle.getDescriptor().equals(big) ? 8 : 1;
+        AssetCache cache = new AssetCache(4, new LruEvictionPolicy(), weigher);
+        List<AssetDescriptor> removed = new ArrayList<>();
+        cache.setRemovalListener((descriptor, handle) -> removed.add(descriptor));
+
+        cache.put(a, new TestHandle(a));
+        cache.put(b, new TestHandle(b));
+        Assert.assertNull(cache.putIfAbsent(big, new TestHandle(big)));
+
+        // It can never fit, so nothing else is evicted to make room for it.
+        Assert.assertFalse(cache.contains(big));
+        Assert.assertTrue(cache.contains(a));
+        Assert.assertTrue(cache.contains(b));
+        Assert.assertEquals(2, cache.getWeight());
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertEquals(Arrays.asList(big), removed);
+
+        // Unless it is pinned.
+        cache.pin(big);
+        cache.put(big, new TestHandle(big));
+        Assert.assertTrue(cache.contains(big));
+    }
+
+    @Test
+    public void testChunkedBoardWeighsResidentChunks() {
+        AssetDescriptor descriptor = descriptor("board");
+        Board board = new Board(descriptor);
+        int size = ChunkedTileGrid.CHUNK_SIZE * 64;
+        board.setWidth(size);
+        board.setHeight(size);
+        LinkedList<BoardLayer> layers = new LinkedList<>();
+        for (int i = 0; i < 2; i++) {
+            layers.add(new BoardLayer(board, new ChunkedTileGrid(size, size, ChunkSource.BLANK, 16),
+                    Collections.emptyList()));
+        }
+        board.setLayers(layers);
+        TestHandle handle = new TestHandle(descriptor);
+        handle.setAsset(board);
+
+        int chunk = ChunkedTileGrid.CHUNK_SIZE * ChunkedTileGrid.CHUNK_SIZE;
+        Assert.assertEquals(2L * 16 * chunk * 4, new FootprintWeigher().weigh(handle));
+    }
+
+    private static class TestHandle extends AssetHandle {
+
+        TestHandle(AssetDescriptor descriptor) {
+            super(descriptor);
+        }
+
+        @Override
+        public ReadableByteChannel read() throws IOException {
+            throw new IOException("not readable");
+        }
+
+        @Override
+        public WritableByteChannel write() throws IOException {
+            throw new IOException("not writable");
+        }
+
+        @Override
+        public long size() throws IOException {
+            return 0;
+        }
+
+    }
+
+}
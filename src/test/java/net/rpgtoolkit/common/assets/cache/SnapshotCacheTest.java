@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.cache;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.io.IOException;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetException;
+import net.rpgtoolkit.common.assets.AssetHandle;
+import net.rpgtoolkit.common.assets.AssetManager;
+import net.rpgtoolkit.common.assets.Board;
+import net.rpgtoolkit.common.assets.BoardLayer;
+import net.rpgtoolkit.common.assets.files.FileAssetHandleResolver;
+import net.rpgtoolkit.common.assets.serialization.JsonAnimationSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonBoardSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonEnemySerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonItemSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonPlayerSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonProjectSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonTileSetSerializer;
+import net.rpgtoolkit.common.utilities.ProjectGenerator;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class SnapshotCacheTest {
+
+    private static File directory;
+    private static File snapshots;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        directory = Files.createTempDirectory("snapshots").toFile();
+        snapshots = new File(directory, "snapshots");
+        try (ProjectGenerator generator = new ProjectGenerator(directory)) {
+            generator.setBoardCount(1);
+            generator.setBoardWidth(10);
+            generator.setBoardHeight(10);
+            generator.generate();
+        }
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testSnapshotMatchesSource() throws Exception {
+        File file = new AssetManager(directory).getProjectFile("toolkit.directory.board", "Board0.board");
+        SnapshotCache cache = new SnapshotCache(snapshots);
+        cache.clear();
+
+        Board parsed = load(file, cache);
+        Path snapshot = cache.getSnapshot(parsed.getDescriptor());
+        Assert.assertTrue(Files.isRegularFile(snapshot));
+
+        Board restored = load(file, cache);
+        Assert.assertNotSame(parsed, restored);
+        Assert.assertEquals(parsed.getDescriptor(), restored.getDescriptor());
+        Assert.assertEquals(parsed.getName(), restored.getName());
+        Assert.assertEquals(parsed.getWidth(), restored.getWidth());
+        Assert.assertEquals(parsed.getHeight(), restored.getHeight());
+        Assert.assertEquals(parsed.getTileSets().keySet(), restored.getTileSets().keySet());
+        Assert.assertEquals(parsed.getLayers().size(), restored.getLayers().size());
+        for (int i = 0; i < parsed.getLayers().size(); i++) {
+            BoardLayer expected = parsed.getLayers().get(i);
+            BoardLayer actual = restored.getLayers().get(i);
+            Assert.assertEquals(expected.getVectors().size(), actual.getVectors().size());
+            Assert.assertEquals(expected.getSprites().size(), actual.getSprites().size());
+        }
+    }
+
+    @Test
+    public void testRebuiltWhenSourceChanges() throws Exception {
+        File file = new AssetManager(directory).getProjectFile("toolkit.directory.board", "Board0.board");
+        SnapshotCache cache = new SnapshotCache(snapshots);
+        cache.clear();
+        Assert.assertEquals("Board0", load(file, cache).getName());
+
+        // Same size and time: the snapshot is trusted without reading the source.
+        FileTime modified = Files.getLastModifiedTime(file.toPath());
+        String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        Files.write(file.toPath(), json.replace("\"name\":\"Board0\"", "\"name\":\"BoardX\"")
+                .getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file.toPath(), modified);
+        Assert.assertEquals("Board0", load(file, cache).getName());
+
+        // A new time makes the checksum tell, the source is parsed again.
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(modified.toMillis() + 10000));
+        Assert.assertEquals("BoardX", load(file, cache).getName());
+        Assert.assertEquals("BoardX", load(file, cache).getName());
+
+        Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testUnreadableSnapshotIsDiscarded() throws Exception {
+        File file = new AssetManager(directory).getProjectFile("toolkit.directory.board", "Board0.board");
+        SnapshotCache cache = new SnapshotCache(snapshots);
+        Path snapshot = cache.getSnapshot(new AssetDescriptor(file.toURI()));
+        Files.createDirectories(snapshots.toPath());
+        Files.write(snapshot, new byte[] {1, 2, 3});
+
+        Assert.assertEquals(10, load(file, cache).getWidth());
+        Assert.assertTrue(Files.size(snapshot) > 3);
+    }
+
+    @Test
+    public void testSourceSavedWhileParsingIsNotSnapshotted() throws Exception {
+        File file = new AssetManager(directory).getProjectFile("toolkit.directory.board", "Board0.board");
+        SnapshotCache cache = new SnapshotCache(snapshots);
+        cache.clear();
+
+        AssetManager assetManager = register(new AssetManager(directory), new JsonBoardSerializer() {
+            @Override
+            public void deserialize(AssetHandle handle) throws IOException, AssetException {
+                super.deserialize(handle);
+                // Saved by someone else once the old contents have been parsed.
+                Files.setLastModifiedTime(file.toPath(),
+                        FileTime.fromMillis(file.lastModified() + 10000));
+            }
+        });
+        assetManager.setSnapshotCache(cache);
+        Board parsed = (Board) assetManager.deserialize(new AssetDescriptor(file.toURI())).getAsset();
+        cache.flush();
+        Assert.assertFalse(Files.exists(cache.getSnapshot(parsed.getDescriptor())));
+
+        // The next load snapshots the contents as they are now.
+        load(file, cache);
+        Assert.assertTrue(Files.isRegularFile(cache.getSnapshot(parsed.getDescriptor())));
+    }
+
+    private static Board load(File file, SnapshotCache cache) throws Exception {
+        // A fresh context each time, as after a restart.
+        AssetManager assetManager = register(new AssetManager(directory), new JsonBoardSerializer());
+        assetManager.setSnapshotCache(cache);
+        Board board = (Board) assetManager.deserialize(new AssetDescriptor(file.toURI())).getAsset();
+        // Snapshots are written in the background.
+        cache.flush();
+        return board;
+    }
+
+    private static AssetManager register(AssetManager assetManager, JsonBoardSerializer boards) {
+        assetManager.registerResolver(new FileAssetHandleResolver());
+        assetManager.registerSerializer(new JsonAnimationSerializer());
+        assetManager.registerSerializer(new JsonPlayerSerializer());
+        assetManager.registerSerializer(boards);
+        assetManager.registerSerializer(new JsonProjectSerializer());
+        assetManager.registerSerializer(new JsonEnemySerializer());
+        assetManager.registerSerializer(new JsonItemSerializer());
+        assetManager.registerSerializer(new JsonTileSetSerializer());
+        return assetManager;
+    }
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.files;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetHandle;
+import net.rpgtoolkit.common.assets.Project;
+import net.rpgtoolkit.common.assets.TileSet;
+import net.rpgtoolkit.common.assets.serialization.JsonProjectSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonTileSetSerializer;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class PackFileTest {
+
+    private static final File RESOURCES = new File("src/test/resources");
+    private static final File ROOT = new File("packed");
+
+    private static File file;
+    private static PackFile pack;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        file = File.createTempFile("test", ".zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("TileSets/"));
+            out.closeEntry();
+            putEntry(out, "Test.game", ZipEntry.STORED);
+            putEntry(out, "TileSets/Default.tileset", ZipEntry.DEFLATED);
+            out.setComment("Packed by PackFileTest");
+        }
+        pack = PackFile.open(file);
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        pack = null;
+        file.delete();
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+        Assert.assertEquals(2, pack.getNames().size());
+        Assert.assertTrue(pack.contains("Test.game"));
+        Assert.assertFalse(pack.contains("TileSets/"));
+        Assert.assertEquals(bytes("TileSets/Default.tileset").length,
+                pack.getSize("TileSets/Default.tileset"));
+        Assert.assertEquals(-1, pack.getSize("Missing.game"));
+        Assert.assertNull(pack.read("Missing.game"));
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        for (String name : pack.getNames()) {
+            ByteBuffer buffer = pack.read(name);
+            byte[] contents = new byte[buffer.remaining()];
+            buffer.get(contents);
+            Assert.assertArrayEquals(bytes(name), contents);
+        }
+    }
+
+    @Test
+    public void testResolve() throws Exception {
+        PackAssetHandleResolver resolver = new PackAssetHandleResolver(pack, ROOT);
+        Assert.assertFalse(resolver.resolvable(descriptor("Missing.game")));
+        Assert.assertFalse(resolver.resolvable(
+                new AssetDescriptor(new File(RESOURCES, "Test.game").getAbsoluteFile().toURI())));
+
+        AssetHandle handle = resolver.resolve(descriptor("Test.game"));
+        new JsonProjectSerializer().deserialize(handle);
+        Assert.assertEquals("The Wizard's Tower", ((Project) handle.getAsset()).getName());
+
+        handle = resolver.resolve(descriptor("TileSets/Default.tileset"));
+        new JsonTileSetSerializer().deserialize(handle);
+        Assert.assertFalse(((TileSet) handle.getAsset()).getImages().isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrite() throws Exception {
+        new PackAssetHandleResolver(pack, ROOT).resolve(descriptor("Test.game")).write();
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotZip() throws Exception {
+        PackFile.open(new File(RESOURCES, "Test.game"));
+    }
+
+    private static AssetDescriptor descriptor(String name) {
+        return new AssetDescriptor(new File(ROOT, name).getAbsoluteFile().toURI());
+    }
+
+    private static byte[] bytes(String name) throws IOException {
+        return Files.readAllBytes(new File(RESOURCES, name).toPath());
+    }
+
+    private static void putEntry(ZipOutputStream out, String name, int method) throws IOException {
+        byte[] contents = bytes(name);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(method);
+        if (method == ZipEntry.STORED) {
+            CRC32 crc = new CRC32();
+            crc.update(contents);
+            entry.setCrc(crc.getValue());
+            entry.setSize(contents.length);
+            entry.setCompressedSize(contents.length);
+        }
+        out.putNextEntry(entry);
+        out.write(contents);
+        out.closeEntry();
+    }
+
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.assets.metrics;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetHandle;
+import net.rpgtoolkit.common.assets.AssetManager;
+import net.rpgtoolkit.common.assets.cache.AssetCache;
+import net.rpgtoolkit.common.assets.cache.LruEvictionPolicy;
+import net.rpgtoolkit.common.assets.events.AssetLoadEvent;
+import net.rpgtoolkit.common.assets.files.FileAssetHandle;
+import net.rpgtoolkit.common.assets.files.FileAssetHandleResolver;
+import net.rpgtoolkit.common.assets.listeners.AssetLoadListener;
+import net.rpgtoolkit.common.assets.serialization.JsonItemSerializer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the measurements reported by the asset manager and cache.
+ */
+public class RecordingAssetMetricsTest {
+
+    @Test
+    public void testLoadsAndCacheHits() throws Exception {
+        AssetManager assetManager = AssetManager.getInstance();
+        assetManager.registerResolver(new FileAssetHandleResolver());
+        assetManager.registerSerializer(new JsonItemSerializer());
+
+        RecordingAssetMetrics metrics = new RecordingAssetMetrics();
+        List<AssetLoadEvent> events = new ArrayList<>();
+        AssetLoadListener listener = new AssetLoadListener() {
+            @Override
+            public void assetLoadStarted(AssetLoadEvent e) {
+                events.add(e);
+            }
+
+            @Override
+            public void assetLoadFinished(AssetLoadEvent e) {
+                events.add(e);
+            }
+        };
+
+        File file = new File(getClass().getClassLoader().getResource("Items/Block.item").toURI());
+        AssetDescriptor descriptor = new AssetDescriptor(file.toURI());
+        assetManager.getCache().remove(descriptor);
+        assetManager.setMetrics(metrics);
+        assetManager.addAssetLoadListener(listener);
+        try {
+            AssetHandle first = assetManager.deserialize(descriptor);
+            AssetHandle second = assetManager.deserialize(descriptor);
+            Assert.assertSame(first, second);
+        } finally {
+            assetManager.setMetrics(AssetMetrics.NONE);
+            assetManager.removeAssetLoadListener(listener);
+        }
+
+        Assert.assertEquals(1, metrics.getMissCount());
+        Assert.assertEquals(1, metrics.getHitCount());
+        Assert.assertEquals(0.5, metrics.getHitRatio(), 0);
+        Assert.assertEquals(1, metrics.getLoadCount());
+        Assert.assertEquals(0, metrics.getFailureCount());
+        Assert.assertEquals(0, metrics.getInFlightCount());
+        Assert.assertEquals(file.length(), metrics.getBytesRead());
+        Assert.assertEquals(1, metrics.getLatency(JsonItemSerializer.class).getCount());
+
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals(-1, events.get(0).getBytes());
+        Assert.assertEquals(file.length(), events.get(1).getBytes());
+        Assert.assertTrue(events.get(1).getSerializer() instanceof JsonItemSerializer);
+        Assert.assertNull(events.get(1).getError());
+    }
+
+    @Test
+    public void testEvictions() {
+        RecordingAssetMetrics metrics = new RecordingAssetMetrics();
+        AssetCache cache = new AssetCache(1, new LruEvictionPolicy(), handle -> 1);
+        cache.setMetrics(metrics);
+
+        for (String name : new String[]{"a", "b", "c"}) {
+            AssetDescriptor descriptor = new AssetDescriptor(URI.create("file:///" + name));
+            cache.put(descriptor, new FileAssetHandle(descriptor));
+        }
+
+        Assert.assertEquals(2, metrics.getEvictionCount());
+        Assert.assertEquals(cache.getEvictionCount(), metrics.getEvictionCount());
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000);
+        }
+        histogram.record(0);
+
+        Assert.assertEquals(101, histogram.getCount());
+        Assert.assertEquals(100000, histogram.getMax());
+        Assert.assertEquals(1, histogram.getPercentile(0));
+
+        // Within a factor of two of the exact value.
+        long median = histogram.getPercentile(0.5);
+        Assert.assertTrue(median >= 50000 && median < 100000);
+        Assert.assertEquals(100000, histogram.getPercentile(1));
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getPercentile(0.99));
+    }
+
+}
@@ -8,12 +8,21 @@
 package net.rpgtoolkit.common.assets.serialization;
 
 import java.awt.Point;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import net.rpgtoolkit.common.assets.Animation;
 import net.rpgtoolkit.common.assets.AnimationEnum;
+import net.rpgtoolkit.common.assets.AssetException;
+import net.rpgtoolkit.common.assets.AssetHandle;
 import net.rpgtoolkit.common.assets.AssetManager;
 import net.rpgtoolkit.common.assets.Board;
 import net.rpgtoolkit.common.assets.BoardLayer;
@@ -29,6 +38,7 @@ import net.rpgtoolkit.common.assets.BoardVectorType;
 import net.rpgtoolkit.common.assets.Event;
 import net.rpgtoolkit.common.assets.EventType;
 import net.rpgtoolkit.common.assets.SpriteSheet;
+import net.rpgtoolkit.common.assets.files.FileAssetHandle;
 import net.rpgtoolkit.common.assets.files.FileAssetHandleResolver;
 import net.rpgtoolkit.common.assets.serialization.legacy.LegacyAnimatedTileSerializer;
 import org.junit.Assert;
@@ -137,6 +147,208 @@ public class AssetSerializerTest {
         checkBoard(asset);
     }
 
+    @Test
+    public void testJsonBoardSavesInPlaceEdits() throws Exception {
+        String path = AssetSerializerTestHelper.getPath(
+                "Boards/Room.board");
+        JsonBoardSerializer serializer = new JsonBoardSerializer();
+
+        Board asset = AssetSerializerTestHelper.deserializeFile(path, serializer);
+        path = AssetSerializerTestHelper.serialize(asset, serializer);
+        asset = AssetSerializerTestHelper.deserializeFile(path, serializer);
+        Assert.assertFalse(asset.isDirty());
+        AssetHandle handle = new FileAssetHandle(asset.getDescriptor());
+        handle.setAsset(asset);
+
+        // Sprites, vectors and layers edited in place make the board dirty.
+        BoardLayer layer = asset.getLayers().get(0);
+        BoardSprite sprite = layer.getSprites().get(0);
+        sprite.setX(sprite.getX() + 5);
+        Assert.assertTrue(asset.isDirty());
+        serializer.serialize(handle);
+        Assert.assertFalse(asset.isDirty());
+
+        BoardVector vector = layer.getVectors().get(0);
+        vector.addPoint(300, 400);
+        Assert.assertTrue(asset.isDirty());
+        serializer.serialize(handle);
+        Assert.assertFalse(asset.isDirty());
+
+        layer.setName("Renamed");
+        Assert.assertTrue(asset.isDirty());
+        serializer.serialize(handle);
+        Assert.assertFalse(asset.isDirty());
+
+        Board saved = AssetSerializerTestHelper.deserializeFile(path, serializer);
+        BoardLayer savedLayer = saved.getLayers().get(0);
+        Assert.assertEquals("Renamed", savedLayer.getName());
+        Assert.assertEquals(sprite.getX(), savedLayer.getSprites().get(0).getX());
+        Assert.assertEquals(vector.getPointCount(), savedLayer.getVectors().get(0).getPointCount());
+        Assert.assertEquals(new Point(300, 400), savedLayer.getVectors().get(0).getPoints()
+                .get(vector.getPointCount() - 1));
+
+        // A clean board still overwrites whatever is on disk.
+        File file = new File(asset.getDescriptor().getURI());
+        Files.write(file.toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+        serializer.serialize(handle);
+        saved = AssetSerializerTestHelper.deserializeFile(path, serializer);
+        Assert.assertEquals("Renamed", saved.getLayers().get(0).getName());
+    }
+
+    @Test
+    public void testBinaryBoardSerializer() throws Exception {
+        String path = AssetSerializerTestHelper.getPath(
+                "Boards/Room.board");
+        JsonBoardSerializer jsonSerializer = new JsonBoardSerializer();
+        BinaryBoardSerializer binarySerializer = new BinaryBoardSerializer();
+
+        // Convert the original to the binary format and back.
+        Board asset = AssetSerializerTestHelper.deserializeFile(path, jsonSerializer);
+        path = AssetSerializerTestHelper.serialize(asset, binarySerializer);
+        asset = AssetSerializerTestHelper.deserializeFile(path, binarySerializer);
+        checkBoard(asset);
+        Assert.assertEquals("Default.tileset",
+                asset.getLayers().get(0).getTileAt(0, 0).getTileSet().getName());
+
+        path = AssetSerializerTestHelper.serialize(asset, jsonSerializer);
+        asset = AssetSerializerTestHelper.deserializeFile(path, jsonSerializer);
+        checkBoard(asset);
+    }
+
+    @Test
+    public void testBinaryBoardIncrementalSave() throws Exception {
+        String path = AssetSerializerTestHelper.getPath(
+                "Boards/Room.board");
+        BinaryBoardSerializer serializer = new BinaryBoardSerializer();
+
+        Board asset = AssetSerializerTestHelper.deserializeFile(path, new JsonBoardSerializer());
+        Assert.assertFalse(asset.isDirty());
+        path = AssetSerializerTestHelper.serialize(asset, serializer);
+        asset = AssetSerializerTestHelper.deserializeFile(path, serializer);
+        Assert.assertFalse(asset.isDirty());
+
+        // Change a cell of the first row behind the board's back, a patch
+        // must leave rows that were not edited alone.
+        File file = new File(asset.getDescriptor().getURI());
+        long gridOffset;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(buffer, 32);
+            gridOffset = buffer.getLong(0) - 3 * 3 * 4;
+            buffer.clear();
+            buffer.putInt(0, 1 << 16 | 7);
+            buffer.limit(4);
+            channel.write(buffer, gridOffset);
+        }
+
+        BoardLayer layer = asset.getLayers().get(0);
+        layer.setTileAt(1, 1, null);
+        layer.removeVector(layer.getVectors().get(0));
+        Assert.assertTrue(layer.isTilesDirty());
+        Assert.assertTrue(layer.isObjectsDirty());
+        Assert.assertTrue(asset.isDirty());
+
+        AssetHandle handle = new FileAssetHandle(asset.getDescriptor());
+        handle.setAsset(asset);
+        serializer.serialize(handle);
+        Assert.assertFalse(asset.isDirty());
+
+        Board saved = AssetSerializerTestHelper.deserializeFile(path, serializer);
+        Assert.assertEquals(7, saved.getLayers().get(0).getTileAt(0, 0).getIndex());
+        Assert.assertNull(saved.getLayers().get(0).getTileAt(1, 1).getTileSet());
+        Assert.assertEquals(asset.getLayers().get(0).getTileAt(2, 1).getIndex(),
+                saved.getLayers().get(0).getTileAt(2, 1).getIndex());
+        Assert.assertTrue(saved.getLayers().get(0).getVectors().isEmpty());
+        Assert.assertEquals(1, saved.getLayers().get(0).getSprites().size());
+    }
+
+    @Test
+    public void testBinaryBoardLongHeader() throws Exception {
+        String path = AssetSerializerTestHelper.getPath(
+                "Boards/Room.board");
+        BinaryBoardSerializer serializer = new BinaryBoardSerializer();
+        Board asset = AssetSerializerTestHelper.deserializeFile(path, new JsonBoardSerializer());
+        StringBuilder name = new StringBuilder();
+        while (name.length() < 20000) {
+            name.append("Room ");
+        }
+        asset.setName(name.toString());
+        path = AssetSerializerTestHelper.serialize(asset, serializer);
+
+        // The header is larger than what is read at first.
+        Board saved = AssetSerializerTestHelper.deserializeFile(path, serializer);
+        Assert.assertEquals(name.toString(), saved.getName());
+        Assert.assertEquals(1, saved.getLayers().get(0).getSprites().size());
+
+        // Saving over the file it was loaded from shrinks it in place.
+        saved.getLayers().get(0).removeVector(saved.getLayers().get(0).getVectors().get(0));
+        AssetHandle handle = new FileAssetHandle(saved.getDescriptor());
+        handle.setAsset(saved);
+        serializer.serialize(handle);
+        saved = AssetSerializerTestHelper.deserializeFile(path, serializer);
+        Assert.assertTrue(saved.getLayers().get(0).getVectors().isEmpty());
+    }
+
+    @Test
+    public void testBinaryBoardRejectsTileWithoutTileSet() throws Exception {
+        String path = AssetSerializerTestHelper.getPath(
+                "Boards/Room.board");
+        BinaryBoardSerializer serializer = new BinaryBoardSerializer();
+        Board asset = AssetSerializerTestHelper.deserializeFile(path, new JsonBoardSerializer());
+        path = AssetSerializerTestHelper.serialize(asset, serializer);
+
+        Board loaded = AssetSerializerTestHelper.deserializeFile(path, serializer);
+        File file = new File(loaded.getDescriptor().getURI());
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(buffer, 32);
+            long gridOffset = buffer.getLong(0) - 3 * 3 * 4;
+            buffer.clear();
+            buffer.putInt(0, 7);
+            buffer.limit(4);
+            channel.write(buffer, gridOffset);
+        }
+
+        try {
+            AssetSerializerTestHelper.deserializeFile(path, serializer);
+            Assert.fail();
+        } catch (AssetException ex) {
+            Assert.assertTrue(ex.getMessage().startsWith("Tile index without a tile set"));
+        }
+    }
+
+    @Test
+    public void testBinaryBoardChunkedRewrite() throws Exception {
+        String path = AssetSerializerTestHelper.getPath(
+                "Boards/Room.board");
+        Board asset = AssetSerializerTestHelper.deserializeFile(path, new JsonBoardSerializer());
+        path = AssetSerializerTestHelper.serialize(asset, new BinaryBoardSerializer());
+
+        // Chunked layers read from the file they are saved over.
+        BinaryBoardSerializer serializer = new BinaryBoardSerializer(0);
+        Board chunked = AssetSerializerTestHelper.deserializeFile(path, serializer);
+        Assert.assertTrue(chunked.isChunked());
+        int index = chunked.getLayers().get(0).getTileAt(2, 1).getIndex();
+
+        // A new name moves every grid, the file is rewritten completely.
+        chunked.setName("Renamed Room");
+        chunked.getLayers().get(0).setTileAt(1, 1, null);
+        AssetHandle handle = new FileAssetHandle(chunked.getDescriptor());
+        handle.setAsset(chunked);
+        serializer.serialize(handle);
+
+        Assert.assertEquals(index, chunked.getLayers().get(0).getTileAt(2, 1).getIndex());
+        Board saved = AssetSerializerTestHelper.deserializeFile(path, new BinaryBoardSerializer());
+        Assert.assertFalse(saved.isChunked());
+        Assert.assertEquals("Renamed Room", saved.getName());
+        Assert.assertNull(saved.getLayers().get(0).getTileAt(1, 1).getTileSet());
+        Assert.assertEquals(index, saved.getLayers().get(0).getTileAt(2, 1).getIndex());
+        Assert.assertEquals(1, saved.getLayers().get(0).getVectors().size());
+        Assert.assertEquals(1, saved.getLayers().get(0).getSprites().size());
+    }
+
     private void checkBoard(Board asset) {
         Assert.assertEquals("Room", asset.getName());
         Assert.assertEquals(3, asset.getWidth());
@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.io;
+
+import java.io.StringReader;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JsonPullParserTest {
+
+    @Test
+    public void testTruncatedDocuments() throws Exception {
+        String[] documents = {
+            "", "[", "{", "{\"a\":[", "{\"a\"", "{\"a\":", "{\"a\":1,",
+            "[1,", "[[", "\"abc", "[\"a\\", "[\"\\u00", "{\"a\":{\"b\":[1,2"
+        };
+        for (String document : documents) {
+            try (JsonPullParser parser = parser(document)) {
+                parser.skipValue();
+                parser.peek();
+                Assert.fail("parsed '" + document + "'");
+            } catch (JSONException ex) {
+                // Expected, truncated input is a syntax error.
+            }
+        }
+    }
+
+    @Test
+    public void testMalformedDocuments() throws Exception {
+        String[] documents = {"[1 2]", "{\"a\" 1}", "{a:1}", "[1]]", "[\"\\uZZZZ\"]", "@"};
+        for (String document : documents) {
+            try (JsonPullParser parser = parser(document)) {
+                parser.skipValue();
+                parser.peek();
+                Assert.fail("parsed '" + document + "'");
+            } catch (JSONException ex) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void testNesting() throws Exception {
+        try (JsonPullParser parser = parser(
+                " {\"a\": [1, [2, {\"b\": null}], true], \"c\": {}, \"d\": [], \"e\": false} ")) {
+            parser.beginObject();
+            Assert.assertEquals("a", parser.nextName());
+            parser.beginArray();
+            Assert.assertEquals(1, parser.nextInt());
+            parser.beginArray();
+            Assert.assertEquals(2, parser.nextInt());
+            parser.beginObject();
+            Assert.assertEquals("b", parser.nextName());
+            Assert.assertEquals(JsonPullParser.Token.NULL, parser.peek());
+            parser.nextNull();
+            Assert.assertFalse(parser.hasNext());
+            parser.endObject();
+            parser.endArray();
+            Assert.assertTrue(parser.nextBoolean());
+            Assert.assertFalse(parser.hasNext());
+            parser.endArray();
+
+            Assert.assertEquals("c", parser.nextName());
+            parser.skipValue();
+            Assert.assertEquals("d", parser.nextName());
+            Assert.assertEquals(0, ((JSONArray) parser.nextValue()).length());
+            Assert.assertEquals("e", parser.nextName());
+            Assert.assertFalse(parser.nextBoolean());
+            parser.endObject();
+            Assert.assertEquals(JsonPullParser.Token.END_DOCUMENT, parser.peek());
+        }
+    }
+
+    @Test
+    public void testNextValueMatchesJsonObject() throws Exception {
+        String document = "{\"name\":\"x\",\"list\":[1,2.5,\"3\",null,{\"deep\":[true]}],\"empty\":{}}";
+        try (JsonPullParser parser = parser(document)) {
+            JSONObject value = (JSONObject) parser.nextValue();
+            Assert.assertEquals(new JSONObject(document).toString(), value.toString());
+        }
+    }
+
+    @Test
+    public void testEscapes() throws Exception {
+        try (JsonPullParser parser = parser(
+                "[\"a\\\"b\\\\c\\/d\\n\\t\\r\\b\\f\", \"\\u0041\\u00e9\\u263A\", \"\"]")) {
+            parser.beginArray();
+            Assert.assertEquals("a\"b\\c/d\n\t\r\b\f", parser.nextString());
+            Assert.assertEquals("A\u00e9\u263A", parser.nextString());
+            Assert.assertEquals("", parser.nextString());
+            parser.endArray();
+        }
+    }
+
+    @Test
+    public void testNumbers() throws Exception {
+        try (JsonPullParser parser = parser("[0, -7, 42, 2.5, -1.5e3, \"12\", 1E2]")) {
+            parser.beginArray();
+            Assert.assertEquals(0, parser.nextInt());
+            Assert.assertEquals(-7, parser.nextInt());
+            Assert.assertEquals("42", parser.nextString());
+            Assert.assertEquals(2.5, parser.nextDouble(), 0);
+            Assert.assertEquals(-1500, parser.nextDouble(), 0);
+            // Numeric strings are accepted, as org.json does.
+            Assert.assertEquals(12, parser.nextInt());
+            Assert.assertEquals(100, parser.nextInt());
+            parser.endArray();
+        }
+
+        try (JsonPullParser parser = parser("[\"abc\"]")) {
+            parser.beginArray();
+            parser.nextInt();
+            Assert.fail();
+        } catch (JSONException ex) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testTokensAcrossBufferRefills() throws Exception {
+        StringBuilder document = new StringBuilder("[");
+        for (int i = 0; i < 5000; i++) {
+            document.append(i == 0 ? "" : ", ").append("{\"v\":").append(i)
+                    .append(",\"s\":\"item\\u0020").append(i).append("\"}");
+        }
+        document.append("]");
+
+        try (JsonPullParser parser = parser(document.toString())) {
+            parser.beginArray();
+            int count = 0;
+            while (parser.hasNext()) {
+                parser.beginObject();
+                Assert.assertEquals("v", parser.nextName());
+                Assert.assertEquals(count, parser.nextInt());
+                Assert.assertEquals("s", parser.nextName());
+                Assert.assertEquals("item " + count, parser.nextString());
+                parser.endObject();
+                count++;
+            }
+            parser.endArray();
+            Assert.assertEquals(5000, count);
+        }
+    }
+
+    private static JsonPullParser parser(String document) {
+        return new JsonPullParser(new StringReader(document));
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.utilities;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import javax.imageio.ImageIO;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ImageCacheTest {
+
+    // Estimated size of one of the 16x16 test images.
+    private static final long IMAGE_BYTES = 16 * 16 * 4;
+
+    private static File directory;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        directory = Files.createTempDirectory("images").toFile();
+        for (String name : new String[]{"a.png", "b.png", "c.png"}) {
+            write(new File(directory, name));
+        }
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testImagesAreShared() throws Exception {
+        ImageCache cache = new ImageCache();
+        BufferedImage image = cache.getImage(new File(directory, "a.png"));
+        Assert.assertEquals(16, image.getWidth());
+        Assert.assertSame(image, cache.getImage(new File(directory, "a.png")));
+        Assert.assertSame(image, cache.getImage(new File(directory, "../" + directory.getName() + "/a.png")));
+        Assert.assertEquals(IMAGE_BYTES, cache.getMemoryUsage());
+
+        cache.remove(new File(directory, "a.png"));
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.getMemoryUsage());
+        Assert.assertNotSame(image, cache.getImage(new File(directory, "a.png")));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedImagesAreDropped() throws Exception {
+        ImageCache cache = new ImageCache(IMAGE_BYTES * 2);
+        File a = new File(directory, "a.png");
+        File b = new File(directory, "b.png");
+        File c = new File(directory, "c.png");
+
+        BufferedImage image = cache.getImage(a);
+        cache.getImage(b);
+        cache.getImage(a);
+        cache.getImage(c);
+        Assert.assertTrue(cache.contains(a));
+        Assert.assertFalse(cache.contains(b));
+        Assert.assertTrue(cache.contains(c));
+        Assert.assertEquals(IMAGE_BYTES * 2, cache.getMemoryUsage());
+        Assert.assertSame(image, cache.getImage(a));
+
+        cache.setMemoryBudget(0);
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.getMemoryUsage());
+        // Images over budget are still decoded, only not kept.
+        Assert.assertNotNull(cache.getImage(b));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testModifiedImagesAreDecodedAgain() throws Exception {
+        ImageCache cache = new ImageCache();
+        File file = new File(directory, "c.png");
+        BufferedImage image = cache.getImage(file);
+
+        file.setLastModified(file.lastModified() + 10000);
+        BufferedImage reloaded = cache.getImage(file);
+        Assert.assertNotSame(image, reloaded);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(IMAGE_BYTES, cache.getMemoryUsage());
+    }
+
+    private static void write(File file) throws Exception {
+        ImageIO.write(new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB), "png", file);
+    }
+
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.utilities;
+
+import java.io.File;
+import java.nio.file.Files;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetManager;
+import net.rpgtoolkit.common.assets.Board;
+import net.rpgtoolkit.common.assets.BoardLayer;
+import net.rpgtoolkit.common.assets.Item;
+import net.rpgtoolkit.common.assets.Project;
+import net.rpgtoolkit.common.assets.TileSet;
+import net.rpgtoolkit.common.assets.files.FileAssetHandleResolver;
+import net.rpgtoolkit.common.assets.serialization.JsonAnimationSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonBoardSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonEnemySerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonItemSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonPlayerSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonProjectSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonTileSetSerializer;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ProjectGeneratorTest {
+
+    private static File directory;
+    private static AssetManager assetManager;
+    private static Project project;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        directory = Files.createTempDirectory("generated").toFile();
+        assetManager = new AssetManager(directory);
+        assetManager.registerResolver(new FileAssetHandleResolver());
+        assetManager.registerSerializer(new JsonAnimationSerializer());
+        assetManager.registerSerializer(new JsonPlayerSerializer());
+        assetManager.registerSerializer(new JsonBoardSerializer());
+        assetManager.registerSerializer(new JsonProjectSerializer());
+        assetManager.registerSerializer(new JsonEnemySerializer());
+        assetManager.registerSerializer(new JsonItemSerializer());
+        assetManager.registerSerializer(new JsonTileSetSerializer());
+
+        ProjectGenerator generator = new ProjectGenerator(directory, assetManager);
+        generator.setBoardCount(2);
+        generator.setBoardWidth(40);
+        generator.setBoardHeight(30);
+        generator.setLayerCount(3);
+        generator.setVectorCount(5);
+        generator.setSpriteCount(7);
+        project = generator.generate();
+
+        // Force the checks below to read the files back.
+        assetManager.getCache().clear();
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testProject() throws Exception {
+        Project loaded = load(new File(project.getDescriptor().getURI()), Project.class);
+        Assert.assertEquals("Generated", loaded.getName());
+        Assert.assertEquals("Board0.board", loaded.getInitialBoard());
+        Assert.assertEquals("Character0.character", loaded.getInitialCharacter());
+        Assert.assertTrue(file("toolkit.directory.program", loaded.getStartupProgram()).isFile());
+    }
+
+    @Test
+    public void testBoards() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            Board board = load(file("toolkit.directory.board", "Board" + i + ".board"), Board.class);
+            Assert.assertEquals(40, board.getWidth());
+            Assert.assertEquals(30, board.getHeight());
+            Assert.assertEquals(3, board.getLayers().size());
+            Assert.assertEquals(4, board.getTileSets().size());
+
+            int sprites = 0;
+            for (BoardLayer layer : board.getLayers()) {
+                Assert.assertEquals(5, layer.getVectors().size());
+                sprites += layer.getSprites().size();
+            }
+            Assert.assertEquals(7, sprites);
+
+            // The bottom layer is completely filled.
+            Assert.assertNotNull(board.getLayers().get(0).getTileAt(39, 29).getTileSet());
+        }
+    }
+
+    @Test
+    public void testReferencedAssets() throws Exception {
+        TileSet tileSet = load(file("toolkit.directory.tileset", "TileSet0.tileset"), TileSet.class);
+        Assert.assertTrue(file("toolkit.directory.bitmap", tileSet.getImages().get(0)).isFile());
+
+        Item item = load(file("toolkit.directory.item", "Item0.item"), Item.class);
+        Assert.assertTrue(file("toolkit.directory.misc", item.getAnimations().get("SOUTH")).isFile());
+        Assert.assertTrue(file("toolkit.directory.enemy", "Enemy0.enemy").isFile());
+    }
+
+    @Test
+    public void testDeterministic() throws Exception {
+        File other = Files.createTempDirectory("generated").toFile();
+        String projectPath = System.getProperty("project.path");
+        try {
+            // A context of its own, as the generator creates by default.
+            try (ProjectGenerator generator = new ProjectGenerator(other)) {
+                generator.setBoardCount(2);
+                generator.setBoardWidth(40);
+                generator.setBoardHeight(30);
+                generator.setLayerCount(3);
+                generator.setVectorCount(5);
+                generator.setSpriteCount(7);
+                generator.generate();
+            }
+
+            String path = CoreProperties.getProperty("toolkit.directory.board")
+                    + File.separator + "Board1.board";
+            Assert.assertArrayEquals(
+                    Files.readAllBytes(new File(directory, path).toPath()),
+                    Files.readAllBytes(new File(other, path).toPath()));
+            Assert.assertEquals(projectPath, System.getProperty("project.path"));
+        } finally {
+            FileUtils.deleteDirectory(other);
+        }
+    }
+
+    private static File file(String directoryKey, String fileName) {
+        return new File(new File(directory, CoreProperties.getProperty(directoryKey)), fileName);
+    }
+
+    private static <T> T load(File file, Class<T> type) throws Exception {
+        return type.cast(assetManager.deserialize(
+                new AssetDescriptor(file.toURI())).getAsset());
+    }
+
+}
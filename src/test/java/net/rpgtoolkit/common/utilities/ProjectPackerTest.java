@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.utilities;
+
+import java.io.File;
+import java.nio.file.Files;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetHandle;
+import net.rpgtoolkit.common.assets.AssetManager;
+import net.rpgtoolkit.common.assets.Board;
+import net.rpgtoolkit.common.assets.Project;
+import net.rpgtoolkit.common.assets.files.PackAssetHandleResolver;
+import net.rpgtoolkit.common.assets.files.PackFile;
+import net.rpgtoolkit.common.assets.files.PackManifest;
+import net.rpgtoolkit.common.assets.serialization.BinaryBoardSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonAnimationSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonItemSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonProjectSerializer;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ProjectPackerTest {
+
+    private static File directory;
+    private static File bundle;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        directory = Files.createTempDirectory("packed").toFile();
+        try (ProjectGenerator generator = new ProjectGenerator(directory)) {
+            generator.setBoardCount(2);
+            generator.setBoardWidth(20);
+            generator.setBoardHeight(15);
+            generator.setLayerCount(2);
+            generator.setVectorCount(3);
+            generator.setSpriteCount(4);
+            generator.generate();
+        }
+
+        bundle = File.createTempFile("packed", ".zip");
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        FileUtils.deleteDirectory(directory);
+        bundle.delete();
+    }
+
+    @Test
+    public void testPack() throws Exception {
+        String projectPath = System.getProperty("project.path");
+        PackManifest manifest;
+        try (ProjectPacker packer = new ProjectPacker(directory)) {
+            manifest = packer.pack(bundle);
+            Assert.assertTrue(packer.getProblems().toString(), packer.getProblems().isEmpty());
+        }
+        // Packing loads through its own context, the shared one is untouched.
+        Assert.assertEquals(projectPath, System.getProperty("project.path"));
+
+        PackFile pack = PackFile.open(bundle);
+        PackManifest read = PackManifest.read(pack);
+        Assert.assertEquals("Generated.game", read.getProject());
+        Assert.assertEquals(manifest.getAssets(), read.getAssets());
+        Assert.assertEquals("Board", read.getType("Boards/Board1.bboard"));
+        Assert.assertEquals("TileSet", read.getType("TileSets/TileSet0.tileset"));
+        Assert.assertNull(read.getType("Graphics/TileSet0.png"));
+        Assert.assertTrue(pack.contains("Graphics/TileSet0.png"));
+        Assert.assertFalse(pack.contains("Boards/Board1.board"));
+
+        // A context serving the bundle, as a packaged game would.
+        File root = new File("packed").getAbsoluteFile();
+        AssetManager packed = new AssetManager(root);
+        packed.registerResolver(new PackAssetHandleResolver(pack, root));
+        packed.registerSerializer(new JsonProjectSerializer());
+        packed.registerSerializer(new BinaryBoardSerializer());
+        packed.registerSerializer(new JsonItemSerializer());
+        packed.registerSerializer(new JsonAnimationSerializer());
+
+        AssetHandle handle = packed.deserialize(new AssetDescriptor(
+                new File(root, read.getProject()).toURI()));
+        Assert.assertEquals("Board0.bboard", ((Project) handle.getAsset()).getInitialBoard());
+
+        handle = packed.deserialize(new AssetDescriptor(
+                new File(root, "Boards/Board1.bboard").toURI()));
+        Board board = (Board) handle.getAsset();
+        Assert.assertEquals(20, board.getWidth());
+        Assert.assertEquals(2, board.getLayers().size());
+        Assert.assertFalse(board.isChunked());
+    }
+
+    @Test
+    public void testMissingReference() throws Exception {
+        File image = new File(new File(directory, CoreProperties.getProperty("toolkit.directory.bitmap")),
+                "Item0_south.png");
+        byte[] contents = Files.readAllBytes(image.toPath());
+        Assert.assertTrue(image.delete());
+        try {
+            try (ProjectPacker packer = new ProjectPacker(directory)) {
+                packer.setCompressed(true);
+                packer.pack(bundle);
+                Assert.assertEquals(1, packer.getProblems().size());
+                Assert.assertTrue(packer.getProblems().get(0).endsWith("Graphics/Item0_south.png"));
+            }
+        } finally {
+            Files.write(image.toPath(), contents);
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.utilities;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetHandle;
+import net.rpgtoolkit.common.assets.AssetManager;
+import net.rpgtoolkit.common.assets.Board;
+import net.rpgtoolkit.common.assets.TileSet;
+import net.rpgtoolkit.common.assets.files.FileAssetHandleResolver;
+import net.rpgtoolkit.common.assets.serialization.JsonAnimationSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonBoardSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonEnemySerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonItemSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonPlayerSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonProjectSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonTileSetSerializer;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ProjectWatcherTest {
+
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    private static File directory;
+    private static AssetManager assetManager;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        directory = Files.createTempDirectory("watched").toFile();
+        assetManager = new AssetManager(directory);
+        assetManager.registerResolver(new FileAssetHandleResolver());
+        assetManager.registerSerializer(new JsonAnimationSerializer());
+        assetManager.registerSerializer(new JsonPlayerSerializer());
+        assetManager.registerSerializer(new JsonBoardSerializer());
+        assetManager.registerSerializer(new JsonProjectSerializer());
+        assetManager.registerSerializer(new JsonEnemySerializer());
+        assetManager.registerSerializer(new JsonItemSerializer());
+        assetManager.registerSerializer(new JsonTileSetSerializer());
+
+        ProjectGenerator generator = new ProjectGenerator(directory, assetManager);
+        generator.setBoardCount(1);
+        generator.setBoardWidth(10);
+        generator.setBoardHeight(10);
+        generator.generate();
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        assetManager.getTileSetCache().clear();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testReloadsChangedTileSet() throws Exception {
+        File boardFile = file("toolkit.directory.board", "Board0.board");
+        File tileSetFile = file("toolkit.directory.tileset", "TileSet0.tileset");
+
+        Board board = (Board) assetManager.deserialize(
+                new AssetDescriptor(boardFile.toURI())).getAsset();
+        board.acquireTileSets();
+        AssetHandle handle = assetManager.deserialize(new AssetDescriptor(tileSetFile.toURI()));
+        TileSet old = (TileSet) handle.getAsset();
+        Assert.assertSame(old, board.getTileSets().get("TileSet0.tileset"));
+
+        try (ProjectWatcher watcher = new ProjectWatcher(directory, assetManager)) {
+            watcher.start();
+            String json = new String(Files.readAllBytes(tileSetFile.toPath()), StandardCharsets.UTF_8);
+            Files.write(tileSetFile.toPath(),
+                    json.replace("\"tileWidth\":32", "\"tileWidth\":16").getBytes(StandardCharsets.UTF_8));
+
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (board.getTileSets().get("TileSet0.tileset") == old
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+        } finally {
+            board.releaseTileSets();
+        }
+
+        // The live handle, the tile set cache and the board all see the new tile set.
+        TileSet reloaded = (TileSet) handle.getAsset();
+        Assert.assertNotSame(old, reloaded);
+        Assert.assertEquals(16, reloaded.getTileWidth());
+        Assert.assertSame(reloaded, assetManager.getTileSetCache().get("TileSet0.tileset"));
+        Assert.assertSame(reloaded, board.getTileSets().get("TileSet0.tileset"));
+        Assert.assertSame(handle, assetManager.deserialize(new AssetDescriptor(tileSetFile.toURI())));
+    }
+
+    @Test
+    public void testReloadKeepsOwnSavesAndUnsavedEdits() throws Exception {
+        File boardFile = file("toolkit.directory.board", "Board0.board");
+        AssetDescriptor descriptor = new AssetDescriptor(boardFile.toURI());
+        AssetHandle handle = assetManager.deserialize(descriptor);
+        Board board = (Board) handle.getAsset();
+
+        // The file is as this context saved it.
+        board.getLayers().get(0).setName("Saved");
+        assetManager.serialize(handle);
+        Assert.assertSame(board, assetManager.reload(descriptor).get().getAsset());
+
+        // Unsaved edits are not overwritten by a change on disk.
+        board.getLayers().get(0).setName("Edited");
+        Files.write(boardFile.toPath(), " ".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        Assert.assertSame(board, assetManager.reload(descriptor).get().getAsset());
+        Assert.assertEquals("Edited", board.getLayers().get(0).getName());
+
+        // Once saved, a change on disk is picked up.
+        assetManager.serialize(handle);
+        Files.write(boardFile.toPath(), " ".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        Board reloaded = (Board) assetManager.reload(descriptor).get().getAsset();
+        Assert.assertNotSame(board, reloaded);
+        Assert.assertEquals("Edited", reloaded.getLayers().get(0).getName());
+        assetManager.getCache().remove(descriptor);
+    }
+
+    private static File file(String directoryKey, String fileName) {
+        return new File(new File(directory, CoreProperties.getProperty(directoryKey)), fileName);
+    }
+
+}
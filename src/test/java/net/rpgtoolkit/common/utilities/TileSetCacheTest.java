@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2015, rpgtoolkit.net <help@rpgtoolkit.net>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.rpgtoolkit.common.utilities;
+
+import java.io.File;
+import java.nio.file.Files;
+import net.rpgtoolkit.common.assets.AssetDescriptor;
+import net.rpgtoolkit.common.assets.AssetManager;
+import net.rpgtoolkit.common.assets.Board;
+import net.rpgtoolkit.common.assets.TileSet;
+import net.rpgtoolkit.common.assets.files.FileAssetHandleResolver;
+import net.rpgtoolkit.common.assets.serialization.JsonAnimationSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonBoardSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonEnemySerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonItemSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonPlayerSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonProjectSerializer;
+import net.rpgtoolkit.common.assets.serialization.JsonTileSetSerializer;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TileSetCacheTest {
+
+    private static File directory;
+    private static AssetManager assetManager;
+    private static TileSetCache cache;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        directory = Files.createTempDirectory("tilesets").toFile();
+        assetManager = new AssetManager(directory);
+        assetManager.registerResolver(new FileAssetHandleResolver());
+        assetManager.registerSerializer(new JsonAnimationSerializer());
+        assetManager.registerSerializer(new JsonPlayerSerializer());
+        assetManager.registerSerializer(new JsonBoardSerializer());
+        assetManager.registerSerializer(new JsonProjectSerializer());
+        assetManager.registerSerializer(new JsonEnemySerializer());
+        assetManager.registerSerializer(new JsonItemSerializer());
+        assetManager.registerSerializer(new JsonTileSetSerializer());
+
+        ProjectGenerator generator = new ProjectGenerator(directory, assetManager);
+        generator.setBoardCount(2);
+        generator.setBoardWidth(10);
+        generator.setBoardHeight(10);
+        generator.generate();
+        cache = assetManager.getTileSetCache();
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @After
+    public void after() {
+        cache.clear();
+        cache.setMemoryBudget(TileSetCache.UNBOUNDED);
+    }
+
+    @Test
+    public void testReferenceCounting() {
+        TileSet tileSet = cache.acquire("TileSet0.tileset");
+        Assert.assertNotNull(tileSet);
+        Assert.assertSame(tileSet, cache.acquire("TileSet0.tileset"));
+        Assert.assertEquals(2, cache.getReferenceCount("TileSet0.tileset"));
+
+        // Still referenced, so it stays.
+        Assert.assertNull(cache.remove("TileSet0.tileset"));
+        Assert.assertTrue(cache.isCached("TileSet0.tileset"));
+
+        Assert.assertSame(tileSet, cache.remove("TileSet0.tileset"));
+        Assert.assertFalse(cache.isCached("TileSet0.tileset"));
+        Assert.assertEquals(0, cache.getMemoryUsage());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testStaticShimsUseDefaultContext() {
+        Assert.assertNotNull(cache.acquire("TileSet0.tileset"));
+        Assert.assertTrue(cache.isCached("TileSet0.tileset"));
+
+        // The shims see the shared default context, not this one.
+        Assert.assertFalse(TileSetCache.contains("TileSet0.tileset"));
+        Assert.assertNull(TileSetCache.getTileSet("TileSet0.tileset"));
+        Assert.assertNull(TileSetCache.removeTileSet("TileSet0.tileset"));
+        Assert.assertEquals(1, cache.getReferenceCount("TileSet0.tileset"));
+    }
+
+    @Test
+    public void testEvictsUnreferencedOverBudget() {
+        cache.acquire("TileSet0.tileset");
+        cache.acquire("TileSet1.tileset");
+        long usage = cache.getMemoryUsage();
+        Assert.assertTrue(usage > 0);
+
+        // Referenced tile sets are kept even when over budget.
+        cache.setMemoryBudget(0);
+        Assert.assertEquals(2, cache.size());
+
+        cache.release("TileSet0.tileset");
+        Assert.assertFalse(cache.isCached("TileSet0.tileset"));
+        Assert.assertTrue(cache.isCached("TileSet1.tileset"));
+        Assert.assertTrue(cache.getMemoryUsage() < usage);
+
+        // Within budget, unreferenced tile sets stay cached for reuse.
+        cache.setMemoryBudget(TileSetCache.UNBOUNDED);
+        cache.release("TileSet1.tileset");
+        Assert.assertTrue(cache.isCached("TileSet1.tileset"));
+    }
+
+    @Test
+    public void testBoardAcquireAndRelease() throws Exception {
+        File file = new File(new File(directory,
+                CoreProperties.getProperty("toolkit.directory.board")), "Board0.board");
+        AssetDescriptor descriptor = new AssetDescriptor(file.toURI());
+        Board board = (Board) assetManager.deserialize(descriptor).getAsset();
+
+        // Loading the board referenced its tile sets, acquiring again
+        // replaces the references.
+        board.acquireTileSets();
+        for (String name : board.getTileSets().keySet()) {
+            Assert.assertEquals(1, cache.getReferenceCount(name));
+            Assert.assertSame(cache.get(name), board.getTileSets().get(name));
+        }
+
+        // Leaving the asset cache gives them back.
+        assetManager.getCache().remove(descriptor);
+        for (String name : board.getTileSets().keySet()) {
+            Assert.assertEquals(0, cache.getReferenceCount(name));
+        }
+    }
+
+}